@@ -0,0 +1,110 @@
+package htsjdk.samtools;
+
+import htsjdk.samtools.seekablestream.SeekableStream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <b>Hellbender: lives in the htsjdk.samtools package to get at the chunks found by BAM index queries (which htsjdk
+ * only returns wrapped in the package-private BAMFileSpan), at the linear index and the file offsets recorded in the
+ * index metadata, and at the package-private index implementations, none of which htsjdk exposes publicly. It also
+ * lets BAM writers other than htsjdk's record where they wrote each read, which is how {@link BAMIndexer} learns it.</b>
+ */
+public final class BAMIndexSpanUtils {
+
+    private BAMIndexSpanUtils() {}
+
+    /**
+     * Opens a BAM index from a stream, for indices that can't be found by a {@link SamReader} (eg., on HDFS).
+     * The index is read from the stream on demand, so the stream must stay open until the index is closed.
+     *
+     * @param indexStream stream over the .bai file
+     * @param dictionary sequence dictionary of the indexed BAM
+     * @return the BAM index
+     */
+    public static BAMIndex openIndex( final SeekableStream indexStream, final SAMSequenceDictionary dictionary ) {
+        return new DiskBasedBAMFileIndex(indexStream, dictionary);
+    }
+
+    /**
+     * @param index BAM index to query, as returned by {@link SamReader.Indexing#getIndex}
+     * @param referenceIndex index of the contig in the sequence dictionary
+     * @param start 1-based start of the query interval
+     * @param end 1-based end of the query interval (inclusive)
+     * @return the chunks of the BAM file that may contain reads overlapping the interval, or an empty list if there
+     *         are none
+     */
+    public static List<Chunk> getChunksOverlapping( final BAMIndex index, final int referenceIndex, final int start, final int end ) {
+        if ( ! (index instanceof AbstractBAMFileIndex) ) {
+            throw new IllegalArgumentException("Unsupported BAM index implementation " + index.getClass().getName());
+        }
+        // The same query as DiskBasedBAMFileIndex.getSpanOverlapping(), minus the BAMFileSpan
+        final BinningIndexContent content = ((AbstractBAMFileIndex)index).query(referenceIndex, start, end);
+        if ( content == null ) {
+            return Collections.emptyList();
+        }
+        final List<Chunk> chunks = new ArrayList<>();
+        for ( final Chunk chunk : content.getAllChunks() ) {
+            chunks.add(chunk.clone());
+        }
+        return Chunk.optimizeChunkList(chunks, content.getLinearIndex().getMinimumOffset(start));
+    }
+
+    /**
+     * @param index BAM index to query, as returned by {@link SamReader.Indexing#getIndex}
+     * @param referenceIndex index of the contig in the sequence dictionary
+     * @param start 1-based start of the query interval
+     * @param end 1-based end of the query interval (inclusive)
+     * @return the distinct virtual file offsets in the linear index for the 16kb windows overlapping the interval,
+     *         in increasing order. Each is the start of a read, so the file can be split at any of them.
+     */
+    public static long[] getLinearIndexOffsets( final BAMIndex index, final int referenceIndex, final int start, final int end ) {
+        if ( ! (index instanceof AbstractBAMFileIndex) ) {
+            throw new IllegalArgumentException("Unsupported BAM index implementation " + index.getClass().getName());
+        }
+        final BinningIndexContent content = ((AbstractBAMFileIndex)index).query(referenceIndex, start, end);
+        if ( content == null ) {
+            return new long[0];
+        }
+        // Windows without reads have no entry (0), or repeat the entry of the window after them
+        return Arrays.stream(content.getLinearIndex().getIndexEntries()).filter(offset -> offset > 0).sorted().distinct().toArray();
+    }
+
+    /**
+     * Records where a read was written, so that it can be passed to {@link BAMIndexer#processAlignment}
+     *
+     * @param read read that was written
+     * @param startVirtualOffset virtual file offset at which the read starts
+     * @param endVirtualOffset virtual file offset just past the end of the read
+     */
+    @SuppressWarnings("auxiliaryclass")
+    public static void setFileSpan( final SAMRecord read, final long startVirtualOffset, final long endVirtualOffset ) {
+        read.setFileSource(new SAMFileSource(null, new BAMFileSpan(new Chunk(startVirtualOffset, endVirtualOffset))));
+    }
+
+    /**
+     * @param read read from a BAM file opened with {@link SamReaderFactory.Option#INCLUDE_SOURCE_IN_RECORDS}
+     * @return the virtual file offset at which the read starts
+     */
+    @SuppressWarnings("auxiliaryclass")
+    public static long getFileSpanStart( final SAMRecord read ) {
+        return ((BAMFileSpan)read.getFileSource().getFilePointer()).getFirstOffset();
+    }
+
+    /**
+     * @return the virtual file offset of the first read on the contig described by metaData, or -1 if there are none
+     */
+    public static long getFirstOffset( final BAMIndexMetaData metaData ) {
+        return metaData.getFirstOffset();
+    }
+
+    /**
+     * @return the virtual file offset just past the last read on the contig described by metaData
+     */
+    public static long getLastOffset( final BAMIndexMetaData metaData ) {
+        return metaData.getLastOffset();
+    }
+}
@@ -0,0 +1,106 @@
+package htsjdk.samtools;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import htsjdk.samtools.util.BinaryCodec;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * <b>Hellbender: lives in the htsjdk.samtools package to get at the packed (BAM) encodings of bases, cigars and
+ * attributes, and at the reference indices and indexing bin of a record, none of which htsjdk exposes publicly.</b>
+ *
+ * A compact binary encoding of SAMRecords, for shuffling them between Spark workers. It is close to the BAM
+ * encoding (bases packed 4 bits each, binary cigar and binary tags) but doesn't need a header, since contigs are
+ * stored by name as well as by index: records are compared (e.g., by sortByKey) as soon as they are shuffled, before
+ * the header can be put back on them, and records without a header (or with a contig missing from it) must survive
+ * the trip. The header itself is never written, and decoded records don't have one.
+ */
+public final class SAMRecordSparkCodec {
+
+    private SAMRecordSparkCodec() {}
+
+    /**
+     * Writes record to output, without its header
+     */
+    public static void encode( final SAMRecord record, final Output output ) {
+        output.writeString(record.getReadName());
+        output.writeInt(record.getFlags(), true);
+        output.writeString(record.getReferenceName());
+        writeNullableInt(record.mReferenceIndex, output);
+        output.writeInt(record.getAlignmentStart(), true);
+        output.writeInt(record.getMappingQuality(), true);
+        final int[] cigar = BinaryCigarCodec.encode(record.getCigar());
+        output.writeInt(cigar.length, true);
+        for ( final int element : cigar ) {
+            output.writeInt(element);
+        }
+        output.writeString(record.getMateReferenceName());
+        writeNullableInt(record.mMateReferenceIndex, output);
+        output.writeInt(record.getMateAlignmentStart(), true);
+        output.writeInt(record.getInferredInsertSize(), false);
+
+        final byte[] bases = record.getReadBases();
+        output.writeInt(bases.length, true);
+        output.writeBytes(SAMUtils.bytesToCompressedBases(bases));
+        final byte[] qualities = record.getBaseQualities();
+        output.writeInt(qualities.length, true);
+        output.writeBytes(qualities);
+
+        final ByteArrayOutputStream attributes = new ByteArrayOutputStream();
+        final BinaryTagCodec tagCodec = new BinaryTagCodec(new BinaryCodec(attributes));
+        for ( SAMBinaryTagAndValue attribute = record.getBinaryAttributes(); attribute != null; attribute = attribute.getNext() ) {
+            tagCodec.writeTag(attribute.tag, attribute.value, attribute.isUnsignedArray());
+        }
+        output.writeInt(attributes.size(), true);
+        output.writeBytes(attributes.toByteArray());
+
+        // Written last, since it is cleared by setting most of the other fields
+        writeNullableInt(record.getIndexingBin(), output);
+    }
+
+    /**
+     * @return the next record in input, which has no header
+     */
+    public static SAMRecord decode( final Input input ) {
+        final SAMRecord record = new SAMRecord(null);
+        record.setReadName(input.readString());
+        record.setFlags(input.readInt(true));
+        record.setReferenceName(input.readString());
+        // Without a header, setting the name leaves the index unknown, so set it ourselves
+        record.mReferenceIndex = readNullableInt(input);
+        record.setAlignmentStart(input.readInt(true));
+        record.setMappingQuality(input.readInt(true));
+        final int[] cigar = new int[input.readInt(true)];
+        for ( int i = 0; i < cigar.length; ++i ) {
+            cigar[i] = input.readInt();
+        }
+        record.setCigar(BinaryCigarCodec.decode(cigar));
+        record.setMateReferenceName(input.readString());
+        record.mMateReferenceIndex = readNullableInt(input);
+        record.setMateAlignmentStart(input.readInt(true));
+        record.setInferredInsertSize(input.readInt(false));
+
+        final int readLength = input.readInt(true);
+        record.setReadBases(SAMUtils.compressedBasesToBytes(readLength, input.readBytes((readLength + 1) / 2), 0));
+        record.setBaseQualities(input.readBytes(input.readInt(true)));
+
+        final int attributesLength = input.readInt(true);
+        if ( attributesLength > 0 ) {
+            record.setAttributes(BinaryTagCodec.readTags(input.readBytes(attributesLength), 0, attributesLength, ValidationStringency.STRICT));
+        }
+
+        record.setIndexingBin(readNullableInt(input));
+        return record;
+    }
+
+    // Integers that may be null are written shifted up by 2, leaving 0 for null (and 1 for -1, the usual "none")
+    private static void writeNullableInt( final Integer value, final Output output ) {
+        output.writeInt(value == null ? 0 : value + 2, true);
+    }
+
+    private static Integer readNullableInt( final Input input ) {
+        final int value = input.readInt(true);
+        return value == 0 ? null : value - 2;
+    }
+}
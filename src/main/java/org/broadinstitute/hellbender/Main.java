@@ -1,13 +1,12 @@
 package org.broadinstitute.hellbender;
 
 import htsjdk.samtools.util.StringUtil;
-import org.broadinstitute.hellbender.cmdline.ClassFinder;
 import org.broadinstitute.hellbender.cmdline.CommandLineProgram;
 import org.broadinstitute.hellbender.cmdline.CommandLineProgramGroup;
+import org.broadinstitute.hellbender.cmdline.CommandLineProgramIndex;
 import org.broadinstitute.hellbender.cmdline.CommandLineProgramProperties;
 import org.broadinstitute.hellbender.exceptions.UserException;
 
-import java.lang.reflect.Modifier;
 import java.util.*;
 
 /**
@@ -18,6 +17,9 @@ import java.util.*;
  * If you want your own single command line program, extend this class and give instanceMain a new list of java packages in which to
  * search for classes that extend CommandLineProgram.
  *
+ * The command line programs in our own packages are listed in an index generated at build time, so that they can be found without
+ * searching the classpath (see {@link CommandLineProgramIndex}). Other packages are searched at startup.
+ *
  */
 public class Main {
 
@@ -39,12 +41,19 @@ public class Main {
     /**
      * exit value when an unrecoverable {@link UserException} occurs
      */
-    private static final int USER_EXCEPTION_EXIT_VALUE = 2;
+    public static final int USER_EXCEPTION_EXIT_VALUE = 2;
     
     /**
      * exit value when any unrecoverable exception other than {@link UserException} occurs
      */
-    private static final int ANY_OTHER_EXCEPTION_EXIT_VALUE = 1;
+    public static final int ANY_OTHER_EXCEPTION_EXIT_VALUE = 1;
+
+    /**
+     * Command line programs found in each list of packages searched so far, by simple name, so that a Main instance
+     * that runs several programs (see {@link org.broadinstitute.hellbender.tools.ToolServer}) only has to search the
+     * classpath once
+     */
+    private final Map<List<String>, Map<String, Class<?>>> programsByPackageList = new HashMap<>();
 
     /**
      * The packages we wish to include in our command line *
@@ -82,57 +91,50 @@ public class Main {
      * Override this if you want to include different java packages to search for classes that extend CommandLineProgram. *
      */
     public static void main(final String[] args) {
+        final int exitValue = new Main().runCommandLineProgram(args, getPackageList(), COMMAND_LINE_NAME);
+        if (exitValue != 0) {
+            System.exit(exitValue);
+        }
+    }
+
+    /**
+     * Run the command line program named by the first argument, printing its result to System.out and any
+     * error to System.err, but without exiting the JVM.
+     *
+     * @return 0 on success, or the value the JVM should exit with on failure
+     */
+    public int runCommandLineProgram(final String[] args) {
+        return runCommandLineProgram(args, getPackageList(), COMMAND_LINE_NAME);
+    }
+
+    /**
+     * Same as {@link #runCommandLineProgram(String[])}, searching the given packages for command line programs
+     */
+    protected int runCommandLineProgram(final String[] args, final List<String> packageList, final String commandLineName) {
         try {
-            Object result = new Main().instanceMain(args, getPackageList(), COMMAND_LINE_NAME);
+            Object result = instanceMain(args, packageList, commandLineName);
             if (result != null) {
               System.out.println("Tool returned:\n" + result);
             }
+            return 0;
         } catch (UserException e){
             System.err.println("***********************************************************************");
             System.err.println();
             System.err.println(e.getMessage());
             System.err.println();
             System.err.println("***********************************************************************");
-            System.exit(USER_EXCEPTION_EXIT_VALUE);
+            return USER_EXCEPTION_EXIT_VALUE;
         } catch (Exception e){
             e.printStackTrace();
-            System.exit(ANY_OTHER_EXCEPTION_EXIT_VALUE);
+            return ANY_OTHER_EXCEPTION_EXIT_VALUE;
         }
     }
 
     /**
      * Returns the command line program specified, or prints the usage and exits with exit code 1 *
      */
-    private static CommandLineProgram extractCommandLineProgram(final String[] args, final List<String> packageList, final String commandLineName) {
-        /** Get the set of classes that are our command line programs **/
-        final ClassFinder classFinder = new ClassFinder();
-        for (final String pkg : packageList) {
-            classFinder.find(pkg, CommandLineProgram.class);
-        }
-        String missingAnnotationClasses = "";
-
-        final Map<String, Class<?>> simpleNameToClass = new HashMap<>();
-        for (final Class<?> clazz : classFinder.getClasses()) {
-            // No interfaces, synthetic, primitive, local, or abstract classes.
-            if (!clazz.isInterface() && !clazz.isSynthetic() && !clazz.isPrimitive() && !clazz.isLocalClass()
-                    && !Modifier.isAbstract(clazz.getModifiers())) {
-                final CommandLineProgramProperties property = getProgramProperty(clazz);
-                // Check for missing annotations
-                if (null == property) {
-                    if (missingAnnotationClasses.isEmpty()) missingAnnotationClasses += clazz.getSimpleName();
-                    else missingAnnotationClasses += ", " + clazz.getSimpleName();
-                } else if (!property.omitFromCommandLine()) { /** We should check for missing annotations later **/
-                    if (simpleNameToClass.containsKey(clazz.getSimpleName())) {
-                        throw new RuntimeException("Simple class name collision: " + clazz.getSimpleName());
-                    }
-                    simpleNameToClass.put(clazz.getSimpleName(), clazz);
-                }
-            }
-        }
-        if (!missingAnnotationClasses.isEmpty()) {
-            throw new RuntimeException("The following classes are missing the required CommandLineProgramProperties annotation: " + missingAnnotationClasses);
-        }
-
+    private CommandLineProgram extractCommandLineProgram(final String[] args, final List<String> packageList, final String commandLineName) {
+        final Map<String, Class<?>> simpleNameToClass = programsByPackageList.computeIfAbsent(new ArrayList<>(packageList), CommandLineProgramIndex::findCommandLinePrograms);
         final Set<Class<?>> classes = new HashSet<>();
         classes.addAll(simpleNameToClass.values());
 
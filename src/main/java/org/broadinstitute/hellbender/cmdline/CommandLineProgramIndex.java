@@ -0,0 +1,232 @@
+package org.broadinstitute.hellbender.cmdline;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Finds the command line programs (concrete, annotated subclasses of {@link CommandLineProgram}) in a list of
+ * packages and their sub-packages.
+ *
+ * Searching the classpath with a {@link ClassFinder} means reading every entry of every jar on the classpath and
+ * loading every class in the searched packages, which dominates the startup time of short tool invocations. So the
+ * build runs {@link #main} to write the names of the command line programs in our own packages to the resource
+ * {@link #INDEX_RESOURCE}, and only loads those classes at runtime. Packages that are not in the index (eg., those
+ * of plugins) are still searched at runtime, as are indexed packages if the index turns out to be out of date.
+ *
+ * The index is a text file listing, for each indexed package, a line "package&lt;tab&gt;&lt;package name&gt;"
+ * followed by the fully-qualified names of the command line programs in that package, one per line. Lines
+ * starting with "#" are comments.
+ */
+public final class CommandLineProgramIndex {
+    private static final Logger logger = LogManager.getLogger(CommandLineProgramIndex.class);
+
+    /**
+     * Classpath location of the index generated by the build
+     */
+    public static final String INDEX_RESOURCE = "org/broadinstitute/hellbender/cmdline/command_line_programs.txt";
+
+    private static final String PACKAGE_PREFIX = "package\t";
+
+    private static final String COMMENT_PREFIX = "#";
+
+    private CommandLineProgramIndex() {}
+
+    /**
+     * Find the command line programs in the given packages, using the index generated by the build where possible
+     *
+     * @param packageList packages to search (including their sub-packages)
+     * @return the command line programs found, by simple name
+     * @throws RuntimeException if a command line program is missing its {@link CommandLineProgramProperties}
+     *         annotation, or two command line programs have the same simple name
+     */
+    public static Map<String, Class<?>> findCommandLinePrograms( final List<String> packageList ) {
+        return findCommandLinePrograms(packageList, loadIndex());
+    }
+
+    /**
+     * Find the command line programs in the given packages, using the given index where possible
+     *
+     * @param packageList packages to search (including their sub-packages)
+     * @param index names of the command line programs in each indexed package, as returned by {@link #readIndex}
+     * @return the command line programs found, by simple name
+     */
+    static Map<String, Class<?>> findCommandLinePrograms( final List<String> packageList, final Map<String, List<String>> index ) {
+        Utils.nonNull(packageList);
+        Utils.nonNull(index);
+
+        final Set<Class<?>> candidates = new LinkedHashSet<>();
+        final List<String> packagesToSearch = new ArrayList<>();
+        for ( final String pkg : packageList ) {
+            final List<Class<?>> indexedClasses = index.containsKey(pkg) ? loadIndexedClasses(pkg, index.get(pkg)) : null;
+            if ( indexedClasses != null ) {
+                candidates.addAll(indexedClasses);
+            }
+            else {
+                packagesToSearch.add(pkg);
+            }
+        }
+
+        if ( ! packagesToSearch.isEmpty() ) {
+            final ClassFinder classFinder = new ClassFinder();
+            for ( final String pkg : packagesToSearch ) {
+                classFinder.find(pkg, CommandLineProgram.class);
+            }
+            candidates.addAll(classFinder.getClasses());
+        }
+
+        return selectCommandLinePrograms(candidates);
+    }
+
+    /**
+     * Load the named classes from an indexed package, without initializing them
+     *
+     * @return the classes, or null if any of them could not be loaded (meaning that the index is out of date)
+     */
+    private static List<Class<?>> loadIndexedClasses( final String pkg, final List<String> classNames ) {
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        final List<Class<?>> classes = new ArrayList<>(classNames.size());
+        for ( final String className : classNames ) {
+            try {
+                classes.add(Class.forName(className, false, loader));
+            }
+            catch ( final ClassNotFoundException | LinkageError e ) {
+                logger.warn("The command line program index is out of date (cannot load " + className + "), searching package " + pkg + " instead");
+                return null;
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * Select the command line programs from a set of candidate classes: concrete classes with a
+     * {@link CommandLineProgramProperties} annotation that are not omitted from the command line.
+     *
+     * @return the command line programs, by simple name
+     */
+    private static Map<String, Class<?>> selectCommandLinePrograms( final Collection<Class<?>> candidates ) {
+        String missingAnnotationClasses = "";
+
+        final Map<String, Class<?>> simpleNameToClass = new HashMap<>();
+        for (final Class<?> clazz : candidates) {
+            // No interfaces, synthetic, primitive, local, or abstract classes.
+            if (!clazz.isInterface() && !clazz.isSynthetic() && !clazz.isPrimitive() && !clazz.isLocalClass()
+                    && !Modifier.isAbstract(clazz.getModifiers())) {
+                final CommandLineProgramProperties property = clazz.getAnnotation(CommandLineProgramProperties.class);
+                // Check for missing annotations
+                if (null == property) {
+                    if (missingAnnotationClasses.isEmpty()) missingAnnotationClasses += clazz.getSimpleName();
+                    else missingAnnotationClasses += ", " + clazz.getSimpleName();
+                } else if (!property.omitFromCommandLine()) { /** We should check for missing annotations later **/
+                    if (simpleNameToClass.containsKey(clazz.getSimpleName())) {
+                        throw new RuntimeException("Simple class name collision: " + clazz.getSimpleName());
+                    }
+                    simpleNameToClass.put(clazz.getSimpleName(), clazz);
+                }
+            }
+        }
+        if (!missingAnnotationClasses.isEmpty()) {
+            throw new RuntimeException("The following classes are missing the required CommandLineProgramProperties annotation: " + missingAnnotationClasses);
+        }
+        return simpleNameToClass;
+    }
+
+    /**
+     * @return the index generated by the build, or an empty index if there is none on the classpath (eg., when
+     *         running from classes compiled by an IDE)
+     */
+    private static Map<String, List<String>> loadIndex() {
+        try ( final InputStream indexStream = Thread.currentThread().getContextClassLoader().getResourceAsStream(INDEX_RESOURCE) ) {
+            if ( indexStream == null ) {
+                logger.debug("No command line program index found on the classpath, searching for command line programs instead");
+                return Collections.emptyMap();
+            }
+            return readIndex(new InputStreamReader(indexStream, StandardCharsets.UTF_8));
+        }
+        catch ( final IOException e ) {
+            throw new UncheckedIOException("Error reading the command line program index", e);
+        }
+    }
+
+    /**
+     * Parse an index in the format written by {@link #writeIndex}
+     *
+     * @param reader source of the index (not closed by this method)
+     * @return fully-qualified names of the command line programs in each indexed package, by package
+     */
+    static Map<String, List<String>> readIndex( final Reader reader ) throws IOException {
+        final Map<String, List<String>> index = new LinkedHashMap<>();
+        final BufferedReader lines = new BufferedReader(reader);
+        List<String> currentPackage = null;
+        String line;
+        while ( (line = lines.readLine()) != null ) {
+            line = line.trim();
+            if ( line.isEmpty() || line.startsWith(COMMENT_PREFIX) ) {
+                continue;
+            }
+            if ( line.startsWith(PACKAGE_PREFIX) ) {
+                currentPackage = index.computeIfAbsent(line.substring(PACKAGE_PREFIX.length()).trim(), pkg -> new ArrayList<>());
+            }
+            else if ( currentPackage == null ) {
+                throw new IOException("Malformed command line program index: " + line + " does not follow a package line");
+            }
+            else {
+                currentPackage.add(line);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Search the given packages for command line programs, and write an index of them
+     *
+     * @param packageList packages to index
+     * @param writer destination for the index (not closed by this method)
+     */
+    static void writeIndex( final List<String> packageList, final Writer writer ) {
+        final PrintWriter out = new PrintWriter(writer);
+        out.println(COMMENT_PREFIX + " Command line programs by package, generated at build time by " + CommandLineProgramIndex.class.getName());
+        for ( final String pkg : packageList ) {
+            final List<String> classNames = new ArrayList<>();
+            for ( final Class<?> clazz : findCommandLinePrograms(Collections.singletonList(pkg), Collections.emptyMap()).values() ) {
+                classNames.add(clazz.getName());
+            }
+            Collections.sort(classNames);
+
+            out.println(PACKAGE_PREFIX + pkg);
+            classNames.forEach(out::println);
+        }
+        out.flush();
+    }
+
+    /**
+     * Generate the index at build time
+     *
+     * @param args the output directory (the index is written to {@link #INDEX_RESOURCE} within it), followed by the packages to index
+     */
+    public static void main( final String[] args ) throws IOException {
+        if ( args.length < 2 ) {
+            throw new IllegalArgumentException("Usage: " + CommandLineProgramIndex.class.getSimpleName() + " <output directory> <package> [<package> ...]");
+        }
+
+        final File indexFile = new File(args[0], INDEX_RESOURCE);
+        Files.createDirectories(indexFile.getParentFile().toPath());
+        try ( final Writer writer = Files.newBufferedWriter(indexFile.toPath(), StandardCharsets.UTF_8) ) {
+            writeIndex(Arrays.asList(args).subList(1, args.length), writer);
+        }
+    }
+}
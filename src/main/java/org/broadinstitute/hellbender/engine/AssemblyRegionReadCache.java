@@ -0,0 +1,77 @@
+package org.broadinstitute.hellbender.engine;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import org.broadinstitute.hellbender.tools.walkers.haplotypecaller.AssemblyRegion;
+import org.broadinstitute.hellbender.utils.GenomeLoc;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Holds the reads seen by an assembly region traversal that might overlap regions yet to be filled.
+ *
+ * Reads must be added in coordinate order, and regions filled in coordinate order, so that filling a region only
+ * looks at the reads at the front of the cache, up to the first read starting after the region's padded span, and
+ * eviction only removes reads from the front. A read can't be evicted before the reads added ahead of it, so reads
+ * following a long read stay in the cache until it is evicted too.
+ */
+final class AssemblyRegionReadCache {
+    private final SAMSequenceDictionary dictionary;
+    private final Deque<GATKRead> reads = new ArrayDeque<>();
+
+    /**
+     * @param dictionary dictionary giving the order of the contigs of the reads
+     */
+    AssemblyRegionReadCache( final SAMSequenceDictionary dictionary ) {
+        this.dictionary = Utils.nonNull(dictionary);
+    }
+
+    /**
+     * @param read a mapped read, which must not come before any read already added in coordinate order
+     */
+    void add( final GATKRead read ) {
+        reads.addLast(read);
+    }
+
+    /**
+     * @return the number of reads in the cache
+     */
+    int size() {
+        return reads.size();
+    }
+
+    /**
+     * Add the cached reads overlapping region's padded span to region, then evict the reads that cannot
+     * overlap any later region. Regions must be filled in coordinate order.
+     *
+     * @return region
+     */
+    AssemblyRegion fillRegion( final AssemblyRegion region ) {
+        final GenomeLoc extendedSpan = region.getExtendedSpan();
+        final int regionContigIndex = dictionary.getSequenceIndex(extendedSpan.getContig());
+        for ( final GATKRead read : reads ) {
+            final int readContigIndex = dictionary.getSequenceIndex(read.getContig());
+            if ( readContigIndex > regionContigIndex || (readContigIndex == regionContigIndex && read.getStart() > extendedSpan.getStop()) ) {
+                // This read and all those after it start after the padded span
+                break;
+            }
+            if ( readContigIndex == regionContigIndex && read.getEnd() >= extendedSpan.getStart() ) {
+                region.add(read);
+            }
+        }
+
+        // Later regions start after this one, so their padded spans start no earlier than this
+        final int nextExtendedStart = region.getSpan().getStop() + 1 - region.getExtension();
+        while ( ! reads.isEmpty() ) {
+            final GATKRead read = reads.peekFirst();
+            final int readContigIndex = dictionary.getSequenceIndex(read.getContig());
+            if ( readContigIndex > regionContigIndex || (readContigIndex == regionContigIndex && read.getEnd() >= nextExtendedStart) ) {
+                break;
+            }
+            reads.removeFirst();
+        }
+        return region;
+    }
+}
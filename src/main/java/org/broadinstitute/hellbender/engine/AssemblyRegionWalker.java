@@ -0,0 +1,328 @@
+package org.broadinstitute.hellbender.engine;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import org.broadinstitute.hellbender.cmdline.Argument;
+import org.broadinstitute.hellbender.engine.filters.CountingReadFilter;
+import org.broadinstitute.hellbender.engine.filters.ReadFilterLibrary;
+import org.broadinstitute.hellbender.engine.filters.WellformedReadFilter;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.tools.walkers.haplotypecaller.ActivityProfile;
+import org.broadinstitute.hellbender.tools.walkers.haplotypecaller.ActivityProfileState;
+import org.broadinstitute.hellbender.tools.walkers.haplotypecaller.AssemblyRegion;
+import org.broadinstitute.hellbender.utils.GenomeLocParser;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.locusiterator.LocusIteratorByState;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.StreamSupport;
+
+/**
+ * An AssemblyRegionWalker is a tool that processes an entire region of reads at a time, each marked as either
+ * "active" (containing possible variation) or "inactive" (not likely to contain variation). Tool authors must
+ * implement {@link #isActive} to estimate the probability that each locus is active, and {@link #apply} to process
+ * each region.
+ *
+ * The traversal works in a single pass over the reads: reads are piled up locus by locus using a
+ * {@link LocusIteratorByState}, each pileup is handed to {@link #isActive}, and the resulting states are
+ * accumulated into an {@link ActivityProfile}. As soon as the boundaries of a region are known, and we have
+ * seen every read that could overlap its padded span, the region is filled with those reads and handed to
+ * {@link #apply}. Only the reads that might overlap regions yet to be emitted are kept in memory.
+ *
+ * Regions are bounded in size by {@link #minAssemblyRegionSize} and {@link #maxAssemblyRegionSize}, and extended
+ * by {@link #assemblyRegionPadding} bases on each side. Coverage gaps, contig boundaries, and interval boundaries
+ * (if intervals are provided) always end a region.
+ *
+ * Tools that declare themselves thread-safe via {@link GATKTool#isThreadSafe()} may be run with multiple
+ * worker threads (see {@link #assemblyRegionWalkerThreads}). Activity profiling still happens on the traversal
+ * thread, but regions are processed concurrently by a pool of workers with their own private data sources,
+ * and output is emitted in region order.
+ *
+ * Reads are not copied for each region: a read overlapping several regions is the same object in each of them, and
+ * in the pileups given to {@link #isActive}, possibly on other threads at the same time. Tools must therefore not
+ * modify the reads they are given (copy a read first, with {@link GATKRead#copy}, to change it).
+ */
+public abstract class AssemblyRegionWalker extends GATKTool {
+
+    @Argument(fullName = "disable_all_read_filters", shortName = "f", doc = "Disable all read filters", common = false, optional = true)
+    public boolean disable_all_read_filters = false;
+
+    @Argument(fullName = "minAssemblyRegionSize", shortName = "minAssemblyRegionSize", doc = "Minimum size of an assembly region that is cut from a longer run of active loci", common = false, optional = true)
+    public int minAssemblyRegionSize = defaultMinAssemblyRegionSize();
+
+    @Argument(fullName = "maxAssemblyRegionSize", shortName = "maxAssemblyRegionSize", doc = "Maximum size of an assembly region", common = false, optional = true)
+    public int maxAssemblyRegionSize = defaultMaxAssemblyRegionSize();
+
+    @Argument(fullName = "assemblyRegionPadding", shortName = "assemblyRegionPadding", doc = "Number of additional bases of context to include around each assembly region", common = false, optional = true)
+    public int assemblyRegionPadding = defaultAssemblyRegionPadding();
+
+    @Argument(fullName = "activeProbabilityThreshold", shortName = "activeProbabilityThreshold", doc = "Loci with a probability of being active above this threshold are considered active", common = false, optional = true)
+    public double activeProbThreshold = defaultActiveProbThreshold();
+
+    @Argument(fullName = "maxDepthPerSample", shortName = "maxDepthPerSample", doc = "Maximum number of reads to retain per sample per locus. Reads above this threshold will be downsampled. Set to 0 to disable.", common = false, optional = true)
+    public int maxDepthPerSample = defaultMaxDepthPerSample();
+
+    @Argument(fullName = "assemblyRegionWalkerThreads", shortName = "assemblyRegionWalkerThreads", doc = "Number of threads to use when calling apply() on assembly regions. Only tools that declare themselves thread-safe support values greater than 1", common = false, optional = true)
+    public int assemblyRegionWalkerThreads = 1;
+
+    /**
+     * During multi-threaded traversals, we allow at most this many regions per worker thread to be in flight
+     * at once, so that we never hold too many reads in memory or get too far ahead of the output.
+     */
+    static final int MAX_PENDING_REGIONS_PER_THREAD = 4;
+
+    /**
+     * @return the default value for the {@link #minAssemblyRegionSize} argument, which tools may override
+     */
+    protected int defaultMinAssemblyRegionSize() {
+        return 50;
+    }
+
+    /**
+     * @return the default value for the {@link #maxAssemblyRegionSize} argument, which tools may override
+     */
+    protected int defaultMaxAssemblyRegionSize() {
+        return 300;
+    }
+
+    /**
+     * @return the default value for the {@link #assemblyRegionPadding} argument, which tools may override
+     */
+    protected int defaultAssemblyRegionPadding() {
+        return 100;
+    }
+
+    /**
+     * @return the default value for the {@link #activeProbThreshold} argument, which tools may override
+     */
+    protected double defaultActiveProbThreshold() {
+        return 0.002;
+    }
+
+    /**
+     * @return the default value for the {@link #maxDepthPerSample} argument, which tools may override
+     */
+    protected int defaultMaxDepthPerSample() {
+        return 50;
+    }
+
+    @Override
+    public boolean requiresReads() {
+        return true;
+    }
+
+    /**
+     * Initialize data sources for traversal.
+     *
+     * Marked final so that tool authors don't override it. Tool authors should override onTraversalStart() instead.
+     */
+    @Override
+    protected final void onStartup() {
+        super.onStartup();
+
+        if ( minAssemblyRegionSize <= 0 ) {
+            throw new UserException.BadArgumentValue("minAssemblyRegionSize", Integer.toString(minAssemblyRegionSize), "must be > 0");
+        }
+        if ( maxAssemblyRegionSize < minAssemblyRegionSize ) {
+            throw new UserException.BadArgumentValue("maxAssemblyRegionSize", Integer.toString(maxAssemblyRegionSize), "must be >= minAssemblyRegionSize");
+        }
+        if ( assemblyRegionPadding < 0 ) {
+            throw new UserException.BadArgumentValue("assemblyRegionPadding", Integer.toString(assemblyRegionPadding), "must be >= 0");
+        }
+        if ( maxDepthPerSample < 0 ) {
+            throw new UserException.BadArgumentValue("maxDepthPerSample", Integer.toString(maxDepthPerSample), "must be >= 0");
+        }
+        if ( assemblyRegionWalkerThreads < 1 ) {
+            throw new UserException.BadArgumentValue("assemblyRegionWalkerThreads", Integer.toString(assemblyRegionWalkerThreads), "must be >= 1");
+        }
+        if ( assemblyRegionWalkerThreads > 1 && ! isThreadSafe() ) {
+            throw new UserException.BadArgumentValue("assemblyRegionWalkerThreads", Integer.toString(assemblyRegionWalkerThreads),
+                                                     "tool " + getClass().getSimpleName() + " does not support multi-threaded traversal");
+        }
+
+        if ( hasIntervals() ) {
+            reads.setIntervalsForTraversal(intervalsForTraversal);
+        }
+    }
+
+    /**
+     * Implementation of assembly region traversal.
+     *
+     * Filters the reads using {@link #makeReadFilter}, determines the activity of each covered locus, and hands each
+     * region (along with its reads, and the reference bases and Features overlapping its padded span) to the
+     * {@link #apply} function of the walker. If more than one thread was requested via {@link #assemblyRegionWalkerThreads},
+     * apply() is called concurrently from a pool of worker threads.
+     */
+    @Override
+    public void traverse() {
+        final CountingReadFilter countedFilter = disable_all_read_filters ?
+                                                         new CountingReadFilter("Allow all", ReadFilterLibrary.ALLOW_ALL_READS ) :
+                                                         makeReadFilter();
+
+        if ( assemblyRegionWalkerThreads > 1 ) {
+            logger.info("Processing assembly regions with " + assemblyRegionWalkerThreads + " threads");
+            try ( final ParallelTraversalExecutor<WorkerDataSources, AssemblyRegion> executor =
+                          new ParallelTraversalExecutor<>(assemblyRegionWalkerThreads, assemblyRegionWalkerThreads * MAX_PENDING_REGIONS_PER_THREAD,
+                                                          this::openWorkerDataSources, region -> progressMeter.update(region.getSpan())) ) {
+                traverseRegions(countedFilter, region -> executor.submit(dataSources -> {
+                    applyWithContext(region, dataSources.reference, dataSources.features);
+                    return region;
+                }));
+                executor.finish();
+            }
+        }
+        else {
+            traverseRegions(countedFilter, region -> {
+                applyWithContext(region, reference, features);
+                progressMeter.update(region.getSpan());
+            });
+        }
+
+        reportFilteredReads(countedFilter);
+    }
+
+    /**
+     * Cut the filtered reads into assembly regions, and hand each region, filled with its reads, to regionProcessor
+     * in order
+     */
+    private void traverseRegions( final CountingReadFilter countedFilter, final Consumer<AssemblyRegion> regionProcessor ) {
+        final SAMSequenceDictionary dictionary = getHeaderForReads().getSequenceDictionary();
+        final GenomeLocParser genomeLocParser = new GenomeLocParser(dictionary);
+        final ActivityProfile activityProfile = new ActivityProfile(genomeLocParser, activeProbThreshold, getHeaderForReads());
+        final IntervalMembership traversalIntervals = hasIntervals() ? new IntervalMembership(intervalsForTraversal) : null;
+        // Reads are read ahead of the loci, so they need their own view of the intervals
+        final IntervalMembership readIntervals = hasIntervals() ? new IntervalMembership(intervalsForTraversal) : null;
+
+        // Every read handed to the locus iterator also goes into the cache, until it can no longer overlap any region.
+        // Reads that don't overlap our intervals can't be in any region (or in the pileup of any locus we look at).
+        final AssemblyRegionReadCache readCache = new AssemblyRegionReadCache(dictionary);
+        final Iterator<AlignmentContext> loci = new LocusIteratorByState(
+                StreamSupport.stream(reads.spliterator(), false)
+                        .filter(countedFilter)
+                        .filter(read -> ! read.isUnmapped())
+                        .filter(read -> readIntervals == null || readIntervals.overlaps(new SimpleInterval(read)))
+                        .peek(readCache::add).iterator(),
+                getHeaderForReads(),
+                maxDepthPerSample);
+
+        // Regions whose boundaries are known, but whose padded span may overlap reads we have yet to see
+        final Deque<AssemblyRegion> pendingRegions = new ArrayDeque<>();
+
+        while ( loci.hasNext() ) {
+            final AlignmentContext alignmentContext = loci.next();
+            final SimpleInterval locus = new SimpleInterval(alignmentContext.getLocation());
+            // Reads overlapping our intervals may extend beyond them
+            if ( traversalIntervals != null && ! traversalIntervals.contains(locus) ) {
+                continue;
+            }
+
+            // A gap in coverage or in the intervals ends the current regions
+            if ( ! activityProfile.isContiguousWith(locus) ) {
+                pendingRegions.addAll(popReadyAssemblyRegions(activityProfile, true));
+            }
+
+            final ActivityProfileState state = isActive(alignmentContext, new ReferenceContext(reference, locus), new FeatureContext(features, locus));
+            if ( state == null || state.getLoc().getStart() != locus.getStart() || ! state.getLoc().getContig().equals(locus.getContig()) ) {
+                throw new GATKException("isActive() must return an ActivityProfileState for the current locus " + locus + " but returned " + state);
+            }
+            activityProfile.add(state);
+            pendingRegions.addAll(popReadyAssemblyRegions(activityProfile, false));
+
+            // We have seen every read starting at or before this locus
+            while ( ! pendingRegions.isEmpty() && (! pendingRegions.peekFirst().getExtendedSpan().getContig().equals(locus.getContig()) ||
+                                                   pendingRegions.peekFirst().getExtendedSpan().getStop() <= locus.getStart()) ) {
+                regionProcessor.accept(readCache.fillRegion(pendingRegions.removeFirst()));
+            }
+        }
+
+        // We have seen every read
+        pendingRegions.addAll(popReadyAssemblyRegions(activityProfile, true));
+        for ( final AssemblyRegion region : pendingRegions ) {
+            regionProcessor.accept(readCache.fillRegion(region));
+        }
+    }
+
+    private List<AssemblyRegion> popReadyAssemblyRegions( final ActivityProfile activityProfile, final boolean forceConversion ) {
+        return activityProfile.popReadyAssemblyRegions(assemblyRegionPadding, minAssemblyRegionSize, maxAssemblyRegionSize, forceConversion);
+    }
+
+    /**
+     * Call {@link #apply} on a single region, supplying contextual information spanning its padded span from the
+     * given data sources
+     *
+     * @param region region to process, filled with its reads
+     * @param referenceSource source of reference bases (may be null)
+     * @param featureSource source of Features (may be null)
+     */
+    private void applyWithContext( final AssemblyRegion region, final ReferenceDataSource referenceSource, final FeatureManager featureSource ) {
+        final SimpleInterval extendedSpan = new SimpleInterval(region.getExtendedSpan());
+        final long applyStart = System.nanoTime();
+        apply(region, new ReferenceContext(referenceSource, extendedSpan), new FeatureContext(featureSource, extendedSpan));
+        applyTimer.recordSince(applyStart);
+    }
+
+    /**
+     * Returns the read filter (simple or composite) that will be applied to the reads before they are piled up
+     * and assigned to regions. The default implementation uses the {@link WellformedReadFilter} filter with all
+     * default options.
+     *
+     * Subclasses can extend to provide own filters (ie override and call super).
+     * Multiple filters can be composed by using {@link org.broadinstitute.hellbender.engine.filters.ReadFilter} composition methods.
+     */
+    public CountingReadFilter makeReadFilter(){
+        return new CountingReadFilter("Wellformed", new WellformedReadFilter(getHeaderForReads()));
+    }
+
+    /**
+     * Determine the probability that a locus is active (contains possible variation). Must be implemented by tool authors.
+     * Always called on the traversal thread, in locus order, and only for loci covered by at least one read.
+     *
+     * The pileup elements in the alignment context are reused from one locus to the next, so tools must not keep
+     * references to them (or to the pileup) after isActive() returns. Nor must they modify the reads in the pileup,
+     * which will later be handed to {@link #apply}.
+     *
+     * @param alignmentContext current locus, and the (possibly downsampled) pileup of reads overlapping it
+     * @param referenceContext Reference base at the current locus. Will be an empty, but non-null, context object
+     *                         if there is no backing source of reference data.
+     * @param featureContext Features spanning the current locus. Will be an empty, but non-null, context object
+     *                       if there is no backing source of Feature data.
+     * @return the activity state at the current locus
+     */
+    public abstract ActivityProfileState isActive( AlignmentContext alignmentContext, ReferenceContext referenceContext, FeatureContext featureContext );
+
+    /**
+     * Process an individual assembly region. Must be implemented by tool authors.
+     * In general, tool authors should simply stream their output from apply(), and maintain as little internal state
+     * as possible.
+     *
+     * Both active and inactive regions are processed: use {@link AssemblyRegion#isActive} to tell them apart.
+     *
+     * If the tool declares itself thread-safe via {@link #isThreadSafe()}, this method may be called
+     * concurrently from multiple threads, and should write its output through one of the ordered writers or
+     * {@link #runInTraversalOrder}.
+     *
+     * The reads in the region are shared with other regions and with the traversal, so they must not be modified:
+     * copy them first with {@link GATKRead#copy} to do so.
+     *
+     * @param region Current region being processed, filled with the reads overlapping its padded span. Unlike the
+     *               pileups given to {@link #isActive}, reads in the region are not downsampled.
+     * @param referenceContext Reference bases spanning the padded span of the region. Will be an empty, but non-null,
+     *                         context object if there is no backing source of reference data.
+     * @param featureContext Features spanning the padded span of the region. Will be an empty, but non-null, context
+     *                       object if there is no backing source of Feature data.
+     */
+    public abstract void apply( AssemblyRegion region, ReferenceContext referenceContext, FeatureContext featureContext );
+
+    /**
+     * Shutdown data sources.
+     *
+     * Marked final so that tool authors don't override it. Tool authors should override onTraversalDone() instead.
+     */
+    @Override
+    protected final void onShutdown() {
+        // Overridden only to make final so that concrete tool implementations don't override
+        super.onShutdown();
+    }
+}
@@ -2,9 +2,16 @@ package org.broadinstitute.hellbender.engine;
 
 import org.broadinstitute.hellbender.utils.SimpleInterval;
 import htsjdk.tribble.*;
+import htsjdk.tribble.index.Index;
+import htsjdk.tribble.index.IndexFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.engine.metrics.MetricsRegistry;
 import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.tools.IndexFeatureFile;
+import org.broadinstitute.hellbender.utils.collections.IntervalsSkipList;
+import org.broadinstitute.hellbender.utils.io.IndexCache;
 
 import java.io.File;
 import java.io.IOException;
@@ -29,14 +36,23 @@ import java.util.*;
  * To improve performance in the case of targeted queries by one interval at a time, this class uses a caching
  * scheme that is optimized for the common access pattern of multiple separate queries over intervals with
  * gradually increasing start positions. It optimizes for this use case by pre-fetching records immediately
- * following each interval during a query and caching them. Performance will suffer if the access pattern is
- * random, involves queries over intervals with DECREASING start positions instead of INCREASING start positions,
- * or involves lots of very large jumps forward on the genome or lots of contig switches. Query caching
+ * following each interval during a query and caching them. The number of bases pre-fetched adapts to the density
+ * of the Features and to the distance between successive queries, so that dense regions don't require a trip to
+ * disk every few queries and sparse regions don't require a trip to disk for every query. Features overlapping a
+ * short span before each query are also kept, so that small steps backwards (eg., reads sorted by start position
+ * but queried over their unclipped span) are still served from the cache. Performance will suffer if the access
+ * pattern is random, involves queries over intervals with DECREASING start positions instead of INCREASING start
+ * positions, or involves lots of very large jumps forward on the genome or lots of contig switches. Query caching
  * can be disabled, if desired.
  *
+ * Small files (eg., BED target lists or small known-sites VCFs) are instead loaded into memory in their entirety
+ * on the first query, and indexed by contig and position so that all subsequent queries are answered from memory
+ * regardless of the access pattern. The file size threshold for this can be set at construction time.
+ *
  * @param <T> The type of Feature returned by this data source
  */
 public final class FeatureDataSource<T extends Feature> implements GATKDataSource<T>, AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(FeatureDataSource.class);
 
     /**
      * File backing this data source. Used mainly for error messages.
@@ -83,9 +99,52 @@ public final class FeatureDataSource<T extends Feature> implements GATKDataSourc
      * AFTER the end of our interval to fetch. Should be sufficiently large so that typically a significant number
      * of subsequent queries will be cache hits (ie., query intervals fully contained within our cache) before
      * we have another cache miss and need to go to disk again.
+     *
+     * This is the minimum lookahead: the lookahead actually used ({@link #currentQueryLookaheadBases}) adapts to
+     * the density of Features observed during previous cache misses. A value of 0 disables query caching entirely.
      */
     private final int queryLookaheadBases;
 
+    /**
+     * Number of extra bases after the end of the query interval to fetch during our next cache miss.
+     * Adjusted after each cache miss by {@link #updateQueryLookahead}.
+     */
+    private int currentQueryLookaheadBases;
+
+    /**
+     * Running average of the distance between the start positions of successive queries on the same contig
+     * (ignoring backward steps), or 0 if we have not yet seen two such queries.
+     */
+    private double averageQueryStride;
+
+    /**
+     * The interval of our most recent query (null if we have had no queries)
+     */
+    private SimpleInterval previousQueryInterval;
+
+    // Statistics on the performance of our query cache (or our in-memory index, if we're using one)
+    private long queryCacheHits = 0;
+    private long queryCacheMisses = 0;
+
+    /**
+     * Names of the engine metrics to which we add our query cache statistics, summed over all Feature sources
+     */
+    static final String CACHE_HITS_COUNTER = "features.cacheHits";
+    static final String CACHE_MISSES_COUNTER = "features.cacheMisses";
+    static final String CACHE_REFILL_TIMER = "features.cacheRefill";
+
+    /**
+     * True if all queries are answered from an in-memory index of the entire file, rather than from
+     * our file on disk via {@link #queryCache}
+     */
+    private final boolean useInMemoryIndex;
+
+    /**
+     * In-memory index of all Features in our file, used for queries if {@link #useInMemoryIndex} is true.
+     * Loaded on the first query, since many data sources are only ever iterated over.
+     */
+    private IntervalsSkipList<T> inMemoryIndex;
+
     /**
      * An (optional) logical name assigned to this data source. May be null.
      */
@@ -104,6 +163,35 @@ public final class FeatureDataSource<T extends Feature> implements GATKDataSourc
      */
     public static final int DEFAULT_QUERY_LOOKAHEAD_BASES = 1000;
 
+    /**
+     * Upper bound on the adaptive query lookahead, no matter how sparse the Features are
+     */
+    public static final int MAX_QUERY_LOOKAHEAD_BASES = 1000000;
+
+    /**
+     * The adaptive query lookahead aims to fetch about this many Features during each cache miss, based on the
+     * density of Features observed during the previous cache miss
+     */
+    private static final int TARGET_FEATURES_PER_CACHE_FILL = 1000;
+
+    /**
+     * Weight of the most recent query in our running average of the distance between successive queries
+     */
+    private static final double QUERY_STRIDE_SMOOTHING = 0.25;
+
+    /**
+     * When query caching is enabled, we keep Features overlapping this many bases before the start of the most
+     * recent query, so that queries that step back by up to this many bases are still cache hits
+     */
+    public static final int QUERY_LOOKBEHIND_BASES = 500;
+
+    /**
+     * Default maximum size on disk (in bytes) of a file that we will load into memory in its entirety to
+     * answer queries, if none is specified. Large enough for typical target lists and small sets of known
+     * sites, while keeping the memory cost of the loaded Features modest.
+     */
+    public static final long DEFAULT_MAX_IN_MEMORY_INDEX_FILE_SIZE = 1024 * 1024;
+
     /**
      * FeatureCache: helper class to manage the cache of Feature records used during query operations
      * initiated via {@link #query(SimpleInterval)} and/or {@link #queryAndPrefetch(SimpleInterval)}.
@@ -184,6 +272,15 @@ public final class FeatureDataSource<T extends Feature> implements GATKDataSourc
             return cachedInterval.getEnd();
         }
 
+        /**
+         * Get the number of Features in our cache
+         *
+         * @return the number of Features in our cache
+         */
+        public int size() {
+            return cache.size();
+        }
+
         /**
          * Does our cache currently contain no Features?
          *
@@ -285,6 +382,29 @@ public final class FeatureDataSource<T extends Feature> implements GATKDataSourc
             }
             return matchingFeatures;
         }
+
+        /**
+         * Returns (but does not remove) all cached Features that overlap the region from the specified start
+         * position to the specified stop position. Unlike {@link #getCachedFeaturesUpToStopPosition(int)},
+         * this does not require the cache to have been trimmed to the start position first.
+         *
+         * @param startPosition Start of the interval that returned Features must overlap
+         * @param stopPosition Endpoint of the interval that returned Features must overlap
+         * @return all cached Features that overlap the region from the specified start position to the specified stop position
+         */
+        public List<CACHED_FEATURE> getCachedFeaturesOverlapping( final int startPosition, final int stopPosition ) {
+            List<CACHED_FEATURE> matchingFeatures = new ArrayList<>();
+
+            for ( CACHED_FEATURE candidateFeature : cache ) {
+                if ( candidateFeature.getStart() > stopPosition ) {
+                    break; // No more possible matches among the remaining cached Features, so stop looking
+                }
+                if ( candidateFeature.getEnd() >= startPosition ) {
+                    matchingFeatures.add(candidateFeature);
+                }
+            }
+            return matchingFeatures;
+        }
     }
 
     /**
@@ -323,12 +443,33 @@ public final class FeatureDataSource<T extends Feature> implements GATKDataSourc
      * @param queryLookaheadBases look ahead this many bases during queries that produce cache misses
      */
     public FeatureDataSource( final File featureFile, final FeatureCodec<T, ?> codec, final String name, final int queryLookaheadBases ) {
+        this(featureFile, codec, name, queryLookaheadBases, DEFAULT_MAX_IN_MEMORY_INDEX_FILE_SIZE);
+    }
+
+    /**
+     * Creates a FeatureDataSource backed by the provided File that uses the provided codec to decode records
+     * from that file, and assigns this data source a logical name. If the file is no larger than
+     * maxInMemoryIndexFileSize bytes, it will be loaded into memory on the first query and all queries will be
+     * answered from memory. Otherwise, we will look ahead the specified number of bases during queries that
+     * produce cache misses.
+     *
+     * @param featureFile file containing Features
+     * @param codec codec with which to decode the records from featureFile
+     * @param name logical name for this data source (may be null)
+     * @param queryLookaheadBases look ahead this many bases during queries that produce cache misses
+     * @param maxInMemoryIndexFileSize answer queries from memory if featureFile is no larger than this many bytes
+     *                                 on disk (0 to always query the file on disk)
+     */
+    public FeatureDataSource( final File featureFile, final FeatureCodec<T, ?> codec, final String name, final int queryLookaheadBases, final long maxInMemoryIndexFileSize ) {
         if ( featureFile == null || codec == null ) {
             throw new IllegalArgumentException("FeatureDataSource cannot be created from null file/codec");
         }
         if ( queryLookaheadBases < 0 ) {
             throw new IllegalArgumentException("Query lookahead bases must be >= 0");
         }
+        if ( maxInMemoryIndexFileSize < 0 ) {
+            throw new IllegalArgumentException("Maximum in-memory index file size must be >= 0");
+        }
         if ( ! featureFile.canRead() || featureFile.isDirectory() ) {
             throw new UserException.CouldNotReadInputFile("File " + featureFile.getAbsolutePath() + " does not exist, is unreadable, or is a directory");
         }
@@ -338,7 +479,7 @@ public final class FeatureDataSource<T extends Feature> implements GATKDataSourc
         try {
             // Instruct the reader factory to not require an index. We will require one ourselves as soon as
             // a query by interval is attempted.
-            this.featureReader = AbstractFeatureReader.getFeatureReader(featureFile.getAbsolutePath(), codec, false);
+            this.featureReader = openFeatureReader(featureFile, codec);
         }
         catch ( TribbleException e ) {
             throw new GATKException("Error initializing feature reader for file " + featureFile.getAbsolutePath(), e);
@@ -348,9 +489,27 @@ public final class FeatureDataSource<T extends Feature> implements GATKDataSourc
         this.intervalsForTraversal = null;
         this.queryCache = new FeatureCache<>();
         this.queryLookaheadBases = queryLookaheadBases;
+        this.currentQueryLookaheadBases = queryLookaheadBases;
         this.codec = codec;
         this.name = name;
         this.hasIndex = featureReader.hasIndex(); // Cache this result, as it's fairly expensive to determine
+        this.useInMemoryIndex = maxInMemoryIndexFileSize > 0 && featureFile.length() <= maxInMemoryIndexFileSize;
+    }
+
+    /**
+     * Open a reader for featureFile. If the {@link IndexCache} is enabled and the file has a Tribble index, reuse
+     * the parsed index from the cache if possible. Otherwise, htsjdk opens the file directly, and only loads its
+     * index (if any) on the first query, so traversals that never query don't parse it at all (block-compressed
+     * files and their tabix indices are always opened this way).
+     */
+    private static <T extends Feature> AbstractFeatureReader<T, ?> openFeatureReader( final File featureFile, final FeatureCodec<T, ?> codec ) {
+        final File tribbleIndexFile = Tribble.indexFile(featureFile);
+        if ( ! IndexCache.getInstance().isEnabled() || AbstractFeatureReader.hasBlockCompressedExtension(featureFile) || ! tribbleIndexFile.canRead() ) {
+            return AbstractFeatureReader.getFeatureReader(featureFile.getAbsolutePath(), codec, false);
+        }
+
+        final Index index = IndexCache.getInstance().get(tribbleIndexFile, Index.class, indexFile -> IndexFactory.loadIndex(indexFile.getAbsolutePath()));
+        return AbstractFeatureReader.getFeatureReader(featureFile.getAbsolutePath(), codec, index);
     }
 
     /**
@@ -447,25 +606,88 @@ public final class FeatureDataSource<T extends Feature> implements GATKDataSourc
                                     "Please index this file using the bundled tool " + IndexFeatureFile.class.getSimpleName());
         }
 
+        if ( useInMemoryIndex ) {
+            if ( inMemoryIndex == null ) {
+                queryCacheMisses++;
+                loadInMemoryIndex();
+            }
+            else {
+                queryCacheHits++;
+            }
+            return inMemoryIndex.getOverlapping(interval);
+        }
+
+        updateQueryStride(interval);
+
         // If the query can be satisfied using existing cache contents, prepare for retrieval
-        // by discarding all Features at the beginning of the cache that end before the start
-        // of our query interval.
+        // by discarding all Features at the beginning of the cache that end well before the start
+        // of our query interval (keeping those overlapping a short span before it, in case
+        // the next query steps back slightly).
         if ( queryCache.cacheHit(interval) ) {
-            queryCache.trimToNewStartPosition(interval.getStart());
+            queryCacheHits++;
+            queryCache.trimToNewStartPosition(Math.max(queryCache.getCacheStart(), getQueryLookbehindStart(interval)));
         }
         // Otherwise, we have a cache miss, so go to disk to refill our cache.
         else {
+            queryCacheMisses++;
+            final long refillStart = System.nanoTime();
             refillQueryCache(interval);
+            MetricsRegistry.getEngineMetrics().timer(CACHE_REFILL_TIMER).recordSince(refillStart);
         }
 
         // Return the subset of our cache that overlaps our query interval
-        return queryCache.getCachedFeaturesUpToStopPosition(interval.getEnd());
+        return queryCache.getCachedFeaturesOverlapping(interval.getStart(), interval.getEnd());
+    }
+
+    /**
+     * @return the start of the span before the provided query interval over which we keep cached Features
+     */
+    private int getQueryLookbehindStart( final SimpleInterval interval ) {
+        // Don't keep anything before the query if query caching is disabled
+        return queryLookaheadBases == 0 ? interval.getStart() : Math.max(interval.getStart() - QUERY_LOOKBEHIND_BASES, 1);
+    }
+
+    /**
+     * Update our running average of the distance between successive queries on the same contig
+     *
+     * @param interval our new query interval
+     */
+    private void updateQueryStride( final SimpleInterval interval ) {
+        if ( previousQueryInterval != null && previousQueryInterval.getContig().equals(interval.getContig()) &&
+             interval.getStart() > previousQueryInterval.getStart() ) {
+            final int stride = interval.getStart() - previousQueryInterval.getStart();
+            averageQueryStride = averageQueryStride == 0 ? stride : (1.0 - QUERY_STRIDE_SMOOTHING) * averageQueryStride + QUERY_STRIDE_SMOOTHING * stride;
+        }
+        previousQueryInterval = interval;
+    }
+
+    /**
+     * Choose the lookahead to use for our next cache miss, given the number of Features fetched during the
+     * cache miss that just occurred.
+     *
+     * We aim to fetch about {@link #TARGET_FEATURES_PER_CACHE_FILL} Features per cache miss given the density
+     * of Features we just observed, within the bounds of queryLookaheadBases and {@link #MAX_QUERY_LOOKAHEAD_BASES}.
+     * If queries are typically further apart than that, the next query would jump over the prefetched Features
+     * anyway, so we fall back to queryLookaheadBases.
+     *
+     * @param fillInterval the interval over which we just filled our cache
+     * @param featuresFetched number of Features we fetched over that interval
+     */
+    private void updateQueryLookahead( final SimpleInterval fillInterval, final int featuresFetched ) {
+        if ( queryLookaheadBases == 0 ) {
+            return; // query caching is disabled
+        }
+
+        final long densityLookahead = featuresFetched == 0 ? 2L * currentQueryLookaheadBases :
+                                      (long)TARGET_FEATURES_PER_CACHE_FILL * fillInterval.size() / featuresFetched;
+        final long lookahead = Math.max(queryLookaheadBases, Math.min(densityLookahead, MAX_QUERY_LOOKAHEAD_BASES));
+        currentQueryLookaheadBases = averageQueryStride > lookahead ? queryLookaheadBases : (int)lookahead;
     }
 
     /**
      * Refill our cache from disk after a cache miss. Will prefetch Features overlapping an additional
-     * queryLookaheadBases bases after the end of the provided interval, in addition to those overlapping
-     * the interval itself.
+     * currentQueryLookaheadBases bases after the end of the provided interval (and a short span before
+     * its start), in addition to those overlapping the interval itself.
      *
      * Calling this has the side effect of invalidating (closing) any currently-open iteration over
      * this data source.
@@ -483,17 +705,84 @@ public final class FeatureDataSource<T extends Feature> implements GATKDataSourc
         // Note that it doesn't matter if we go off the end of the contig in the process, since
         // our reader's query operation is not aware of (and does not care about) contig boundaries.
         // Note: we use addExact to blow up on overflow rather than propagate negative results downstream
-        final SimpleInterval queryInterval = new SimpleInterval(interval.getContig(), interval.getStart(), Math.addExact(interval.getEnd(), queryLookaheadBases));
+        final SimpleInterval queryInterval = new SimpleInterval(interval.getContig(), getQueryLookbehindStart(interval), Math.addExact(interval.getEnd(), currentQueryLookaheadBases));
 
         // Query iterator over our reader will be immediately closed after re-populating our cache
         try ( CloseableTribbleIterator<T> queryIter = featureReader.query(queryInterval.getContig(), queryInterval.getStart(), queryInterval.getEnd()) ) {
             queryCache.fill(queryIter, queryInterval);
+            updateQueryLookahead(queryInterval, queryCache.size());
         }
         catch ( IOException e ) {
             throw new GATKException("Error querying file " + featureFile.getAbsolutePath() + " over interval " + interval, e);
         }
     }
 
+    /**
+     * Load all Features in our file into an in-memory index, from which all future queries will be answered.
+     *
+     * Calling this has the side effect of invalidating (closing) any currently-open iteration over
+     * this data source.
+     */
+    private void loadInMemoryIndex() {
+        // Tribble documentation states that having multiple iterators open simultaneously over the same FeatureReader
+        // results in undefined behavior
+        closeOpenIterationIfNecessary();
+
+        final List<T> features = new ArrayList<>();
+        try ( CloseableTribbleIterator<T> featureIter = featureReader.iterator() ) {
+            while ( featureIter.hasNext() ) {
+                features.add(featureIter.next());
+            }
+        }
+        catch ( IOException e ) {
+            throw new GATKException("Error loading Features from file " + featureFile.getAbsolutePath() + " into memory", e);
+        }
+        inMemoryIndex = new IntervalsSkipList<>(features);
+    }
+
+    /**
+     * @return true if queries on this data source are answered from an in-memory index of the entire file
+     */
+    boolean usesInMemoryIndex() {
+        return useInMemoryIndex;
+    }
+
+    /**
+     * Get the names of the contigs that have records in our file, according to its index.
+     *
+     * Requires the backing file to have been indexed using the IndexFeatureFile tool.
+     *
+     * @return names of the contigs with records in our file
+     */
+    public List<String> getSequenceNames() {
+        if ( ! hasIndex ) {
+            throw new UserException("File " + featureFile.getAbsolutePath() + " requires an index to determine the contigs it contains. " +
+                                    "Please index this file using the bundled tool " + IndexFeatureFile.class.getSimpleName());
+        }
+        return featureReader.getSequenceNames();
+    }
+
+    /**
+     * @return the number of queries that were answered without going to disk
+     */
+    public long getQueryCacheHits() {
+        return queryCacheHits;
+    }
+
+    /**
+     * @return the number of queries that required us to go to disk
+     */
+    public long getQueryCacheMisses() {
+        return queryCacheMisses;
+    }
+
+    /**
+     * @return the number of extra bases after the end of the query interval we will fetch during our next cache miss
+     */
+    public int getCurrentQueryLookaheadBases() {
+        return currentQueryLookaheadBases;
+    }
+
     /**
      * Get the class of the codec being used to decode records from our file
      *
@@ -537,6 +826,15 @@ public final class FeatureDataSource<T extends Feature> implements GATKDataSourc
      */
     @Override
     public void close() {
+        if ( queryCacheHits + queryCacheMisses > 0 ) {
+            logger.info(String.format("Feature cache for %s: hits=%d misses=%d efficiency %.2f%%",
+                                      name != null ? name : featureFile.getName(), queryCacheHits, queryCacheMisses,
+                                      100.0 * queryCacheHits / (queryCacheHits + queryCacheMisses)));
+            final MetricsRegistry metrics = MetricsRegistry.getEngineMetrics();
+            metrics.counter(CACHE_HITS_COUNTER).add(queryCacheHits);
+            metrics.counter(CACHE_MISSES_COUNTER).add(queryCacheMisses);
+        }
+
         closeOpenIterationIfNecessary();
 
         try {
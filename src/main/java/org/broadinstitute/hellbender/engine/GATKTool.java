@@ -13,9 +13,14 @@ import org.broadinstitute.hellbender.cmdline.ArgumentCollection;
 import org.broadinstitute.hellbender.cmdline.CommandLineProgram;
 import org.broadinstitute.hellbender.cmdline.CommandLineProgramProperties;
 import org.broadinstitute.hellbender.cmdline.argumentcollections.*;
+import org.broadinstitute.hellbender.engine.filters.CountingReadFilter;
+import org.broadinstitute.hellbender.engine.metrics.MetricsRegistry;
+import org.broadinstitute.hellbender.engine.metrics.Timer;
 import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.SequenceDictionaryUtils;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.fasta.CachingIndexedFastaSequenceFile;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -41,6 +46,24 @@ public abstract class GATKTool extends CommandLineProgram {
     @Argument(fullName = "secondsBetweenProgressUpdates", shortName = "secondsBetweenProgressUpdates", doc = "Output traversal statistics every time this many seconds elapse", optional = true)
     private double secondsBetweenProgressUpdates = ProgressMeter.DEFAULT_SECONDS_BETWEEN_UPDATES;
 
+    @Argument(fullName = "memoryMapReference", shortName = "memoryMapReference", doc = "Memory-map the entire reference rather than caching a window of it. Faster when reference queries are widely scattered, and shares memory between threads and processes using the same reference.", optional = true)
+    private boolean memoryMapReference = false;
+
+    @Argument(fullName = "referenceCacheBudget", shortName = "referenceCacheBudget", doc = "Maximum total number of reference bases to cache at once, in windows of " + CachingIndexedFastaSequenceFile.DEFAULT_CACHE_SIZE + " bases. Larger budgets help when reference queries alternate between distant locations. Ignored with -memoryMapReference", optional = true)
+    private long referenceCacheBudget = CachingIndexedFastaSequenceFile.DEFAULT_CACHE_BUDGET;
+
+    @Argument(fullName = "readAheadThreads", shortName = "readAheadThreads", doc = "Number of background threads to use to decode reads ahead of the traversal (0 disables read-ahead). With multiple read inputs, each input is instead read and decoded on a thread of its own", optional = true)
+    private int readAheadThreads = 0;
+
+    @Argument(fullName = "readAheadBatches", shortName = "readAheadBatches", doc = "Maximum number of batches of " + ReadsDataSource.READ_AHEAD_BATCH_SIZE + " reads to decode ahead of the traversal when read-ahead is enabled", optional = true)
+    private int readAheadBatches = ReadsDataSource.DEFAULT_READ_AHEAD_BATCHES;
+
+    @Argument(fullName = "readQueryCoalescingGap", shortName = "readQueryCoalescingGap", doc = "When traversing reads over intervals, read intervals separated by at most this many bases in a single scan rather than in separate index queries", optional = true)
+    private int readQueryCoalescingGap = ReadsDataSource.DEFAULT_QUERY_COALESCING_GAP;
+
+    @Argument(fullName = "metricsReport", shortName = "metricsReport", doc = "Write a JSON report of engine performance metrics (time spent decoding reads and in apply(), cache efficiency, reads rejected by each filter, etc.) to this file at the end of the run", optional = true)
+    private File metricsReport = null;
+
     /*
      * TODO: Feature arguments for the current tool are currently discovered through reflection via FeatureManager.
      * TODO: Perhaps we should eventually do the same auto-discovery for all input arguments (reads, reference, etc.)
@@ -81,6 +104,17 @@ public abstract class GATKTool extends CommandLineProgram {
      */
     ProgressMeter progressMeter;
 
+    /**
+     * Engine metric recording the time spent in each call to the tool's apply() method. Walker base classes
+     * are responsible for timing their calls to apply() with it.
+     */
+    Timer applyTimer;
+
+    /**
+     * Name of the engine metric in {@link #applyTimer}
+     */
+    static final String APPLY_TIMER = "traversal.apply";
+
     /**
      * Initialize our source of reference data (or set it to null if no reference argument was provided).
      *
@@ -88,7 +122,26 @@ public abstract class GATKTool extends CommandLineProgram {
      * May be overridden by traversals that require custom initialization of the reference data source.
      */
     void initializeReference() {
-        reference = referenceArguments.getReferenceFile() != null ? ReferenceDataSource.of(referenceArguments.getReferenceFile()) : null;
+        reference = referenceArguments.getReferenceFile() != null ? openReferenceDataSource() : null;
+    }
+
+    /**
+     * Open a new data source over the reference, independent of the engine's own {@link #reference} data source,
+     * honoring the engine's reference arguments (eg., whether to memory-map the reference).
+     *
+     * For tools that need a private reference data source in addition to the one the engine provides to
+     * their apply() method. Callers are responsible for closing the data source.
+     *
+     * @return a new ReferenceDataSource over the reference provided on the command line
+     */
+    protected final ReferenceDataSource openReferenceDataSource() {
+        if ( referenceArguments.getReferenceFile() == null ) {
+            throw new UserException.MissingReference("A reference file is required for this tool");
+        }
+        if ( referenceCacheBudget < 0 ) {
+            throw new UserException.BadArgumentValue("referenceCacheBudget", Long.toString(referenceCacheBudget), "must be >= 0");
+        }
+        return ReferenceDataSource.of(referenceArguments.getReferenceFile(), memoryMapReference, referenceCacheBudget);
     }
 
     /**
@@ -98,6 +151,26 @@ public abstract class GATKTool extends CommandLineProgram {
      * May be overridden by traversals that require custom initialization of the reads data source.
      */
     void initializeReads() {
+        reads = ! readArguments.getReadFiles().isEmpty() ? openReadsDataSource() : null;
+
+        if ( readAheadThreads < 0 ) {
+            throw new UserException.BadArgumentValue("readAheadThreads", Integer.toString(readAheadThreads), "must be >= 0");
+        }
+        if ( readAheadBatches < 1 ) {
+            throw new UserException.BadArgumentValue("readAheadBatches", Integer.toString(readAheadBatches), "must be >= 1");
+        }
+        if ( reads != null ) {
+            reads.setReadAhead(readAheadThreads, readAheadBatches);
+        }
+    }
+
+    /**
+     * Open a new data source over the reads provided on the command line, independent of the engine's
+     * own {@link #reads} data source. Callers are responsible for closing the data source.
+     *
+     * @return a new ReadsDataSource over the reads provided on the command line
+     */
+    protected final ReadsDataSource openReadsDataSource() {
         SamReaderFactory factory = null;
         if (hasReference()){
             // pass in reference if available, because CRAM files need it
@@ -105,7 +178,13 @@ public abstract class GATKTool extends CommandLineProgram {
         } else if (hasCramInput()) {
             throw new UserException.MissingReference("A reference file is required when using CRAM files.");
         }
-        reads = ! readArguments.getReadFiles().isEmpty() ? new ReadsDataSource(readArguments.getReadFiles(), factory) : null;
+        if ( readQueryCoalescingGap < 0 ) {
+            throw new UserException.BadArgumentValue("readQueryCoalescingGap", Integer.toString(readQueryCoalescingGap), "must be >= 0");
+        }
+
+        final ReadsDataSource readsSource = new ReadsDataSource(readArguments.getReadFiles(), factory);
+        readsSource.setQueryCoalescingGap(readQueryCoalescingGap);
+        return readsSource;
     }
 
     /**
@@ -229,6 +308,34 @@ public abstract class GATKTool extends CommandLineProgram {
         return false;
     }
 
+    /**
+     * Is this tool's apply() method safe to call concurrently from multiple threads? Traversal types
+     * that support multi-threaded traversal will only run in parallel mode for tools that return true.
+     *
+     * Tools that override this to return true must not mutate shared state from apply() without
+     * synchronization, and must route their output through an ordered writer such as
+     * {@link OrderedGATKReadWriter} or {@link OrderedVariantContextWriter} (or through {@link #runInTraversalOrder})
+     * so that output order matches input order.
+     *
+     * @return true if this tool supports multi-threaded traversal, otherwise false
+     */
+    public boolean isThreadSafe() {
+        return false;
+    }
+
+    /**
+     * Run an action that writes output in traversal order. During a multi-threaded traversal, an action
+     * run from apply() is deferred until the output of all earlier records has been written, and then run on the
+     * traversal thread. Otherwise the action runs immediately.
+     *
+     * For thread-safe tools whose output does not go through one of the ordered writers.
+     *
+     * @param outputAction action that writes some output
+     */
+    protected final void runInTraversalOrder( final Runnable outputAction ) {
+        ParallelTraversalExecutor.runInOrder(Utils.nonNull(outputAction));
+    }
+
     /**
      * Returns the "best available" sequence dictionary. This will be the reference sequence dictionary if
      * there is a reference, otherwise it will be the sequence dictionary constructed from the reads if
@@ -269,6 +376,10 @@ public abstract class GATKTool extends CommandLineProgram {
     protected void onStartup() {
         super.onStartup();
 
+        // Must be reset before the data sources are opened, since they record metrics from the start
+        MetricsRegistry.getEngineMetrics().clear();
+        applyTimer = MetricsRegistry.getEngineMetrics().timer(APPLY_TIMER);
+
         initializeReference();
 
         initializeReads(); // Must be initialized after reference, in case we are dealing with CRAM and a reference is required
@@ -284,6 +395,35 @@ public abstract class GATKTool extends CommandLineProgram {
         progressMeter = new ProgressMeter(secondsBetweenProgressUpdates);
     }
 
+    /**
+     * Open private copies of our reference and Feature data sources for the exclusive use of a single
+     * worker thread during a multi-threaded traversal. Reads are not included, since read traversals
+     * hand the reads themselves to the workers.
+     *
+     * Package-private so that engine classes can access it, but concrete tool child classes cannot.
+     * May be overridden by traversals that require custom initialization of their data sources,
+     * in the same way as {@link #initializeFeatures}.
+     *
+     * @return data sources for one worker thread (individual sources are null if not available)
+     */
+    WorkerDataSources openWorkerDataSources() {
+        return new WorkerDataSources(hasReference() ? openReferenceDataSource() : null,
+                                     null,
+                                     hasFeatures() ? new FeatureManager(this) : null);
+    }
+
+    /**
+     * Log the summary of the reads rejected by a traversal's read filter, and record the counts in the engine metrics
+     *
+     * Package-private so that engine classes can access it, but concrete tool child classes cannot.
+     *
+     * @param countedFilter read filter used by the traversal, after the traversal is complete
+     */
+    void reportFilteredReads( final CountingReadFilter countedFilter ) {
+        logger.info(countedFilter.getSummaryLine());
+        countedFilter.recordFilteredCounts(MetricsRegistry.getEngineMetrics());
+    }
+
     /**
      * Validates all sequence dictionaries by checking them against each other.
      *
@@ -352,7 +492,8 @@ public abstract class GATKTool extends CommandLineProgram {
     }
 
     /**
-     * Close all data sources on shutdown
+     * Close all data sources on shutdown, and write the metrics report if one was requested. The report is
+     * written last, since data sources record some of their metrics (eg., cache statistics) when closed.
      */
     @Override
     protected void onShutdown() {
@@ -369,6 +510,11 @@ public abstract class GATKTool extends CommandLineProgram {
         if ( hasFeatures() ) {
             features.close();
         }
+
+        if ( metricsReport != null ) {
+            MetricsRegistry.getEngineMetrics().writeJsonReport(metricsReport);
+            logger.info("Wrote metrics report to " + metricsReport.getAbsolutePath());
+        }
     }
 
     /**
@@ -0,0 +1,44 @@
+package org.broadinstitute.hellbender.engine;
+
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Determines whether loci (or spans) lie within (or overlap) a set of sorted, non-overlapping intervals, given queries
+ * whose starts are in increasing order within each contig
+ */
+final class IntervalMembership {
+    private final Map<String, List<SimpleInterval>> intervalsByContig = new HashMap<>();
+    private final Map<String, Integer> nextIntervalByContig = new HashMap<>();
+
+    IntervalMembership( final List<SimpleInterval> intervals ) {
+        for ( final SimpleInterval interval : intervals ) {
+            intervalsByContig.computeIfAbsent(interval.getContig(), contig -> new ArrayList<>()).add(interval);
+        }
+    }
+
+    boolean contains( final SimpleInterval locus ) {
+        return overlaps(locus);
+    }
+
+    boolean overlaps( final SimpleInterval span ) {
+        final List<SimpleInterval> contigIntervals = intervalsByContig.get(span.getContig());
+        if ( contigIntervals == null ) {
+            return false;
+        }
+
+        // Skip intervals that end before this span, since later queries on this contig start further along
+        int next = nextIntervalByContig.getOrDefault(span.getContig(), 0);
+        while ( next < contigIntervals.size() && contigIntervals.get(next).getEnd() < span.getStart() ) {
+            ++next;
+        }
+        nextIntervalByContig.put(span.getContig(), next);
+
+        // The first interval that doesn't end before the span is the only one that could start earliest within it
+        return next < contigIntervals.size() && contigIntervals.get(next).getStart() <= span.getEnd();
+    }
+}
@@ -1,6 +1,12 @@
 package org.broadinstitute.hellbender.engine;
 
+import org.broadinstitute.hellbender.cmdline.Argument;
+import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * An IntervalWalker is a tool that processes a single interval at a time, with the ability to query
@@ -14,9 +20,35 @@ import org.broadinstitute.hellbender.utils.SimpleInterval;
  * IntervalWalker authors must implement the apply() method to process each interval, and may optionally implement
  * onTraversalStart() and/or onTraversalDone(). See the {@link org.broadinstitute.hellbender.tools.examples.ExampleIntervalWalker}
  * tool for an example.
+ *
+ * Tools that declare themselves thread-safe via {@link #isThreadSafe()} may be run with multiple
+ * worker threads (see {@link #intervalWalkerThreads}). In that mode, the intervals are partitioned into
+ * consecutive groups spanning roughly equal numbers of bases, each group is processed on a worker thread
+ * with its own private data sources, and output is emitted in interval order.
  */
 public abstract class IntervalWalker extends GATKTool {
 
+    @Argument(fullName = "intervalWalkerThreads", shortName = "intervalWalkerThreads", doc = "Number of threads to use when calling apply() on intervals. Only tools that declare themselves thread-safe support values greater than 1", common = false, optional = true)
+    public int intervalWalkerThreads = 1;
+
+    /**
+     * During multi-threaded traversals, we split the intervals into at least this many groups per worker
+     * thread, so that an unlucky group does not leave the other threads idle for long.
+     */
+    static final int MIN_INTERVAL_GROUPS_PER_THREAD = 4;
+
+    /**
+     * During multi-threaded traversals, we aim for groups of intervals spanning at most this many bases
+     * (a single larger interval forms a group by itself), to bound the amount of output buffered per group.
+     */
+    static final long TARGET_MAX_BASES_PER_INTERVAL_GROUP = 1000000;
+
+    /**
+     * During multi-threaded traversals, we allow at most this many groups of intervals per worker thread
+     * to be in flight at once, so that we never get too far ahead of the output.
+     */
+    static final int MAX_PENDING_GROUPS_PER_THREAD = 2;
+
     @Override
     public boolean requiresIntervals() {
         return true;
@@ -48,23 +80,136 @@ public abstract class IntervalWalker extends GATKTool {
         super.onStartup();
     }
 
+    /**
+     * Open private copies of our data sources for a worker thread. Unlike other traversals, this includes the
+     * reads, and, as in {@link #initializeFeatures}, disables query lookahead for Features.
+     */
+    @Override
+    WorkerDataSources openWorkerDataSources() {
+        return new WorkerDataSources(hasReference() ? openReferenceDataSource() : null,
+                                     hasReads() ? openReadsDataSource() : null,
+                                     hasFeatures() ? new FeatureManager(this, 0) : null);
+    }
+
+    /**
+     * Implementation of interval-based traversal.
+     *
+     * If more than one thread was requested via {@link #intervalWalkerThreads}, apply() is called concurrently
+     * from a pool of worker threads (see {@link #traverseInParallel}).
+     */
     @Override
     public void traverse() {
-        for ( final SimpleInterval interval : intervalsForTraversal ) {
-            apply(interval,
-                  new ReadsContext(reads, interval),
-                  new ReferenceContext(reference, interval),
-                  new FeatureContext(features, interval));
+        if ( intervalWalkerThreads < 1 ) {
+            throw new UserException.BadArgumentValue("intervalWalkerThreads", Integer.toString(intervalWalkerThreads), "must be >= 1");
+        }
+        if ( intervalWalkerThreads > 1 && ! isThreadSafe() ) {
+            throw new UserException.BadArgumentValue("intervalWalkerThreads", Integer.toString(intervalWalkerThreads),
+                                                     "tool " + getClass().getSimpleName() + " does not support multi-threaded traversal");
+        }
 
+        if ( intervalWalkerThreads > 1 ) {
+            traverseInParallel();
+            return;
+        }
+
+        for ( final SimpleInterval interval : intervalsForTraversal ) {
+            applyWithContext(interval, reads, reference, features);
             progressMeter.update(interval);
         }
     }
 
+    /**
+     * Multi-threaded implementation of interval-based traversal.
+     *
+     * The intervals are partitioned into consecutive groups spanning roughly equal numbers of bases
+     * (see {@link #groupIntervalsByBases}), and each group is processed on a worker thread using its own
+     * private data sources, so that the queries for different groups proceed in parallel. Output routed through
+     * an ordered writer and progress updates happen on the calling thread, in interval order.
+     */
+    private void traverseInParallel() {
+        final int numGroups = (int)Math.max((long)intervalWalkerThreads * MIN_INTERVAL_GROUPS_PER_THREAD,
+                                            (countBases(intervalsForTraversal) + TARGET_MAX_BASES_PER_INTERVAL_GROUP - 1) / TARGET_MAX_BASES_PER_INTERVAL_GROUP);
+        final List<List<SimpleInterval>> groups = groupIntervalsByBases(intervalsForTraversal, numGroups);
+        logger.info("Running interval traversal over " + groups.size() + " groups of intervals with " + intervalWalkerThreads + " threads");
+
+        try ( final ParallelTraversalExecutor<WorkerDataSources, List<SimpleInterval>> executor =
+                      new ParallelTraversalExecutor<>(intervalWalkerThreads, intervalWalkerThreads * MAX_PENDING_GROUPS_PER_THREAD,
+                                                      this::openWorkerDataSources, groupIntervals -> groupIntervals.forEach(progressMeter::update)) ) {
+            for ( final List<SimpleInterval> group : groups ) {
+                executor.submit(dataSources -> {
+                    for ( final SimpleInterval interval : group ) {
+                        applyWithContext(interval, dataSources.reads, dataSources.reference, dataSources.features);
+                    }
+                    return group;
+                });
+            }
+
+            executor.finish();
+        }
+    }
+
+    /**
+     * Partition intervals into at most numGroups groups of consecutive intervals, each spanning roughly
+     * the same number of bases. Intervals are never split, so a group may span more bases than the others
+     * if it contains a single large interval.
+     *
+     * @param intervals intervals to partition, in traversal order
+     * @param numGroups desired number of groups (>= 1)
+     * @return the groups of intervals, in traversal order. Concatenated, they are equal to intervals.
+     */
+    static List<List<SimpleInterval>> groupIntervalsByBases( final List<SimpleInterval> intervals, final int numGroups ) {
+        Utils.nonNull(intervals);
+        Utils.validateArg(numGroups >= 1, "numGroups must be >= 1");
+
+        final long totalBases = countBases(intervals);
+        final List<List<SimpleInterval>> groups = new ArrayList<>();
+        List<SimpleInterval> currentGroup = new ArrayList<>();
+        long basesSoFar = 0;
+        for ( final SimpleInterval interval : intervals ) {
+            currentGroup.add(interval);
+            basesSoFar += interval.size();
+
+            // Close the current group once we have reached its share of the bases
+            if ( basesSoFar * numGroups >= totalBases * (groups.size() + 1) ) {
+                groups.add(currentGroup);
+                currentGroup = new ArrayList<>();
+            }
+        }
+        if ( ! currentGroup.isEmpty() ) {
+            groups.add(currentGroup);
+        }
+        return groups;
+    }
+
+    private static long countBases( final List<SimpleInterval> intervals ) {
+        return intervals.stream().mapToLong(SimpleInterval::size).sum();
+    }
+
+    /**
+     * Call {@link #apply} on a single interval, supplying contextual information from the given data sources
+     *
+     * @param interval interval to process
+     * @param readsSource source of reads (may be null)
+     * @param referenceSource source of reference bases (may be null)
+     * @param featureSource source of Features (may be null)
+     */
+    private void applyWithContext( final SimpleInterval interval, final ReadsDataSource readsSource, final ReferenceDataSource referenceSource, final FeatureManager featureSource ) {
+        final long applyStart = System.nanoTime();
+        apply(interval,
+              new ReadsContext(readsSource, interval),
+              new ReferenceContext(referenceSource, interval),
+              new FeatureContext(featureSource, interval));
+        applyTimer.recordSince(applyStart);
+    }
+
     /**
      * Process an individual interval. Must be implemented by tool authors.
      * In general, tool authors should simply stream their output from apply(), and maintain as little internal state
      * as possible.
      *
+     * If the tool declares itself thread-safe via {@link #isThreadSafe()}, this method may be called
+     * concurrently from multiple threads.
+     *
      * @param interval Current interval being processed.
      * @param readsContext Reads overlapping the current interval. Will be an empty, but non-null, context object
      *                     if there is no backing source of reads data (in which case all queries on it will return
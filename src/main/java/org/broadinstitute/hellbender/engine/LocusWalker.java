@@ -0,0 +1,150 @@
+package org.broadinstitute.hellbender.engine;
+
+import org.broadinstitute.hellbender.cmdline.Argument;
+import org.broadinstitute.hellbender.engine.filters.CountingReadFilter;
+import org.broadinstitute.hellbender.engine.filters.ReadFilterLibrary;
+import org.broadinstitute.hellbender.engine.filters.WellformedReadFilter;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.locusiterator.LocusIteratorByState;
+
+import java.util.Iterator;
+import java.util.stream.StreamSupport;
+
+/**
+ * A LocusWalker is a tool that processes reads that have been grouped by locus based on a reference, with the
+ * ability to query optional overlapping sources of reference data and/or variants/features. Each covered locus
+ * is presented to the tool as an {@link AlignmentContext} holding the pileup of reads overlapping it.
+ *
+ * The pileups are built by a {@link LocusIteratorByState}, which steps the alignments of all reads overlapping
+ * the current locus along the genome in lockstep, and reuses pileup element objects from one locus to the next.
+ * As a consequence, the pileup handed to {@link #apply} is only valid for the duration of that call.
+ *
+ * To keep memory usage flat in regions of pathologically high coverage, reads may be downsampled to a maximum
+ * depth per sample (see {@link #maxDepthPerSample}).
+ *
+ * If intervals are provided, only loci within the intervals are processed. Loci not covered by any read are
+ * not processed.
+ *
+ * LocusWalker authors must implement the apply() method to process each locus, and may optionally implement
+ * onTraversalStart() and/or onTraversalDone(). See the {@link org.broadinstitute.hellbender.tools.examples.ExampleLocusWalker}
+ * tool for an example.
+ */
+public abstract class LocusWalker extends GATKTool {
+
+    @Argument(fullName = "disable_all_read_filters", shortName = "f", doc = "Disable all read filters", common = false, optional = true)
+    public boolean disable_all_read_filters = false;
+
+    @Argument(fullName = "maxDepthPerSample", shortName = "maxDepthPerSample", doc = "Maximum number of reads to retain per sample per locus. Reads above this threshold will be downsampled. Set to 0 to disable.", common = false, optional = true)
+    public int maxDepthPerSample = defaultMaxDepthPerSample();
+
+    @Override
+    public boolean requiresReads() {
+        return true;
+    }
+
+    /**
+     * Returns the default value for the {@link #maxDepthPerSample} argument, which tools may override.
+     * The engine default is not to downsample.
+     *
+     * @return the default maximum depth per sample, or {@link LocusIteratorByState#NO_DOWNSAMPLING}
+     */
+    protected int defaultMaxDepthPerSample() {
+        return LocusIteratorByState.NO_DOWNSAMPLING;
+    }
+
+    /**
+     * Initialize data sources for traversal.
+     *
+     * Marked final so that tool authors don't override it. Tool authors should override onTraversalStart() instead.
+     */
+    @Override
+    protected final void onStartup() {
+        super.onStartup();
+
+        if ( maxDepthPerSample < 0 ) {
+            throw new UserException.BadArgumentValue("maxDepthPerSample", Integer.toString(maxDepthPerSample), "must be >= 0");
+        }
+
+        if ( hasIntervals() ) {
+            reads.setIntervalsForTraversal(intervalsForTraversal);
+        }
+    }
+
+    /**
+     * Implementation of locus-based traversal.
+     *
+     * Filters the reads using {@link #makeReadFilter}, piles up the filtered reads at each covered locus, and hands
+     * each pileup to the {@link #apply} function of the walker, along with reference bases and Features overlapping
+     * the locus, if present.
+     */
+    @Override
+    public void traverse() {
+        final CountingReadFilter countedFilter = disable_all_read_filters ?
+                                                         new CountingReadFilter("Allow all", ReadFilterLibrary.ALLOW_ALL_READS ) :
+                                                         makeReadFilter();
+        final Iterator<AlignmentContext> loci = new LocusIteratorByState(
+                StreamSupport.stream(reads.spliterator(), false).filter(countedFilter).iterator(),
+                getHeaderForReads(),
+                maxDepthPerSample);
+        final IntervalMembership traversalIntervals = hasIntervals() ? new IntervalMembership(intervalsForTraversal) : null;
+
+        while ( loci.hasNext() ) {
+            final AlignmentContext alignmentContext = loci.next();
+            final SimpleInterval locus = new SimpleInterval(alignmentContext.getLocation());
+            // Reads overlapping our intervals may extend beyond them
+            if ( traversalIntervals != null && ! traversalIntervals.contains(locus) ) {
+                continue;
+            }
+
+            final long applyStart = System.nanoTime();
+            apply(alignmentContext, new ReferenceContext(reference, locus), new FeatureContext(features, locus));
+            applyTimer.recordSince(applyStart);
+            progressMeter.update(locus);
+        }
+
+        reportFilteredReads(countedFilter);
+    }
+
+    /**
+     * Returns the read filter (simple or composite) that will be applied to the reads before they are piled up.
+     * The default implementation uses the {@link WellformedReadFilter} filter with all default options.
+     *
+     * Subclasses can extend to provide own filters (ie override and call super).
+     * Multiple filters can be composed by using {@link org.broadinstitute.hellbender.engine.filters.ReadFilter} composition methods.
+     */
+    public CountingReadFilter makeReadFilter(){
+        return new CountingReadFilter("Wellformed", new WellformedReadFilter(getHeaderForReads()));
+    }
+
+    /**
+     * Process an individual locus. Must be implemented by tool authors.
+     * In general, tool authors should simply stream their output from apply(), and maintain as little internal state
+     * as possible.
+     *
+     * The pileup elements in the alignment context are reused from one locus to the next, so tools must not keep
+     * references to them (or to the pileup) after apply() returns. Use the copy constructor of
+     * {@link org.broadinstitute.hellbender.utils.pileup.PileupElement} to keep an element.
+     *
+     * @param alignmentContext current locus, and the (possibly downsampled) pileup of reads overlapping it
+     * @param referenceContext Reference base at the current locus. Will be an empty, but non-null, context object
+     *                         if there is no backing source of reference data (in which case all queries on it will return
+     *                         an empty array/iterator). Can request extra bases of context around the current locus
+     *                         by invoking {@link ReferenceContext#setWindow} on this object before calling {@link ReferenceContext#getBases}
+     * @param featureContext Features spanning the current locus. Will be an empty, but non-null, context object
+     *                       if there is no backing source of Feature data (in which case all queries on it will return an
+     *                       empty List).
+     */
+    public abstract void apply( AlignmentContext alignmentContext, ReferenceContext referenceContext, FeatureContext featureContext );
+
+    /**
+     * Shutdown data sources.
+     *
+     * Marked final so that tool authors don't override it. Tool authors should override onTraversalDone() instead.
+     */
+    @Override
+    protected final void onShutdown() {
+        // Overridden only to make final so that concrete tool implementations don't override
+        super.onShutdown();
+    }
+}
@@ -0,0 +1,47 @@
+package org.broadinstitute.hellbender.engine;
+
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.GATKReadWriter;
+
+import java.io.IOException;
+
+/**
+ * A GATKReadWriter that preserves traversal order when used from a tool's apply() method during a
+ * multi-threaded traversal. Reads added from a worker thread are buffered and handed to the underlying
+ * writer on the traversal thread in the same order as the input, so output is identical to that of a
+ * single-threaded run.
+ *
+ * During single-threaded traversals (or outside of apply()) reads are passed straight through to the
+ * underlying writer.
+ *
+ * Tools that declare themselves thread-safe via {@link GATKTool#isThreadSafe()} should wrap their
+ * output writers in this class.
+ */
+public final class OrderedGATKReadWriter implements GATKReadWriter {
+
+    private final GATKReadWriter delegate;
+
+    /**
+     * @param delegate writer to which reads are ultimately written, in traversal order
+     */
+    public OrderedGATKReadWriter( final GATKReadWriter delegate ) {
+        this.delegate = Utils.nonNull(delegate);
+    }
+
+    @Override
+    public void addRead( final GATKRead read ) {
+        ParallelTraversalExecutor.runInOrder(() -> delegate.addRead(read));
+    }
+
+    @Override
+    public void close() {
+        try {
+            delegate.close();
+        }
+        catch ( IOException e ) {
+            throw new GATKException("Error closing read writer", e);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.broadinstitute.hellbender.engine;
+
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.writer.VariantContextWriter;
+import htsjdk.variant.vcf.VCFHeader;
+import org.broadinstitute.hellbender.utils.Utils;
+
+/**
+ * A VariantContextWriter that preserves traversal order when used from a tool's apply() method during a
+ * multi-threaded traversal. Variants added from a worker thread are buffered and handed to the underlying
+ * writer on the traversal thread in the same order as the input, so output is identical to that of a
+ * single-threaded run.
+ *
+ * During single-threaded traversals (or outside of apply()) variants are passed straight through to the
+ * underlying writer.
+ *
+ * Tools that declare themselves thread-safe via {@link GATKTool#isThreadSafe()} should wrap their
+ * output writers in this class.
+ */
+public final class OrderedVariantContextWriter implements VariantContextWriter {
+
+    private final VariantContextWriter delegate;
+
+    /**
+     * @param delegate writer to which variants are ultimately written, in traversal order
+     */
+    public OrderedVariantContextWriter( final VariantContextWriter delegate ) {
+        this.delegate = Utils.nonNull(delegate);
+    }
+
+    @Override
+    public void writeHeader( final VCFHeader header ) {
+        delegate.writeHeader(header);
+    }
+
+    @Override
+    public void add( final VariantContext vc ) {
+        ParallelTraversalExecutor.runInOrder(() -> delegate.add(vc));
+    }
+
+    @Override
+    public boolean checkError() {
+        return delegate.checkError();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
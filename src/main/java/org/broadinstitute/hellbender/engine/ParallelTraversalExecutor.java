@@ -0,0 +1,191 @@
+package org.broadinstitute.hellbender.engine;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs units of traversal work on a fixed pool of worker threads, while guaranteeing that the output
+ * produced by that work reaches its destination in the order in which the work was submitted.
+ *
+ * Each worker thread lazily creates its own private state (typically private copies of the engine
+ * data sources, since our file-backed data sources are not thread-safe) using the supplied factory.
+ * All such state is closed when this executor is closed.
+ *
+ * Output produced by a unit of work must be routed through {@link #runInOrder(Runnable)}, either directly
+ * or via an ordered writer such as {@link OrderedGATKReadWriter}. When called from a worker thread, the
+ * output action is deferred and later replayed on the submitting thread once all previously-submitted work
+ * has had its output replayed. When called from any other thread, the output action runs immediately, so
+ * ordered writers behave exactly like their delegates during a serial traversal.
+ *
+ * The amount of work in flight is bounded: {@link #submit} blocks the submitting thread on the oldest
+ * outstanding unit of work once the bound is reached, so input is never buffered without limit.
+ *
+ * @param <STATE> type of the private per-worker-thread state
+ * @param <RESULT> type of the value produced by each unit of work, handed back to the submitting thread in order
+ */
+final class ParallelTraversalExecutor<STATE extends AutoCloseable, RESULT> implements AutoCloseable {
+
+    /**
+     * Output deferred by the unit of work currently running on this thread. Null on non-worker threads.
+     */
+    private static final ThreadLocal<List<Runnable>> deferredOutput = new ThreadLocal<>();
+
+    private final ExecutorService workers;
+
+    private final ThreadLocal<STATE> workerState;
+
+    /**
+     * Every piece of worker state created so far, so that we can close them all at the end
+     */
+    private final List<STATE> allWorkerStates = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Submitted work that has not yet been completed on the submitting thread, in submission order
+     */
+    private final Deque<Future<CompletedWork<RESULT>>> pendingWork = new ArrayDeque<>();
+
+    private final int maxPendingWork;
+
+    private final Consumer<RESULT> onCompletion;
+
+    /**
+     * The result of a unit of work, along with the output it deferred while running
+     */
+    private static final class CompletedWork<RESULT> {
+        private final RESULT result;
+        private final List<Runnable> output;
+
+        private CompletedWork( final RESULT result, final List<Runnable> output ) {
+            this.result = result;
+            this.output = output;
+        }
+    }
+
+    /**
+     * @param numThreads number of worker threads (>= 1)
+     * @param maxPendingWork maximum number of submitted units of work that may be outstanding at once (>= 1)
+     * @param stateFactory creates the private state for each worker thread on first use by that thread
+     * @param onCompletion invoked on the submitting thread with the result of each unit of work, in submission
+     *                     order, after the output of that unit of work has been replayed
+     */
+    ParallelTraversalExecutor( final int numThreads, final int maxPendingWork, final Supplier<STATE> stateFactory, final Consumer<RESULT> onCompletion ) {
+        Utils.validateArg(numThreads >= 1, "numThreads must be >= 1");
+        Utils.validateArg(maxPendingWork >= 1, "maxPendingWork must be >= 1");
+        Utils.nonNull(stateFactory);
+
+        this.workers = Executors.newFixedThreadPool(numThreads, new ThreadFactoryBuilder().setNameFormat("traversal-worker-%d").setDaemon(true).build());
+        this.workerState = ThreadLocal.withInitial(() -> {
+            final STATE state = stateFactory.get();
+            allWorkerStates.add(state);
+            return state;
+        });
+        this.maxPendingWork = maxPendingWork;
+        this.onCompletion = Utils.nonNull(onCompletion);
+    }
+
+    /**
+     * Submit a unit of work to be run on one of our worker threads. If the maximum amount of outstanding work
+     * has been reached, first blocks until the oldest outstanding unit of work completes and then replays
+     * its output.
+     *
+     * @param work work to run given the private state of the worker thread that runs it
+     */
+    void submit( final Function<STATE, RESULT> work ) {
+        Utils.nonNull(work);
+        if ( pendingWork.size() >= maxPendingWork ) {
+            completeOldestWork();
+        }
+        pendingWork.addLast(workers.submit(() -> runWork(work)));
+    }
+
+    /**
+     * Block until all submitted work has completed, replaying its output in submission order
+     */
+    void finish() {
+        while ( ! pendingWork.isEmpty() ) {
+            completeOldestWork();
+        }
+    }
+
+    /**
+     * Run an output action in traversal order. When called from within a unit of work running on a worker
+     * thread, the action is deferred until the work's output is replayed on the submitting thread. Otherwise
+     * the action runs immediately.
+     *
+     * @param outputAction action that writes some output
+     */
+    static void runInOrder( final Runnable outputAction ) {
+        final List<Runnable> output = deferredOutput.get();
+        if ( output != null ) {
+            output.add(outputAction);
+        }
+        else {
+            outputAction.run();
+        }
+    }
+
+    private CompletedWork<RESULT> runWork( final Function<STATE, RESULT> work ) {
+        final List<Runnable> output = new ArrayList<>();
+        deferredOutput.set(output);
+        try {
+            return new CompletedWork<>(work.apply(workerState.get()), output);
+        }
+        finally {
+            deferredOutput.remove();
+        }
+    }
+
+    private void completeOldestWork() {
+        final CompletedWork<RESULT> completed;
+        try {
+            completed = pendingWork.removeFirst().get();
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new GATKException("Interrupted while waiting for traversal work to complete", e);
+        }
+        catch ( ExecutionException e ) {
+            // Preserve the original exception type (eg., UserException) where possible
+            if ( e.getCause() instanceof RuntimeException ) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new GATKException("Error during parallel traversal", e.getCause());
+        }
+
+        completed.output.forEach(Runnable::run);
+        onCompletion.accept(completed.result);
+    }
+
+    /**
+     * Abandon any outstanding work, shut down our worker threads, and close all per-worker state
+     */
+    @Override
+    public void close() {
+        pendingWork.forEach(work -> work.cancel(true));
+        pendingWork.clear();
+        workers.shutdownNow();
+        try {
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+
+        for ( final STATE state : allWorkerStates ) {
+            try {
+                state.close();
+            }
+            catch ( Exception e ) {
+                throw new GATKException("Error closing worker thread state", e);
+            }
+        }
+        allWorkerStates.clear();
+    }
+}
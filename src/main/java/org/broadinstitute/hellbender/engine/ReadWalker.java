@@ -1,12 +1,16 @@
 package org.broadinstitute.hellbender.engine;
 
 import org.broadinstitute.hellbender.engine.filters.WellformedReadFilter;
+import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
 import org.broadinstitute.hellbender.cmdline.Argument;
 import org.broadinstitute.hellbender.engine.filters.CountingReadFilter;
 import org.broadinstitute.hellbender.engine.filters.ReadFilterLibrary;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.stream.StreamSupport;
 
 /**
@@ -17,12 +21,31 @@ import java.util.stream.StreamSupport;
  *
  * ReadWalker authors must implement the apply() method to process each read, and may optionally implement
  * onTraversalStart() and/or onTraversalDone(). See the PrintReadsWithReference walker for an example.
+ *
+ * Tools that declare themselves thread-safe via {@link #isThreadSafe()} may be run with multiple
+ * worker threads (see {@link #readWalkerThreads}). In that mode, batches of filtered reads are handed to
+ * a pool of workers, each with its own private reference and Feature data sources, and output written
+ * through an {@link OrderedGATKReadWriter} is emitted in input order.
  */
 public abstract class ReadWalker extends GATKTool {
 
     @Argument(fullName = "disable_all_read_filters", shortName = "f", doc = "Disable all read filters", common = false, optional = true)
     public boolean disable_all_read_filters = false;
 
+    @Argument(fullName = "readWalkerThreads", shortName = "readWalkerThreads", doc = "Number of threads to use when calling apply() on reads. Only tools that declare themselves thread-safe support values greater than 1", common = false, optional = true)
+    public int readWalkerThreads = 1;
+
+    /**
+     * During multi-threaded traversals, reads are handed to worker threads in batches of this size
+     */
+    static final int READS_PER_PARALLEL_BATCH = 1000;
+
+    /**
+     * During multi-threaded traversals, we allow at most this many batches per worker thread to be
+     * in flight at once, so that we never get too far ahead of the output.
+     */
+    static final int MAX_PENDING_BATCHES_PER_THREAD = 2;
+
     @Override
     public boolean requiresReads() {
         return true;
@@ -37,6 +60,14 @@ public abstract class ReadWalker extends GATKTool {
     protected final void onStartup() {
         super.onStartup();
 
+        if ( readWalkerThreads < 1 ) {
+            throw new UserException.BadArgumentValue("readWalkerThreads", Integer.toString(readWalkerThreads), "must be >= 1");
+        }
+        if ( readWalkerThreads > 1 && ! isThreadSafe() ) {
+            throw new UserException.BadArgumentValue("readWalkerThreads", Integer.toString(readWalkerThreads),
+                                                     "tool " + getClass().getSimpleName() + " does not support multi-threaded traversal");
+        }
+
         if ( hasIntervals() ) {
             reads.setIntervalsForTraversal(intervalsForTraversal);
         }
@@ -49,6 +80,9 @@ public abstract class ReadWalker extends GATKTool {
      * The default implementation creates filters using {@link #makeReadFilter}
      * and then iterates over all reads, applies the filter and hands the resulting reads to the {@link #apply}
      * function of the walker (along with additional contextual information, if present, such as reference bases).
+     *
+     * If more than one thread was requested via {@link #readWalkerThreads}, apply() is called concurrently
+     * from a pool of worker threads (see {@link #traverseInParallel}).
      */
     @Override
     public void traverse() {
@@ -58,19 +92,73 @@ public abstract class ReadWalker extends GATKTool {
                                                     new CountingReadFilter("Allow all", ReadFilterLibrary.ALLOW_ALL_READS ) :
                                                     makeReadFilter();
 
-        StreamSupport.stream(reads.spliterator(), false)
-                .filter(countedFilter)
-                .forEach(read -> {
-                    final SimpleInterval readInterval = read.isUnmapped() ? null :
-                                                                            new SimpleInterval(read);
-                    apply(read,
-                          new ReferenceContext(reference, readInterval), // Will create an empty ReferenceContext if reference or readInterval == null
-                          new FeatureContext(features, readInterval));   // Will create an empty FeatureContext if features or readInterval == null
+        if ( readWalkerThreads > 1 ) {
+            traverseInParallel(countedFilter);
+        }
+        else {
+            StreamSupport.stream(reads.spliterator(), false)
+                    .filter(countedFilter)
+                    .forEach(read -> progressMeter.update(applyWithContext(read, reference, features)));
+        }
+
+        reportFilteredReads(countedFilter);
+    }
 
-                    progressMeter.update(readInterval);
+    /**
+     * Multi-threaded implementation of read-based traversal.
+     *
+     * Filtered reads are grouped into batches of {@link #READS_PER_PARALLEL_BATCH} on the calling thread
+     * (so that filter counts remain exact) and each batch is handed to a worker thread, which calls
+     * {@link #apply} on every read in the batch using its own private reference and Feature data sources.
+     * Output written through an {@link OrderedGATKReadWriter} and progress updates happen on the calling
+     * thread in input order. The number of batches in flight is bounded, so memory usage stays flat.
+     *
+     * @param countedFilter filter to apply to reads before they are handed to the workers
+     */
+    private void traverseInParallel( final CountingReadFilter countedFilter ) {
+        logger.info("Running read traversal with " + readWalkerThreads + " threads");
+
+        try ( final ParallelTraversalExecutor<WorkerDataSources, List<SimpleInterval>> executor =
+                      new ParallelTraversalExecutor<>(readWalkerThreads, readWalkerThreads * MAX_PENDING_BATCHES_PER_THREAD,
+                                                      this::openWorkerDataSources, batchIntervals -> batchIntervals.forEach(progressMeter::update)) ) {
+
+            final Iterator<GATKRead> filteredReads = StreamSupport.stream(reads.spliterator(), false).filter(countedFilter).iterator();
+            while ( filteredReads.hasNext() ) {
+                final List<GATKRead> batch = new ArrayList<>(READS_PER_PARALLEL_BATCH);
+                while ( batch.size() < READS_PER_PARALLEL_BATCH && filteredReads.hasNext() ) {
+                    batch.add(filteredReads.next());
+                }
+
+                executor.submit(workerDataSources -> {
+                    final List<SimpleInterval> batchIntervals = new ArrayList<>(batch.size());
+                    for ( final GATKRead read : batch ) {
+                        batchIntervals.add(applyWithContext(read, workerDataSources.reference, workerDataSources.features));
+                    }
+                    return batchIntervals;
                 });
+            }
 
-        logger.info(countedFilter.getSummaryLine());
+            executor.finish();
+        }
+    }
+
+    /**
+     * Call {@link #apply} on a single read, supplying contextual information from the given data sources
+     *
+     * @param read read to process
+     * @param referenceSource source of reference bases (may be null)
+     * @param featureSource source of Features (may be null)
+     * @return the interval spanned by the read, or null if the read is unmapped
+     */
+    private SimpleInterval applyWithContext( final GATKRead read, final ReferenceDataSource referenceSource, final FeatureManager featureSource ) {
+        final SimpleInterval readInterval = read.isUnmapped() ? null :
+                                                                new SimpleInterval(read);
+        final long applyStart = System.nanoTime();
+        apply(read,
+              new ReferenceContext(referenceSource, readInterval), // Will create an empty ReferenceContext if reference or readInterval == null
+              new FeatureContext(featureSource, readInterval));    // Will create an empty FeatureContext if features or readInterval == null
+        applyTimer.recordSince(applyStart);
+        return readInterval;
     }
 
 
@@ -95,6 +183,10 @@ public abstract class ReadWalker extends GATKTool {
      * TODO: Determine whether and to what degree the GATK engine should provide a reduce operation
      * TODO: to complement this operation. At a minimum, we should make apply() return a value to
      * TODO: discourage statefulness in walkers, but how this value should be handled is TBD.
+     *
+     * If the tool declares itself thread-safe via {@link #isThreadSafe()}, this method may be called
+     * concurrently from multiple threads.
+     *
      * @param read current read
      * @param referenceContext Reference bases spanning the current read. Will be an empty, but non-null, context object
      *                         if there is no backing source of reference data (in which case all queries on it will return
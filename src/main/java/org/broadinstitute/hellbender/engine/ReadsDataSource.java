@@ -5,15 +5,21 @@ import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.IOUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.engine.metrics.MetricsRegistry;
+import org.broadinstitute.hellbender.engine.metrics.TimedIterator;
+import org.broadinstitute.hellbender.engine.metrics.Timer;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
 import org.broadinstitute.hellbender.exceptions.GATKException;
 import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.iterators.MergingIterator;
+import org.broadinstitute.hellbender.utils.iterators.ReadAheadIterator;
 import org.broadinstitute.hellbender.utils.iterators.SAMRecordToReadIterator;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -23,6 +29,11 @@ import java.util.stream.Collectors;
  *
  * -Iteration over all reads, optionally restricted to reads that overlap a set of intervals
  * -Targeted queries by one interval at a time
+ *
+ * Full iterations may optionally read ahead of the consumer on background threads (see {@link #setReadAhead}),
+ * so that BGZF decompression and record decoding overlap with the processing of each read. With multiple
+ * inputs, each input is then read and decoded on its own thread, and the reads are merged into coordinate
+ * order on the consumer's thread.
  */
 public final class ReadsDataSource implements GATKDataSource<GATKRead>, AutoCloseable {
     protected static final Logger logger = LogManager.getLogger(ReadsDataSource.class);
@@ -55,6 +66,17 @@ public final class ReadsDataSource implements GATKDataSource<GATKRead>, AutoClos
      */
     private QueryInterval[] preparedIntervals;
 
+    /**
+     * Plan for querying our readers over {@link #preparedIntervals}, coalescing nearby intervals into single scans.
+     * Null if iteration is unbounded.
+     */
+    private ReadsQueryPlan traversalPlan;
+
+    /**
+     * During traversals bounded by intervals, intervals separated by at most this many bases are read in a single scan
+     */
+    private int queryCoalescingGap = DEFAULT_QUERY_COALESCING_GAP;
+
     /**
      * Used to create a merged Sam header when we're dealing with multiple readers. Null if we only have a single reader.
      */
@@ -65,6 +87,52 @@ public final class ReadsDataSource implements GATKDataSource<GATKRead>, AutoClos
      */
     private boolean indicesAvailable;
 
+    /**
+     * Number of background threads with which to fully decode reads ahead of a full iteration.
+     * 0 if read-ahead is disabled.
+     */
+    private int readAheadThreads = 0;
+
+    /**
+     * Maximum number of batches of {@link #READ_AHEAD_BATCH_SIZE} reads to read ahead of a full iteration
+     */
+    private int readAheadBatches = DEFAULT_READ_AHEAD_BATCHES;
+
+    /**
+     * Read-ahead iterators backing the current full iteration, if read-ahead is enabled (one per reader if there
+     * are multiple readers). Empty if there is no such iteration open. Must be closed before closing the iterators
+     * over our readers.
+     */
+    private final List<ReadAheadIterator<SAMRecord>> readAheadIterators = new ArrayList<>();
+
+    /**
+     * Default maximum number of batches of reads to read ahead of a full iteration
+     */
+    public static final int DEFAULT_READ_AHEAD_BATCHES = 8;
+
+    /**
+     * Number of reads per batch handed from the read-ahead threads to the consumer
+     */
+    public static final int READ_AHEAD_BATCH_SIZE = 1000;
+
+    /**
+     * Default maximum gap, in bases, between intervals that are read in a single scan during traversals
+     * bounded by intervals
+     */
+    public static final int DEFAULT_QUERY_COALESCING_GAP = 1000;
+
+    /**
+     * Name of the engine metric recording the time spent reading each record from our readers (including
+     * decompression and parsing), and the number of records read, summed over all readers
+     */
+    static final String DECODE_TIMER = "reads.decode";
+
+    /**
+     * Minimum number of batches of reads to read ahead for each file when reading ahead from multiple files,
+     * so that no file's reading thread stalls while the consumer drains its only batch
+     */
+    public static final int MIN_READ_AHEAD_BATCHES_PER_FILE = 2;
+
     /**
      * Initialize this data source with a single SAM/BAM file
      *
@@ -157,6 +225,65 @@ public final class ReadsDataSource implements GATKDataSource<GATKRead>, AutoClos
         else {
             preparedIntervals = null;
         }
+        planTraversal();
+    }
+
+    /**
+     * Sets the maximum gap between intervals passed to {@link #setIntervalsForTraversal} that are read in a single
+     * scan, rather than in separate index queries. Reads in the gaps are skipped, so the reads returned are the same
+     * regardless of the gap, but larger gaps trade decoding extra reads for fewer seeks. Calls to {@link #query}
+     * are not affected.
+     *
+     * @param maxGap maximum gap in bases (>= 0)
+     */
+    public void setQueryCoalescingGap( final int maxGap ) {
+        if ( maxGap < 0 ) {
+            throw new IllegalArgumentException("Query coalescing gap must be >= 0");
+        }
+
+        queryCoalescingGap = maxGap;
+        planTraversal();
+    }
+
+    private void planTraversal() {
+        if ( preparedIntervals == null ) {
+            traversalPlan = null;
+            return;
+        }
+
+        traversalPlan = new ReadsQueryPlan(preparedIntervals, queryCoalescingGap);
+        if ( traversalPlan.isCoalesced() ) {
+            logger.info(traversalPlan.getSummary());
+        }
+    }
+
+    /**
+     * Enables (or disables) read-ahead for subsequent full iterations over this data source via {@link #iterator}.
+     *
+     * When enabled, a background thread reads and decompresses reads ahead of the consumer into a queue of
+     * at most maxQueuedBatches batches of {@link #READ_AHEAD_BATCH_SIZE} reads each, and numThreads decoding
+     * threads fully decode each batch, so that the consumer receives reads that require no further decoding.
+     * Reads are returned in exactly the same order as without read-ahead. Queries via {@link #query} are not
+     * affected.
+     *
+     * If there are multiple input files, each file instead gets a background thread of its own that reads,
+     * decompresses and decodes its reads into a separate queue, and the consumer merges the queues into coordinate
+     * order. The maxQueuedBatches batches are then shared between the files (with at least
+     * {@link #MIN_READ_AHEAD_BATCHES_PER_FILE} per file), and numThreads only enables read-ahead.
+     *
+     * @param numThreads number of threads with which to decode reads ahead of the consumer. 0 disables read-ahead.
+     * @param maxQueuedBatches maximum number of batches of reads to read ahead of the consumer (>= 1)
+     */
+    public void setReadAhead( final int numThreads, final int maxQueuedBatches ) {
+        if ( numThreads < 0 ) {
+            throw new IllegalArgumentException("Number of read-ahead threads must be >= 0");
+        }
+        if ( maxQueuedBatches < 1 ) {
+            throw new IllegalArgumentException("Number of read-ahead batches must be >= 1");
+        }
+
+        readAheadThreads = numThreads;
+        readAheadBatches = maxQueuedBatches;
     }
 
     private void raiseExceptionForMissingIndex(String reason) {
@@ -179,9 +306,11 @@ public final class ReadsDataSource implements GATKDataSource<GATKRead>, AutoClos
     @Override
     public Iterator<GATKRead> iterator() {
         logger.debug("Preparing readers for traversal");
-        final Iterator<GATKRead> traversalIter = prepareIteratorsForTraversal(preparedIntervals);
+        if ( traversalPlan == null ) {
+            return prepareIteratorsForTraversal(null, readAheadThreads > 0);
+        }
 
-        return traversalIter;
+        return prepareIteratorsForTraversal(traversalPlan.getScanIntervals(), readAheadThreads > 0, traversalPlan::filterToRequestedIntervals);
     }
 
     /**
@@ -196,7 +325,7 @@ public final class ReadsDataSource implements GATKDataSource<GATKRead>, AutoClos
             raiseExceptionForMissingIndex("Cannot query reads data source by interval unless all files are indexed");
 
         final QueryInterval[] queryInterval = { convertIntervalToQueryInterval(interval) };
-        return prepareIteratorsForTraversal(queryInterval);
+        return prepareIteratorsForTraversal(queryInterval, false);
     }
 
     /**
@@ -216,17 +345,38 @@ public final class ReadsDataSource implements GATKDataSource<GATKRead>, AutoClos
      * before calling this method.
      *
      * @param queryIntervals Intervals to bound the iteration (reads must overlap one of these intervals). If null, iteration is unbounded.
+     * @param readAhead if true, read and decode reads ahead of the consumer on background threads
+     * @return Iterator over all reads in this data source, limited to overlap with the supplied intervals
+     */
+    private Iterator<GATKRead> prepareIteratorsForTraversal( final QueryInterval[] queryIntervals, final boolean readAhead ) {
+        return prepareIteratorsForTraversal(queryIntervals, readAhead, records -> records);
+    }
+
+    /**
+     * Prepare iterators over all readers in response to a request for a complete iteration or query, applying
+     * recordFilter to the merged records from all readers
+     *
+     * @param queryIntervals Intervals to bound the iteration (reads must overlap one of these intervals). If null, iteration is unbounded.
+     * @param readAhead if true, read and decode reads ahead of the consumer on background threads
+     * @param recordFilter transformation to apply to the records in coordinate order (eg., to restrict them to a subset of the intervals)
      * @return Iterator over all reads in this data source, limited to overlap with the supplied intervals
      */
-    private Iterator<GATKRead> prepareIteratorsForTraversal( final QueryInterval[] queryIntervals ) {
+    private Iterator<GATKRead> prepareIteratorsForTraversal( final QueryInterval[] queryIntervals, final boolean readAhead, final Function<Iterator<SAMRecord>, Iterator<SAMRecord>> recordFilter ) {
         // htsjdk requires that only one iterator be open at a time per reader, so close out
         // any previous iterations
         closePreviousIterationsIfNecessary();
 
-        // Set up an iterator for each reader, bounded to overlap with the supplied intervals if there are any
+        // Set up an iterator for each reader, bounded to overlap with the supplied intervals if there are any,
+        // recording the time spent reading and decoding each record
+        final Timer decodeTimer = MetricsRegistry.getEngineMetrics().timer(DECODE_TIMER);
         for ( Map.Entry<SamReader, CloseableIterator<SAMRecord>> readerEntry : readers.entrySet() ) {
-            readerEntry.setValue(queryIntervals == null ? readerEntry.getKey().iterator() :
-                                                          readerEntry.getKey().queryOverlapping(queryIntervals));
+            readerEntry.setValue(new TimedIterator<>(queryIntervals == null ? readerEntry.getKey().iterator() :
+                                                                              readerEntry.getKey().queryOverlapping(queryIntervals),
+                                                     decodeTimer));
+        }
+
+        if ( readAhead && readers.size() > 1 ) {
+            return new SAMRecordToReadIterator(recordFilter.apply(prepareParallelMergingIterator()));
         }
 
         // Create a merging iterator over all readers if necessary. In the case where there's only a single reader,
@@ -239,7 +389,87 @@ public final class ReadsDataSource implements GATKDataSource<GATKRead>, AutoClos
             startingIterator = new MergingSamRecordIterator(headerMerger, readers, true);
         }
 
-        return new SAMRecordToReadIterator(startingIterator);
+        if ( readAhead ) {
+            final ReadAheadIterator<SAMRecord> readAheadIterator = new ReadAheadIterator<>(startingIterator, READ_AHEAD_BATCH_SIZE, readAheadBatches, readAheadThreads, ReadsDataSource::decodeRecord);
+            readAheadIterators.add(readAheadIterator);
+            startingIterator = readAheadIterator;
+        }
+
+        return new SAMRecordToReadIterator(recordFilter.apply(startingIterator));
+    }
+
+    /**
+     * Set up a read-ahead thread for the (already open) iterator over each of our readers, and merge their
+     * output into coordinate order.
+     *
+     * Each reader's thread reads, decodes, and translates its records into the merged header (just as
+     * {@link MergingSamRecordIterator} would), so that the consumer's thread only has to merge them.
+     *
+     * @return iterator over the records from all of our readers in coordinate order
+     */
+    private Iterator<SAMRecord> prepareParallelMergingIterator() {
+        final int batchesPerReader = Math.max(MIN_READ_AHEAD_BATCHES_PER_FILE, readAheadBatches / readers.size());
+        for ( final Map.Entry<SamReader, CloseableIterator<SAMRecord>> readerEntry : readers.entrySet() ) {
+            final SAMFileHeader readerHeader = readerEntry.getKey().getFileHeader();
+            readAheadIterators.add(new ReadAheadIterator<>(readerEntry.getValue(), READ_AHEAD_BATCH_SIZE, batchesPerReader, 0, record -> {
+                translateToMergedHeader(record, readerHeader);
+                decodeRecord(record);
+            }));
+        }
+
+        // Records are translated before they are compared, so a plain coordinate comparator is sufficient. The merging
+        // iterator gets its own copy of the list, since ours is cleared and refilled by the next iteration or query.
+        return new MergingIterator<>(new ArrayList<>(readAheadIterators), new SAMRecordCoordinateComparator());
+    }
+
+    /**
+     * Points a record from one of our readers at the merged header, translating its read group, program group, and
+     * reference indices if they differ in the merged header. This is the same translation done by
+     * {@link MergingSamRecordIterator}.
+     *
+     * @param record record to translate
+     * @param readerHeader header of the reader the record came from
+     */
+    private void translateToMergedHeader( final SAMRecord record, final SAMFileHeader readerHeader ) {
+        record.setHeader(headerMerger.getMergedHeader());
+
+        if ( headerMerger.hasReadGroupCollisions() ) {
+            final String oldGroupId = (String)record.getAttribute(ReservedTagConstants.READ_GROUP_ID);
+            if ( oldGroupId != null ) {
+                record.setAttribute(ReservedTagConstants.READ_GROUP_ID, headerMerger.getReadGroupId(readerHeader, oldGroupId));
+            }
+        }
+
+        if ( headerMerger.hasProgramGroupCollisions() ) {
+            final String oldGroupId = (String)record.getAttribute(ReservedTagConstants.PROGRAM_GROUP_ID);
+            if ( oldGroupId != null ) {
+                record.setAttribute(ReservedTagConstants.PROGRAM_GROUP_ID, headerMerger.getProgramGroupId(readerHeader, oldGroupId));
+            }
+        }
+
+        if ( headerMerger.hasMergedSequenceDictionary() ) {
+            if ( record.getReferenceIndex() != SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX ) {
+                record.setReferenceIndex(headerMerger.getMergedSequenceIndex(readerHeader, record.getReferenceIndex()));
+            }
+            if ( record.getReadPairedFlag() && record.getMateReferenceIndex() != SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX ) {
+                record.setMateReferenceIndex(headerMerger.getMergedSequenceIndex(readerHeader, record.getMateReferenceIndex()));
+            }
+        }
+    }
+
+    /**
+     * Forces full decoding of the lazily-decoded fields of a record, so that this cost is paid on a read-ahead
+     * thread rather than on the traversal thread. {@link SAMRecord#eagerDecode} is not public, so we touch
+     * each lazily-decoded field instead.
+     *
+     * @param record record to decode
+     */
+    private static void decodeRecord( final SAMRecord record ) {
+        record.getCigar();
+        record.getReadBases();
+        record.getBaseQualities();
+        // Retrieving any attribute decodes all of them
+        record.getAttribute(SAMTag.RG.name());
     }
 
     /**
@@ -315,6 +545,10 @@ public final class ReadsDataSource implements GATKDataSource<GATKRead>, AutoClos
      * Close any previously-opened iterations over our readers (htsjdk allows only one open iteration per reader).
      */
     private void closePreviousIterationsIfNecessary() {
+        // Stop any read-ahead first, since its background threads may still be using our readers' iterators
+        readAheadIterators.forEach(ReadAheadIterator::close);
+        readAheadIterators.clear();
+
         for ( Map.Entry<SamReader, CloseableIterator<SAMRecord>> readerEntry : readers.entrySet() ) {
             CloseableIterator<SAMRecord> readerIterator = readerEntry.getValue();
             if ( readerIterator != null ) {
@@ -0,0 +1,153 @@
+package org.broadinstitute.hellbender.engine;
+
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.SAMRecord;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.*;
+
+/**
+ * Plans the index queries for a traversal of reads over a set of intervals.
+ *
+ * Querying each of a large number of nearby intervals (eg., exome targets) separately makes the reader seek
+ * back to and re-inflate the same compressed blocks over and over, since reads near the end of one interval
+ * often live in the same blocks as reads near the start of the next. Instead, we coalesce intervals separated
+ * by at most a maximum gap into a single scan, and filter the records from the scans back down to those
+ * overlapping the requested intervals. Since each scan visits each record at most once, a read overlapping
+ * several adjacent intervals is still returned only once.
+ */
+final class ReadsQueryPlan {
+
+    private final QueryInterval[] requestedIntervals;
+
+    private final QueryInterval[] scanIntervals;
+
+    /**
+     * @param requestedIntervals the intervals to traverse, sorted and merged via {@link QueryInterval#optimizeIntervals}
+     * @param maxGap coalesce intervals separated by at most this many bases into a single scan (>= 0)
+     */
+    ReadsQueryPlan( final QueryInterval[] requestedIntervals, final int maxGap ) {
+        Utils.nonNull(requestedIntervals);
+        Utils.validateArg(maxGap >= 0, "maxGap must be >= 0");
+
+        this.requestedIntervals = requestedIntervals;
+        this.scanIntervals = coalesce(requestedIntervals, maxGap);
+    }
+
+    private static QueryInterval[] coalesce( final QueryInterval[] intervals, final int maxGap ) {
+        final List<QueryInterval> coalesced = new ArrayList<>();
+        QueryInterval current = null;
+        for ( final QueryInterval interval : intervals ) {
+            if ( current != null && current.referenceIndex == interval.referenceIndex && (long)interval.start - current.end - 1 <= maxGap ) {
+                current = new QueryInterval(current.referenceIndex, current.start, Math.max(current.end, interval.end));
+            }
+            else {
+                if ( current != null ) {
+                    coalesced.add(current);
+                }
+                current = interval;
+            }
+        }
+        if ( current != null ) {
+            coalesced.add(current);
+        }
+        return coalesced.toArray(new QueryInterval[coalesced.size()]);
+    }
+
+    /**
+     * @return the intervals to query the readers with, sorted and non-overlapping
+     */
+    QueryInterval[] getScanIntervals() {
+        return scanIntervals;
+    }
+
+    /**
+     * @return true if some of the requested intervals were coalesced, so that the scans return records that
+     *         must be filtered out via {@link #filterToRequestedIntervals}
+     */
+    boolean isCoalesced() {
+        return scanIntervals.length < requestedIntervals.length;
+    }
+
+    /**
+     * @return a one-line summary of the queries saved by coalescing, and the extra bases scanned in exchange
+     */
+    String getSummary() {
+        final long requestedBases = countBases(requestedIntervals);
+        return String.format("Coalesced %d intervals into %d index queries (%d fewer seeks), scanning %d additional bases between intervals",
+                             requestedIntervals.length, scanIntervals.length, requestedIntervals.length - scanIntervals.length, countBases(scanIntervals) - requestedBases);
+    }
+
+    private static long countBases( final QueryInterval[] intervals ) {
+        long bases = 0;
+        for ( final QueryInterval interval : intervals ) {
+            bases += interval.end - interval.start + 1;
+        }
+        return bases;
+    }
+
+    /**
+     * Restrict the coordinate-sorted records from our scans to those overlapping the requested intervals
+     *
+     * @param records records returned by queries over the scan intervals, in coordinate order
+     * @return records overlapping at least one requested interval, in the same order
+     */
+    Iterator<SAMRecord> filterToRequestedIntervals( final Iterator<SAMRecord> records ) {
+        Utils.nonNull(records);
+        return isCoalesced() ? new RequestedIntervalFilteringIterator(records) : records;
+    }
+
+    private final class RequestedIntervalFilteringIterator implements Iterator<SAMRecord> {
+        private final Iterator<SAMRecord> records;
+
+        /**
+         * Index of the first requested interval that might overlap the current record. Since records are sorted
+         * by start, intervals ending before the start of a record cannot overlap any later record.
+         */
+        private int nextInterval = 0;
+
+        private SAMRecord nextRecord = null;
+
+        private RequestedIntervalFilteringIterator( final Iterator<SAMRecord> records ) {
+            this.records = records;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while ( nextRecord == null && records.hasNext() ) {
+                final SAMRecord record = records.next();
+                if ( overlapsRequestedInterval(record) ) {
+                    nextRecord = record;
+                }
+            }
+            return nextRecord != null;
+        }
+
+        @Override
+        public SAMRecord next() {
+            if ( ! hasNext() ) {
+                throw new NoSuchElementException("No more records");
+            }
+            final SAMRecord record = nextRecord;
+            nextRecord = null;
+            return record;
+        }
+
+        private boolean overlapsRequestedInterval( final SAMRecord record ) {
+            final int referenceIndex = record.getReferenceIndex();
+            final int start = record.getAlignmentStart();
+            // As in htsjdk's own interval queries, unmapped reads placed with their mates occupy only their start position
+            final int end = record.getReadUnmappedFlag() ? start : record.getAlignmentEnd();
+
+            while ( nextInterval < requestedIntervals.length &&
+                    (requestedIntervals[nextInterval].referenceIndex < referenceIndex ||
+                     (requestedIntervals[nextInterval].referenceIndex == referenceIndex && requestedIntervals[nextInterval].end < start)) ) {
+                ++nextInterval;
+            }
+
+            return nextInterval < requestedIntervals.length &&
+                   requestedIntervals[nextInterval].referenceIndex == referenceIndex &&
+                   requestedIntervals[nextInterval].start <= end;
+        }
+    }
+}
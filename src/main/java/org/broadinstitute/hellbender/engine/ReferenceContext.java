@@ -5,6 +5,8 @@ import org.broadinstitute.hellbender.utils.SimpleInterval;
 import org.broadinstitute.hellbender.exceptions.GATKException;
 import org.broadinstitute.hellbender.utils.iterators.ByteArrayIterator;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Iterator;
 
 /**
@@ -15,7 +17,10 @@ import java.util.Iterator;
  * not to examine contextual information from the reference.
  *
  * Reference bases are returned as bytes for integration with the existing {@link org.broadinstitute.hellbender.utils.BaseUtils}
- * implementation.
+ * implementation. Clients that only need a few bases, or that want to avoid copying the bases into a new array
+ * per context, should prefer {@link #getBase(int)}, {@link #copyBases} and {@link #getBasesView} to {@link #getBases}
+ * and {@link #iterator}. Of these, only {@link #getBase(int)} and {@link #copyBases} avoid allocating altogether:
+ * {@link #getBasesView} still creates a small {@link ByteBuffer} view per call, though never a copy of the bases.
  *
  * The reference interval can be optionally expanded by a configurable number of bases in each direction.
  * windowLeadingBases = 3 and windowTrailingBases = 5 means 3 bases of extra reference context before
@@ -29,6 +34,12 @@ import java.util.Iterator;
  */
 public final class ReferenceContext implements Iterable<Byte> {
 
+    /**
+     * View returned by {@link #getBasesView} when there is no reference data. Being empty and read-only, it can
+     * safely be shared.
+     */
+    private static final ByteBuffer EMPTY_BASES_VIEW = ByteBuffer.allocate(0).asReadOnlyBuffer();
+
     /**
      * Backing data source. Null if there is no reference data.
      */
@@ -111,7 +122,7 @@ public final class ReferenceContext implements Iterable<Byte> {
      */
     @Override
     public Iterator<Byte> iterator() {
-        return dataSource != null && window != null ? dataSource.query(window) : new ByteArrayIterator(new byte[0]);
+        return new ByteArrayIterator(getBases());
     }
 
     /**
@@ -141,7 +152,76 @@ public final class ReferenceContext implements Iterable<Byte> {
     public byte[] getForwardBases() {
         final byte[] bases = getBases();
         final int mid = interval.getStart() - window.getStart();
-        return new String(bases).substring(mid).getBytes();
+        return Arrays.copyOfRange(bases, mid, bases.length);
+    }
+
+    /**
+     * Get the reference base at a specific position within the window of this context, without materializing
+     * the bases for the whole window if they haven't already been fetched.
+     *
+     * @param position 1-based position on our contig. Must lie within {@link #getWindow}.
+     * @return the reference base at this position
+     */
+    public byte getBase( final int position ) {
+        if ( dataSource == null || window == null ) {
+            throw new IllegalStateException("ReferenceContext has no backing data source and/or interval");
+        }
+        if ( position < window.getStart() || position > window.getEnd() ) {
+            throw new IllegalArgumentException("Position " + position + " is outside of the reference window " + window);
+        }
+
+        return cachedSequence != null ? cachedSequence.getBases()[position - window.getStart()] : dataSource.getBase(window.getContig(), position);
+    }
+
+    /**
+     * Copy all reference bases in this context into a caller-supplied buffer, so that a buffer can be reused
+     * across many contexts. Copies nothing if there is no backing data source and/or interval.
+     *
+     * Call {@link #setWindow} before calling this method if you want to configure the amount of extra reference context
+     * to include around the current interval
+     *
+     * @param destination buffer into which to copy the bases. Must have room for all bases in our window after destinationOffset.
+     * @param destinationOffset offset in destination at which to place the first base
+     * @return the number of bases copied
+     */
+    public int copyBases( final byte[] destination, final int destinationOffset ) {
+        if ( dataSource == null || window == null ) {
+            return 0;
+        }
+
+        if ( cachedSequence != null ) {
+            final byte[] bases = cachedSequence.getBases();
+            if ( destinationOffset < 0 || destinationOffset + bases.length > destination.length ) {
+                throw new IllegalArgumentException(String.format("Destination buffer of length %d cannot hold %d bases at offset %d", destination.length, bases.length, destinationOffset));
+            }
+            System.arraycopy(bases, 0, destination, destinationOffset, bases.length);
+            return bases.length;
+        }
+        return dataSource.copyBases(window.getContig(), window.getStart(), window.getEnd(), destination, destinationOffset);
+    }
+
+    /**
+     * Get a read-only view of the reference bases in this context. Position 0 in the returned buffer holds the
+     * base at the start of our window. Will be empty if there is no backing data source and/or interval.
+     *
+     * The bases themselves are not copied, but each call does create a new view over them.
+     *
+     * If the bases in this context have already been fetched (eg., via {@link #getBases}), the view is over
+     * those cached bases. Otherwise, it may be a view directly over the cache of the backing data source, in
+     * which case it is only valid until the next query against that data source.
+     *
+     * Call {@link #setWindow} before calling this method if you want to configure the amount of extra reference context
+     * to include around the current interval
+     *
+     * @return read-only view of the reference bases in this context
+     */
+    public ByteBuffer getBasesView() {
+        if ( dataSource == null || window == null ) {
+            return EMPTY_BASES_VIEW;
+        }
+
+        return cachedSequence != null ? ByteBuffer.wrap(cachedSequence.getBases()).asReadOnlyBuffer() :
+                                        dataSource.getBasesView(window.getContig(), window.getStart(), window.getEnd());
     }
 
 
@@ -255,6 +335,6 @@ public final class ReferenceContext implements Iterable<Byte> {
      * @return The base at the given locus from the reference.
      */
     public byte getBase() {
-        return getBases()[(interval.getStart() - window.getStart())];
+        return getBase(interval.getStart());
     }
 }
\ No newline at end of file
@@ -4,9 +4,11 @@ import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.reference.ReferenceSequence;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
 import org.broadinstitute.hellbender.utils.iterators.ByteArrayIterator;
+import org.broadinstitute.hellbender.utils.fasta.CachingIndexedFastaSequenceFile;
 import org.broadinstitute.hellbender.utils.reference.ReferenceBases;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 
 /**
@@ -24,7 +26,38 @@ public interface ReferenceDataSource extends GATKDataSource<Byte>, AutoCloseable
      * @param fastaFile reference fasta file
      */
     public static ReferenceDataSource of(final File fastaFile) {
-        return new ReferenceFileSource(fastaFile);
+        return of(fastaFile, false);
+    }
+
+    /**
+     * Initialize this data source using a fasta file, optionally memory-mapping the entire fasta rather than
+     * caching a window of it.
+     *
+     * Memory-mapping is preferable when queries jump around the genome, or when many data sources over the same
+     * reference are open at once, since the mapped pages are shared between them.
+     *
+     * The provided fasta file must have companion .fai and .dict files.
+     *
+     * @param fastaFile reference fasta file
+     * @param memoryMapped if true, memory-map the fasta (see {@link ReferenceMappedFileSource}),
+     *                     otherwise cache a window of it (see {@link ReferenceFileSource})
+     */
+    public static ReferenceDataSource of(final File fastaFile, final boolean memoryMapped) {
+        return of(fastaFile, memoryMapped, CachingIndexedFastaSequenceFile.DEFAULT_CACHE_BUDGET);
+    }
+
+    /**
+     * Same as {@link #of(File, boolean)}, but with the given budget for the cache of a data source that is not
+     * memory-mapped.
+     *
+     * @param fastaFile reference fasta file
+     * @param memoryMapped if true, memory-map the fasta (see {@link ReferenceMappedFileSource}),
+     *                     otherwise cache windows of it (see {@link ReferenceFileSource})
+     * @param cacheBudget the maximum total size in bp of all cached reference windows, must be >= 0.
+     *                    Ignored if memoryMapped is true.
+     */
+    public static ReferenceDataSource of(final File fastaFile, final boolean memoryMapped, final long cacheBudget) {
+        return memoryMapped ? new ReferenceMappedFileSource(fastaFile) : new ReferenceFileSource(fastaFile, cacheBudget);
     }
 
 
@@ -61,10 +94,69 @@ public interface ReferenceDataSource extends GATKDataSource<Byte>, AutoCloseable
      */
     public ReferenceSequence queryAndPrefetch(final String contig, final long start , final long stop);
 
+    /**
+     * Get the single reference base at a specific position.
+     *
+     * Unlike {@link #queryAndPrefetch} and {@link #query}, implementations should avoid allocating per call, so
+     * this is suitable for use in per-read or per-locus inner loops.
+     *
+     * The default implementation calls #queryAndPrefetch(contig, position, position).
+     *
+     * @param contig contig containing the base
+     * @param position 1-based position of the base
+     * @return the reference base at this position
+     */
+    default public byte getBase( final String contig, final long position ) {
+        return queryAndPrefetch(contig, position, position).getBases()[0];
+    }
+
+    /**
+     * Copy the reference bases spanning a specific interval into a caller-supplied buffer, so that clients
+     * that query many intervals can reuse the same buffer rather than allocating a new array per query.
+     *
+     * The default implementation calls #queryAndPrefetch(contig, start, stop) and copies the result.
+     *
+     * @param contig query interval contig
+     * @param start query interval start
+     * @param stop query interval stop (included)
+     * @param destination buffer into which to copy the bases. Must have room for stop - start + 1 bases after destinationOffset.
+     * @param destinationOffset offset in destination at which to place the first base
+     * @return the number of bases copied (stop - start + 1)
+     */
+    default public int copyBases( final String contig, final long start, final long stop, final byte[] destination, final int destinationOffset ) {
+        final byte[] bases = queryAndPrefetch(contig, start, stop).getBases();
+        if ( destinationOffset < 0 || destinationOffset + bases.length > destination.length ) {
+            throw new IllegalArgumentException(String.format("Destination buffer of length %d cannot hold %d bases at offset %d", destination.length, bases.length, destinationOffset));
+        }
+        System.arraycopy(bases, 0, destination, destinationOffset, bases.length);
+        return bases.length;
+    }
+
+    /**
+     * Get a read-only view of the reference bases spanning a specific interval. Position 0 in the returned
+     * buffer holds the base at start, and its limit is the length of the interval.
+     *
+     * Implementations may return a view directly over their internal cache rather than a copy of the bases,
+     * so the view is only guaranteed to be valid until the next query against this data source. Unlike
+     * {@link #getBase} and {@link #copyBases}, this still allocates a new (small) view per call.
+     *
+     * The default implementation wraps the result of #queryAndPrefetch(contig, start, stop).
+     *
+     * @param contig query interval contig
+     * @param start query interval start
+     * @param stop query interval stop (included)
+     * @return read-only view of the bases spanning the query interval
+     */
+    default public ByteBuffer getBasesView( final String contig, final long start, final long stop ) {
+        return ByteBuffer.wrap(queryAndPrefetch(contig, start, stop).getBases()).asReadOnlyBuffer();
+    }
+
     /**
       * Query a specific interval on this reference, and get back an iterator over the bases spanning that interval.
       *
-      * See the BaseUtils class for guidance on how to work with bases in this format.
+      * See the BaseUtils class for guidance on how to work with bases in this format. Note that this boxes
+      * every base, so performance-sensitive clients should prefer {@link #getBase}, {@link #copyBases}
+      * or {@link #getBasesView}.
       *
       * @param interval query interval
       * @return iterator over the bases spanning the query interval
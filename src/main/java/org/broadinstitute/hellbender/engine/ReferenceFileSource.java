@@ -2,6 +2,10 @@ package org.broadinstitute.hellbender.engine;
 
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.reference.ReferenceSequence;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.engine.metrics.MetricsRegistry;
 import org.broadinstitute.hellbender.exceptions.GATKException;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
 import org.broadinstitute.hellbender.utils.Utils;
@@ -10,6 +14,7 @@ import org.broadinstitute.hellbender.utils.iterators.ByteArrayIterator;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 
 /**
@@ -19,6 +24,13 @@ import java.util.Iterator;
  * yet support complete iteration over the entire reference.
  */
 public final class ReferenceFileSource implements ReferenceDataSource {
+    private static final Logger logger = LogManager.getLogger(ReferenceFileSource.class);
+
+    /**
+     * Names of the engine metrics to which we add our cache statistics, summed over all reference sources
+     */
+    static final String CACHE_HITS_COUNTER = "reference.cacheHits";
+    static final String CACHE_MISSES_COUNTER = "reference.cacheMisses";
 
     /**
      * Our reference file. Uses the caching version of IndexedFastaSequenceFile
@@ -35,8 +47,28 @@ public final class ReferenceFileSource implements ReferenceDataSource {
      * @param fastaFile reference fasta file
      */
     public ReferenceFileSource(final File fastaFile) {
+        this(fastaFile, CachingIndexedFastaSequenceFile.DEFAULT_CACHE_BUDGET);
+    }
+
+    /**
+     * Initialize this data source using a fasta file, caching at most cacheBudget bases of it at once.
+     *
+     * The provided fasta file must have companion .fai and .dict files.
+     *
+     * @param fastaFile reference fasta file
+     * @param cacheBudget the maximum total size in bp of all cached reference windows, must be >= 0
+     *                    (see {@link CachingIndexedFastaSequenceFile#getCacheBudget})
+     */
+    public ReferenceFileSource(final File fastaFile, final long cacheBudget) {
         // Will throw a UserException if the .fai and/or .dict are missing
-        reference = CachingIndexedFastaSequenceFile.checkAndCreate(Utils.nonNull(fastaFile));
+        reference = CachingIndexedFastaSequenceFile.checkAndCreate(Utils.nonNull(fastaFile), cacheBudget);
+    }
+
+    /**
+     * @return the maximum total size in bp of all of our cached reference windows
+     */
+    long getCacheBudget() {
+        return reference.getCacheBudget();
     }
 
     /**
@@ -66,6 +98,47 @@ public final class ReferenceFileSource implements ReferenceDataSource {
         return reference.getSubsequenceAt(contig, start, stop);
     }
 
+    /**
+     * Get the single reference base at a specific position, served from our cache where possible
+     *
+     * @param contig contig containing the base
+     * @param position 1-based position of the base
+     * @return the reference base at this position
+     */
+    @Override
+    public byte getBase( final String contig, final long position ) {
+        return reference.getBaseAt(contig, position);
+    }
+
+    /**
+     * Copy the reference bases spanning a specific interval into a caller-supplied buffer, served from our
+     * cache where possible
+     *
+     * @param contig query interval contig
+     * @param start query interval start
+     * @param stop query interval stop (included)
+     * @param destination buffer into which to copy the bases
+     * @param destinationOffset offset in destination at which to place the first base
+     * @return the number of bases copied (stop - start + 1)
+     */
+    @Override
+    public int copyBases( final String contig, final long start, final long stop, final byte[] destination, final int destinationOffset ) {
+        return reference.copySubsequenceAt(contig, start, stop, destination, destinationOffset);
+    }
+
+    /**
+     * Get a read-only view of the reference bases spanning a specific interval. The view is backed by our
+     * cache where possible, and so is only valid until the next query against this data source.
+     *
+     * @param contig query interval contig
+     * @param start query interval start
+     * @param stop query interval stop (included)
+     * @return read-only view of the bases spanning the query interval
+     */
+    @Override
+    public ByteBuffer getBasesView( final String contig, final long start, final long stop ) {
+        return reference.getSubsequenceViewAt(contig, start, stop);
+    }
 
     /**
      * Get the sequence dictionary for this reference
@@ -78,10 +151,17 @@ public final class ReferenceFileSource implements ReferenceDataSource {
     }
 
     /**
-     * Permanently close this data source
+     * Permanently close this data source, reporting the efficiency of our reference cache if it was used
      */
     @Override
     public void close() {
+        if ( logger.isInfoEnabled() && reference.getCacheHits() + reference.getCacheMisses() > 0 ) {
+            reference.printEfficiency(Level.INFO);
+        }
+        final MetricsRegistry metrics = MetricsRegistry.getEngineMetrics();
+        metrics.counter(CACHE_HITS_COUNTER).add(reference.getCacheHits());
+        metrics.counter(CACHE_MISSES_COUNTER).add(reference.getCacheMisses());
+
         try {
             reference.close();
         }
@@ -0,0 +1,127 @@
+package org.broadinstitute.hellbender.engine;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.reference.ReferenceSequence;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.fasta.MemoryMappedFastaSequenceFile;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+/**
+ * Manages traversals and queries over a memory-mapped fasta reference.
+ *
+ * Unlike {@link ReferenceFileSource}, which caches a few windows of the reference and so performs
+ * poorly when queries jump around the genome, this data source serves every query directly from the
+ * memory-mapped fasta, and so performs equally well for any access pattern. The mapped pages are held in
+ * the operating system's page cache, so they are shared between all data sources over the same reference
+ * on a host (eg., the private data sources of each worker thread in a multi-threaded traversal).
+ *
+ * Supports targeted queries over the reference by interval, but does not
+ * yet support complete iteration over the entire reference.
+ */
+public final class ReferenceMappedFileSource implements ReferenceDataSource {
+
+    private final MemoryMappedFastaSequenceFile reference;
+
+    /**
+     * Initialize this data source using a fasta file.
+     *
+     * The provided fasta file must have companion .fai and .dict files.
+     *
+     * @param fastaFile reference fasta file
+     */
+    public ReferenceMappedFileSource( final File fastaFile ) {
+        // Will throw a UserException if the .fai and/or .dict are missing
+        reference = new MemoryMappedFastaSequenceFile(Utils.nonNull(fastaFile));
+    }
+
+    /**
+     * Start an iteration over the entire reference. Not yet supported!
+     *
+     * See the BaseUtils class for guidance on how to work with bases in this format.
+     *
+     * @return iterator over all bases in this reference
+     */
+    @Override
+    public Iterator<Byte> iterator() {
+        throw new UnsupportedOperationException("Iteration over entire reference not yet implemented");
+    }
+
+    /**
+     * Query a specific interval on this reference, and get back all bases spanning that interval at once.
+     * Call getBases() on the returned ReferenceSequence to get the actual reference bases. See the BaseUtils
+     * class for guidance on how to work with bases in this format.
+     *
+     * @param contig query interval contig
+     * @param start query interval start
+     * @param stop query interval stop
+     * @return a ReferenceSequence containing all bases spanning the query interval, prefetched
+     */
+    @Override
+    public ReferenceSequence queryAndPrefetch( final String contig, final long start, final long stop ) {
+        return new ReferenceSequence(contig, getSequenceDictionary().getSequenceIndex(contig), reference.getSubsequenceAt(contig, start, stop));
+    }
+
+    /**
+     * Get the single reference base at a specific position, directly from the mapped reference
+     *
+     * @param contig contig containing the base
+     * @param position 1-based position of the base
+     * @return the reference base at this position
+     */
+    @Override
+    public byte getBase( final String contig, final long position ) {
+        return reference.getBaseAt(contig, position);
+    }
+
+    /**
+     * Copy the reference bases spanning a specific interval into a caller-supplied buffer, directly from
+     * the mapped reference
+     *
+     * @param contig query interval contig
+     * @param start query interval start
+     * @param stop query interval stop (included)
+     * @param destination buffer into which to copy the bases
+     * @param destinationOffset offset in destination at which to place the first base
+     * @return the number of bases copied (stop - start + 1)
+     */
+    @Override
+    public int copyBases( final String contig, final long start, final long stop, final byte[] destination, final int destinationOffset ) {
+        return reference.copySubsequenceAt(contig, start, stop, destination, destinationOffset);
+    }
+
+    /**
+     * Get a read-only view of the reference bases spanning a specific interval. Since bases in a fasta file are
+     * interrupted by line terminators, this is a view over a copy of the bases: prefer {@link #getBase} or
+     * {@link #copyBases} to avoid allocation.
+     *
+     * @param contig query interval contig
+     * @param start query interval start
+     * @param stop query interval stop (included)
+     * @return read-only view of the bases spanning the query interval
+     */
+    @Override
+    public ByteBuffer getBasesView( final String contig, final long start, final long stop ) {
+        return reference.getSubsequenceViewAt(contig, start, stop);
+    }
+
+    /**
+     * Get the sequence dictionary for this reference
+     *
+     * @return SAMSequenceDictionary for this reference
+     */
+    @Override
+    public SAMSequenceDictionary getSequenceDictionary() {
+        return reference.getSequenceDictionary();
+    }
+
+    /**
+     * Permanently close this data source
+     */
+    @Override
+    public void close() {
+        reference.close();
+    }
+}
@@ -11,6 +11,7 @@ import org.broadinstitute.hellbender.utils.reference.ReferenceBases;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Iterator;
 
@@ -95,19 +96,79 @@ public final class ReferenceMemorySource implements ReferenceDataSource {
             // special case: no need to make a copy
             return new ReferenceSequence(contig, contigIndex, basesBytes);
         }
+        validateQuery(contig, start, stop);
+        return new ReferenceSequence(contig, contigIndex, Arrays.copyOfRange(basesBytes, startIndex, startIndex+length));
+    }
+
+    /**
+     * Get the single reference base at a specific position, directly from our in-memory bases
+     *
+     * @param contig contig containing the base
+     * @param position 1-based position of the base
+     * @return the reference base at this position
+     */
+    @Override
+    public byte getBase( final String contig, final long position ) {
+        validateQuery(contig, position, position);
+        return bases.getBases()[(int)(position - bases.getInterval().getStart())];
+    }
+
+    /**
+     * Copy the reference bases spanning a specific interval into a caller-supplied buffer, directly from
+     * our in-memory bases
+     *
+     * @param contig query interval contig
+     * @param start query interval start
+     * @param stop query interval stop (included)
+     * @param destination buffer into which to copy the bases
+     * @param destinationOffset offset in destination at which to place the first base
+     * @return the number of bases copied (stop - start + 1)
+     */
+    @Override
+    public int copyBases( final String contig, final long start, final long stop, final byte[] destination, final int destinationOffset ) {
+        validateQuery(contig, start, stop);
+        final int length = (int)(stop - start + 1);
+        if ( destinationOffset < 0 || destinationOffset + length > destination.length ) {
+            throw new IllegalArgumentException(String.format("Destination buffer of length %d cannot hold %d bases at offset %d", destination.length, length, destinationOffset));
+        }
+        System.arraycopy(bases.getBases(), (int)(start - bases.getInterval().getStart()), destination, destinationOffset, length);
+        return length;
+    }
+
+    /**
+     * Get a read-only view of the reference bases spanning a specific interval, backed directly by our
+     * in-memory bases
+     *
+     * @param contig query interval contig
+     * @param start query interval start
+     * @param stop query interval stop (included)
+     * @return read-only view of the bases spanning the query interval
+     */
+    @Override
+    public ByteBuffer getBasesView( final String contig, final long start, final long stop ) {
+        validateQuery(contig, start, stop);
+        return ByteBuffer.wrap(bases.getBases(), (int)(start - bases.getInterval().getStart()), (int)(stop - start + 1)).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Throws an IllegalArgumentException if the requested interval is not fully contained in our in-memory bases
+     */
+    private void validateQuery( final String contig, final long start, final long stop ) {
+        final long startIndex = start - bases.getInterval().getStart();
+        final long length = stop - start + 1;
+        final int numBases = bases.getBases().length;
         if (startIndex<0) {
             throw new IllegalArgumentException("Asking for start "+start+" on contig "+contig+" but the ReferenceData only has data starting at "+bases.getInterval().getStart());
         }
-        if (startIndex>=basesBytes.length) {
+        if (startIndex>=numBases) {
             throw new IllegalArgumentException("Asking for start "+start+" on contig "+contig+" but the ReferenceData only has data until "+bases.getInterval().getEnd());
         }
-        if (startIndex+length>basesBytes.length) {
+        if (startIndex+length>numBases) {
             throw new IllegalArgumentException("Asking for stop "+stop+" on contig "+contig+" but the ReferenceData only has data until "+bases.getInterval().getEnd());
         }
         if (length<0) {
             throw new IllegalArgumentException("Asking for stop<start ("+stop+"<"+start+")");
         }
-        return new ReferenceSequence(contig, contigIndex, Arrays.copyOfRange(basesBytes, startIndex, startIndex+length));
     }
 
 
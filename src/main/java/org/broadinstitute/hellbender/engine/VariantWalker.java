@@ -1,5 +1,7 @@
 package org.broadinstitute.hellbender.engine;
 
+import htsjdk.samtools.SAMSequenceDictionary;
+import org.broadinstitute.hellbender.utils.IntervalUtils;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
 import htsjdk.tribble.Feature;
 import htsjdk.tribble.FeatureCodec;
@@ -13,7 +15,12 @@ import org.broadinstitute.hellbender.exceptions.GATKException;
 import org.broadinstitute.hellbender.exceptions.UserException;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 /**
@@ -23,6 +30,12 @@ import java.util.stream.StreamSupport;
  *
  * VariantWalker authors must implement the apply() method to process each read, and may optionally implement
  * onTraversalStart() and/or onTraversalDone().
+ *
+ * Tools that declare themselves thread-safe via {@link #isThreadSafe()} may be run with multiple
+ * worker threads (see {@link #variantWalkerThreads}). In that mode, the genome (or the intervals, if provided)
+ * is split into shards, each shard is traversed on a worker thread with its own private data sources, and
+ * output written through an {@link OrderedVariantContextWriter} is emitted in the same order as in a
+ * single-threaded run.
  */
 public abstract class VariantWalker extends GATKTool {
 
@@ -31,6 +44,21 @@ public abstract class VariantWalker extends GATKTool {
     @Argument(fullName = StandardArgumentDefinitions.VARIANT_LONG_NAME, shortName = StandardArgumentDefinitions.VARIANT_SHORT_NAME, doc = "A VCF/BCF file containing variants", common = false, optional = false)
     public File drivingVariantFile;
 
+    @Argument(fullName = "variantWalkerThreads", shortName = "variantWalkerThreads", doc = "Number of threads to use when calling apply() on variants. Only tools that declare themselves thread-safe support values greater than 1. Requires an indexed variant file", common = false, optional = true)
+    public int variantWalkerThreads = 1;
+
+    /**
+     * During multi-threaded traversals, the genome is split into shards of this many bases, aligned
+     * at multiples of this size. All traversal intervals within a shard are handed to a single worker.
+     */
+    static final int BASES_PER_VARIANT_SHARD = 100000;
+
+    /**
+     * During multi-threaded traversals, we allow at most this many shards per worker thread to be
+     * in flight at once, so that we never get too far ahead of the output.
+     */
+    static final int MAX_PENDING_SHARDS_PER_THREAD = 2;
+
     // NOTE: keeping the driving source of variants separate from other, supplementary FeatureInputs in our FeatureManager in GATKTool
     //we do add the driving source to the Feature manager but we do need to treat it differently and thus this field.
     private FeatureDataSource<VariantContext> drivingVariants;
@@ -42,6 +70,25 @@ public abstract class VariantWalker extends GATKTool {
      * TODO: our main FeatureManager in GATKTool. May need a way to register additional data sources with GATKTool.
      */
 
+    /**
+     * Initialize data sources for traversal, and check our arguments before the tool opens any output in
+     * onTraversalStart().
+     *
+     * Marked final so that tool authors don't override it. Tool authors should override onTraversalStart() instead.
+     */
+    @Override
+    protected final void onStartup() {
+        super.onStartup();
+
+        if ( variantWalkerThreads < 1 ) {
+            throw new UserException.BadArgumentValue("variantWalkerThreads", Integer.toString(variantWalkerThreads), "must be >= 1");
+        }
+        if ( variantWalkerThreads > 1 && ! isThreadSafe() ) {
+            throw new UserException.BadArgumentValue("variantWalkerThreads", Integer.toString(variantWalkerThreads),
+                                                     "tool " + getClass().getSimpleName() + " does not support multi-threaded traversal");
+        }
+    }
+
     @Override
     void initializeFeatures() {
         //Note: we override this method because we don't want to set feature manager to null if there are no FeatureInputs.
@@ -50,25 +97,37 @@ public abstract class VariantWalker extends GATKTool {
         initializeDrivingVariants();
     }
 
-    @SuppressWarnings("unchecked")
     private void initializeDrivingVariants() {
+        drivingVariants = openDrivingVariants();
+        drivingVariantsFeatureInput = new FeatureInput<>("drivingVariantFile", Collections.emptyMap(), drivingVariantFile);
+        addDrivingVariantsToFeatureManager(features);
+
+        if ( hasIntervals() ) {
+            drivingVariants.setIntervalsForTraversal(intervalsForTraversal);
+        }
+    }
+
+    /**
+     * Open a new data source over our driving variants
+     */
+    @SuppressWarnings("unchecked")
+    private FeatureDataSource<VariantContext> openDrivingVariants() {
         // Need to discover the right codec for the driving source of variants manually, since we are
         // treating it specially (separate from the other sources of Features in our FeatureManager).
         final FeatureCodec<? extends Feature, ?> codec = FeatureManager.getCodecForFile(drivingVariantFile);
-        if (VariantContext.class.equals(codec.getFeatureType())) {
-            drivingVariants = new FeatureDataSource<>(drivingVariantFile, (FeatureCodec<VariantContext, ?>)codec);
-
-            //Add the driving datasource to the feature manager too so that it can be queried. Setting lookahead to 0 to avoid caching.
-            //Note: we are disabling lookahead here because of windowed queries that need to "look behind" as well.
-            drivingVariantsFeatureInput = new FeatureInput<>("drivingVariantFile", Collections.emptyMap(), drivingVariantFile);
-            features.addToFeatureSources(0, drivingVariantsFeatureInput, StandardArgumentDefinitions.VARIANT_LONG_NAME, StandardArgumentDefinitions.VARIANT_SHORT_NAME, codec.getFeatureType());
-        } else {
+        if ( ! VariantContext.class.equals(codec.getFeatureType()) ) {
             throw new UserException("File " + drivingVariantFile + " cannot be decoded as a variant file.");
         }
+        return new FeatureDataSource<>(drivingVariantFile, (FeatureCodec<VariantContext, ?>)codec);
+    }
 
-        if ( hasIntervals() ) {
-            drivingVariants.setIntervalsForTraversal(intervalsForTraversal);
-        }
+    /**
+     * Add the driving variants to the given feature manager too, so that they can be queried.
+     */
+    private void addDrivingVariantsToFeatureManager( final FeatureManager featureManager ) {
+        //Setting lookahead to 0 to avoid caching.
+        //Note: we are disabling lookahead here because of windowed queries that need to "look behind" as well.
+        featureManager.addToFeatureSources(0, drivingVariantsFeatureInput, StandardArgumentDefinitions.VARIANT_LONG_NAME, StandardArgumentDefinitions.VARIANT_SHORT_NAME, VariantContext.class);
     }
 
     /**
@@ -85,18 +144,189 @@ public abstract class VariantWalker extends GATKTool {
     @Override
     public void traverse() {
         final VariantFilter filter = makeVariantFilter();
+        if ( variantWalkerThreads > 1 ) {
+            traverseInParallel(filter);
+            return;
+        }
+
         // Process each variant in the input stream.
         StreamSupport.stream(drivingVariants.spliterator(), false)
                 .filter(filter)
-                .forEach(variant -> {
-                    final SimpleInterval variantInterval = new SimpleInterval(variant);
-                    apply(variant,
-                          new ReadsContext(reads, variantInterval),
-                          new ReferenceContext(reference, variantInterval),
-                          new FeatureContext(features, variantInterval));
-
-                    progressMeter.update(variantInterval);
+                .forEach(variant -> progressMeter.update(applyWithContext(variant, reads, reference, features)));
+    }
+
+    /**
+     * Multi-threaded implementation of variant-based traversal.
+     *
+     * The traversal intervals (or the whole of every contig in our driving variants, if there are no intervals)
+     * are split into shards of up to {@link #BASES_PER_VARIANT_SHARD} bases (see {@link #makeShards}), and each
+     * shard is traversed on a worker thread using its own private data sources. Variants overlapping more than
+     * one shard are processed only in the first. Output written through an {@link OrderedVariantContextWriter}
+     * and progress updates happen on the calling thread, in the same order as in a single-threaded traversal.
+     *
+     * The variant filter is shared by all worker threads.
+     *
+     * @param filter filter to apply to variants before they are handed to {@link #apply}
+     */
+    private void traverseInParallel( final VariantFilter filter ) {
+        final List<VariantShard> shards = makeShards();
+        logger.info("Running variant traversal over " + shards.size() + " shards with " + variantWalkerThreads + " threads");
+
+        try ( final ParallelTraversalExecutor<VariantWalkerWorker, List<SimpleInterval>> executor =
+                      new ParallelTraversalExecutor<>(variantWalkerThreads, variantWalkerThreads * MAX_PENDING_SHARDS_PER_THREAD,
+                                                      this::openWorker, shardIntervals -> shardIntervals.forEach(progressMeter::update)) ) {
+            for ( final VariantShard shard : shards ) {
+                executor.submit(worker -> {
+                    final List<SimpleInterval> shardIntervals = new ArrayList<>();
+                    worker.drivingVariants.setIntervalsForTraversal(shard.intervals);
+                    for ( final VariantContext variant : worker.drivingVariants ) {
+                        // Variants overlapping the end of the previous shard were processed there
+                        if ( shard.previousInterval != null && shard.previousInterval.overlaps(new SimpleInterval(variant)) ) {
+                            continue;
+                        }
+                        if ( filter.test(variant) ) {
+                            shardIntervals.add(applyWithContext(variant, worker.dataSources.reads, worker.dataSources.reference, worker.dataSources.features));
+                        }
+                    }
+                    return shardIntervals;
                 });
+            }
+
+            executor.finish();
+        }
+    }
+
+    /**
+     * A unit of work for a multi-threaded traversal
+     */
+    private static final class VariantShard {
+        /**
+         * Intervals to traverse, all within a single block of {@link #BASES_PER_VARIANT_SHARD} bases
+         */
+        private final List<SimpleInterval> intervals;
+
+        /**
+         * Last interval of the previous shard (null if there is none). Variants overlapping it belong to the previous shard.
+         */
+        private final SimpleInterval previousInterval;
+
+        private VariantShard( final List<SimpleInterval> intervals, final SimpleInterval previousInterval ) {
+            this.intervals = intervals;
+            this.previousInterval = previousInterval;
+        }
+    }
+
+    /**
+     * Split our traversal into shards. If there are no intervals, we traverse every contig with variants
+     * according to the index of our driving variants, in the order of the sequence dictionary in the header of
+     * our driving variants (or, failing that, the best available dictionary).
+     *
+     * @return shards to traverse, in traversal order
+     */
+    private List<VariantShard> makeShards() {
+        final List<SimpleInterval> traversalIntervals;
+        if ( hasIntervals() ) {
+            traversalIntervals = intervalsForTraversal;
+        }
+        else {
+            final SAMSequenceDictionary variantsDictionary = getHeaderForVariants().getSequenceDictionary();
+            final SAMSequenceDictionary dictionary = variantsDictionary != null && ! variantsDictionary.isEmpty() ? variantsDictionary : getBestAvailableSequenceDictionary();
+            if ( dictionary == null ) {
+                throw new UserException("A sequence dictionary (from the header of " + drivingVariantFile + " or from a reference) is required for multi-threaded traversal without intervals");
+            }
+            final Set<String> contigsWithVariants = new HashSet<>(drivingVariants.getSequenceNames());
+            for ( final String contig : contigsWithVariants ) {
+                if ( dictionary.getSequence(contig) == null ) {
+                    throw new UserException("Contig " + contig + " from " + drivingVariantFile + " is not in the sequence dictionary, so the file cannot be traversed with multiple threads");
+                }
+            }
+            // Skip contigs that the index tells us have no variants, rather than querying every shard of them
+            traversalIntervals = IntervalUtils.getAllIntervalsForReference(dictionary).stream()
+                    .filter(contigInterval -> contigsWithVariants.contains(contigInterval.getContig()))
+                    .collect(Collectors.toList());
+        }
+
+        final List<SimpleInterval> pieces = IntervalUtils.cutToShards(traversalIntervals, BASES_PER_VARIANT_SHARD);
+        if ( ! hasIntervals() ) {
+            // A single-threaded traversal without intervals visits every record, even those past the end of
+            // their contig according to the dictionary, so leave the last piece of each contig open-ended
+            for ( int i = 0; i < pieces.size(); ++i ) {
+                final SimpleInterval piece = pieces.get(i);
+                if ( i + 1 == pieces.size() || ! pieces.get(i + 1).getContig().equals(piece.getContig()) ) {
+                    pieces.set(i, new SimpleInterval(piece.getContig(), piece.getStart(), Integer.MAX_VALUE));
+                }
+            }
+        }
+
+        final List<VariantShard> shards = new ArrayList<>();
+        List<SimpleInterval> currentShard = new ArrayList<>();
+        SimpleInterval previousInterval = null;
+        for ( final SimpleInterval interval : pieces ) {
+            if ( ! currentShard.isEmpty() && ! inSameShard(currentShard.get(0), interval) ) {
+                shards.add(new VariantShard(currentShard, previousInterval));
+                previousInterval = currentShard.get(currentShard.size() - 1);
+                currentShard = new ArrayList<>();
+            }
+            currentShard.add(interval);
+        }
+        if ( ! currentShard.isEmpty() ) {
+            shards.add(new VariantShard(currentShard, previousInterval));
+        }
+        return shards;
+    }
+
+    private static boolean inSameShard( final SimpleInterval first, final SimpleInterval second ) {
+        return first.getContig().equals(second.getContig()) &&
+               IntervalUtils.shardIndex(first.getStart(), BASES_PER_VARIANT_SHARD) == IntervalUtils.shardIndex(second.getStart(), BASES_PER_VARIANT_SHARD);
+    }
+
+    /**
+     * Private data sources for a single worker thread during a multi-threaded traversal,
+     * including its own source of driving variants
+     */
+    private static final class VariantWalkerWorker implements AutoCloseable {
+        private final FeatureDataSource<VariantContext> drivingVariants;
+        private final WorkerDataSources dataSources;
+
+        private VariantWalkerWorker( final FeatureDataSource<VariantContext> drivingVariants, final WorkerDataSources dataSources ) {
+            this.drivingVariants = drivingVariants;
+            this.dataSources = dataSources;
+        }
+
+        @Override
+        public void close() {
+            drivingVariants.close();
+            dataSources.close();
+        }
+    }
+
+    private VariantWalkerWorker openWorker() {
+        final FeatureManager workerFeatures = new FeatureManager(this);
+        addDrivingVariantsToFeatureManager(workerFeatures);
+        return new VariantWalkerWorker(openDrivingVariants(),
+                                       new WorkerDataSources(hasReference() ? openReferenceDataSource() : null,
+                                                             hasReads() ? openReadsDataSource() : null,
+                                                             workerFeatures));
+    }
+
+    /**
+     * Call {@link #apply} on a single variant, supplying contextual information from the given data sources
+     *
+     * @param variant variant to process
+     * @param readsSource source of reads (may be null)
+     * @param referenceSource source of reference bases (may be null)
+     * @param featureSource source of Features (may be null)
+     * @return the interval spanned by the variant
+     */
+    private SimpleInterval applyWithContext( final VariantContext variant, final ReadsDataSource readsSource, final ReferenceDataSource referenceSource, final FeatureManager featureSource ) {
+        final SimpleInterval variantInterval = new SimpleInterval(variant);
+        final long applyStart = System.nanoTime();
+        apply(variant,
+              new ReadsContext(readsSource, variantInterval),
+              new ReferenceContext(referenceSource, variantInterval),
+              new FeatureContext(featureSource, variantInterval));
+        applyTimer.recordSince(applyStart);
+        return variantInterval;
     }
 
     /**
@@ -132,6 +362,9 @@ public abstract class VariantWalker extends GATKTool {
      * In general, tool authors should simply stream their output from apply(), and maintain as little internal state
      * as possible.
      *
+     * If the tool declares itself thread-safe via {@link #isThreadSafe()}, this method may be called
+     * concurrently from multiple threads.
+     *
      * @param variant Current variant being processed.
      * @param readsContext Reads overlapping the current variant. Will be an empty, but non-null, context object
      *                     if there is no backing source of reads data (in which case all queries on it will return
@@ -0,0 +1,41 @@
+package org.broadinstitute.hellbender.engine;
+
+/**
+ * Private copies of the engine data sources for the exclusive use of a single worker thread
+ * during a parallel traversal. Our file-backed data sources keep open file handles, iterators
+ * and query caches, none of which can be shared safely across threads.
+ *
+ * Any of these may be null if the corresponding kind of data is not available.
+ */
+final class WorkerDataSources implements AutoCloseable {
+
+    final ReferenceDataSource reference;
+
+    final ReadsDataSource reads;
+
+    final FeatureManager features;
+
+    WorkerDataSources( final ReferenceDataSource reference, final ReadsDataSource reads, final FeatureManager features ) {
+        this.reference = reference;
+        this.reads = reads;
+        this.features = features;
+    }
+
+    /**
+     * Close all data sources owned by this worker
+     */
+    @Override
+    public void close() {
+        if ( reference != null ) {
+            reference.close();
+        }
+
+        if ( reads != null ) {
+            reads.close();
+        }
+
+        if ( features != null ) {
+            features.close();
+        }
+    }
+}
@@ -13,6 +13,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Class to load a reference sequence from a local fasta file.
@@ -37,16 +38,26 @@ public class ReferenceFileSource implements ReferenceSource, Serializable {
     }
 
     public Map<String, ReferenceBases> getAllReferenceBases() throws IOException {
-        ReferenceSequenceFile referenceSequenceFile = ReferenceSequenceFileFactory.getReferenceSequenceFile(new File(referencePath));
         Map<String, ReferenceBases> bases = new LinkedHashMap<>();
-        ReferenceSequence seq;
-        while ((seq = referenceSequenceFile.nextSequence()) != null) {
-            String name = seq.getName();
-            bases.put(name, new ReferenceBases(seq.getBases(), new SimpleInterval(name, 1, seq.length())));
-        }
+        forEachContig(contig -> bases.put(contig.getInterval().getContig(), contig));
         return bases;
     }
 
+    /**
+     * Passes the bases of each contig of the reference to action in turn, reading the fasta once from start to
+     * finish and holding only one contig in memory at a time.
+     *
+     * @param action called with all the bases of each contig, in the order of the fasta
+     */
+    public void forEachContig(final Consumer<ReferenceBases> action) throws IOException {
+        try ( final ReferenceSequenceFile referenceSequenceFile = ReferenceSequenceFileFactory.getReferenceSequenceFile(new File(referencePath)) ) {
+            ReferenceSequence seq;
+            while ((seq = referenceSequenceFile.nextSequence()) != null) {
+                action.accept(new ReferenceBases(seq.getBases(), new SimpleInterval(seq.getName(), 1, seq.length())));
+            }
+        }
+    }
+
     @Override
     public SAMSequenceDictionary getReferenceSequenceDictionary(final SAMSequenceDictionary optReadSequenceDictionaryToMatch) throws IOException {
         ReferenceSequenceFile referenceSequenceFile = ReferenceSequenceFileFactory.getReferenceSequenceFile(new File(referencePath));
@@ -64,6 +64,25 @@ public class ReferenceMultiSource implements ReferenceSource, Serializable {
         this(auth.asPipelineOptionsDeprecated(), referenceURL, referenceWindowFunction);
     }
 
+    private ReferenceMultiSource( final ReferenceSource referenceSource,
+                                  final SerializableFunction<GATKRead, SimpleInterval> referenceWindowFunction ) {
+        this.referenceSource = referenceSource;
+        this.referenceWindowFunction = referenceWindowFunction;
+    }
+
+    /**
+     * Loads the whole reference into memory (see {@link ReferencePackedSource}), for broadcasting to Spark workers.
+     * @param pipelineOptions the pipeline options; must be GCSOptions if using the Google Genomics API
+     * @return a copy of this source, with the same reference window function, that queries the reference in memory
+     */
+    public ReferenceMultiSource loadIntoMemory( final PipelineOptions pipelineOptions ) {
+        try {
+            return new ReferenceMultiSource(new ReferencePackedSource(referenceSource, pipelineOptions), referenceWindowFunction);
+        } catch ( IOException e ) {
+            throw new GATKException("Error loading the reference into memory", e);
+        }
+    }
+
     private static boolean isFasta(String reference) {
         for (final String ext : ReferenceSequenceFileFactory.FASTA_EXTENSIONS) {
             if (reference.endsWith(ext)) {
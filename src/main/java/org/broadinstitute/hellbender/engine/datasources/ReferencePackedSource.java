@@ -0,0 +1,213 @@
+package org.broadinstitute.hellbender.engine.datasources;
+
+import com.google.cloud.dataflow.sdk.options.PipelineOptions;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.reference.ReferenceBases;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A ReferenceSource that holds all the bases of another ReferenceSource in memory, packed two bits per base (as in
+ * a .2bit file), so that reference queries are array lookups with no I/O. The whole human genome takes about 800MB.
+ *
+ * This is meant to be broadcast to Spark workers, which then keep a single copy each, shared by all their tasks.
+ *
+ * Bases other than A, C, G and T (N, or IUPAC codes) are kept as runs of exceptions to the packed bases, and lowercase
+ * (soft-masked) bases as runs of a mask, so the bases returned are exactly those of the original source.
+ */
+public final class ReferencePackedSource implements ReferenceSource, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // Bases are fetched from sources other than a local fasta this many at a time
+    private static final int LOAD_WINDOW_SIZE = 1 << 20;
+
+    private final SAMSequenceDictionary dictionary;
+    private final Map<String, PackedContig> contigs;
+
+    /**
+     * Loads all the bases of source into memory.
+     *
+     * @param source the reference to load
+     * @param pipelineOptions the pipeline options for source; must be GCSOptions if using the Google Genomics API
+     */
+    public ReferencePackedSource( final ReferenceSource source, final PipelineOptions pipelineOptions ) throws IOException {
+        Utils.nonNull(source);
+        this.dictionary = source.getReferenceSequenceDictionary(null);
+        this.contigs = new HashMap<>(dictionary.size() * 2);
+        if ( source instanceof ReferenceFileSource ) {
+            // Read the fasta through once, rather than reopening it for every window
+            ((ReferenceFileSource) source).forEachContig(contig -> {
+                final String name = contig.getInterval().getContig();
+                final SAMSequenceRecord sequence = dictionary.getSequence(name);
+                Utils.validateArg(sequence != null, "contig " + name + " is not in the reference dictionary");
+                final PackedContigBuilder builder = new PackedContigBuilder(sequence.getSequenceLength());
+                builder.add(contig.getBases());
+                contigs.put(name, builder.build());
+            });
+            Utils.validateArg(contigs.size() == dictionary.size(), "the reference is missing contigs in its dictionary");
+        } else {
+            for ( final SAMSequenceRecord sequence : dictionary.getSequences() ) {
+                final PackedContigBuilder builder = new PackedContigBuilder(sequence.getSequenceLength());
+                for ( int start = 1; start <= sequence.getSequenceLength(); start += LOAD_WINDOW_SIZE ) {
+                    final int end = Math.min(start + LOAD_WINDOW_SIZE - 1, sequence.getSequenceLength());
+                    builder.add(source.getReferenceBases(pipelineOptions, new SimpleInterval(sequence.getSequenceName(), start, end)).getBases());
+                }
+                contigs.put(sequence.getSequenceName(), builder.build());
+            }
+        }
+    }
+
+    @Override
+    public ReferenceBases getReferenceBases( final PipelineOptions pipelineOptions, final SimpleInterval interval ) {
+        final PackedContig contig = contigs.get(interval.getContig());
+        if ( contig == null ) {
+            throw new IllegalArgumentException("Contig " + interval.getContig() + " is not in the reference");
+        }
+        if ( interval.getEnd() > contig.length ) {
+            throw new IllegalArgumentException("Interval " + interval + " extends past the end of its contig, of length " + contig.length);
+        }
+        return new ReferenceBases(contig.getBases(interval.getStart() - 1, interval.getEnd()), interval);
+    }
+
+    @Override
+    public SAMSequenceDictionary getReferenceSequenceDictionary( final SAMSequenceDictionary optReadSequenceDictionaryToMatch ) {
+        return dictionary;
+    }
+
+    /**
+     * The bases of one contig: A, C, G and T are packed 32 to a long (base i in bits 2*(i%32) and up); the other bases,
+     * and the lowercase ones, are given by sorted, non-overlapping runs of (zero-based, half-open) positions.
+     */
+    private static final class PackedContig implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private static final byte[] PACKED_TO_BASE = {'A', 'C', 'G', 'T'};
+
+        private final int length;
+        private final long[] packedBases;
+        private final int[] exceptionStarts;
+        private final int[] exceptionEnds;
+        private final byte[] exceptionBases;
+        private final int[] maskStarts;
+        private final int[] maskEnds;
+
+        private PackedContig( final int length, final long[] packedBases,
+                              final int[] exceptionStarts, final int[] exceptionEnds, final byte[] exceptionBases,
+                              final int[] maskStarts, final int[] maskEnds ) {
+            this.length = length;
+            this.packedBases = packedBases;
+            this.exceptionStarts = exceptionStarts;
+            this.exceptionEnds = exceptionEnds;
+            this.exceptionBases = exceptionBases;
+            this.maskStarts = maskStarts;
+            this.maskEnds = maskEnds;
+        }
+
+        /**
+         * @return the bases from start (inclusive) to end (exclusive), both zero-based
+         */
+        byte[] getBases( final int start, final int end ) {
+            final byte[] bases = new byte[end - start];
+            for ( int i = start; i < end; ++i ) {
+                bases[i - start] = PACKED_TO_BASE[(int)(packedBases[i >>> 5] >>> ((i & 31) << 1)) & 3];
+            }
+            for ( int run = firstRunEndingAfter(exceptionEnds, start); run < exceptionEnds.length && exceptionStarts[run] < end; ++run ) {
+                for ( int i = Math.max(exceptionStarts[run], start); i < Math.min(exceptionEnds[run], end); ++i ) {
+                    bases[i - start] = exceptionBases[run];
+                }
+            }
+            for ( int run = firstRunEndingAfter(maskEnds, start); run < maskEnds.length && maskStarts[run] < end; ++run ) {
+                for ( int i = Math.max(maskStarts[run], start); i < Math.min(maskEnds[run], end); ++i ) {
+                    bases[i - start] = (byte)Character.toLowerCase(bases[i - start]);
+                }
+            }
+            return bases;
+        }
+
+        // Index of the first run whose end is after position (or the number of runs, if there is none)
+        private static int firstRunEndingAfter( final int[] ends, final int position ) {
+            int low = 0;
+            int high = ends.length;
+            while ( low < high ) {
+                final int middle = (low + high) >>> 1;
+                if ( ends[middle] <= position ) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Packs the bases of a contig, given in order, into a PackedContig
+     */
+    private static final class PackedContigBuilder {
+        private final int length;
+        private final long[] packedBases;
+        private final IntArrayList exceptionStarts = new IntArrayList();
+        private final IntArrayList exceptionEnds = new IntArrayList();
+        private final ByteArrayList exceptionBases = new ByteArrayList();
+        private final IntArrayList maskStarts = new IntArrayList();
+        private final IntArrayList maskEnds = new IntArrayList();
+        private int position = 0;
+
+        PackedContigBuilder( final int length ) {
+            this.length = length;
+            this.packedBases = new long[(length + 31) >>> 5];
+        }
+
+        void add( final byte[] bases ) {
+            Utils.validateArg(position + bases.length <= length, "more bases than the length of the contig");
+            for ( final byte base : bases ) {
+                final long packed;
+                switch ( Character.toUpperCase(base) ) {
+                    case 'A': packed = 0; break;
+                    case 'C': packed = 1; break;
+                    case 'G': packed = 2; break;
+                    case 'T': packed = 3; break;
+                    default:
+                        // Not packable (and left as A in the packed bases), so recorded exactly, case and all
+                        addToRun(exceptionStarts, exceptionEnds, exceptionBases, base);
+                        ++position;
+                        continue;
+                }
+                packedBases[position >>> 5] |= packed << ((position & 31) << 1);
+                if ( Character.isLowerCase(base) ) {
+                    addToRun(maskStarts, maskEnds, null, base);
+                }
+                ++position;
+            }
+        }
+
+        // Extends the last run to the current position if it ends there (and has the same base), or else starts a new one
+        private void addToRun( final IntArrayList starts, final IntArrayList ends, final ByteArrayList runBases, final byte base ) {
+            final int last = ends.size() - 1;
+            if ( last >= 0 && ends.getInt(last) == position && (runBases == null || runBases.getByte(last) == base) ) {
+                ends.set(last, position + 1);
+            } else {
+                starts.add(position);
+                ends.add(position + 1);
+                if ( runBases != null ) {
+                    runBases.add(base);
+                }
+            }
+        }
+
+        PackedContig build() {
+            Utils.validateArg(position == length, "fewer bases than the length of the contig");
+            return new PackedContig(length, packedBases,
+                    exceptionStarts.toIntArray(), exceptionEnds.toIntArray(), exceptionBases.toByteArray(),
+                    maskStarts.toIntArray(), maskEnds.toIntArray());
+        }
+    }
+}
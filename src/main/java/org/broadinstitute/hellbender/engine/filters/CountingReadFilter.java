@@ -1,5 +1,6 @@
 package org.broadinstitute.hellbender.engine.filters;
 
+import org.broadinstitute.hellbender.engine.metrics.MetricsRegistry;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.Utils;
 
@@ -31,6 +32,10 @@ public class CountingReadFilter implements ReadFilter {
     // Number of reads filtered by this filter
     protected long filteredCount = 0;
 
+    // Filter counts are recorded in metrics named METRICS_PREFIX + filter name + METRICS_SUFFIX
+    static final String METRICS_PREFIX = "readFilters.";
+    static final String METRICS_SUFFIX = ".rejected";
+
     public CountingReadFilter(final String filterName, final ReadFilter readFilter) {
         Utils.nonNull(readFilter);
         name = filterName;
@@ -67,6 +72,17 @@ public class CountingReadFilter implements ReadFilter {
         }
     }
 
+    /**
+     * Add the number of reads filtered by this filter (and, for compound filters, by each of its component filters)
+     * to counters in the given registry named "readFilters.&lt;filter name&gt;.rejected"
+     *
+     * @param metrics registry to record the counts in
+     */
+    public void recordFilteredCounts(final MetricsRegistry metrics) {
+        Utils.nonNull(metrics);
+        metrics.counter(METRICS_PREFIX + getName() + METRICS_SUFFIX).add(filteredCount);
+    }
+
     protected String getIndentString(final int indentLevel) {
         final StringBuilder bldr = new StringBuilder();
         IntStream.range(0, indentLevel).forEach(i -> bldr.append("  "));
@@ -141,6 +157,13 @@ public class CountingReadFilter implements ReadFilter {
                         + (rhs.getFilteredCount() > 0 ? indent + rhs.getSummaryLineForLevel(indentLevel + 1) : "");
             }
         }
+
+        @Override
+        public void recordFilteredCounts(final MetricsRegistry metrics) {
+            super.recordFilteredCounts(metrics);
+            lhs.recordFilteredCounts(metrics);
+            rhs.recordFilteredCounts(metrics);
+        }
     }
 
     /**
@@ -0,0 +1,36 @@
+package org.broadinstitute.hellbender.engine.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count of events (eg., records read, cache hits). Safe to update concurrently from multiple threads.
+ */
+public final class Counter {
+
+    private final LongAdder count = new LongAdder();
+
+    Counter() {}
+
+    /**
+     * Count one event
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * Count several events
+     *
+     * @param numEvents number of events to count
+     */
+    public void add( final long numEvents ) {
+        count.add(numEvents);
+    }
+
+    /**
+     * @return the number of events counted so far
+     */
+    public long getCount() {
+        return count.sum();
+    }
+}
@@ -0,0 +1,81 @@
+package org.broadinstitute.hellbender.engine.metrics;
+
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The distribution of a non-negative quantity (eg., a duration or a size), in buckets whose bounds are powers of 2.
+ * Recording a value costs a few atomic additions and no allocation, so histograms can be updated for every record
+ * of a traversal. Safe to update concurrently from multiple threads.
+ */
+public final class Histogram {
+
+    /**
+     * Bucket i counts values in [2^(i-1), 2^i), except that bucket 0 counts values of 0
+     */
+    private final LongAdder[] buckets = new LongAdder[Long.SIZE];
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    Histogram() {
+        for ( int i = 0; i < buckets.length; ++i ) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param value value to record (>= 0)
+     */
+    public void record( final long value ) {
+        Utils.validateArg(value >= 0, "histogram values must be >= 0");
+        buckets[Long.SIZE - Long.numberOfLeadingZeros(value)].increment();
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * @return the number of values recorded
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the sum of the values recorded
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return the largest value recorded, or 0 if none have been recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return the counts of the non-empty buckets, in increasing order, keyed by the (exclusive) upper bound of
+     *         each bucket. The bucket for values of 0 has an upper bound of 1.
+     */
+    public Map<Long, Long> getBucketCounts() {
+        final Map<Long, Long> counts = new LinkedHashMap<>();
+        for ( int i = 0; i < buckets.length; ++i ) {
+            final long bucketCount = buckets[i].sum();
+            if ( bucketCount > 0 ) {
+                // The upper bound of the last bucket does not fit in a long
+                counts.put(i < Long.SIZE - 1 ? 1L << i : Long.MAX_VALUE, bucketCount);
+            }
+        }
+        return counts;
+    }
+}
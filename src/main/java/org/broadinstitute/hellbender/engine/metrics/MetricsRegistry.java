@@ -0,0 +1,185 @@
+package org.broadinstitute.hellbender.engine.metrics;
+
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * A named collection of {@link Counter}s, {@link Timer}s and {@link Histogram}s, shared by the engine components
+ * involved in a run (data sources, walkers, read filters, etc.) so that a single report can describe where the
+ * time went.
+ *
+ * Metrics are created on first use, so components just ask for the metric they want by name, and hold on to it
+ * if they update it in an inner loop. By convention, names are dotted paths starting with the component that
+ * records them (eg., "reads.decode", "reference.cacheHits").
+ *
+ * All methods are safe to call concurrently from multiple threads.
+ */
+public final class MetricsRegistry {
+
+    private static final MetricsRegistry ENGINE_METRICS = new MetricsRegistry();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    private volatile long startTimeMillis = System.currentTimeMillis();
+
+    /**
+     * @return the registry shared by the engine components of the current run, which is reset at the start of
+     *         each tool invocation
+     */
+    public static MetricsRegistry getEngineMetrics() {
+        return ENGINE_METRICS;
+    }
+
+    /**
+     * @param name name of the counter
+     * @return the counter with the given name, creating it if necessary
+     */
+    public Counter counter( final String name ) {
+        Utils.nonNull(name);
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+
+    /**
+     * @param name name of the timer
+     * @return the timer with the given name, creating it if necessary
+     */
+    public Timer timer( final String name ) {
+        Utils.nonNull(name);
+        return timers.computeIfAbsent(name, n -> new Timer());
+    }
+
+    /**
+     * @param name name of the histogram
+     * @return the histogram with the given name, creating it if necessary
+     */
+    public Histogram histogram( final String name ) {
+        Utils.nonNull(name);
+        return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    /**
+     * Discard all metrics, and restart the clock used for the elapsed time in the report. Metrics obtained before
+     * this call are no longer part of this registry.
+     */
+    public void clear() {
+        counters.clear();
+        timers.clear();
+        histograms.clear();
+        startTimeMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Write all metrics to a file as a JSON object of the form:
+     *
+     * <pre>
+     * {
+     *   "elapsedSeconds": 12.5,
+     *   "counters": { "reads.records": 1000, ... },
+     *   "timers": { "traversal.apply": { "count": 1000, "totalSeconds": 3.2, "maxNanos": 51000, "histogram": { "1024": 12, ... } }, ... },
+     *   "histograms": { "...": { "count": 10, "sum": 500, "max": 80, "histogram": { ... } }, ... }
+     * }
+     * </pre>
+     *
+     * Metrics are sorted by name, and histogram buckets are keyed by their exclusive upper bound.
+     *
+     * @param reportFile file to write to
+     */
+    public void writeJsonReport( final File reportFile ) {
+        Utils.nonNull(reportFile);
+        try ( final PrintWriter writer = new PrintWriter(Files.newBufferedWriter(reportFile.toPath(), StandardCharsets.UTF_8)) ) {
+            writeJsonReport(writer);
+            if ( writer.checkError() ) {
+                throw new UserException.CouldNotCreateOutputFile(reportFile, "error writing metrics report");
+            }
+        }
+        catch ( final IOException e ) {
+            throw new UserException.CouldNotCreateOutputFile(reportFile, "error writing metrics report", e);
+        }
+    }
+
+    /**
+     * Write all metrics as a JSON object, in the format described in {@link #writeJsonReport(File)}
+     *
+     * @param out writer to write to (not closed by this method)
+     */
+    public void writeJsonReport( final Writer out ) {
+        Utils.nonNull(out);
+        final PrintWriter writer = out instanceof PrintWriter ? (PrintWriter)out : new PrintWriter(out);
+
+        writer.println("{");
+        writer.printf(Locale.ROOT, "  \"elapsedSeconds\": %.3f,%n", (System.currentTimeMillis() - startTimeMillis) / 1000.0);
+
+        writer.println("  \"counters\": {");
+        writeEntries(writer, counters, counter -> Long.toString(counter.getCount()));
+        writer.println("  },");
+
+        writer.println("  \"timers\": {");
+        writeEntries(writer, timers, timer -> String.format(Locale.ROOT, "{ \"count\": %d, \"totalSeconds\": %.6f, \"maxNanos\": %d, \"histogram\": %s }",
+                                                            timer.getCount(), timer.getTotalSeconds(), timer.getDurationsNanos().getMax(), bucketsToJson(timer.getDurationsNanos())));
+        writer.println("  },");
+
+        writer.println("  \"histograms\": {");
+        writeEntries(writer, histograms, histogram -> String.format(Locale.ROOT, "{ \"count\": %d, \"sum\": %d, \"max\": %d, \"histogram\": %s }",
+                                                                    histogram.getCount(), histogram.getSum(), histogram.getMax(), bucketsToJson(histogram)));
+        writer.println("  }");
+
+        writer.println("}");
+        writer.flush();
+    }
+
+    private static <M> void writeEntries( final PrintWriter writer, final Map<String, M> metrics, final Function<M, String> toJson ) {
+        final Map<String, M> sortedMetrics = new TreeMap<>(metrics);
+        int remaining = sortedMetrics.size();
+        for ( final Map.Entry<String, M> entry : sortedMetrics.entrySet() ) {
+            writer.printf("    %s: %s%s%n", quote(entry.getKey()), toJson.apply(entry.getValue()), --remaining > 0 ? "," : "");
+        }
+    }
+
+    private static String bucketsToJson( final Histogram histogram ) {
+        final StringBuilder json = new StringBuilder("{");
+        for ( final Map.Entry<Long, Long> bucket : histogram.getBucketCounts().entrySet() ) {
+            json.append(json.length() > 1 ? ", " : " ").append(quote(bucket.getKey().toString())).append(": ").append(bucket.getValue());
+        }
+        return json.append(json.length() > 1 ? " }" : "}").toString();
+    }
+
+    /**
+     * @return s as a JSON string literal
+     */
+    static String quote( final String s ) {
+        final StringBuilder quoted = new StringBuilder(s.length() + 2).append('"');
+        for ( final char c : s.toCharArray() ) {
+            switch ( c ) {
+                case '"':  quoted.append("\\\""); break;
+                case '\\': quoted.append("\\\\"); break;
+                case '\n': quoted.append("\\n"); break;
+                case '\r': quoted.append("\\r"); break;
+                case '\t': quoted.append("\\t"); break;
+                default:
+                    if ( c < 0x20 ) {
+                        quoted.append(String.format(Locale.ROOT, "\\u%04x", (int)c));
+                    }
+                    else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,50 @@
+package org.broadinstitute.hellbender.engine.metrics;
+
+import htsjdk.samtools.util.CloseableIterator;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.Iterator;
+
+/**
+ * Wraps an iterator to record the time spent retrieving each record (eg., reading and decoding it from disk)
+ * in a {@link Timer}. The number of records retrieved is the count of the timer.
+ *
+ * Closing this iterator closes the wrapped iterator if it is closeable.
+ *
+ * @param <T> type of record
+ */
+public final class TimedIterator<T> implements CloseableIterator<T> {
+
+    private final Iterator<T> iterator;
+
+    private final Timer timer;
+
+    /**
+     * @param iterator iterator to wrap
+     * @param timer timer to record the time spent in each call to {@link #next} in
+     */
+    public TimedIterator( final Iterator<T> iterator, final Timer timer ) {
+        this.iterator = Utils.nonNull(iterator);
+        this.timer = Utils.nonNull(timer);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return iterator.hasNext();
+    }
+
+    @Override
+    public T next() {
+        final long start = System.nanoTime();
+        final T record = iterator.next();
+        timer.recordSince(start);
+        return record;
+    }
+
+    @Override
+    public void close() {
+        if ( iterator instanceof CloseableIterator ) {
+            ((CloseableIterator<T>)iterator).close();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.broadinstitute.hellbender.engine.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accumulates the time spent in some operation (eg., calls to a tool's apply() method), along with the
+ * distribution of the durations of individual calls. Safe to update concurrently from multiple threads,
+ * in which case the total is the sum of the time spent on all threads.
+ *
+ * Typical usage:
+ *
+ * <pre>
+ *     final long start = System.nanoTime();
+ *     doSomething();
+ *     timer.recordSince(start);
+ * </pre>
+ */
+public final class Timer {
+
+    private final Histogram durationsNanos = new Histogram();
+
+    Timer() {}
+
+    /**
+     * Record one call that started at startNanos (as returned by {@link System#nanoTime}) and has just finished
+     *
+     * @param startNanos start time of the call
+     */
+    public void recordSince( final long startNanos ) {
+        recordNanos(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Record one call that took the given time
+     *
+     * @param elapsedNanos duration of the call in nanoseconds (negative durations, which can only be due to
+     *                     clock adjustments, are recorded as 0)
+     */
+    public void recordNanos( final long elapsedNanos ) {
+        durationsNanos.record(Math.max(0, elapsedNanos));
+    }
+
+    /**
+     * @return the number of calls recorded
+     */
+    public long getCount() {
+        return durationsNanos.getCount();
+    }
+
+    /**
+     * @return the total time spent in all calls recorded, in nanoseconds
+     */
+    public long getTotalNanos() {
+        return durationsNanos.getSum();
+    }
+
+    /**
+     * @return the total time spent in all calls recorded, in seconds
+     */
+    public double getTotalSeconds() {
+        return getTotalNanos() / (double)TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * @return the distribution of the durations of the calls recorded, in nanoseconds
+     */
+    public Histogram getDurationsNanos() {
+        return durationsNanos;
+    }
+}
@@ -30,11 +30,13 @@ public class AddContextDataToReadSpark {
         // TODO: this static method should not be filtering the unmapped reads.  To be addressed in another issue.
         JavaRDD<GATKRead> mappedReads = reads.filter(read -> ReadFilterLibrary.MAPPED.test(read));
         JavaPairRDD<GATKRead, Tuple2<Iterable<Variant>, ReferenceBases>> withVariantsWithRef;
-        if (joinStrategy.equals(JoinStrategy.BROADCAST)) {
+        if (joinStrategy.equals(JoinStrategy.BROADCAST) || joinStrategy.equals(JoinStrategy.BROADCAST_WHOLE_REFERENCE)) {
             // Join Reads and Variants
             JavaPairRDD<GATKRead, Iterable<Variant>> withVariants = BroadcastJoinReadsWithVariants.join(mappedReads, variants);
             // Join Reads with ReferenceBases
-            withVariantsWithRef = BroadcastJoinReadsWithRefBases.addBases(referenceDataflowSource, withVariants);
+            ReferenceMultiSource referenceSource = joinStrategy.equals(JoinStrategy.BROADCAST_WHOLE_REFERENCE) ?
+                    referenceDataflowSource.loadIntoMemory(null) : referenceDataflowSource;
+            withVariantsWithRef = BroadcastJoinReadsWithRefBases.addBases(referenceSource, withVariants);
         } else if (joinStrategy.equals(JoinStrategy.SHUFFLE)) {
             // Join Reads and Variants
             JavaPairRDD<GATKRead, Iterable<Variant>> withVariants = ShuffleJoinReadsWithVariants.join(mappedReads, variants);
@@ -0,0 +1,129 @@
+package org.broadinstitute.hellbender.engine.spark;
+
+import com.google.cloud.dataflow.sdk.transforms.SerializableFunction;
+import org.broadinstitute.hellbender.engine.ReferenceShard;
+import org.broadinstitute.hellbender.engine.datasources.ReferenceMultiSource;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.reference.ReferenceBases;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Pairs each element of a partition (a read, or something keyed by a read) with the reference bases of its read's
+ * window, keeping the elements in order.
+ *
+ * Rather than querying the reference once per read, runs of consecutive reads whose windows are close together on the
+ * same contig (as they are in coordinate-sorted partitions) are grouped, the bases spanning each group are fetched with
+ * a single query, and each read gets the subset of them for its own window. Reads that aren't sorted end up in groups
+ * of their own, which cost a query each, as before.
+ *
+ * Elements are consumed a group at a time, so the partition is never held in memory all at once.
+ */
+final class BatchedReferenceBasesIterator<E, R> implements Iterator<R> {
+
+    /**
+     * Groups of reads span at most this many reference bases, which bounds how many reads are held in memory at once
+     */
+    static final int MAX_BATCH_SPAN = ReferenceShard.REFERENCE_SHARD_SIZE;
+
+    private final ReferenceMultiSource referenceSource;
+    private final SerializableFunction<GATKRead, SimpleInterval> windowFunction;
+    private final Iterator<E> elements;
+    private final Function<E, GATKRead> readOf;
+    private final BiFunction<E, ReferenceBases, R> pairWithBases;
+
+    // The element (and its window) that didn't fit into the last group, and starts the next one
+    private E pendingElement;
+    private SimpleInterval pendingWindow;
+
+    private Iterator<R> currentBatch = Collections.emptyIterator();
+
+    /**
+     * @param referenceSource the source of the reference bases, and of the reference window function
+     * @param elements the elements to pair with reference bases
+     * @param readOf gives the read of each element, whose window is the reference bases it is paired with
+     * @param pairWithBases pairs an element with its reference bases
+     */
+    BatchedReferenceBasesIterator( final ReferenceMultiSource referenceSource, final Iterator<E> elements,
+                                   final Function<E, GATKRead> readOf, final BiFunction<E, ReferenceBases, R> pairWithBases ) {
+        this.referenceSource = Utils.nonNull(referenceSource);
+        this.windowFunction = referenceSource.getReferenceWindowFunction();
+        this.elements = Utils.nonNull(elements);
+        this.readOf = Utils.nonNull(readOf);
+        this.pairWithBases = Utils.nonNull(pairWithBases);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while ( ! currentBatch.hasNext() && (pendingWindow != null || elements.hasNext()) ) {
+            currentBatch = nextBatch();
+        }
+        return currentBatch.hasNext();
+    }
+
+    @Override
+    public R next() {
+        if ( ! hasNext() ) {
+            throw new NoSuchElementException("No more elements");
+        }
+        return currentBatch.next();
+    }
+
+    private Iterator<R> nextBatch() {
+        final List<E> batchElements = new ArrayList<>();
+        final List<SimpleInterval> batchWindows = new ArrayList<>();
+        if ( pendingWindow == null ) {
+            pendingElement = elements.next();
+            pendingWindow = windowFunction.apply(readOf.apply(pendingElement));
+        }
+        batchElements.add(pendingElement);
+        batchWindows.add(pendingWindow);
+        final String contig = pendingWindow.getContig();
+        int start = pendingWindow.getStart();
+        int end = pendingWindow.getEnd();
+        pendingElement = null;
+        pendingWindow = null;
+
+        while ( elements.hasNext() ) {
+            final E element = elements.next();
+            final SimpleInterval window = windowFunction.apply(readOf.apply(element));
+            final int newStart = Math.min(start, window.getStart());
+            final int newEnd = Math.max(end, window.getEnd());
+            if ( ! window.getContig().equals(contig) || newEnd - newStart + 1 > MAX_BATCH_SPAN ) {
+                pendingElement = element;
+                pendingWindow = window;
+                break;
+            }
+            batchElements.add(element);
+            batchWindows.add(window);
+            start = newStart;
+            end = newEnd;
+        }
+
+        final ReferenceBases bases;
+        try {
+            bases = referenceSource.getReferenceBases(null, new SimpleInterval(contig, start, end));
+        } catch ( IOException e ) {
+            throw new GATKException("Unable to read the reference", e);
+        }
+
+        final List<R> batch = new ArrayList<>(batchElements.size());
+        for ( int i = 0; i < batchElements.size(); ++i ) {
+            final SimpleInterval window = batchWindows.get(i);
+            // A read whose window spans the whole group (as when it is alone in it) shares the bases, rather than a copy
+            final ReferenceBases readBases = window.equals(bases.getInterval()) ? bases : bases.getSubset(window);
+            batch.add(pairWithBases.apply(batchElements.get(i), readBases));
+        }
+        return batch.iterator();
+    }
+}
@@ -5,7 +5,6 @@ import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.broadcast.Broadcast;
 import org.broadinstitute.hellbender.engine.datasources.ReferenceMultiSource;
-import org.broadinstitute.hellbender.utils.SimpleInterval;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.reference.ReferenceBases;
 import scala.Tuple2;
@@ -13,10 +12,11 @@ import scala.Tuple2;
 /**
  * Joins an RDD of GATKReads to reference data using a broadcast strategy.
  *
- * The ReferenceDataflowSource is broadcast using Spark's Broadcast variable mechanism.  The reads are then mapped
- * over and a reference query is executed on each read.  This makes sense for ReferenceDataflowSource implementations
- * that contain the reference data in memory (e.g., ReferenceTwoBitSource), but will likely be much slower for
- * implementations that have to query other resources for the reference sequences.
+ * The ReferenceDataflowSource is broadcast using Spark's Broadcast variable mechanism.  The reads of each partition
+ * are then mapped over, and a reference query is executed for each run of nearby reads (see
+ * {@link BatchedReferenceBasesIterator}), so coordinate-sorted partitions make few queries.  This makes sense for
+ * ReferenceDataflowSource implementations that contain the reference data in memory (e.g., ReferenceTwoBitSource),
+ * but will likely be much slower for implementations that have to query other resources for the reference sequences.
  */
 public class BroadcastJoinReadsWithRefBases {
 
@@ -31,10 +31,8 @@ public class BroadcastJoinReadsWithRefBases {
                                                                  final JavaRDD<GATKRead> reads) {
         JavaSparkContext ctx = new JavaSparkContext(reads.context());
         Broadcast<ReferenceMultiSource> bReferenceSource = ctx.broadcast(referenceDataflowSource);
-        return reads.mapToPair(read -> {
-            SimpleInterval interval = bReferenceSource.getValue().getReferenceWindowFunction().apply(read);
-            return new Tuple2<>(read, bReferenceSource.getValue().getReferenceBases(null, interval));
-        });
+        return reads.mapPartitionsToPair(readIterator -> () -> new BatchedReferenceBasesIterator<>(
+                bReferenceSource.getValue(), readIterator, read -> read, Tuple2::new));
     }
 
     /**
@@ -48,9 +46,7 @@ public class BroadcastJoinReadsWithRefBases {
                                                                                 final JavaPairRDD<GATKRead, T> keyedByRead) {
         JavaSparkContext ctx = new JavaSparkContext(keyedByRead.context());
         Broadcast<ReferenceMultiSource> bReferenceSource = ctx.broadcast(referenceDataflowSource);
-        return keyedByRead.mapToPair(pair -> {
-            SimpleInterval interval = bReferenceSource.getValue().getReferenceWindowFunction().apply(pair._1());
-            return new Tuple2<>(pair._1(), new Tuple2<>(pair._2(), bReferenceSource.getValue().getReferenceBases(null, interval)));
-        });
+        return keyedByRead.mapPartitionsToPair(pairIterator -> () -> new BatchedReferenceBasesIterator<>(
+                bReferenceSource.getValue(), pairIterator, Tuple2::_1, (pair, bases) -> new Tuple2<>(pair._1(), new Tuple2<>(pair._2(), bases))));
     }
 }
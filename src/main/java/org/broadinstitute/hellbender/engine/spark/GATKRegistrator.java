@@ -5,12 +5,14 @@ import com.google.api.services.genomics.model.Read;
 import de.javakaffee.kryoserializers.UnmodifiableCollectionsSerializer;
 import org.apache.spark.serializer.KryoRegistrator;
 import org.bdgenomics.adam.serialization.ADAMKryoRegistrator;
+import org.broadinstitute.hellbender.utils.read.SAMRecordToGATKReadAdapter;
 
 import java.util.Collections;
 
 /**
  * GATKRegistrator registers Serializers for our project. We need a JsonSerializer for the Google Genomics classes
- * and UnmodifiableCollectionsSerializer from a bug in the version of Kryo we're on.
+ * and UnmodifiableCollectionsSerializer from a bug in the version of Kryo we're on, and SAMRecordToGATKReadAdapterSerializer
+ * keeps headers out of shuffled reads.
  */
 public class GATKRegistrator implements KryoRegistrator {
 
@@ -35,9 +37,9 @@ public class GATKRegistrator implements KryoRegistrator {
 
         kryo.register(Collections.unmodifiableList(Collections.EMPTY_LIST).getClass(), new UnmodifiableCollectionsSerializer());
 
-        // SAMRecordToGATKReadAdapterSerializer is not currently being used until we are sure that headers are being
-        // properly handled (https://github.com/broadinstitute/hellbender/issues/900)
-        //kryo.register(SAMRecordToGATKReadAdapter.class, new SAMRecordToGATKReadAdapterSerializer());
+        // Reads are shuffled without their headers, which tools get from a broadcast instead
+        // (https://github.com/broadinstitute/hellbender/issues/900)
+        kryo.register(SAMRecordToGATKReadAdapter.class, new SAMRecordToGATKReadAdapterSerializer());
 
         // register the ADAM data types using Avro serialization, including:
         //     AlignmentRecord
@@ -9,6 +9,13 @@ public enum JoinStrategy {
      */
     BROADCAST,
 
+    /**
+     * Like {@link #BROADCAST}, but the whole reference is first loaded into memory, packed 2 bits per base, so that the
+     * workers look up the reference bases of each read without any I/O. This needs enough memory on each worker to
+     * hold the reference (about 800MB for the human genome).
+     */
+    BROADCAST_WHOLE_REFERENCE,
+
     /**
      * Use a shuffle join strategy, where both sides of join are shuffled across the workers.
      */
@@ -4,94 +4,41 @@ import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
-import htsjdk.samtools.*;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecordSparkCodec;
+import org.apache.spark.api.java.JavaRDD;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.ReadUtils;
 import org.broadinstitute.hellbender.utils.read.SAMRecordToGATKReadAdapter;
 
-public class SAMRecordToGATKReadAdapterSerializer extends Serializer<SAMRecordToGATKReadAdapter> {
-
-    private BAMRecordCodec lazyCodec = new BAMRecordCodec(null, new LazyBAMRecordFactory());
+/**
+ * Serializes SAMRecord-backed reads compactly (see {@link SAMRecordSparkCodec}), leaving out the header, which Kryo
+ * would otherwise write out in full with every read. Deserialized reads have no header, so transforms that shuffle
+ * reads and hand them on must put it back, with {@link #restoreHeaders} or {@link ReadUtils#restoreHeaderIfNecessary}.
+ */
+public final class SAMRecordToGATKReadAdapterSerializer extends Serializer<SAMRecordToGATKReadAdapter> {
 
     @Override
     public void write(Kryo kryo, Output output, SAMRecordToGATKReadAdapter adapter) {
-        SAMRecord record = adapter.getSamRecord();
-        // serialize reference names to avoid having to have a header at read time
-        output.writeString(record.getReferenceName());
-        output.writeString(record.getMateReferenceName());
-        lazyCodec.setOutputStream(output);
-        lazyCodec.encode(record);
-
-        // clear indexing bin after encoding to ensure all SAMRecords compare properly
-        record.setFlags(record.getFlags());
+        SAMRecordSparkCodec.encode(adapter.getSamRecord(), output);
     }
 
     @Override
     public SAMRecordToGATKReadAdapter read(Kryo kryo, Input input, Class<SAMRecordToGATKReadAdapter> type) {
-        final String referenceName = input.readString();
-        final String mateReferenceName = input.readString();
-        lazyCodec.setInputStream(input);
-        final SAMRecord record = lazyCodec.decode();
-
-        // clear indexing bin after decoding to ensure all SAMRecords compare properly
-        record.setFlags(record.getFlags());
-
-        final int referenceIndex = record.getReferenceIndex();
-        final int mateReferenceIndex = record.getMateReferenceIndex();
-        record.setReferenceName(referenceName);
-        record.setMateReferenceName(mateReferenceName);
-
-        // set reference indexes again since setting reference names without a header will unset indexes
-        record.setReferenceIndex(referenceIndex);
-        record.setMateReferenceIndex(mateReferenceIndex);
-
-        return new SAMRecordToGATKReadAdapter(record);
+        return new SAMRecordToGATKReadAdapter(SAMRecordSparkCodec.decode(input));
     }
 
-
-    static class LazyBAMRecordFactory implements SAMRecordFactory {
-        @Override public SAMRecord createSAMRecord(SAMFileHeader hdr) {
-            throw new UnsupportedOperationException(
-                    "LazyBAMRecordFactory can only create BAM records");
-        }
-
-        @Override public BAMRecord createBAMRecord(
-                SAMFileHeader hdr,
-                int referenceSequenceIndex, int alignmentStart,
-                short readNameLength, short mappingQuality,
-                int indexingBin, int cigarLen, int flags, int readLen,
-                int mateReferenceSequenceIndex, int mateAlignmentStart,
-                int insertSize, byte[] variableLengthBlock)
-        {
-            return new LazyBAMRecord(
-                    hdr, referenceSequenceIndex, alignmentStart, readNameLength,
-                    mappingQuality, indexingBin, cigarLen, flags, readLen,
-                    mateReferenceSequenceIndex, mateAlignmentStart, insertSize,
-                    variableLengthBlock);
-        }
-    }
-
-    static class LazyBAMRecord extends BAMRecord {
-        private static final long serialVersionUID = 1L;
-
-        public LazyBAMRecord(
-                SAMFileHeader hdr, int referenceID, int coordinate, short readNameLength,
-                short mappingQuality, int indexingBin, int cigarLen, int flags,
-                int readLen, int mateReferenceID, int mateCoordinate, int insertSize,
-                byte[] restOfData)
-        {
-            super(
-                    hdr, referenceID, coordinate, readNameLength, mappingQuality,
-                    indexingBin, cigarLen, flags, readLen, mateReferenceID,
-                    mateCoordinate, insertSize, restOfData);
-        }
-
-        @Override
-        public void setReferenceIndex(final int referenceIndex) {
-            mReferenceIndex = referenceIndex;
-        }
-
-        @Override
-        public void setMateReferenceIndex(final int referenceIndex) {
-            mMateReferenceIndex = referenceIndex;
-        }
+    /**
+     * Put the header back on reads that have come through a shuffle without it.
+     *
+     * @param reads reads that may have been shuffled
+     * @param header header to store in each headerless SAMRecord-backed read
+     * @return reads, with their headers restored
+     */
+    public static JavaRDD<GATKRead> restoreHeaders(final JavaRDD<GATKRead> reads, final SAMFileHeader header) {
+        return reads.map(read -> {
+            ReadUtils.restoreHeaderIfNecessary(read, header);
+            return read;
+        });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,224 @@
+package org.broadinstitute.hellbender.engine.spark.datasources;
+
+import com.google.common.io.ByteStreams;
+import htsjdk.samtools.util.BinaryCodec;
+import htsjdk.samtools.util.BlockCompressedFilePointerUtil;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Merges the indices of the parts of a BAM file written by {@link IndexingBAMRecordWriter} (without a header)
+ * into the indices of the BAM file made by concatenating the parts behind a header. Each part is indexed as if it
+ * started {@link IndexingBAMRecordWriter#PART_START_OFFSET} bytes into the file, so merging shifts all of the file
+ * offsets in its index to where it really starts. The reads must be in coordinate order across all of the parts.
+ *
+ * BAM indices are merged bin by bin and window by window (see the SAM specification for the format), and
+ * Hadoop-BAM splitting indices, being lists of offsets of reads followed by the size of the file, are concatenated.
+ */
+public final class BAMIndexMerger {
+
+    private static final byte[] BAI_MAGIC = "BAI\1".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The pseudo-bin holding the first and last file offsets of the reads on a reference, and their counts
+     */
+    private static final int METADATA_BIN = 37450;
+
+    private BAMIndexMerger() {}
+
+    /**
+     * @param partIndices BAM index of each part, in file order
+     * @param partStarts byte offset in the merged BAM file at which each part starts
+     * @param out stream to write the merged BAM index to
+     */
+    public static void mergeBAMIndices( final List<InputStream> partIndices, final long[] partStarts, final OutputStream out ) throws IOException {
+        Utils.nonNull(partIndices);
+        Utils.nonNull(partStarts);
+        Utils.validateArg(partIndices.size() == partStarts.length, "there must be a start for each part");
+        Utils.validateArg(!partIndices.isEmpty(), "there must be at least one part");
+
+        ReferenceIndex[] merged = null;
+        long noCoordinateCount = 0;
+        for ( int part = 0; part < partStarts.length; ++part ) {
+            final ByteBuffer buffer = ByteBuffer.wrap(ByteStreams.toByteArray(partIndices.get(part))).order(ByteOrder.LITTLE_ENDIAN);
+            final long shift = (partStarts[part] - IndexingBAMRecordWriter.PART_START_OFFSET) << 16;
+
+            final byte[] magic = new byte[BAI_MAGIC.length];
+            buffer.get(magic);
+            if ( ! Arrays.equals(magic, BAI_MAGIC) ) {
+                throw new GATKException("Invalid BAM index for part " + part);
+            }
+            final int numReferences = buffer.getInt();
+            if ( merged == null ) {
+                merged = new ReferenceIndex[numReferences];
+                for ( int i = 0; i < numReferences; ++i ) {
+                    merged[i] = new ReferenceIndex();
+                }
+            }
+            else if ( numReferences != merged.length ) {
+                throw new GATKException("BAM index for part " + part + " has " + numReferences + " references rather than " + merged.length);
+            }
+
+            for ( final ReferenceIndex reference : merged ) {
+                reference.add(buffer, shift);
+            }
+            // The count of reads with no coordinate is optional
+            if ( buffer.remaining() >= Long.BYTES ) {
+                noCoordinateCount += buffer.getLong();
+            }
+        }
+
+        final BinaryCodec codec = new BinaryCodec(out);
+        codec.writeBytes(BAI_MAGIC);
+        codec.writeInt(merged.length);
+        for ( final ReferenceIndex reference : merged ) {
+            reference.write(codec);
+        }
+        codec.writeLong(noCoordinateCount);
+        codec.getOutputStream().flush();
+    }
+
+    /**
+     * @param partIndices splitting index of each part (just the offsets of its reads), in file order
+     * @param partStarts byte offset in the merged BAM file at which each part starts
+     * @param firstReadStart byte offset in the merged BAM file at which the first read starts (ie., the end of the header)
+     * @param fileSize size of the merged BAM file
+     * @param out stream to write the merged splitting index to
+     */
+    public static void mergeSplittingIndices( final List<InputStream> partIndices, final long[] partStarts, final long firstReadStart,
+                                              final long fileSize, final OutputStream out ) throws IOException {
+        Utils.nonNull(partIndices);
+        Utils.nonNull(partStarts);
+        Utils.validateArg(partIndices.size() == partStarts.length, "there must be a start for each part");
+
+        final DataOutputStream dataOut = new DataOutputStream(out);
+        long last = firstReadStart << 16;
+        dataOut.writeLong(last);
+        for ( int part = 0; part < partStarts.length; ++part ) {
+            final long shift = (partStarts[part] - IndexingBAMRecordWriter.PART_START_OFFSET) << 16;
+            final DataInputStream in = new DataInputStream(partIndices.get(part));
+            while ( true ) {
+                final long offset;
+                try {
+                    offset = in.readLong() + shift;
+                }
+                catch ( final EOFException e ) {
+                    break;
+                }
+                if ( offset != last ) {
+                    dataOut.writeLong(offset);
+                    last = offset;
+                }
+            }
+        }
+        dataOut.writeLong(fileSize << 16);
+        dataOut.flush();
+    }
+
+    /**
+     * The index of the reads on one reference, as merged so far
+     */
+    private static final class ReferenceIndex {
+        private final Map<Integer, List<long[]>> chunksByBin = new TreeMap<>();
+        private long[] linearIndex = new long[0];
+
+        private boolean hasMetadata = false;
+        private long firstOffset = -1;
+        private long lastOffset = 0;
+        private long alignedCount = 0;
+        private long unalignedCount = 0;
+
+        /**
+         * Adds the index of the next part for this reference, read from buffer, with its offsets shifted by shift
+         */
+        void add( final ByteBuffer buffer, final long shift ) {
+            final int numBins = buffer.getInt();
+            for ( int i = 0; i < numBins; ++i ) {
+                final int bin = buffer.getInt();
+                final int numChunks = buffer.getInt();
+                if ( bin == METADATA_BIN ) {
+                    final long partFirstOffset = buffer.getLong() + shift;
+                    final long partLastOffset = buffer.getLong() + shift;
+                    if ( ! hasMetadata ) {
+                        firstOffset = partFirstOffset;
+                    }
+                    lastOffset = partLastOffset;
+                    alignedCount += buffer.getLong();
+                    unalignedCount += buffer.getLong();
+                    hasMetadata = true;
+                    continue;
+                }
+                final List<long[]> chunks = chunksByBin.computeIfAbsent(bin, b -> new ArrayList<>());
+                for ( int j = 0; j < numChunks; ++j ) {
+                    final long chunkStart = buffer.getLong() + shift;
+                    final long chunkEnd = buffer.getLong() + shift;
+                    // As htsjdk does when indexing, extend the last chunk of the bin rather than start a new one
+                    // next to it (which happens where one part ends and the next starts)
+                    final long[] lastChunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+                    if ( lastChunk != null && BlockCompressedFilePointerUtil.areInSameOrAdjacentBlocks(lastChunk[1], chunkStart) ) {
+                        lastChunk[1] = chunkEnd;
+                    }
+                    else {
+                        chunks.add(new long[]{ chunkStart, chunkEnd });
+                    }
+                }
+            }
+
+            final int numWindows = buffer.getInt();
+            if ( numWindows > linearIndex.length ) {
+                linearIndex = Arrays.copyOf(linearIndex, numWindows);
+            }
+            for ( int window = 0; window < numWindows; ++window ) {
+                final long offset = buffer.getLong();
+                // Each window takes the lowest offset of a read overlapping it, and a zero offset means that the
+                // part has no such read
+                if ( offset != 0 && (linearIndex[window] == 0 || offset + shift < linearIndex[window]) ) {
+                    linearIndex[window] = offset + shift;
+                }
+            }
+        }
+
+        void write( final BinaryCodec codec ) {
+            codec.writeInt(chunksByBin.size() + (hasMetadata ? 1 : 0));
+            for ( final Map.Entry<Integer, List<long[]>> bin : chunksByBin.entrySet() ) {
+                codec.writeInt(bin.getKey());
+                codec.writeInt(bin.getValue().size());
+                for ( final long[] chunk : bin.getValue() ) {
+                    codec.writeLong(chunk[0]);
+                    codec.writeLong(chunk[1]);
+                }
+            }
+            if ( hasMetadata ) {
+                codec.writeInt(METADATA_BIN);
+                codec.writeInt(2);
+                codec.writeLong(firstOffset);
+                codec.writeLong(lastOffset);
+                codec.writeLong(alignedCount);
+                codec.writeLong(unalignedCount);
+            }
+
+            // As htsjdk does, give windows without reads the offset of the window before them
+            codec.writeInt(linearIndex.length);
+            long previous = 0;
+            for ( final long offset : linearIndex ) {
+                previous = offset != 0 ? offset : previous;
+                codec.writeLong(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package org.broadinstitute.hellbender.engine.spark.datasources;
+
+import htsjdk.samtools.BAMIndex;
+import htsjdk.samtools.BAMIndexSpanUtils;
+import htsjdk.samtools.BamFileIoUtils;
+import htsjdk.samtools.Chunk;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.util.BlockCompressedFilePointerUtil;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.seqdoop.hadoop_bam.BAMInputFormat;
+import org.seqdoop.hadoop_bam.FileVirtualSplit;
+import org.seqdoop.hadoop_bam.util.SAMHeaderReader;
+import org.seqdoop.hadoop_bam.util.WrapSeekable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * A {@link BAMInputFormat} that uses the BAM index to read only the parts of each file that may hold reads
+ * overlapping the intervals set with {@link #setIntervals}, rather than the whole file.
+ *
+ * The chunks of the file given by the index for every interval are merged (so that no read is loaded twice)
+ * and turned into splits of at most about mapreduce.input.fileinputformat.split.maxsize compressed bytes,
+ * cutting large chunks at the read starts recorded in the linear index. The splits may still hold some reads
+ * that don't overlap the intervals, which callers must filter out.
+ *
+ * Files without an index are read in full, as are all files if no intervals were set.
+ */
+public class IndexedBAMInputFormat extends BAMInputFormat {
+    private static final Logger logger = LogManager.getLogger(IndexedBAMInputFormat.class);
+
+    public static final String INTERVALS_PROPERTY = "hellbender.bam.intervals";
+
+    /**
+     * Chunks separated by no more than this many compressed bytes (the maximum size of a BGZF block)
+     * are read as one, since reading them separately would mostly read the same blocks again.
+     */
+    static final long MAX_CHUNK_GAP = 65536;
+
+    /**
+     * Restricts the splits to the parts of each file holding reads overlapping intervals
+     */
+    public static void setIntervals( final Configuration conf, final List<SimpleInterval> intervals ) {
+        Utils.nonNull(conf);
+        Utils.nonNull(intervals);
+        // Contig names can't contain whitespace, so tabs and newlines are safe separators
+        conf.set(INTERVALS_PROPERTY, intervals.stream()
+                .map(interval -> interval.getContig() + "\t" + interval.getStart() + "\t" + interval.getEnd())
+                .collect(Collectors.joining("\n")));
+    }
+
+    /**
+     * @return the intervals set with {@link #setIntervals}, or null if there are none
+     */
+    static List<SimpleInterval> getIntervals( final Configuration conf ) {
+        final String value = conf.get(INTERVALS_PROPERTY);
+        if ( value == null || value.isEmpty() ) {
+            return null;
+        }
+        final List<SimpleInterval> intervals = new ArrayList<>();
+        for ( final String line : value.split("\n") ) {
+            final String[] fields = line.split("\t");
+            intervals.add(new SimpleInterval(fields[0], Integer.parseInt(fields[1]), Integer.parseInt(fields[2])));
+        }
+        return intervals;
+    }
+
+    @Override
+    public List<InputSplit> getSplits( final JobContext job ) throws IOException {
+        final Configuration conf = job.getConfiguration();
+        final List<SimpleInterval> intervals = getIntervals(conf);
+        if ( intervals == null ) {
+            return super.getSplits(job);
+        }
+
+        final List<FileStatus> files = listStatus(job);
+        final List<Path> indices = new ArrayList<>(files.size());
+        for ( final FileStatus file : files ) {
+            final Path index = findIndex(file.getPath(), conf);
+            if ( index == null ) {
+                logger.warn("No index found for " + file.getPath() + ", so all of it will be read");
+                return super.getSplits(job);
+            }
+            indices.add(index);
+        }
+
+        final long maxSplitSize = getMaxSplitSize(job);
+        final List<InputSplit> splits = new ArrayList<>();
+        for ( int i = 0; i < files.size(); ++i ) {
+            splits.addAll(getSplits(files.get(i), indices.get(i), intervals, maxSplitSize, conf));
+        }
+        return splits;
+    }
+
+    /**
+     * @return the index of bam (either foo.bam.bai or foo.bai), or null if there is none
+     */
+    private static Path findIndex( final Path bam, final Configuration conf ) throws IOException {
+        final FileSystem fs = bam.getFileSystem(conf);
+        final Path index = bam.suffix(BAMIndex.BAMIndexSuffix);
+        if ( fs.exists(index) ) {
+            return index;
+        }
+        final String name = bam.getName();
+        if ( name.endsWith(BamFileIoUtils.BAM_FILE_EXTENSION) ) {
+            final Path siblingIndex = new Path(bam.getParent(), name.substring(0, name.length() - BamFileIoUtils.BAM_FILE_EXTENSION.length()) + BAMIndex.BAMIndexSuffix);
+            if ( fs.exists(siblingIndex) ) {
+                return siblingIndex;
+            }
+        }
+        return null;
+    }
+
+    private static List<FileVirtualSplit> getSplits( final FileStatus file, final Path indexPath, final List<SimpleInterval> intervals,
+                                                     final long maxSplitSize, final Configuration conf ) throws IOException {
+        final Path path = file.getPath();
+        final SAMSequenceDictionary dictionary = SAMHeaderReader.readSAMHeaderFrom(path, conf).getSequenceDictionary();
+
+        final List<Chunk> chunks = new ArrayList<>();
+        final TreeSet<Long> readStarts = new TreeSet<>();
+        try ( final WrapSeekable<?> indexStream = WrapSeekable.openPath(conf, indexPath) ) {
+            final BAMIndex index = BAMIndexSpanUtils.openIndex(indexStream, dictionary);
+            try {
+                for ( final SimpleInterval interval : intervals ) {
+                    final int contig = dictionary.getSequenceIndex(interval.getContig());
+                    if ( contig < 0 ) {
+                        continue;
+                    }
+                    chunks.addAll(BAMIndexSpanUtils.getChunksOverlapping(index, contig, interval.getStart(), interval.getEnd()));
+                    for ( final long offset : BAMIndexSpanUtils.getLinearIndexOffsets(index, contig, interval.getStart(), interval.getEnd()) ) {
+                        readStarts.add(offset);
+                    }
+                }
+            }
+            finally {
+                index.close();
+            }
+        }
+
+        final FileSystem fs = path.getFileSystem(conf);
+        final List<FileVirtualSplit> splits = new ArrayList<>();
+        for ( final Chunk span : getSpans(chunks, readStarts, maxSplitSize) ) {
+            final BlockLocation[] blocks = fs.getFileBlockLocations(file, BlockCompressedFilePointerUtil.getBlockAddress(span.getChunkStart()), 1);
+            final String[] hosts = blocks.length > 0 ? blocks[0].getHosts() : new String[0];
+            splits.add(new FileVirtualSplit(path, span.getChunkStart(), span.getChunkEnd(), hosts));
+        }
+        return splits;
+    }
+
+    /**
+     * Turns the chunks of a file into the (virtual file offset) spans to read as splits, which don't overlap
+     * and cover all of the chunks. Nearby chunks are read together, and the spans are cut at read starts
+     * once they exceed maxSplitSize compressed bytes.
+     *
+     * @param chunks chunks of the file to read, in any order and possibly overlapping
+     * @param readStarts virtual file offsets at which reads start
+     * @param maxSplitSize compressed bytes after which to cut a span at the next read start
+     * @return spans to read, in file order
+     */
+    static List<Chunk> getSpans( final List<Chunk> chunks, final TreeSet<Long> readStarts, final long maxSplitSize ) {
+        final List<Chunk> spans = new ArrayList<>();
+        for ( final Chunk chunk : mergeNearbyChunks(Chunk.optimizeChunkList(chunks, 0)) ) {
+            long start = chunk.getChunkStart();
+            for ( final long readStart : readStarts.subSet(chunk.getChunkStart(), false, chunk.getChunkEnd(), false) ) {
+                if ( BlockCompressedFilePointerUtil.getBlockAddress(readStart) - BlockCompressedFilePointerUtil.getBlockAddress(start) >= maxSplitSize ) {
+                    spans.add(new Chunk(start, readStart));
+                    start = readStart;
+                }
+            }
+            spans.add(new Chunk(start, chunk.getChunkEnd()));
+        }
+        return spans;
+    }
+
+    private static List<Chunk> mergeNearbyChunks( final List<Chunk> sortedChunks ) {
+        final List<Chunk> merged = new ArrayList<>();
+        Chunk last = null;
+        for ( final Chunk chunk : sortedChunks ) {
+            if ( last != null && BlockCompressedFilePointerUtil.getBlockAddress(chunk.getChunkStart()) - BlockCompressedFilePointerUtil.getBlockAddress(last.getChunkEnd()) <= MAX_CHUNK_GAP ) {
+                last = new Chunk(last.getChunkStart(), chunk.getChunkEnd());
+                merged.set(merged.size() - 1, last);
+            }
+            else {
+                last = chunk;
+                merged.add(last);
+            }
+        }
+        return merged;
+    }
+}
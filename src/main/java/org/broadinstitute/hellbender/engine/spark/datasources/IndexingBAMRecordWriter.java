@@ -0,0 +1,196 @@
+package org.broadinstitute.hellbender.engine.spark.datasources;
+
+import htsjdk.samtools.BAMIndex;
+import htsjdk.samtools.BAMIndexSpanUtils;
+import htsjdk.samtools.BAMIndexer;
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.seqdoop.hadoop_bam.SAMFormat;
+import org.seqdoop.hadoop_bam.SAMRecordWritable;
+import org.seqdoop.hadoop_bam.util.SAMOutputPreparer;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes reads to a BAM file while building its BAM index (.bai) and, optionally, its Hadoop-BAM splitting
+ * index (.splitting-bai), both next to it. This takes the place of Hadoop-BAM's BAMRecordWriter, which doesn't
+ * tell us where it writes each read. Indexing can be turned off, as it must be for files that will be read back
+ * as a directory of parts, since Hadoop-BAM would take the indices next to them for parts too.
+ *
+ * Without a header, the file written is a part of a BAM file (just BGZF blocks of reads, with no terminator)
+ * that {@link BAMIndexMerger} can combine with the other parts, and with their indices. The parts are indexed
+ * as if they started {@link #PART_START_OFFSET} bytes into the file, since BAM indices take a zero offset to mean
+ * that there is none.
+ *
+ * The BAM index is only written if the mapped reads come in coordinate order (unmapped reads placed with their mates
+ * may come out of order, as long as they never go back to an earlier reference, which htsjdk's BAMIndexer can't
+ * handle): an index of reads out of order would be silently wrong.
+ */
+final class IndexingBAMRecordWriter<K> extends RecordWriter<K, SAMRecordWritable> {
+    private static final Logger logger = LogManager.getLogger(IndexingBAMRecordWriter.class);
+
+    public static final String SPLITTING_INDEX_EXTENSION = ".splitting-bai";
+
+    /**
+     * Byte offset in the final BAM file at which parts written without a header are indexed as starting
+     */
+    public static final long PART_START_OFFSET = 1;
+
+    private final FileSystem fs;
+    private final Path indexPath;
+    // Null if we aren't indexing
+    private final FSDataOutputStream indexOut;
+    private final FSDataOutputStream out;
+    private final BlockCompressedOutputStream blockOut;
+    private final BAMRecordCodec codec;
+    private final boolean writeHeader;
+
+    // virtual file offset of the start of blockOut in the BAM file
+    private final long baseVirtualOffset;
+
+    private BAMIndexer indexer;
+    private int currentReference = -1;
+    private int lastMappedReference = -1;
+    private int lastMappedStart = 0;
+
+    // The last read written, which is indexed once we know where it ends
+    private SAMRecord pendingRead;
+    private long pendingReadStart;
+
+    private final DataOutputStream splittingIndexOut;
+    private final int splittingIndexGranularity;
+    private long readsWritten;
+
+    /**
+     * @param output BAM file (or part) to write
+     * @param header header of the BAM file
+     * @param writeHeader whether to write a complete BAM file, rather than a part of one
+     * @param writeIndex whether to write a BAM index (and, if splittingIndexGranularity is positive, a splitting index)
+     * @param splittingIndexGranularity write a splitting index entry for every this many reads, or 0 for no splitting index
+     * @param conf Hadoop configuration for accessing the files
+     */
+    public IndexingBAMRecordWriter( final Path output, final SAMFileHeader header, final boolean writeHeader,
+                                    final boolean writeIndex, final int splittingIndexGranularity,
+                                    final Configuration conf ) throws IOException {
+        fs = output.getFileSystem(conf);
+        this.writeHeader = writeHeader;
+        out = fs.create(output);
+        final long start;
+        if (writeHeader) {
+            // The header gets blocks of its own, so the reads start at a block boundary
+            new SAMOutputPreparer().prepareForRecords(out, SAMFormat.BAM, header);
+            start = out.getPos();
+        } else {
+            start = PART_START_OFFSET;
+        }
+        baseVirtualOffset = start << 16;
+        blockOut = new BlockCompressedOutputStream(out, null);
+        codec = new BAMRecordCodec(header);
+        codec.setOutputStream(blockOut);
+
+        indexPath = output.suffix(BAMIndex.BAMIndexSuffix);
+        if (writeIndex) {
+            indexOut = fs.create(indexPath);
+            indexer = new BAMIndexer(indexOut, header);
+        } else {
+            indexOut = null;
+            indexer = null;
+        }
+
+        this.splittingIndexGranularity = splittingIndexGranularity;
+        if (writeIndex && splittingIndexGranularity > 0) {
+            splittingIndexOut = new DataOutputStream(fs.create(output.suffix(SPLITTING_INDEX_EXTENSION)));
+            if (writeHeader) {
+                // Like Hadoop-BAM's SplittingBAMIndexer, always start with the offset of the first read (or end of file)
+                splittingIndexOut.writeLong(baseVirtualOffset);
+            }
+        } else {
+            splittingIndexOut = null;
+        }
+    }
+
+    @Override
+    public void write( final K ignored, final SAMRecordWritable value ) throws IOException {
+        final SAMRecord read = value.get();
+        final long start = baseVirtualOffset + blockOut.getFilePointer();
+        codec.encode(read);
+
+        if (splittingIndexOut != null && readsWritten % splittingIndexGranularity == 0 && !(writeHeader && readsWritten == 0)) {
+            splittingIndexOut.writeLong(start);
+        }
+        ++readsWritten;
+
+        indexPendingRead(start);
+        if (indexer != null) {
+            // BAMIndexer can't go back to an earlier reference, and doesn't notice mapped reads out of order on the
+            // same reference, which would make a wrong index (unmapped reads placed with their mates come out of order
+            // when sorted to the end, but aren't found by queries anyway)
+            final int reference = read.getReferenceIndex();
+            final boolean mapped = !read.getReadUnmappedFlag();
+            if ((reference != SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX && reference < currentReference) ||
+                    (mapped && reference == lastMappedReference && read.getAlignmentStart() < lastMappedStart)) {
+                logger.warn("Reads are not in coordinate order, so " + indexPath + " will not be written");
+                indexer = null;
+                return;
+            }
+            currentReference = Math.max(currentReference, reference);
+            if (mapped) {
+                lastMappedReference = reference;
+                lastMappedStart = read.getAlignmentStart();
+            }
+            pendingRead = read;
+            pendingReadStart = start;
+        }
+    }
+
+    /**
+     * Indexes the last read written, which ends at end
+     */
+    private void indexPendingRead( final long end ) {
+        if (pendingRead != null) {
+            BAMIndexSpanUtils.setFileSpan(pendingRead, pendingReadStart, end);
+            indexer.processAlignment(pendingRead);
+            pendingRead = null;
+        }
+    }
+
+    @Override
+    public void close( final TaskAttemptContext context ) throws IOException {
+        // Flushing writes out the last block of reads, but (unlike closing) doesn't add a terminator block
+        blockOut.flush();
+        // The last read ends at the end of the last block, which is where a reader would say it ends, and where
+        // the next part (if any) starts
+        indexPendingRead(baseVirtualOffset + blockOut.getFilePointer());
+        if (writeHeader) {
+            out.write(BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK);
+        }
+        final long size = out.getPos();
+        out.close();
+
+        if (indexer != null) {
+            indexer.finish();
+        } else if (indexOut != null) {
+            indexOut.close();
+            fs.delete(indexPath, false);
+        }
+        if (splittingIndexOut != null) {
+            if (writeHeader) {
+                // ...and end with the size of the file
+                splittingIndexOut.writeLong(size << 16);
+            }
+            splittingIndexOut.close();
+        }
+    }
+}
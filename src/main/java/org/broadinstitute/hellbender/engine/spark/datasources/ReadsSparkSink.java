@@ -1,17 +1,24 @@
 package org.broadinstitute.hellbender.engine.spark.datasources;
 
+import htsjdk.samtools.BAMIndex;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
 import org.apache.commons.collections4.iterators.IteratorIterable;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapred.FileAlreadyExistsException;
 import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.RecordWriter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.apache.parquet.avro.AvroParquetOutputFormat;
 import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaRDD;
@@ -21,15 +28,24 @@ import org.bdgenomics.adam.models.RecordGroupDictionary;
 import org.bdgenomics.adam.models.SequenceDictionary;
 import org.bdgenomics.formats.avro.AlignmentRecord;
 import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.read.GATKReadToBDGAlignmentRecordConverter;
 import org.broadinstitute.hellbender.utils.read.ReadCoordinateComparator;
 import org.broadinstitute.hellbender.utils.read.ReadsWriteFormat;
 import org.seqdoop.hadoop_bam.KeyIgnoringBAMOutputFormat;
+import org.seqdoop.hadoop_bam.SAMFormat;
 import org.seqdoop.hadoop_bam.SAMRecordWritable;
+import org.seqdoop.hadoop_bam.util.SAMOutputPreparer;
 import scala.Tuple2;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
 
 /**
  * ReadsSparkSink writes GATKReads to a file. This code lifts from the HadoopGenomics/Hadoop-BAM
@@ -37,6 +53,16 @@ import java.io.IOException;
  */
 public class ReadsSparkSink {
     // TODO: Make ReadsSparkSink able to also write sharded BAMs (#854).
+    private static final Logger logger = LogManager.getLogger(ReadsSparkSink.class);
+
+    // Names of the files holding the reads written by each task (as opposed to their indices)
+    private static final Pattern PART_NAME_PATTERN = Pattern.compile("part-[mr]-\\d+");
+
+    /**
+     * Hadoop configuration property giving the number of reads between the entries of the Hadoop-BAM splitting
+     * index written next to each BAM, or 0 (the default) for no splitting index.
+     */
+    public static final String SPLITTING_INDEX_GRANULARITY_PROPERTY = "hellbender.bam.splitting.index.granularity";
 
     // We need an output format for saveAsNewAPIHadoopFile.
     public static class SparkBAMOutputFormat extends KeyIgnoringBAMOutputFormat<NullWritable> {
@@ -46,10 +72,15 @@ public class ReadsSparkSink {
             bamHeader = header;
         }
 
+        // Headerless parts are indexed as they are written, since Hadoop-BAM's own writer doesn't say where the reads go,
+        // and their indices are merged along with them. Complete BAMs written by this format are the shards of a
+        // directory, which Hadoop-BAM reads back by taking every (non-hidden) file in it for a BAM, so they aren't.
         @Override
         public RecordWriter<NullWritable, SAMRecordWritable> getRecordWriter(TaskAttemptContext ctx) throws IOException {
             setSAMHeader(bamHeader);
-            return super.getRecordWriter(ctx);
+            final Configuration conf = ctx.getConfiguration();
+            return new IndexingBAMRecordWriter<>(getDefaultWorkFile(ctx, ""), bamHeader, getWriteHeader(), !getWriteHeader(),
+                    conf.getInt(SPLITTING_INDEX_GRANULARITY_PROPERTY, 0), conf);
         }
 
         @Override
@@ -64,6 +95,14 @@ public class ReadsSparkSink {
         }
     }
 
+    // Writes the records of each partition as BGZF blocks with no header (and no terminator), ready to be
+    // concatenated into a single BAM by mergeHeaderlessBAMParts.
+    public static class SparkHeaderlessBAMOutputFormat extends SparkBAMOutputFormat {
+        public SparkHeaderlessBAMOutputFormat() {
+            setWriteHeader(false);
+        }
+    }
+
     /**
      * writeReads writes rddReads to outputFile with header as the file header.
      * @param ctx the JavaSparkContext to write.
@@ -75,10 +114,31 @@ public class ReadsSparkSink {
     public static void writeReads(
             final JavaSparkContext ctx, final String outputFile, final JavaRDD<GATKRead> rddReads,
             final SAMFileHeader header, ReadsWriteFormat format) throws IOException {
+        writeReads(ctx, outputFile, rddReads, header, format, 0);
+    }
+
+    /**
+     * writeReads writes rddReads to outputFile with header as the file header. Single-file BAM output is indexed
+     * (with a .bai next to it). Sharded output is not, so that the directory can be read back as input: Hadoop-BAM
+     * would take the indices for shards.
+     * @param ctx the JavaSparkContext to write.
+     * @param outputFile path to the output bam.
+     * @param rddReads reads to write.
+     * @param header the header to put at the top of the files
+     * @param format should the output be a single file, sharded, ADAM, etc.
+     * @param splittingIndexGranularity also write a Hadoop-BAM splitting index (.splitting-bai) for single-file BAM
+     *                                  output, with an entry every this many reads, or 0 for none
+     */
+    public static void writeReads(
+            final JavaSparkContext ctx, final String outputFile, final JavaRDD<GATKRead> rddReads,
+            final SAMFileHeader header, ReadsWriteFormat format, final int splittingIndexGranularity) throws IOException {
+        Utils.validateArg(splittingIndexGranularity >= 0, "splittingIndexGranularity must be non-negative");
+        final Configuration conf = new Configuration(ctx.hadoopConfiguration());
+        conf.setInt(SPLITTING_INDEX_GRANULARITY_PROPERTY, splittingIndexGranularity);
         if (format.equals(ReadsWriteFormat.SINGLE)) {
-            writeReadsSingle(ctx, outputFile, rddReads, header);
+            writeReadsSingle(ctx, outputFile, rddReads, header, conf);
         } else if (format.equals(ReadsWriteFormat.SHARDED)) {
-            writeReadsSharded(ctx, outputFile, rddReads, header);
+            writeReadsSharded(ctx, outputFile, rddReads, header, conf);
         } else if (format.equals(ReadsWriteFormat.ADAM)) {
             writeReadsADAM(ctx, outputFile, rddReads, header);
         }
@@ -104,7 +164,7 @@ public class ReadsSparkSink {
 
     private static void writeReadsSharded(
             final JavaSparkContext ctx, final String outputFile, final JavaRDD<GATKRead> rddReads,
-            final SAMFileHeader header) {
+            final SAMFileHeader header, final Configuration conf) {
         // Set the header on the main thread.
         SparkBAMOutputFormat.setHeader(header);
         // MyOutputFormat is a static class, so we need to copy the header to each worker then call
@@ -123,12 +183,12 @@ public class ReadsSparkSink {
             return new Tuple2<>(gatkRead, samRecordWritable);
         });
 
-        rddSamRecordWriteable.saveAsNewAPIHadoopFile(outputFile, GATKRead.class, SAMRecordWritable.class, SparkBAMOutputFormat.class);
+        rddSamRecordWriteable.saveAsNewAPIHadoopFile(outputFile, GATKRead.class, SAMRecordWritable.class, SparkBAMOutputFormat.class, conf);
     }
 
     private static void writeReadsSingle(
             final JavaSparkContext ctx, final String outputFile, final JavaRDD<GATKRead> rddReads,
-            final SAMFileHeader header) throws IOException {
+            final SAMFileHeader header, final Configuration conf) throws IOException {
         // Set the header on the main thread.
         SparkBAMOutputFormat.setHeader(header);
 
@@ -141,9 +201,8 @@ public class ReadsSparkSink {
             return new Tuple2<>(gatkRead, samRecordWritable);
         });
 
-        // coalesce is needed for writing to a single bam.
         final JavaPairRDD<GATKRead, SAMRecordWritable> out =
-                rddSamRecordWriteable.sortByKey(new ReadCoordinateComparator(header)).coalesce(1);
+                rddSamRecordWriteable.sortByKey(new ReadCoordinateComparator(header));
 
         // MyOutputFormat is a static class, so we need to copy the header to each worker then call
         // MyOutputFormat.setHeader.
@@ -154,32 +213,108 @@ public class ReadsSparkSink {
             return new IteratorIterable<>(tuple2Iterator);
         }).mapToPair(t -> t);
 
+        // Rather than coalescing to a single partition, write every (sorted) partition in parallel without a header,
+        // then put the parts together behind a header. No record needs to be encoded again.
+        final String outputPartsDirectory = outputFile + ".parts";
+        deleteHadoopFile(outputPartsDirectory);
+        finalOut.saveAsNewAPIHadoopFile(outputPartsDirectory, GATKRead.class, SAMRecordWritable.class, SparkHeaderlessBAMOutputFormat.class, conf);
         deleteHadoopFile(outputFile);
-        finalOut.saveAsNewAPIHadoopFile(outputFile, GATKRead.class, SAMRecordWritable.class, SparkBAMOutputFormat.class);
-        renameHadoopSingleShard(outputFile);
+        mergeHeaderlessBAMParts(outputPartsDirectory, outputFile, header, conf);
     }
 
-    private static void deleteHadoopFile(String fileToObliterate) throws IOException {
-        Configuration conf = new Configuration();
-        FileSystem fs = FileSystem.get(conf);
-        fs.delete(new Path(fileToObliterate),true);
+    /**
+     * Writes a single BAM file made up of a header block, the headerless BGZF parts written by
+     * {@link SparkHeaderlessBAMOutputFormat} (in part order), and the BGZF terminator block, then
+     * deletes the parts. The indices of the parts are merged into the indices of the BAM file.
+     * @param partsDirectory directory holding the part-* files (and their indices) and the _SUCCESS file
+     * @param outputFile path to the output bam.
+     * @param header the header to put at the top of the file
+     * @param conf Hadoop configuration for accessing the files
+     */
+    private static void mergeHeaderlessBAMParts(final String partsDirectory, final String outputFile, final SAMFileHeader header, final Configuration conf) throws IOException {
+        final Path partsPath = new Path(partsDirectory);
+        final FileSystem fs = partsPath.getFileSystem(conf);
+        final Path successFile = new Path(partsPath, "_SUCCESS");
+        if (!fs.exists(successFile)) {
+            throw new GATKException("unable to find " + successFile + " file");
+        }
+        final FileStatus[] parts = fs.listStatus(partsPath, path -> PART_NAME_PATTERN.matcher(path.getName()).matches());
+        Arrays.sort(parts);
+
+        final Path outputPath = new Path(outputFile);
+        final FileSystem outputFs = outputPath.getFileSystem(conf);
+        final long[] partStarts = new long[parts.length];
+        final long firstReadStart;
+        final long fileSize;
+        try (final FSDataOutputStream out = outputFs.create(outputPath)) {
+            // This writes and flushes the header in blocks of its own, but we mustn't close the stream it returns,
+            // since that would also add a terminator block.
+            new SAMOutputPreparer().prepareForRecords(out, SAMFormat.BAM, header);
+            firstReadStart = out.getPos();
+            for (int i = 0; i < parts.length; ++i) {
+                partStarts[i] = out.getPos();
+                try (final InputStream in = fs.open(parts[i].getPath())) {
+                    IOUtils.copyBytes(in, out, conf, false);
+                }
+            }
+            out.write(BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK);
+            fileSize = out.getPos();
+        }
+
+        final List<Path> bamIndices = getPartIndices(parts, BAMIndex.BAMIndexSuffix, fs);
+        if (bamIndices != null) {
+            mergePartIndices(bamIndices, fs, outputPath.suffix(BAMIndex.BAMIndexSuffix), outputFs,
+                    (ins, out) -> BAMIndexMerger.mergeBAMIndices(ins, partStarts, out));
+        } else {
+            logger.warn("Not all parts of " + outputFile + " were indexed, so it has no index");
+        }
+        final List<Path> splittingIndices = getPartIndices(parts, IndexingBAMRecordWriter.SPLITTING_INDEX_EXTENSION, fs);
+        if (splittingIndices != null) {
+            mergePartIndices(splittingIndices, fs, outputPath.suffix(IndexingBAMRecordWriter.SPLITTING_INDEX_EXTENSION), outputFs,
+                    (ins, out) -> BAMIndexMerger.mergeSplittingIndices(ins, partStarts, firstReadStart, fileSize, out));
+        }
+        fs.delete(partsPath, true);
+    }
+
+    /**
+     * @return the index with the given extension of every part, or null if some part has none
+     */
+    private static List<Path> getPartIndices(final FileStatus[] parts, final String extension, final FileSystem fs) throws IOException {
+        final List<Path> indices = new ArrayList<>(parts.length);
+        for (final FileStatus part : parts) {
+            final Path index = part.getPath().suffix(extension);
+            if (!fs.exists(index)) {
+                return null;
+            }
+            indices.add(index);
+        }
+        return indices;
+    }
+
+    @FunctionalInterface
+    private interface IndexMerger {
+        void merge(List<InputStream> partIndices, OutputStream out) throws IOException;
     }
 
-    private static void renameHadoopSingleShard(String outputFile) throws IOException {
-        // At this point, the file is in outputFile/part-r-0000. We move it out of that dir and into it's own well-named
-        // file.  This will not work if the last step was a merge (assuming saveAsNewAPIHadoopFile doesn't cause the
-        // last step to be a reduce).
+    private static void mergePartIndices(final List<Path> partIndices, final FileSystem fs, final Path output, final FileSystem outputFs,
+                                         final IndexMerger merger) throws IOException {
+        final List<InputStream> ins = new ArrayList<>(partIndices.size());
+        try (final OutputStream out = outputFs.create(output)) {
+            for (final Path index : partIndices) {
+                ins.add(fs.open(index));
+            }
+            merger.merge(ins, out);
+        }
+        finally {
+            for (final InputStream in : ins) {
+                in.close();
+            }
+        }
+    }
+
+    private static void deleteHadoopFile(String fileToObliterate) throws IOException {
         Configuration conf = new Configuration();
         FileSystem fs = FileSystem.get(conf);
-        String ouputParentDir = outputFile.substring(0, outputFile.lastIndexOf("/") + 1);
-        // First, check for the _SUCCESS file.
-        String successFile = outputFile + "/_SUCCESS";
-        if (!fs.exists(new Path(successFile))) {
-            throw new GATKException("unable to find " + successFile + " file");
-        }
-        String tmpPath = ouputParentDir + "tmp" + System.currentTimeMillis();
-        fs.rename(new Path(outputFile + "/part-r-00000"), new Path(tmpPath));
-        fs.delete(new Path(outputFile), true);
-        fs.rename(new Path(tmpPath), new Path(outputFile));
+        fs.delete(new Path(fileToObliterate),true);
     }
 }
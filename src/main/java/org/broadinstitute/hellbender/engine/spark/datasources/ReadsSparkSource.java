@@ -3,6 +3,7 @@ package org.broadinstitute.hellbender.engine.spark.datasources;
 import com.google.api.services.storage.Storage;
 import com.google.cloud.genomics.dataflow.readers.bam.BAMIO;
 
+import htsjdk.samtools.BamFileIoUtils;
 import htsjdk.samtools.SAMException;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMRecord;
@@ -12,6 +13,7 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.parquet.avro.AvroParquetInputFormat;
 import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaRDD;
@@ -22,6 +24,7 @@ import org.broadinstitute.hellbender.engine.AuthHolder;
 import org.broadinstitute.hellbender.exceptions.GATKException;
 import org.broadinstitute.hellbender.utils.IntervalUtils;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.collections.IntervalsSkipList;
 import org.broadinstitute.hellbender.utils.gcs.BucketUtils;
 import org.broadinstitute.hellbender.utils.read.BDGAlignmentRecordToGATKReadAdapter;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
@@ -51,7 +54,8 @@ public class ReadsSparkSource implements Serializable {
      * Loads Reads using Hadoop-BAM. For local files, bam must have the fully-qualified path,
      * i.e., file:///path/to/bam.bam.
      * @param bam file to load
-     * @param intervals intervals of reads to include.
+     * @param intervals intervals of reads to include. Unmapped reads are included if they are placed (at the position
+     *                  of their mates) in one of the intervals.
      * @return RDD of (SAMRecord-backed) GATKReads from the file.
      */
     public JavaRDD<GATKRead> getParallelReads(final String bam, final List<SimpleInterval> intervals) {
@@ -60,9 +64,11 @@ public class ReadsSparkSource implements Serializable {
 
     /**
      * Loads Reads using Hadoop-BAM. For local files, bam must have the fully-qualified path,
-     * i.e., file:///path/to/bam.bam.
+     * i.e., file:///path/to/bam.bam. If intervals are given and bam is an indexed BAM file, only
+     * the parts of the file that the index says may hold reads overlapping them are read.
      * @param bam file to load
-     * @param intervals intervals of reads to include.
+     * @param intervals intervals of reads to include. Unmapped reads are included if they are placed (at the position
+     *                  of their mates) in one of the intervals.
      * @param splitSize maximum bytes of bam file to read into a single partition, increasing this will result in fewer partitions
      * @return RDD of (SAMRecord-backed) GATKReads from the file.
      */
@@ -71,13 +77,25 @@ public class ReadsSparkSource implements Serializable {
         // reads take more space in memory than on disk so we need to limit the split size
         conf.set("mapreduce.input.fileinputformat.split.maxsize", Long.toString(splitSize));
 
+        final Class<? extends FileInputFormat<LongWritable, SAMRecordWritable>> inputFormat;
+        if (intervals != null && !intervals.isEmpty() && bam.endsWith(BamFileIoUtils.BAM_FILE_EXTENSION)) {
+            IndexedBAMInputFormat.setIntervals(conf, intervals);
+            inputFormat = IndexedBAMInputFormat.class;
+        } else {
+            inputFormat = AnySAMInputFormat.class;
+        }
+
         JavaPairRDD<LongWritable, SAMRecordWritable> rdd2 = ctx.newAPIHadoopFile(
-                bam, AnySAMInputFormat.class, LongWritable.class, SAMRecordWritable.class,
+                bam, inputFormat, LongWritable.class, SAMRecordWritable.class,
                 conf);
 
+        // Index the intervals once and broadcast them, rather than scanning all of them for every read
+        final Broadcast<IntervalsSkipList<SimpleInterval>> bIntervals =
+                intervals == null || intervals.isEmpty() ? null : ctx.broadcast(new IntervalsSkipList<>(intervals));
+
         return rdd2.map(v1 -> {
             SAMRecord sam = v1._2().get();
-            if (samRecordOverlaps(sam, intervals)) {
+            if (bIntervals == null || samRecordOverlaps(sam, bIntervals.getValue())) {
                 try {
                     return (GATKRead) new SAMRecordToGATKReadAdapter(sam);
                 } catch (SAMException e) {
@@ -91,7 +109,8 @@ public class ReadsSparkSource implements Serializable {
 
     /**
      * Loads Reads using Hadoop-BAM. For local files, bam must have the fully-qualified path,
-     * i.e., file:///path/to/bam.bam. This excludes unmapped reads.
+     * i.e., file:///path/to/bam.bam. This excludes unmapped reads with no position, but (like htsjdk's SamReader)
+     * includes unmapped reads placed at the position of their mates.
      * @param bam file to load
      * @return RDD of (SAMRecord-backed) GATKReads from the file.
      */
@@ -101,7 +120,8 @@ public class ReadsSparkSource implements Serializable {
 
     /**
      * Loads Reads using Hadoop-BAM. For local files, bam must have the fully-qualified path,
-     * i.e., file:///path/to/bam.bam. This excludes unmapped reads.
+     * i.e., file:///path/to/bam.bam. This excludes unmapped reads with no position, but (like htsjdk's SamReader)
+     * includes unmapped reads placed at the position of their mates.
      * @param bam file to load
      * @param splitSize maximum bytes of bam file to read into a single partition, increasing this will result in fewer partitions
      * @return RDD of (SAMRecord-backed) GATKReads from the file.
@@ -167,20 +187,16 @@ public class ReadsSparkSource implements Serializable {
      * Tests if a given SAMRecord overlaps any interval in a collection.
      */
     //TODO: remove this method when https://github.com/broadinstitute/hellbender/issues/559 is fixed
-    private static boolean samRecordOverlaps(final SAMRecord record, final List<SimpleInterval> intervals ) {
-        if (intervals == null || intervals.isEmpty()) {
-            return true;
-        }
-        for (SimpleInterval interval : intervals) {
-            if (record.getReadUnmappedFlag() && record.getAlignmentStart() != SAMRecord.NO_ALIGNMENT_START) {
-                // This follows the behavior of htsjdk's SamReader which states that "an unmapped read will be returned
-                // by this call if it has a coordinate for the purpose of sorting that is in the query region".
-                int start = record.getAlignmentStart();
-                return interval.getStart() <= start && interval.getEnd() >= start;
-            } else  if (interval.overlaps(record)) {
-                return true;
+    static boolean samRecordOverlaps(final SAMRecord record, final IntervalsSkipList<SimpleInterval> intervals ) {
+        if (record.getReadUnmappedFlag()) {
+            if (record.getAlignmentStart() == SAMRecord.NO_ALIGNMENT_START) {
+                return false;
             }
+            // This follows the behavior of htsjdk's SamReader which states that "an unmapped read will be returned
+            // by this call if it has a coordinate for the purpose of sorting that is in the query region".
+            int start = record.getAlignmentStart();
+            return intervals.overlapsAny(new SimpleInterval(record.getReferenceName(), start, start));
         }
-        return false;
+        return intervals.overlapsAny(new SimpleInterval(record));
     }
 }
@@ -4,6 +4,7 @@ import htsjdk.samtools.*;
 import org.broadinstitute.hellbender.cmdline.*;
 import org.broadinstitute.hellbender.cmdline.programgroups.ReadProgramGroup;
 import org.broadinstitute.hellbender.engine.FeatureContext;
+import org.broadinstitute.hellbender.engine.OrderedGATKReadWriter;
 import org.broadinstitute.hellbender.engine.ReadWalker;
 import org.broadinstitute.hellbender.engine.ReferenceContext;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
@@ -22,12 +23,17 @@ public final class PrintReads extends ReadWalker {
     @Argument(fullName = "output", shortName = StandardArgumentDefinitions.OUTPUT_SHORT_NAME, doc="Write output to this file")
     public File OUTPUT;
 
-    private SAMFileGATKReadWriter outputWriter;
+    private OrderedGATKReadWriter outputWriter;
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 
     @Override
     public void onTraversalStart() {
         final SAMFileHeader outputHeader = ReadUtils.cloneSAMFileHeader(getHeaderForReads());
-        outputWriter = new SAMFileGATKReadWriter(new SAMFileWriterFactory().makeWriter(outputHeader, true, OUTPUT, referenceArguments.getReferenceFile()));
+        outputWriter = new OrderedGATKReadWriter(new SAMFileGATKReadWriter(new SAMFileWriterFactory().makeWriter(outputHeader, true, OUTPUT, referenceArguments.getReferenceFile())));
     }
 
     @Override
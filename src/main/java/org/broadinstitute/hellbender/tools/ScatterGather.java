@@ -0,0 +1,380 @@
+package org.broadinstitute.hellbender.tools;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Interval;
+import htsjdk.samtools.util.IntervalList;
+import htsjdk.variant.utils.SAMSequenceDictionaryExtractor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.Main;
+import org.broadinstitute.hellbender.cmdline.Argument;
+import org.broadinstitute.hellbender.cmdline.ArgumentCollection;
+import org.broadinstitute.hellbender.cmdline.CommandLineProgram;
+import org.broadinstitute.hellbender.cmdline.CommandLineProgramProperties;
+import org.broadinstitute.hellbender.cmdline.PositionalArguments;
+import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
+import org.broadinstitute.hellbender.cmdline.argumentcollections.IntervalArgumentCollection;
+import org.broadinstitute.hellbender.cmdline.argumentcollections.OptionalIntervalArgumentCollection;
+import org.broadinstitute.hellbender.cmdline.programgroups.MiscProgramGroup;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.tools.picard.interval.IntervalListScatterer;
+import org.broadinstitute.hellbender.tools.picard.sam.GatherBamFiles;
+import org.broadinstitute.hellbender.tools.picard.vcf.GatherVcfs;
+import org.broadinstitute.hellbender.utils.GenomeLoc;
+import org.broadinstitute.hellbender.utils.GenomeLocParser;
+import org.broadinstitute.hellbender.utils.IntervalUtils;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.read.BAMIndexReadCountEstimator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs any tool that accepts intervals (-L) and writes a single BAM or VCF output (-O) over several interval
+ * shards at once on the local machine, then gathers the shard outputs into the final output with
+ * {@link GatherBamFiles} or {@link GatherVcfs}. This replaces scripting the scatter (IntervalListTools), the
+ * concurrent runs, and the gather by hand.
+ *
+ * The tool command line to run follows all of the arguments to this program, after "--". It must not include
+ * the intervals or the output, which are given to this program instead. For example:
+ *
+ * <pre>
+ *     ScatterGather -SD ref.fasta -L targets.interval_list -O out.vcf -scatterCount 8 -- VariantFiltration -V in.vcf ...
+ * </pre>
+ *
+ * The intervals are split into at most {@link #scatterCount} shards in genomic order, balanced by the number of
+ * bases they cover. By default, intervals are never split across shards, so that a read or variant can only be
+ * output twice if it overlaps two separate intervals (just as with any interval-based scatter); use
+ * {@link #subdivideIntervals} to split intervals too when there are fewer intervals than shards. When coverage is
+ * uneven, use {@link #readDensityBams} to balance the shards by the number of reads their intervals are estimated
+ * to overlap (from the BAM indices) instead.
+ *
+ * Each shard runs in its own child JVM (with the same classpath as this one), since tools share JVM-wide state such
+ * as the random number generator, engine metrics, and htsjdk defaults, and so cannot safely run concurrently in a
+ * single JVM. The output of each shard is logged to a file in the {@link #scatterDirectory}.
+ */
+@CommandLineProgramProperties(
+        summary = "Runs a tool over several interval shards concurrently in child processes on the local machine, and gathers the shard outputs into a single BAM or VCF",
+        oneLineSummary = "Scatter a tool over intervals and gather its output locally",
+        programGroup = MiscProgramGroup.class
+)
+public final class ScatterGather extends CommandLineProgram {
+    private static final Logger logger = LogManager.getLogger(ScatterGather.class);
+
+    /**
+     * Arguments that this program passes to each shard itself, and so that may not appear in the tool command line
+     */
+    static final Set<String> RESERVED_TOOL_ARGUMENTS = new HashSet<>(Arrays.asList(
+            "-L", "--intervals", "-XL", "--excludeIntervals", "-isr", "--interval_set_rule", "-ip", "--interval_padding",
+            "-" + StandardArgumentDefinitions.OUTPUT_SHORT_NAME, "--" + StandardArgumentDefinitions.OUTPUT_LONG_NAME));
+
+    private static final String BAM_EXTENSION = ".bam";
+
+    private static final long SHARD_STOP_TIMEOUT_SECONDS = 10;
+
+    @Argument(fullName = "sequenceDictionary", shortName = StandardArgumentDefinitions.SEQUENCE_DICTIONARY_SHORT_NAME, doc = "Sequence dictionary to validate and split the intervals with (a .dict file, or a reference, BAM, VCF or interval list carrying one)", optional = false)
+    public File sequenceDictionary;
+
+    @ArgumentCollection
+    public IntervalArgumentCollection intervalArgumentCollection = new OptionalIntervalArgumentCollection();
+
+    @Argument(fullName = StandardArgumentDefinitions.OUTPUT_LONG_NAME, shortName = StandardArgumentDefinitions.OUTPUT_SHORT_NAME, doc = "Gathered output of the tool (a BAM or VCF file)", optional = false)
+    public File output;
+
+    @Argument(fullName = "scatterCount", shortName = "scatterCount", doc = "Maximum number of shards to split the intervals into", optional = true)
+    public int scatterCount = Runtime.getRuntime().availableProcessors();
+
+    @Argument(fullName = "maxParallelShards", shortName = "maxParallelShards", doc = "Maximum number of shards to run at once", optional = true)
+    public int maxParallelShards = Runtime.getRuntime().availableProcessors();
+
+    @Argument(fullName = "subdivideIntervals", shortName = "subdivideIntervals", doc = "Split intervals across shards to balance them exactly. Reads or variants spanning the split points will be output by both shards", optional = true)
+    public boolean subdivideIntervals = false;
+
+    @Argument(fullName = "readDensityBam", shortName = "readDensityBam", doc = "Balance the shards by the reads overlapping their intervals, as estimated from the index of these BAM files, rather than by the bases they cover", optional = true)
+    public List<File> readDensityBams = new ArrayList<>();
+
+    @Argument(fullName = "shardHeapMB", shortName = "shardHeapMB", doc = "Maximum heap size of each child JVM, in megabytes. If not given, the JVM default is used", optional = true)
+    public Integer shardHeapMB = null;
+
+    @Argument(fullName = "scatterDirectory", shortName = "scatterDirectory", doc = "Directory for the shard intervals, outputs and logs. If not given, a temporary directory is used and deleted after a successful gather", optional = true)
+    public File scatterDirectory = null;
+
+    @PositionalArguments(minElements = 1)
+    public List<String> toolCommandLine = new ArrayList<>();
+
+    /**
+     * The interval list, output and log files of a single shard
+     */
+    private static final class Shard {
+        private final int index;
+        private final File intervals;
+        private final File output;
+        private final File log;
+
+        private Shard( final File directory, final int index, final String outputExtension ) {
+            final String name = String.format("shard_%04d", index);
+            this.index = index;
+            this.intervals = new File(directory, name + ".interval_list");
+            this.output = new File(directory, name + outputExtension);
+            this.log = new File(directory, name + ".log");
+        }
+    }
+
+    @Override
+    protected Object doWork() {
+        if ( scatterCount < 1 ) {
+            throw new UserException.BadArgumentValue("scatterCount", Integer.toString(scatterCount), "must be >= 1");
+        }
+        if ( maxParallelShards < 1 ) {
+            throw new UserException.BadArgumentValue("maxParallelShards", Integer.toString(maxParallelShards), "must be >= 1");
+        }
+        if ( subdivideIntervals && ! readDensityBams.isEmpty() ) {
+            throw new UserException.CommandLineException("--subdivideIntervals cannot be used with --readDensityBam, since intervals are not split when balancing by reads");
+        }
+        if ( shardHeapMB != null && shardHeapMB < 1 ) {
+            throw new UserException.BadArgumentValue("shardHeapMB", Integer.toString(shardHeapMB), "must be >= 1");
+        }
+        for ( final String arg : toolCommandLine ) {
+            if ( RESERVED_TOOL_ARGUMENTS.contains(arg) ) {
+                throw new UserException.CommandLineException("The tool command line may not contain " + arg + ": give the intervals and output to " + getClass().getSimpleName() + " instead");
+            }
+        }
+        if ( toolCommandLine.get(0).equals(getClass().getSimpleName()) ) {
+            throw new UserException.CommandLineException(getClass().getSimpleName() + " cannot run itself");
+        }
+        final String outputExtension = getOutputExtension(output);
+        IOUtil.assertFileIsWritable(output);
+
+        final SAMSequenceDictionary dictionary = SAMSequenceDictionaryExtractor.extractDictionary(sequenceDictionary);
+        final boolean deleteScatterDirectory = scatterDirectory == null;
+        final File directory = deleteScatterDirectory ? createTempDirectory() : scatterDirectory;
+        IOUtil.assertDirectoryIsWritable(directory);
+
+        final List<Shard> shards = writeShardIntervals(dictionary, directory, outputExtension);
+        runShards(shards);
+        gather(shards, outputExtension);
+
+        if ( deleteScatterDirectory ) {
+            IOUtil.deleteDirectoryTree(directory);
+        }
+        return null;
+    }
+
+    /**
+     * @return the extension of output (including compression extensions, such as .vcf.gz), to be used for the shard outputs
+     */
+    private static String getOutputExtension( final File output ) {
+        final String name = output.getName();
+        if ( name.endsWith(BAM_EXTENSION) ) {
+            return BAM_EXTENSION;
+        }
+        for ( final String extension : IOUtil.VCF_EXTENSIONS ) {
+            if ( name.endsWith(extension) ) {
+                return extension;
+            }
+        }
+        throw new UserException.BadArgumentValue(StandardArgumentDefinitions.OUTPUT_LONG_NAME, output.getPath(),
+                                                 "the output must be a BAM (" + BAM_EXTENSION + ") or VCF (" + String.join(", ", IOUtil.VCF_EXTENSIONS) + ") file");
+    }
+
+    private File createTempDirectory() {
+        try {
+            return Files.createTempDirectory(TMP_DIR.get(0).toPath(), "scatterGather").toFile();
+        }
+        catch ( final IOException e ) {
+            throw new UserException.CouldNotCreateOutputFile(TMP_DIR.get(0), "Could not create a temporary scatter directory", e);
+        }
+    }
+
+    /**
+     * Split the intervals to process into shards, and write the interval list of each shard to its directory
+     */
+    private List<Shard> writeShardIntervals( final SAMSequenceDictionary dictionary, final File directory, final String outputExtension ) {
+        final GenomeLocParser parser = new GenomeLocParser(dictionary);
+        final List<SimpleInterval> intervals = intervalArgumentCollection.intervalsSpecified() ?
+                intervalArgumentCollection.getIntervals(parser) : IntervalUtils.getAllIntervalsForReference(dictionary);
+        final List<GenomeLoc> locs = IntervalUtils.genomeLocsFromLocatables(parser, intervals);
+
+        final SAMFileHeader header = new SAMFileHeader();
+        header.setSequenceDictionary(dictionary);
+
+        final List<List<GenomeLoc>> splits;
+        if ( ! readDensityBams.isEmpty() ) {
+            splits = splitByEstimatedReads(parser, header, locs);
+        }
+        else if ( subdivideIntervals ) {
+            splits = IntervalUtils.splitLocusIntervals(locs, (int)Math.min(scatterCount, IntervalUtils.intervalSize(locs)));
+        }
+        else {
+            if ( locs.size() < scatterCount ) {
+                logger.warn(String.format("Only %d interval(s) to split into %d shards; using %d shards (see --subdivideIntervals)", locs.size(), scatterCount, locs.size()));
+            }
+            splits = IntervalUtils.splitFixedIntervals(locs, Math.min(scatterCount, locs.size()));
+        }
+
+        final List<Shard> shards = new ArrayList<>(splits.size());
+        for ( int i = 0; i < splits.size(); ++i ) {
+            shards.add(new Shard(directory, i + 1, outputExtension));
+        }
+
+        final List<File> intervalFiles = new ArrayList<>(shards.size());
+        shards.forEach(shard -> intervalFiles.add(shard.intervals));
+        IntervalUtils.scatterFixedIntervals(header, splits, intervalFiles);
+
+        logger.info(String.format("Split %d bp in %d interval(s) into %d shard(s) in %s", IntervalUtils.intervalSize(locs), locs.size(), shards.size(), directory.getAbsolutePath()));
+        return shards;
+    }
+
+    /**
+     * Split locs into at most {@link #scatterCount} lists with similar numbers of reads, according to the indices of the {@link #readDensityBams}
+     */
+    private List<List<GenomeLoc>> splitByEstimatedReads( final GenomeLocParser parser, final SAMFileHeader header, final List<GenomeLoc> locs ) {
+        final IntervalList intervalList = new IntervalList(header);
+        for ( final GenomeLoc loc : locs ) {
+            intervalList.add(new Interval(loc.getContig(), loc.getStart(), loc.getStop()));
+        }
+
+        final List<BAMIndexReadCountEstimator> estimators = new ArrayList<>(readDensityBams.size());
+        try {
+            for ( final File bam : readDensityBams ) {
+                estimators.add(new BAMIndexReadCountEstimator(bam));
+            }
+            final IntervalListScatterer scatterer = new IntervalListScatterer(IntervalListScatterer.Mode.BALANCING_BY_ESTIMATED_READS,
+                    interval -> estimators.stream().mapToLong(estimator -> estimator.estimateReads(interval)).sum());
+
+            final List<List<GenomeLoc>> splits = new ArrayList<>();
+            for ( final IntervalList split : scatterer.scatter(intervalList, scatterCount, true) ) {
+                splits.add(IntervalUtils.genomeLocsFromLocatables(parser, split.getIntervals()));
+            }
+            return splits;
+        }
+        finally {
+            estimators.forEach(BAMIndexReadCountEstimator::close);
+        }
+    }
+
+    /**
+     * Run the tool over every shard in child JVMs, at most {@link #maxParallelShards} at a time. If any shard fails,
+     * the shards that are still running are stopped.
+     */
+    private void runShards( final List<Shard> shards ) {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxParallelShards, shards.size()));
+        try {
+            final CompletionService<Integer> completionService = new ExecutorCompletionService<>(executor);
+            final Map<Future<Integer>, Shard> shardsByExitValue = new HashMap<>(shards.size());
+            for ( final Shard shard : shards ) {
+                shardsByExitValue.put(completionService.submit(() -> runShard(shard, shards.size())), shard);
+            }
+            // Check the shards in the order they finish, so that a failed shard stops the others right away
+            for ( int i = 0; i < shards.size(); ++i ) {
+                final Future<Integer> exitValue = completionService.take();
+                if ( exitValue.get() != 0 ) {
+                    final Shard shard = shardsByExitValue.get(exitValue);
+                    throw new UserException(String.format("Shard %d failed with exit value %d; see %s for its output", shard.index, exitValue.get(), shard.log.getAbsolutePath()));
+                }
+            }
+        }
+        catch ( final ExecutionException e ) {
+            throw new GATKException("Error running shard", e.getCause());
+        }
+        catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new GATKException("Interrupted while waiting for shards", e);
+        }
+        finally {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            }
+            catch ( final InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return the exit value of the child JVM running the tool over shard
+     */
+    private int runShard( final Shard shard, final int shardCount ) throws IOException {
+        final List<String> command = new ArrayList<>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath());
+        if ( shardHeapMB != null ) {
+            command.add("-Xmx" + shardHeapMB + "m");
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Main.class.getName());
+        command.addAll(toolCommandLine);
+        command.addAll(Arrays.asList("-L", shard.intervals.getAbsolutePath(),
+                                     "-" + StandardArgumentDefinitions.OUTPUT_SHORT_NAME, shard.output.getAbsolutePath()));
+
+        final long startTime = System.currentTimeMillis();
+        final Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(shard.log).start();
+        try {
+            final int exitValue = process.waitFor();
+            logger.info(String.format("Shard %d of %d exited with %d after %.2f seconds", shard.index, shardCount, exitValue, (System.currentTimeMillis() - startTime) / 1000.0));
+            return exitValue;
+        }
+        catch ( final InterruptedException e ) {
+            // Another shard failed (or we were interrupted), so stop this one
+            stopProcess(process);
+            Thread.currentThread().interrupt();
+            return Main.ANY_OTHER_EXCEPTION_EXIT_VALUE;
+        }
+    }
+
+    /**
+     * Stop a shard's child JVM, and wait until it has exited, so that it doesn't outlive this tool. It is killed if
+     * it doesn't exit within {@link #SHARD_STOP_TIMEOUT_SECONDS} of being asked to.
+     */
+    private static void stopProcess( final Process process ) {
+        process.destroy();
+        while ( true ) {
+            try {
+                if ( ! process.waitFor(SHARD_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS) ) {
+                    process.destroyForcibly().waitFor();
+                }
+                return;
+            }
+            catch ( final InterruptedException e ) {
+                // We're stopping anyway (our caller restores the interrupt), so just stop faster
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * Gather the shard outputs, which are in genomic order, into the final output with the existing gather tools
+     */
+    private void gather( final List<Shard> shards, final String outputExtension ) {
+        final List<String> args = new ArrayList<>();
+        for ( final Shard shard : shards ) {
+            args.add("-" + StandardArgumentDefinitions.INPUT_SHORT_NAME);
+            args.add(shard.output.getAbsolutePath());
+        }
+        args.add("-" + StandardArgumentDefinitions.OUTPUT_SHORT_NAME);
+        args.add(output.getAbsolutePath());
+
+        final CommandLineProgram gatherer = outputExtension.equals(BAM_EXTENSION) ? new GatherBamFiles() : new GatherVcfs();
+        logger.info(String.format("Gathering %d shard output(s) into %s with %s", shards.size(), output.getAbsolutePath(), gatherer.getClass().getSimpleName()));
+        gatherer.instanceMain(args.toArray(new String[args.size()]));
+    }
+}
@@ -0,0 +1,276 @@
+package org.broadinstitute.hellbender.tools;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.broadinstitute.hellbender.Main;
+import org.broadinstitute.hellbender.cmdline.Argument;
+import org.broadinstitute.hellbender.cmdline.CommandLineProgram;
+import org.broadinstitute.hellbender.cmdline.CommandLineProgramProperties;
+import org.broadinstitute.hellbender.cmdline.programgroups.MiscProgramGroup;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.io.IndexCache;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Keeps a single JVM running, and runs the tool command lines it receives over a local socket, so that workflows
+ * making many short tool invocations pay for JVM startup, the search for tools on the classpath, and JIT
+ * compilation only once. Parsed reference (.fai) and Feature (.idx) indices are also kept in memory between
+ * requests, up to {@link #indexCacheMB} (see {@link IndexCache}).
+ *
+ * The server listens on the loopback interface only. Since any local user can connect to it, and tools run with the
+ * permissions of the user running the server, every request must start with a secret token: the server makes up a
+ * random token when it starts, and writes it to {@link #tokenFile}, which only the user running the server may read.
+ *
+ * Each request is a connection on which the client sends the token, then the tool name and its arguments, one per
+ * line (UTF-8), followed by an empty line or the end of its output. The server replies on the same connection with
+ * everything the tool prints (including its log), followed by a final line "EXIT &lt;exit value&gt;", where the exit
+ * value is the same one the tool would have exited with from the command line. A request consisting of the single
+ * argument {@value #SHUTDOWN_REQUEST} stops the server. Requests without the right token are answered with only
+ * "EXIT {@value Main#USER_EXCEPTION_EXIT_VALUE}". For example, from bash:
+ *
+ * <pre>
+ *     exec 3&lt;&gt;/dev/tcp/127.0.0.1/$(cat server.port)
+ *     printf '%s\n' "$(cat server.token)" PrintReads -I /data/in.bam -O /data/out.bam '' &gt;&amp;3
+ *     cat &lt;&amp;3
+ * </pre>
+ *
+ * Requests are run one at a time, in the order they are received, since tools share JVM-wide state (such as
+ * System.out). Relative paths in requests are resolved against the working directory of the server.
+ *
+ * Tools run in the server's own JVM, so a tool that calls System.exit() (which none of the tools in this toolkit
+ * do, only {@link Main#main} does) stops the server: its client then sees the connection close without an
+ * "EXIT" line, and later requests are refused.
+ */
+@CommandLineProgramProperties(
+        summary = "Runs tool command lines received over a local socket in a single persistent JVM, to avoid paying for JVM startup and index loading on every invocation",
+        oneLineSummary = "Run tools on request in a persistent JVM",
+        programGroup = MiscProgramGroup.class
+)
+public final class ToolServer extends CommandLineProgram {
+    private static final Logger logger = LogManager.getLogger(ToolServer.class);
+
+    /**
+     * A request consisting of only this argument stops the server
+     */
+    public static final String SHUTDOWN_REQUEST = "--shutdown";
+
+    /**
+     * The last line of the response to each request is this prefix followed by the exit value of the tool
+     */
+    public static final String EXIT_VALUE_PREFIX = "EXIT ";
+
+    public static final long DEFAULT_INDEX_CACHE_MB = 1024;
+
+    /**
+     * How long to wait for a client to send its request once it has connected, so that a client that connects and
+     * says nothing can't hold up the requests of others
+     */
+    private static final int REQUEST_TIMEOUT_MILLISECONDS = 60 * 1000;
+
+    private static final int TOKEN_BYTES = 32;
+
+    /**
+     * Logging configuration used while the server runs, in which the console appender follows System.out, so that
+     * the log of each request goes to its client
+     */
+    private static final String LOGGING_CONFIGURATION_RESOURCE = "ToolServer-log4j2.xml";
+
+    @Argument(fullName = "port", shortName = "port", doc = "Port to listen for requests on (on the loopback interface only). If 0, any free port is used", optional = true)
+    public int port = 0;
+
+    @Argument(fullName = "portFile", shortName = "portFile", doc = "Write the port the server is listening on to this file once it is ready to accept requests", optional = true)
+    public File portFile = null;
+
+    @Argument(fullName = "tokenFile", shortName = "tokenFile", doc = "Write the token that clients must send at the start of each request to this file, which is created readable by the current user only (and replaced if it exists)", optional = false)
+    public File tokenFile = null;
+
+    @Argument(fullName = "indexCacheMB", shortName = "indexCacheMB", doc = "Maximum total size, in megabytes on disk, of the reference and Feature indices to keep in memory between requests (0 disables the cache)", optional = true)
+    public long indexCacheMB = DEFAULT_INDEX_CACHE_MB;
+
+    /**
+     * @return the number of requests served
+     */
+    @Override
+    protected Object doWork() {
+        if ( port < 0 || port > 65535 ) {
+            throw new UserException.BadArgumentValue("port", Integer.toString(port), "must be between 0 and 65535");
+        }
+        if ( indexCacheMB < 0 ) {
+            throw new UserException.BadArgumentValue("indexCacheMB", Long.toString(indexCacheMB), "must be >= 0");
+        }
+
+        final byte[] token = writeToken(tokenFile.toPath());
+        final LoggerContext loggerContext = (LoggerContext) LogManager.getContext(false);
+        final URI originalLoggingConfiguration = loggerContext.getConfigLocation();
+        loggerContext.setConfigLocation(getLoggingConfiguration());
+        IndexCache.getInstance().setMaxBytes(indexCacheMB * 1024 * 1024);
+        final Main main = new Main();
+        try ( final ServerSocket serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress()) ) {
+            if ( portFile != null ) {
+                Files.write(portFile.toPath(), Collections.singletonList(Integer.toString(serverSocket.getLocalPort())), StandardCharsets.UTF_8);
+            }
+            logger.info("Listening for requests on port " + serverSocket.getLocalPort());
+
+            int requestsServed = 0;
+            RequestOutcome outcome;
+            while ( (outcome = serveRequest(serverSocket, token, main)) != RequestOutcome.SHUTDOWN ) {
+                if ( outcome == RequestOutcome.RAN ) {
+                    ++requestsServed;
+                }
+            }
+            logger.info("Shutting down after serving " + requestsServed + " request(s)");
+            return requestsServed;
+        }
+        catch ( final IOException e ) {
+            throw new UserException("Error listening for requests on port " + port, e);
+        }
+        finally {
+            IndexCache.getInstance().setMaxBytes(0);
+            // Go back to the logging configuration we started with (whose location is null if it was found the
+            // usual way, in which case it is found again)
+            loggerContext.setConfigLocation(originalLoggingConfiguration);
+            tokenFile.delete();
+        }
+    }
+
+    /**
+     * Make up a random token, and write it to a new file at path that only the current user may read or write
+     *
+     * @return the token, as clients will send it
+     */
+    private static byte[] writeToken( final Path path ) {
+        final byte[] randomBytes = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(randomBytes);
+        final StringBuilder token = new StringBuilder(2 * TOKEN_BYTES);
+        for ( final byte b : randomBytes ) {
+            token.append(String.format("%02x", b));
+        }
+
+        try {
+            // Create the file with its permissions, rather than restricting them afterwards, so that there is no
+            // moment at which others can open it
+            Files.deleteIfExists(path);
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE)));
+            Files.write(path, Collections.singletonList(token.toString()), StandardCharsets.UTF_8);
+        }
+        catch ( final UnsupportedOperationException e ) {
+            throw new UserException.CouldNotCreateOutputFile(path.toFile(), "the file system does not support restricting who may read it", e);
+        }
+        catch ( final IOException e ) {
+            throw new UserException.CouldNotCreateOutputFile(path.toFile(), e);
+        }
+        return token.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static URI getLoggingConfiguration() {
+        try {
+            return ToolServer.class.getResource(LOGGING_CONFIGURATION_RESOURCE).toURI();
+        }
+        catch ( final URISyntaxException e ) {
+            throw new GATKException("Cannot find the logging configuration " + LOGGING_CONFIGURATION_RESOURCE, e);
+        }
+    }
+
+    private enum RequestOutcome { RAN, REFUSED, SHUTDOWN }
+
+    /**
+     * Accept a single request, and run it to completion
+     *
+     * @return whether the request was run, refused (for lack of the token, or of the whole request), or was to shut down
+     */
+    private RequestOutcome serveRequest( final ServerSocket serverSocket, final byte[] token, final Main main ) throws IOException {
+        try ( final Socket socket = serverSocket.accept() ) {
+            final List<String> args;
+            socket.setSoTimeout(REQUEST_TIMEOUT_MILLISECONDS);
+            try {
+                args = readRequest(socket);
+            }
+            catch ( final SocketTimeoutException e ) {
+                logger.warn("Ignoring a request that was not received within " + REQUEST_TIMEOUT_MILLISECONDS / 1000 + " seconds");
+                return RequestOutcome.REFUSED;
+            }
+            socket.setSoTimeout(0);
+            // Flush as we go, so that clients see the log of long-running tools as it is written
+            final PrintStream response = new PrintStream(socket.getOutputStream(), true, StandardCharsets.UTF_8.name());
+
+            // Compare in constant time, so that the time taken gives nothing away about the token
+            if ( args.isEmpty() || ! MessageDigest.isEqual(args.remove(0).getBytes(StandardCharsets.UTF_8), token) ) {
+                logger.warn("Refusing a request without the token in " + tokenFile);
+                response.println(EXIT_VALUE_PREFIX + Main.USER_EXCEPTION_EXIT_VALUE);
+                return RequestOutcome.REFUSED;
+            }
+
+            if ( args.equals(Collections.singletonList(SHUTDOWN_REQUEST)) ) {
+                response.println(EXIT_VALUE_PREFIX + 0);
+                return RequestOutcome.SHUTDOWN;
+            }
+
+            final long startTime = System.currentTimeMillis();
+            final int exitValue = runRequest(args, main, response);
+            response.println(EXIT_VALUE_PREFIX + exitValue);
+            logger.info(String.format("Request %s exited with %d after %.2f seconds", args, exitValue, (System.currentTimeMillis() - startTime) / 1000.0));
+            return RequestOutcome.RAN;
+        }
+    }
+
+    private static List<String> readRequest( final Socket socket ) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        final List<String> args = new ArrayList<>();
+        String arg;
+        while ( (arg = reader.readLine()) != null && ! arg.isEmpty() ) {
+            args.add(arg);
+        }
+        return args;
+    }
+
+    /**
+     * Run the command line in args with System.out and System.err (and so the log) redirected to response
+     *
+     * @return the exit value of the tool
+     */
+    private static int runRequest( final List<String> args, final Main main, final PrintStream response ) {
+        if ( ! args.isEmpty() && args.get(0).equals(ToolServer.class.getSimpleName()) ) {
+            response.println(ToolServer.class.getSimpleName() + " cannot be run from within a " + ToolServer.class.getSimpleName());
+            return Main.USER_EXCEPTION_EXIT_VALUE;
+        }
+
+        final PrintStream originalOut = System.out;
+        final PrintStream originalErr = System.err;
+        System.setOut(response);
+        System.setErr(response);
+        try {
+            // Tools draw random numbers from a JVM-wide generator, so reset it to give the same results as a fresh JVM
+            Utils.resetRandomGenerator();
+            return main.runCommandLineProgram(args.toArray(new String[args.size()]));
+        }
+        finally {
+            System.setOut(originalOut);
+            System.setErr(originalErr);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package org.broadinstitute.hellbender.tools.examples;
+
+import htsjdk.variant.variantcontext.VariantContext;
+import org.broadinstitute.hellbender.cmdline.Argument;
+import org.broadinstitute.hellbender.cmdline.CommandLineProgramProperties;
+import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
+import org.broadinstitute.hellbender.cmdline.programgroups.ReadProgramGroup;
+import org.broadinstitute.hellbender.engine.*;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.tools.walkers.haplotypecaller.ActivityProfileState;
+import org.broadinstitute.hellbender.tools.walkers.haplotypecaller.AssemblyRegion;
+import org.broadinstitute.hellbender.utils.GenomeLocParser;
+import org.broadinstitute.hellbender.utils.pileup.PileupElement;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+
+/**
+ * Example/toy program that shows how to implement the AssemblyRegionWalker interface. Considers a locus active if
+ * any of its bases disagree with the reference, and prints each assembly region along with its reads and
+ * overlapping variants (if present).
+ *
+ * Also shows how to support multi-threaded traversal: the output for each region is built up separately,
+ * and then written in region order via {@link #runInTraversalOrder}.
+ */
+@CommandLineProgramProperties(
+        summary = "Prints assembly regions to the specified output file (stdout if none provided), along with their reads and overlapping variants (if provided). Loci with bases that disagree with the reference are active.",
+        oneLineSummary = "Print assembly regions with optional contextual data",
+        programGroup = ReadProgramGroup.class
+)
+public final class ExampleAssemblyRegionWalker extends AssemblyRegionWalker {
+
+    @Argument(fullName = StandardArgumentDefinitions.OUTPUT_LONG_NAME, shortName = StandardArgumentDefinitions.OUTPUT_SHORT_NAME, doc = "Output file (if not provided, defaults to STDOUT)", common = false, optional = true)
+    private File outputFile = null;
+
+    @Argument(fullName = StandardArgumentDefinitions.VARIANT_LONG_NAME, shortName = StandardArgumentDefinitions.VARIANT_SHORT_NAME, doc = "One or more VCF files", optional = true)
+    private FeatureInput<VariantContext> variants;
+
+    private PrintStream outputStream = null;
+
+    private GenomeLocParser genomeLocParser = null;
+
+    @Override
+    public boolean requiresReference() {
+        return true;
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    @Override
+    public void onTraversalStart() {
+        genomeLocParser = new GenomeLocParser(getBestAvailableSequenceDictionary());
+        try {
+            outputStream = outputFile != null ? new PrintStream(outputFile) : System.out;
+        }
+        catch ( final FileNotFoundException e ) {
+            throw new UserException.CouldNotReadInputFile(outputFile, e);
+        }
+    }
+
+    /**
+     * The probability of being active is the fraction of bases in the pileup that disagree with the reference
+     */
+    @Override
+    public ActivityProfileState isActive( final AlignmentContext alignmentContext, final ReferenceContext referenceContext, final FeatureContext featureContext ) {
+        final byte refBase = referenceContext.getBases()[0];
+        int bases = 0;
+        int mismatches = 0;
+        for ( final PileupElement element : alignmentContext.getBasePileup() ) {
+            if ( ! element.isDeletion() ) {
+                ++bases;
+                if ( element.getBase() != refBase ) {
+                    ++mismatches;
+                }
+            }
+        }
+
+        return new ActivityProfileState(genomeLocParser.createGenomeLoc(alignmentContext.getLocation()),
+                                        bases > 0 ? (double)mismatches / bases : 0.0);
+    }
+
+    @Override
+    public void apply( final AssemblyRegion region, final ReferenceContext referenceContext, final FeatureContext featureContext ) {
+        final ByteArrayOutputStream regionOutput = new ByteArrayOutputStream();
+        final PrintStream regionStream = new PrintStream(regionOutput);
+
+        regionStream.printf("%s assembly region at %s (with padding: %s)\n", region.isActive() ? "Active" : "Inactive", region.getSpan(), region.getExtendedSpan());
+        regionStream.printf("\tReference bases: %d\n", referenceContext.getBases().length);
+        regionStream.printf("\tReads: %d\n", region.size());
+
+        if ( featureContext.hasBackingDataSource() ) {
+            for ( final VariantContext variant : featureContext.getValues(variants) ) {
+                regionStream.printf("\tOverlapping variant at %s:%d-%d. Ref: %s Alt(s): %s\n",
+                        variant.getContig(), variant.getStart(), variant.getEnd(), variant.getReference(), variant.getAlternateAlleles());
+            }
+        }
+
+        regionStream.flush();
+        runInTraversalOrder(() -> outputStream.print(regionOutput.toString()));
+    }
+
+    @Override
+    public Object onTraversalDone() {
+        if ( outputStream != null ) {
+            outputStream.close();
+        }
+
+        return null;
+    }
+}
@@ -12,6 +12,7 @@ import org.broadinstitute.hellbender.engine.*;
 import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.PrintStream;
@@ -19,6 +20,9 @@ import java.io.PrintStream;
 /**
  * Example/toy program that shows how to implement the IntervalWalker interface. Prints supplied intervals
  * along with overlapping reads/reference bases/variants (if present).
+ *
+ * Also shows how to support multi-threaded traversal: the output for each interval is built up separately,
+ * and then written in interval order via {@link #runInTraversalOrder}.
  */
 @CommandLineProgramProperties(
         summary = "Prints intervals supplied via -L to the specified output file (stdout if none provided), along with overlapping reads/reference bases/variants (if provided)",
@@ -45,40 +49,51 @@ public final class ExampleIntervalWalker extends IntervalWalker {
         }
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     @Override
     public void apply( final SimpleInterval interval, final ReadsContext readsContext, final ReferenceContext referenceContext, final FeatureContext featureContext ) {
-        outputStream.println("Current interval: " + interval);
+        final ByteArrayOutputStream intervalOutput = new ByteArrayOutputStream();
+        final PrintStream intervalStream = new PrintStream(intervalOutput);
+
+        intervalStream.println("Current interval: " + interval);
 
         if ( referenceContext.hasBackingDataSource() ) {
-            printReferenceBases(referenceContext);
+            printReferenceBases(intervalStream, referenceContext);
         }
 
         if ( readsContext.hasBackingDataSource() ) {
-            printReads(readsContext);
+            printReads(intervalStream, readsContext);
         }
 
         if ( featureContext.hasBackingDataSource() ) {
-            printVariants(featureContext);
+            printVariants(intervalStream, featureContext);
         }
+
+        intervalStream.flush();
+        runInTraversalOrder(() -> outputStream.print(intervalOutput.toString()));
     }
 
-    private void printReferenceBases( final ReferenceContext refContext ) {
-        outputStream.printf("\tOverlapping reference bases: %s\n\n", new String(refContext.getBases()));
+    private void printReferenceBases( final PrintStream stream, final ReferenceContext refContext ) {
+        stream.printf("\tOverlapping reference bases: %s\n\n", new String(refContext.getBases()));
     }
 
-    private void printReads( final ReadsContext readsContext ) {
+    private void printReads( final PrintStream stream, final ReadsContext readsContext ) {
         for ( final GATKRead read : readsContext ) {
-            outputStream.printf("\tOverlapping read at %s:%d-%d\n", read.getContig(), read.getStart(), read.getEnd());
+            stream.printf("\tOverlapping read at %s:%d-%d\n", read.getContig(), read.getStart(), read.getEnd());
         }
-        outputStream.println();
+        stream.println();
     }
 
-    private void printVariants( final FeatureContext featureContext ) {
+    private void printVariants( final PrintStream stream, final FeatureContext featureContext ) {
         for ( final VariantContext variant : featureContext.getValues(optionalVariants.variantFiles) ) {
-            outputStream.printf("\tOverlapping variant at %s:%d-%d. Ref: %s Alt(s): %s\n",
+            stream.printf("\tOverlapping variant at %s:%d-%d. Ref: %s Alt(s): %s\n",
                     variant.getContig(), variant.getStart(), variant.getEnd(), variant.getReference(), variant.getAlternateAlleles());
         }
-        outputStream.println();
+        stream.println();
     }
 
     @Override
@@ -0,0 +1,84 @@
+package org.broadinstitute.hellbender.tools.examples;
+
+import htsjdk.variant.variantcontext.VariantContext;
+import org.broadinstitute.hellbender.cmdline.Argument;
+import org.broadinstitute.hellbender.cmdline.CommandLineProgramProperties;
+import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
+import org.broadinstitute.hellbender.cmdline.programgroups.ReadProgramGroup;
+import org.broadinstitute.hellbender.engine.*;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.pileup.ReadPileup;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+
+/**
+ * Example/toy program that shows how to implement the LocusWalker interface. Prints each covered locus
+ * along with its pileup and overlapping reference bases/variants (if present).
+ */
+@CommandLineProgramProperties(
+        summary = "Prints each locus covered by the reads to the specified output file (stdout if none provided), along with its pileup and overlapping reference bases/variants (if provided)",
+        oneLineSummary = "Print loci and pileups with optional contextual data",
+        programGroup = ReadProgramGroup.class
+)
+public final class ExampleLocusWalker extends LocusWalker {
+
+    @Argument(fullName = StandardArgumentDefinitions.OUTPUT_LONG_NAME, shortName = StandardArgumentDefinitions.OUTPUT_SHORT_NAME, doc = "Output file (if not provided, defaults to STDOUT)", common = false, optional = true)
+    private File outputFile = null;
+
+    @Argument(fullName = StandardArgumentDefinitions.VARIANT_LONG_NAME, shortName = StandardArgumentDefinitions.VARIANT_SHORT_NAME, doc = "One or more VCF files", optional = true)
+    private FeatureInput<VariantContext> variants;
+
+    private PrintStream outputStream = null;
+
+    @Override
+    public void onTraversalStart() {
+        try {
+            outputStream = outputFile != null ? new PrintStream(outputFile) : System.out;
+        }
+        catch ( final FileNotFoundException e ) {
+            throw new UserException.CouldNotReadInputFile(outputFile, e);
+        }
+    }
+
+    @Override
+    public void apply( final AlignmentContext alignmentContext, final ReferenceContext referenceContext, final FeatureContext featureContext ) {
+        outputStream.printf("Current locus: %s:%d%s\n", alignmentContext.getContig(), alignmentContext.getPosition(),
+                alignmentContext.hasPileupBeenDownsampled() ? " (downsampled)" : "");
+
+        if ( referenceContext.hasBackingDataSource() ) {
+            printReferenceBases(referenceContext);
+        }
+
+        printPileup(alignmentContext.getBasePileup());
+
+        if ( featureContext.hasBackingDataSource() ) {
+            printVariants(featureContext);
+        }
+    }
+
+    private void printReferenceBases( final ReferenceContext refContext ) {
+        outputStream.printf("\tReference base: %s\n", new String(refContext.getBases()));
+    }
+
+    private void printPileup( final ReadPileup pileup ) {
+        outputStream.printf("\tDepth: %d Bases: %s\n", pileup.size(), new String(pileup.getBases()));
+    }
+
+    private void printVariants( final FeatureContext featureContext ) {
+        for ( final VariantContext variant : featureContext.getValues(variants) ) {
+            outputStream.printf("\tOverlapping variant at %s:%d-%d. Ref: %s Alt(s): %s\n",
+                    variant.getContig(), variant.getStart(), variant.getEnd(), variant.getReference(), variant.getAlternateAlleles());
+        }
+    }
+
+    @Override
+    public Object onTraversalDone() {
+        if ( outputStream != null ) {
+            outputStream.close();
+        }
+
+        return null;
+    }
+}
@@ -4,6 +4,7 @@ import htsjdk.samtools.util.Interval;
 import htsjdk.samtools.util.IntervalList;
 
 import java.util.*;
+import java.util.function.ToLongFunction;
 
 /**
  * @author mccowan
@@ -29,12 +30,34 @@ public final class IntervalListScatterer {
          * which is one of the objectives of scattering.</li>
          * </ol>
          */
-        BALANCING_WITHOUT_INTERVAL_SUBDIVISION
+        BALANCING_WITHOUT_INTERVAL_SUBDIVISION,
+        /**
+         * Like {@link Mode#BALANCING_WITHOUT_INTERVAL_SUBDIVISION}, no interval will be subdivided, but the scatter lists are
+         * balanced by the estimated number of reads overlapping their intervals (eg., from a BAM index) rather than by their
+         * base count, so that the work for each list is similar even when coverage is very uneven. Each list ends at the
+         * interval that brings its cumulative estimate closest to the ideal split point. The scatter count is an upper bound,
+         * as an interval with a large share of the reads may fill more than one list's share by itself.
+         */
+        BALANCING_BY_ESTIMATED_READS
     }
 
     private final Mode mode;
 
-    public IntervalListScatterer(final Mode mode) {this.mode = mode;}
+    private final ToLongFunction<Interval> readCountEstimator;
+
+    public IntervalListScatterer(final Mode mode) {this(mode, null);}
+
+    /**
+     * @param mode scatter mode
+     * @param readCountEstimator estimates the reads overlapping an interval; required for (and only used by) {@link Mode#BALANCING_BY_ESTIMATED_READS}
+     */
+    public IntervalListScatterer(final Mode mode, final ToLongFunction<Interval> readCountEstimator) {
+        if (mode == Mode.BALANCING_BY_ESTIMATED_READS && readCountEstimator == null) {
+            throw new IllegalArgumentException(mode + " requires a read count estimator");
+        }
+        this.mode = mode;
+        this.readCountEstimator = readCountEstimator;
+    }
 
     private int deduceIdealSplitLength(final IntervalList uniquedList, final int scatterCount) {
         final int splitWidth = Math.max((int) Math.floor(uniquedList.getBaseCount() / (1.0 * scatterCount)), 1);
@@ -64,6 +87,9 @@ public final class IntervalListScatterer {
         if (scatterCount < 1) throw new IllegalArgumentException("scatterCount < 1");
 
         final IntervalList uniquedList = isUniqued ? sourceIntervalList : sourceIntervalList.uniqued();
+        if (mode == Mode.BALANCING_BY_ESTIMATED_READS) {
+            return scatterByEstimatedReads(uniquedList, scatterCount);
+        }
         final long idealSplitLength = deduceIdealSplitLength(uniquedList, scatterCount);
 
         final List<IntervalList> accumulatedIntervalLists = new ArrayList<>();
@@ -129,4 +155,49 @@ public final class IntervalListScatterer {
 
         return accumulatedIntervalLists;
     }
+
+    private List<IntervalList> scatterByEstimatedReads(final IntervalList uniquedList, final int scatterCount) {
+        final List<Interval> intervals = uniquedList.getIntervals();
+        final long[] weights = new long[intervals.size()];
+        long totalWeight = 0;
+        for (int i = 0; i < intervals.size(); i++) {
+            weights[i] = Math.max(readCountEstimator.applyAsLong(intervals.get(i)), 0);
+            totalWeight += weights[i];
+        }
+        if (totalWeight == 0) {
+            // No reads anywhere, so there is nothing better to balance by than the base count
+            for (int i = 0; i < intervals.size(); i++) {
+                weights[i] = intervals.get(i).length();
+                totalWeight += weights[i];
+            }
+        }
+
+        final List<IntervalList> accumulatedIntervalLists = new ArrayList<>();
+        IntervalList runningIntervalList = new IntervalList(uniquedList.getHeader());
+        long cumulativeWeight = 0;
+        for (int i = 0; i < intervals.size(); i++) {
+            if (accumulatedIntervalLists.size() < scatterCount - 1 && !runningIntervalList.getIntervals().isEmpty()) {
+                // End this list before the interval if that leaves it closer to the ideal split point than including it would.
+                final double splitPoint = (double) totalWeight * (accumulatedIntervalLists.size() + 1) / scatterCount;
+                if (cumulativeWeight + weights[i] > splitPoint && splitPoint - cumulativeWeight < cumulativeWeight + weights[i] - splitPoint) {
+                    accumulatedIntervalLists.add(runningIntervalList);
+                    runningIntervalList = new IntervalList(uniquedList.getHeader());
+                }
+            }
+
+            runningIntervalList.add(intervals.get(i));
+            cumulativeWeight += weights[i];
+
+            if (accumulatedIntervalLists.size() < scatterCount - 1 &&
+                    cumulativeWeight >= (double) totalWeight * (accumulatedIntervalLists.size() + 1) / scatterCount) {
+                accumulatedIntervalLists.add(runningIntervalList);
+                runningIntervalList = new IntervalList(uniquedList.getHeader());
+            }
+        }
+        if (!runningIntervalList.getIntervals().isEmpty()) {
+            accumulatedIntervalLists.add(runningIntervalList);
+        }
+
+        return accumulatedIntervalLists;
+    }
 }
@@ -17,6 +17,7 @@ import org.broadinstitute.hellbender.cmdline.CommandLineProgramProperties;
 import org.broadinstitute.hellbender.cmdline.PicardCommandLineProgram;
 import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
 import org.broadinstitute.hellbender.cmdline.programgroups.IntervalProgramGroup;
+import org.broadinstitute.hellbender.utils.read.BAMIndexReadCountEstimator;
 
 import java.io.File;
 import java.text.DecimalFormat;
@@ -77,6 +78,10 @@ public final class IntervalListTools extends PicardCommandLineProgram {
     @Argument(shortName = "M", doc = "Do not subdivide ")
     public IntervalListScatterer.Mode SUBDIVISION_MODE = IntervalListScatterer.Mode.INTERVAL_SUBDIVISION;
 
+    @Argument(shortName = "RDB", doc = "One or more indexed BAM files whose index is used to estimate the reads overlapping each interval, " +
+            "for SUBDIVISION_MODE=BALANCING_BY_ESTIMATED_READS.", optional = true)
+    public List<File> READ_DENSITY_BAM = new ArrayList<>();
+
     @Argument(doc = "Produce the inverse list", optional = true)
     public boolean INVERT = false;
 
@@ -223,7 +228,7 @@ public final class IntervalListTools extends PicardCommandLineProgram {
                             "Requested scatter width of %s, but only emitted %s.  (This may be an expected consequence of running in %s mode.)",
                             SCATTER_COUNT,
                             scattered.size(),
-                            IntervalListScatterer.Mode.BALANCING_WITHOUT_INTERVAL_SUBDIVISION
+                            SUBDIVISION_MODE
                     ));
                 }
                 resultIntervals = scattered;
@@ -274,6 +279,9 @@ public final class IntervalListTools extends PicardCommandLineProgram {
         if (SCATTER_COUNT < 1) {
             errorMsgs.add("SCATTER_COUNT must be greater than 0.");
         }
+        if (SUBDIVISION_MODE == IntervalListScatterer.Mode.BALANCING_BY_ESTIMATED_READS && READ_DENSITY_BAM.isEmpty()) {
+            errorMsgs.add("READ_DENSITY_BAM must be given for SUBDIVISION_MODE=" + SUBDIVISION_MODE + ".");
+        }
         if (BREAK_BANDS_AT_MULTIPLES_OF < 0) {
             errorMsgs.add("BREAK_BANDS_AT_MULTIPLES_OF must be greater than or equal to 0.");
         }
@@ -287,8 +295,18 @@ public final class IntervalListTools extends PicardCommandLineProgram {
      * @return The scattered intervals, represented as a {@link List} of {@link IntervalList}
      */
     private List<IntervalList> writeScatterIntervals(final IntervalList list) {
-        final IntervalListScatterer scatterer = new IntervalListScatterer(SUBDIVISION_MODE);
-        final List<IntervalList> scattered = scatterer.scatter(list, SCATTER_COUNT, UNIQUE);
+        final List<BAMIndexReadCountEstimator> estimators = new ArrayList<>();
+        final List<IntervalList> scattered;
+        try {
+            for (final File bam : READ_DENSITY_BAM) {
+                estimators.add(new BAMIndexReadCountEstimator(bam));
+            }
+            final IntervalListScatterer scatterer = new IntervalListScatterer(SUBDIVISION_MODE,
+                    interval -> estimators.stream().mapToLong(estimator -> estimator.estimateReads(interval)).sum());
+            scattered = scatterer.scatter(list, SCATTER_COUNT, UNIQUE);
+        } finally {
+            estimators.forEach(BAMIndexReadCountEstimator::close);
+        }
 
         final DecimalFormat fileNameFormatter = new DecimalFormat("0000");
         int fileIndex = 1;
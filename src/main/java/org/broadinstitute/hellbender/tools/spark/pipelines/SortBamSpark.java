@@ -8,6 +8,7 @@ import org.broadinstitute.hellbender.cmdline.CommandLineProgramProperties;
 import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
 import org.broadinstitute.hellbender.cmdline.programgroups.SparkProgramGroup;
 import org.broadinstitute.hellbender.engine.spark.GATKSparkTool;
+import org.broadinstitute.hellbender.engine.spark.SAMRecordToGATKReadAdapterSerializer;
 import org.broadinstitute.hellbender.engine.spark.datasources.ReadsSparkSink;
 import org.broadinstitute.hellbender.exceptions.GATKException;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
@@ -40,17 +41,30 @@ public final class SortBamSpark extends GATKSparkTool {
         System.out.println("Using parallelism of " + parallelism);
 
         final SAMFileHeader readsHeader = getHeaderForReads();
-        ReadCoordinateComparator comparator = new ReadCoordinateComparator(readsHeader);
-        JavaRDD<GATKRead> sortedReads = reads
-                .mapToPair(read -> new Tuple2<>(read, null))
-                .sortByKey(comparator, true, parallelism)
-                .keys();
+        readsHeader.setSortOrder(SAMFileHeader.SortOrder.coordinate);
+        final JavaRDD<GATKRead> sortedReads = sortReads(reads, readsHeader, parallelism);
         try {
-            readsHeader.setSortOrder(SAMFileHeader.SortOrder.coordinate);
             ReadsSparkSink.writeReads(
                     ctx, outputFile, sortedReads, readsHeader, parallelism == 1 ? ReadsWriteFormat.SINGLE : ReadsWriteFormat.SHARDED);
         } catch (IOException e) {
             throw new GATKException("unable to write bam: " + e);
         }
     }
+
+    /**
+     * Sort reads into coordinate order.
+     *
+     * @param reads reads to sort
+     * @param header header of the reads, which is restored to them after the shuffle
+     * @param parallelism number of partitions of the sorted reads
+     * @return reads, in coordinate order
+     */
+    public static JavaRDD<GATKRead> sortReads(final JavaRDD<GATKRead> reads, final SAMFileHeader header, final int parallelism) {
+        final ReadCoordinateComparator comparator = new ReadCoordinateComparator(header);
+        final JavaRDD<GATKRead> sortedReads = reads
+                .mapToPair(read -> new Tuple2<>(read, null))
+                .sortByKey(comparator, true, parallelism)
+                .keys();
+        return SAMRecordToGATKReadAdapterSerializer.restoreHeaders(sortedReads, header);
+    }
 }
@@ -9,6 +9,7 @@ import htsjdk.samtools.metrics.MetricsFile;
 import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaRDD;
 import org.broadinstitute.hellbender.engine.AuthHolder;
+import org.broadinstitute.hellbender.engine.spark.SAMRecordToGATKReadAdapterSerializer;
 import org.broadinstitute.hellbender.exceptions.GATKException;
 import org.broadinstitute.hellbender.metrics.MetricsUtils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
@@ -54,6 +55,7 @@ public class MarkDuplicatesSparkUtils {
      *   (a) For each group created by (4), sort the pairs by score and mark all but the
      *       highest scoring as duplicates.
      *   (b) Determine which duplicates are optical duplicates and increase the overall count.
+     * (6) Restore the header to the reads, which are shuffled without it.
      */
     static JavaRDD<GATKRead> transformReads(final SAMFileHeader header, final OpticalDuplicateFinder finder, final JavaRDD<GATKRead> reads, final int parallelism) {
 
@@ -88,7 +90,7 @@ public class MarkDuplicatesSparkUtils {
             return out;
         }).groupByKey();
 
-        return markPairedEnds(keyedPairs, finder, header);
+        return SAMRecordToGATKReadAdapterSerializer.restoreHeaders(markPairedEnds(keyedPairs, finder, header), header);
     }
 
     static JavaRDD<GATKRead> markPairedEnds(final JavaPairRDD<String, Iterable<PairedEnds>> keyedPairs,
@@ -144,7 +144,7 @@ public final class BaseRecalibrator extends ReadWalker {
 
         recalibrationEngine = new BaseRecalibrationEngine(recalArgs, getHeaderForReads());
         recalibrationEngine.logCovariatesUsed();
-        referenceDataSource = ReferenceDataSource.of(referenceArguments.getReferenceFile());
+        referenceDataSource = openReferenceDataSource();
     }
 
     private void assertNoSOLiDReadGroups(final SAMFileHeader readsHeader) {
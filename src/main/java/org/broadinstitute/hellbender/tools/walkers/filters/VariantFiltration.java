@@ -200,7 +200,7 @@ public final class VariantFiltration extends VariantWalker {
 
     private void initializeVcfWriter() {
         //TODO remove hardwiring to output VCFs
-        writer = new VariantContextWriterBuilder().setOutputFile(out).setOutputFileType(VariantContextWriterBuilder.OutputType.VCF).unsetOption(Options.INDEX_ON_THE_FLY).build();
+        writer = new OrderedVariantContextWriter(new VariantContextWriterBuilder().setOutputFile(out).setOutputFileType(VariantContextWriterBuilder.OutputType.VCF).unsetOption(Options.INDEX_ON_THE_FLY).build());
 
         // setup the header fields
         final Set<VCFHeaderLine> hInfo = new HashSet<>();
@@ -236,6 +236,11 @@ public final class VariantFiltration extends VariantWalker {
         writer.writeHeader(new VCFHeader(hInfo, getHeaderForVariants().getGenotypeSamples()));
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     @Override
     public void onTraversalStart() {
         if (clusterSize <= 1){
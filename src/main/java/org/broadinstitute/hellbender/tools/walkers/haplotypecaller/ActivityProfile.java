@@ -0,0 +1,167 @@
+package org.broadinstitute.hellbender.tools.walkers.haplotypecaller;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.util.Locatable;
+import org.broadinstitute.hellbender.utils.GenomeLoc;
+import org.broadinstitute.hellbender.utils.GenomeLocParser;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incrementally built profile of the probability of being active at each of a series of contiguous loci,
+ * which is cut into {@link AssemblyRegion}s as soon as the boundaries of the regions are known.
+ *
+ * A locus is active if its probability of being active is above the threshold given at construction.
+ * Each region covers a run of loci that are either all active or all inactive, and spans at most the
+ * maximum region size. When a run of active loci has to be cut because it is too long, the cut is placed
+ * after the least active locus between the minimum and maximum region sizes, so that region boundaries
+ * tend to fall where there is the least evidence of variation.
+ *
+ * States must be added in order, one per locus, without gaps: to move on to a non-contiguous locus, first
+ * pop all of the remaining regions with forceConversion set (see {@link #popReadyAssemblyRegions}).
+ */
+public final class ActivityProfile {
+
+    private final List<ActivityProfileState> stateList = new ArrayList<>();
+    private final GenomeLocParser parser;
+    private final double activeProbThreshold;
+    private final SAMFileHeader header;
+
+    /**
+     * Create a new empty ActivityProfile
+     *
+     * @param parser the parser we can use to create genome locs
+     * @param activeProbThreshold loci with a probability of being active above this threshold are active
+     * @param header header for the reads that will be added to regions popped from this profile
+     */
+    public ActivityProfile( final GenomeLocParser parser, final double activeProbThreshold, final SAMFileHeader header ) {
+        this.parser = Utils.nonNull(parser, "parser cannot be null");
+        this.header = Utils.nonNull(header, "header cannot be null");
+        this.activeProbThreshold = activeProbThreshold;
+    }
+
+    /**
+     * @return true if there are no states in this profile
+     */
+    public boolean isEmpty() {
+        return stateList.isEmpty();
+    }
+
+    /**
+     * @return the number of states in this profile
+     */
+    public int size() {
+        return stateList.size();
+    }
+
+    /**
+     * @return the span of the states in this profile, or null if it is empty
+     */
+    public GenomeLoc getSpan() {
+        if ( isEmpty() ) {
+            return null;
+        }
+        final GenomeLoc first = stateList.get(0).getLoc();
+        return parser.createGenomeLoc(first.getContig(), first.getStart(), first.getStart() + stateList.size() - 1);
+    }
+
+    /**
+     * Can a state at locus be added to this profile?
+     *
+     * @param locus a single-bp locus
+     * @return true if the profile is empty, or locus immediately follows the last state in this profile
+     */
+    public boolean isContiguousWith( final Locatable locus ) {
+        Utils.nonNull(locus);
+        if ( isEmpty() ) {
+            return true;
+        }
+        final GenomeLoc last = stateList.get(stateList.size() - 1).getLoc();
+        return last.getContig().equals(locus.getContig()) && locus.getStart() == last.getStart() + 1;
+    }
+
+    /**
+     * Add the next state to this profile
+     *
+     * @param state a non-null state that immediately follows the last state in this profile (see {@link #isContiguousWith})
+     */
+    public void add( final ActivityProfileState state ) {
+        Utils.nonNull(state, "state cannot be null");
+        if ( ! isContiguousWith(state.getLoc()) ) {
+            throw new IllegalArgumentException("State at " + state.getLoc() + " does not immediately follow the end of the profile at " + getSpan());
+        }
+        stateList.add(state);
+    }
+
+    /**
+     * Remove and return the regions at the start of this profile whose boundaries are known
+     *
+     * A region is ready once we have seen a locus that is not part of it, or once it has reached the maximum
+     * region size. The states of the returned regions are removed from this profile.
+     *
+     * @param assemblyRegionExtension the extension (padding) to use for the regions
+     * @param minRegionSize active regions cut for being too long are at least this long
+     * @param maxRegionSize regions are at most this long
+     * @param forceConversion if true, also return the last region, even though more loci might be added to it
+     * @return the ready regions, in order. May be empty.
+     */
+    public List<AssemblyRegion> popReadyAssemblyRegions( final int assemblyRegionExtension, final int minRegionSize, final int maxRegionSize, final boolean forceConversion ) {
+        Utils.validateArg(assemblyRegionExtension >= 0, "assemblyRegionExtension must be >= 0");
+        Utils.validateArg(minRegionSize > 0, "minRegionSize must be > 0");
+        Utils.validateArg(maxRegionSize >= minRegionSize, "maxRegionSize must be >= minRegionSize");
+
+        final List<AssemblyRegion> regions = new ArrayList<>();
+        while ( ! isEmpty() ) {
+            final boolean isActive = isActive(stateList.get(0));
+            int runLength = 1;
+            while ( runLength < stateList.size() && runLength < maxRegionSize && isActive(stateList.get(runLength)) == isActive ) {
+                ++runLength;
+            }
+
+            final int regionSize;
+            if ( runLength == maxRegionSize ) {
+                regionSize = isActive ? findBestCutSize(minRegionSize, maxRegionSize) : maxRegionSize;
+            }
+            else if ( runLength < stateList.size() || forceConversion ) {
+                regionSize = runLength;
+            }
+            else {
+                // The run extends to the end of the profile, so we don't know where it stops yet
+                break;
+            }
+
+            regions.add(popRegion(regionSize, isActive, assemblyRegionExtension));
+        }
+        return regions;
+    }
+
+    private boolean isActive( final ActivityProfileState state ) {
+        return state.isActiveProb() > activeProbThreshold;
+    }
+
+    /**
+     * @return the size of the region to cut from the start of a run of at least maxRegionSize active states,
+     *         such that the region ends at the least active state between minRegionSize and maxRegionSize.
+     *         Ties go to the longest region.
+     */
+    private int findBestCutSize( final int minRegionSize, final int maxRegionSize ) {
+        int bestSize = maxRegionSize;
+        for ( int size = maxRegionSize - 1; size >= minRegionSize; --size ) {
+            if ( stateList.get(size - 1).isActiveProb() < stateList.get(bestSize - 1).isActiveProb() ) {
+                bestSize = size;
+            }
+        }
+        return bestSize;
+    }
+
+    private AssemblyRegion popRegion( final int regionSize, final boolean isActive, final int assemblyRegionExtension ) {
+        final List<ActivityProfileState> regionStates = stateList.subList(0, regionSize);
+        final GenomeLoc first = regionStates.get(0).getLoc();
+        final GenomeLoc regionLoc = parser.createGenomeLoc(first.getContig(), first.getStart(), first.getStart() + regionSize - 1);
+        final AssemblyRegion region = new AssemblyRegion(regionLoc, regionStates, isActive, parser, assemblyRegionExtension, header);
+        regionStates.clear();
+        return region;
+    }
+}
@@ -160,6 +160,11 @@ public final class ValidateVariants extends VariantWalker {
      */
     private Collection<ValidationType> validationTypes;
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     @Override
     public void onTraversalStart() {
         validationTypes = calculateValidationTypesToApply(excludeTypes);
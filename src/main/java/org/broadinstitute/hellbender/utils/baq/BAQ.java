@@ -3,7 +3,6 @@ package org.broadinstitute.hellbender.utils.baq;
 import htsjdk.samtools.CigarElement;
 import htsjdk.samtools.CigarOperator;
 import htsjdk.samtools.SAMUtils;
-import htsjdk.samtools.reference.ReferenceSequence;
 import org.apache.commons.lang3.tuple.MutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.logging.log4j.LogManager;
@@ -149,6 +148,13 @@ public final class BAQ implements Serializable {
 
     private final double[][][] EPSILONS = new double[256][256][SAMUtils.MAX_PHRED_SCORE+1];
 
+    /**
+     * Scratch buffer for the reference bases spanning each read, reused across reads so that we don't allocate
+     * a new array per read. Grown as needed. There is one per thread, so that BAQ objects can be shared between
+     * the threads of multi-threaded traversals.
+     */
+    private static final ThreadLocal<byte[]> referenceBuffer = ThreadLocal.withInitial(() -> new byte[0]);
+
     private void initializeCachedData() {
         for ( int i = 0; i < 256; i++ )
             for ( int j = 0; j < 256; j++ )
@@ -179,6 +185,16 @@ public final class BAQ implements Serializable {
     // ####################################################################################################
     public int hmm_glocal(final byte[] ref, final byte[] query, int qstart, int l_query, final byte[] _iqual, int[] state, byte[] q) {
         if ( ref == null ) throw new GATKException("BUG: ref sequence is null");
+        return hmm_glocal(ref, ref.length, query, qstart, l_query, _iqual, state, q);
+    }
+
+    /**
+     * Same as {@link #hmm_glocal(byte[], byte[], int, int, byte[], int[], byte[])}, but only considers the first
+     * l_ref bases of ref, so that ref may be a reusable buffer that is larger than the reference span of interest.
+     */
+    public int hmm_glocal(final byte[] ref, final int l_ref, final byte[] query, int qstart, int l_query, final byte[] _iqual, int[] state, byte[] q) {
+        if ( ref == null ) throw new GATKException("BUG: ref sequence is null");
+        if ( l_ref < 0 || l_ref > ref.length ) throw new GATKException("BUG: ref length " + l_ref + " is out of bounds for ref of length " + ref.length);
         if ( query == null ) throw new GATKException("BUG: query sequence is null");
         if ( _iqual == null ) throw new GATKException("BUG: query quality vector is null");
         if ( query.length != _iqual.length ) throw new GATKException("BUG: read sequence length != qual length");
@@ -191,8 +207,7 @@ public final class BAQ implements Serializable {
 		int i, k;
 
         /*** initialization ***/
-		// change coordinates
-		final int l_ref = ref.length;
+		// change coordinates (l_ref is supplied by the caller)
 
 		// set band width
 		int bw2, bw = l_ref > l_query? l_ref : l_query;
@@ -490,12 +505,20 @@ public final class BAQ implements Serializable {
     public static class BAQCalculationResult {
         public byte[] refBases, rawQuals, readBases, bq;
         public int[] state;
+        /**
+         * Number of bases at the start of refBases that were used in the calculation
+         */
+        public int refLength;
 
         public BAQCalculationResult(GATKRead read, byte[] ref) {
             this(read.getBaseQualities(), read.getBases(), ref);
         }
 
         public BAQCalculationResult(byte[] bases, byte[] quals, byte[] ref) {
+            this(bases, quals, ref, ref.length);
+        }
+
+        public BAQCalculationResult(byte[] bases, byte[] quals, byte[] ref, int refLength) {
             // prepares data for calculation
             rawQuals = quals;
             readBases = bases;
@@ -504,6 +527,7 @@ public final class BAQ implements Serializable {
             bq = new byte[rawQuals.length];
             state = new int[rawQuals.length];
             this.refBases = ref;
+            this.refLength = refLength;
         }
     }
 
@@ -531,9 +555,15 @@ public final class BAQ implements Serializable {
         if ( referenceWindow.getEnd() > refDS.getSequenceDictionary().getSequence(read.getContig()).getSequenceLength() ) {
             return null;
         } else {
-            // now that we have the start and stop, get the reference sequence covering it
-            ReferenceSequence refSeq = refDS.queryAndPrefetch(referenceWindow.getContig(), referenceWindow.getStart(), referenceWindow.getEnd());
-            return calcBAQFromHMM(read, refSeq.getBases(), (referenceWindow.getStart() - (includeClippedBases ? read.getUnclippedStart() : read.getStart())));
+            // now that we have the start and stop, copy the reference sequence covering it into our reusable buffer
+            final int refLength = referenceWindow.size();
+            byte[] refBases = referenceBuffer.get();
+            if ( refBases.length < refLength ) {
+                refBases = new byte[refLength];
+                referenceBuffer.set(refBases);
+            }
+            refDS.copyBases(referenceWindow.getContig(), referenceWindow.getStart(), referenceWindow.getEnd(), refBases, 0);
+            return calcBAQFromHMM(read, refBases, refLength, (referenceWindow.getStart() - (includeClippedBases ? read.getUnclippedStart() : read.getStart())));
         }
     }
 
@@ -541,16 +571,23 @@ public final class BAQ implements Serializable {
 //    final SimpleTimer local = new SimpleTimer();
 //    int n = 0;
     public BAQCalculationResult calcBAQFromHMM(byte[] ref, byte[] query, byte[] quals, int queryStart, int queryEnd ) {
+        return calcBAQFromHMM(ref, ref.length, query, quals, queryStart, queryEnd);
+    }
+
+    /**
+     * Same as {@link #calcBAQFromHMM(byte[], byte[], byte[], int, int)}, but only considers the first refLength bases of ref
+     */
+    public BAQCalculationResult calcBAQFromHMM(byte[] ref, int refLength, byte[] query, byte[] quals, int queryStart, int queryEnd ) {
 //        total.restart();
         if ( queryStart < 0 ) throw new GATKException("BUG: queryStart < 0: " + queryStart);
         if ( queryEnd < 0 ) throw new GATKException("BUG: queryEnd < 0: " + queryEnd);
         if ( queryEnd < queryStart ) throw new GATKException("BUG: queryStart < queryEnd : " + queryStart + " end =" + queryEnd);
 
         // note -- assumes ref is offset from the *CLIPPED* start
-        BAQCalculationResult baqResult = new BAQCalculationResult(query, quals, ref);
+        BAQCalculationResult baqResult = new BAQCalculationResult(query, quals, ref, refLength);
         int queryLen = queryEnd - queryStart;
 //        local.restart();
-        hmm_glocal(baqResult.refBases, baqResult.readBases, queryStart, queryLen, baqResult.rawQuals, baqResult.state, baqResult.bq);
+        hmm_glocal(baqResult.refBases, baqResult.refLength, baqResult.readBases, queryStart, queryLen, baqResult.rawQuals, baqResult.state, baqResult.bq);
 //        local.stop();
 //        total.stop();
 //        if ( n++ % 100000 == 0 )
@@ -599,8 +636,16 @@ public final class BAQ implements Serializable {
     }
 
     // we need to pad ref by at least the bandwidth / 2 on either side
-    @SuppressWarnings("fallthrough")
     public BAQCalculationResult calcBAQFromHMM(GATKRead read, byte[] ref, int refOffset) {
+        return calcBAQFromHMM(read, ref, ref.length, refOffset);
+    }
+
+    /**
+     * Same as {@link #calcBAQFromHMM(GATKRead, byte[], int)}, but only considers the first refLength bases of ref,
+     * so that ref may be a reusable buffer
+     */
+    @SuppressWarnings("fallthrough")
+    public BAQCalculationResult calcBAQFromHMM(GATKRead read, byte[] ref, int refLength, int refOffset) {
         // todo -- need to handle the case where the cigar sum of lengths doesn't cover the whole read
         Pair<Integer, Integer> queryRange = calculateQueryRange(read);
         if ( queryRange == null ) return null; // read has Ns, or is completely clipped away
@@ -608,7 +653,7 @@ public final class BAQ implements Serializable {
         int queryStart = queryRange.getLeft();
         int queryEnd = queryRange.getRight();
 
-        BAQCalculationResult baqResult = calcBAQFromHMM(ref, read.getBases(), read.getBaseQualities(), queryStart, queryEnd);
+        BAQCalculationResult baqResult = calcBAQFromHMM(ref, refLength, read.getBases(), read.getBaseQualities(), queryStart, queryEnd);
 
         // cap quals
         int readI = 0, refI = 0;
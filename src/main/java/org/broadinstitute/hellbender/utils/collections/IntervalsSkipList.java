@@ -61,4 +61,13 @@ public final class IntervalsSkipList<T extends Locatable> implements Serializabl
         return intervals.get(k).getOverlapping(query);
     }
 
+    /**
+     * Returns whether any of the intervals overlap with the query.
+     * Equivalent to, but cheaper than, checking whether {@link #getOverlapping} is empty.
+     */
+    public boolean overlapsAny(SimpleInterval query) {
+        IntervalsSkipListOneContig<T> contigIntervals = intervals.get(query.getContig());
+        return contigIntervals != null && contigIntervals.overlapsAny(query);
+    }
+
 }
@@ -88,6 +88,30 @@ public final class IntervalsSkipListOneContig<T extends Locatable> implements Se
         return ret;
     }
 
+    /**
+     * Returns whether any of the intervals overlap with the query.
+     * Equivalent to, but cheaper than, checking whether {@link #getOverlapping} is empty.
+     */
+    public boolean overlapsAny(SimpleInterval query) {
+        if (!contig.equals(query.getContig())) {
+            return false;
+        }
+        int idx = firstPotentiallyReaching(query.getStart());
+        if (idx<0) {
+            idx=0;
+        }
+        for (;idx<vs.size();idx++) {
+            T v = vs.get(idx);
+            if (v.getStart() > query.getEnd()) {
+                break;
+            }
+            if (query.overlaps(v)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     // returns all the intervals that overlap with the query.
     // (use the optimized version instead, unless you're testing it and need something to compare against)
     protected ArrayList<T> getOverlappingIgnoringIndex(SimpleInterval query) {
@@ -112,13 +136,23 @@ public final class IntervalsSkipListOneContig<T extends Locatable> implements Se
     // returns an index into the vs array s.t. no entry before that index
     // reaches (or extends beyond) the given position.
     private int firstPotentiallyReaching(int position) {
-        for (int i=0; i<reach.length; i++) {
-            if (reach[i]>=position) {
-                return i<<shift;
+        // reach is non-decreasing over the buckets that hold entries, so we can binary search it
+        final int nonEmptyBuckets = (vs.size() + (1<<shift) - 1) >> shift;
+        int lo = 0;
+        int hi = nonEmptyBuckets;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (reach[mid] >= position) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
             }
         }
-        // no one reaches to the given position.
-        return vs.size()-1;
+        if (lo == nonEmptyBuckets) {
+            // no one reaches to the given position.
+            return vs.size()-1;
+        }
+        return lo<<shift;
     }
 
     private void sortVariants() {
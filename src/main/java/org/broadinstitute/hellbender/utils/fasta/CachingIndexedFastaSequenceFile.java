@@ -12,32 +12,48 @@ import org.apache.logging.log4j.Logger;
 import org.broadinstitute.hellbender.exceptions.GATKException;
 import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.BaseUtils;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.io.IndexCache;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
 
 /**
  * A caching version of the IndexedFastaSequenceFile that avoids going to disk as often as the raw indexer.
  *
+ * Keeps multiple cached windows of the reference, each of up to cacheSize bp, so that workloads that alternate
+ * between a few distant loci (eg., reads with distant mates, or multiple traversal intervals) still hit the cache.
+ * When the total size of the cached windows would exceed the cache budget, the least-recently-used windows are
+ * evicted.
+ *
  * Automatically upper-cases the bases coming in, unless the flag preserveCase is explicitly set.
  * Automatically converts IUPAC bases to Ns, unless the flag preserveIUPAC is explicitly set.
+ *
+ * Instances are safe to share between threads.
  */
 public final class CachingIndexedFastaSequenceFile extends IndexedFastaSequenceFile {
     protected static final Logger logger = LogManager.getLogger(CachingIndexedFastaSequenceFile.class);
 
-    /** do we want to print debugging information about cache efficiency? */
-    private static final boolean PRINT_EFFICIENCY = false;
-
-    /** If we are printing efficiency info, what frequency should we do it at? */
-    private static final int PRINT_FREQUENCY = 10000;
-
     /** The default cache size in bp */
     public static final long DEFAULT_CACHE_SIZE = 1000000;
 
-    /** The cache size of this CachingIndexedFastaSequenceFile */
+    /** By default, our cache budget allows for this many full-sized cache windows */
+    public static final int DEFAULT_CACHE_WINDOWS = 4;
+
+    /** The default cache budget in bp: enough for {@link #DEFAULT_CACHE_WINDOWS} full-sized windows of {@link #DEFAULT_CACHE_SIZE} */
+    public static final long DEFAULT_CACHE_BUDGET = defaultCacheBudget(DEFAULT_CACHE_SIZE);
+
+    /** The cache size of this CachingIndexedFastaSequenceFile (the maximum size of a single cached window) */
     private final long cacheSize;
 
+    /** The maximum total number of bases in all of our cached windows */
+    private final long cacheBudget;
+
     /** When we have a cache miss at position X, we load sequence from X - cacheMissBackup */
     private final long cacheMissBackup;
 
@@ -52,16 +68,31 @@ public final class CachingIndexedFastaSequenceFile extends IndexedFastaSequenceF
     private final boolean preserveIUPAC;
 
     // information about checking efficiency
-    long cacheHits = 0;
-    long cacheMisses = 0;
+    private long cacheHits = 0;
+    private long cacheMisses = 0;
+    private long cacheEvictions = 0;
 
     /** Represents a specific cached sequence, with a specific start and stop, as well as the bases */
-    private static class Cache {
-        long start = -1, stop = -1;
-        ReferenceSequence seq = null;
+    private static final class Cache {
+        final long start, stop;
+        final ReferenceSequence seq;
+
+        Cache( final long start, final long stop, final ReferenceSequence seq ) {
+            this.start = start;
+            this.stop = stop;
+            this.seq = seq;
+        }
+
+        boolean contains( final int contigIndex, final long queryStart, final long queryStop ) {
+            return seq.getContigIndex() == contigIndex && queryStart >= start && queryStop <= stop;
+        }
     }
 
-    private final Cache cache = new Cache();
+    /** Our cached windows, most-recently-used first. All access must be synchronized on this object. */
+    private final Deque<Cache> caches = new ArrayDeque<>();
+
+    /** Total number of bases in our cached windows */
+    private long cachedBases = 0;
 
     /**
      * Same as general constructor but allows one to override the default cacheSize
@@ -73,9 +104,27 @@ public final class CachingIndexedFastaSequenceFile extends IndexedFastaSequenceF
      * @param preserveIUPAC If true, we will keep the IUPAC bases in the FASTA, otherwise they are converted to Ns
      */
     public CachingIndexedFastaSequenceFile(final File fasta, final FastaSequenceIndex index, final long cacheSize, final boolean preserveCase, final boolean preserveIUPAC) {
+        this(fasta, index, cacheSize, defaultCacheBudget(cacheSize), preserveCase, preserveIUPAC);
+    }
+
+    /**
+     * Same as general constructor but allows one to override the default cacheSize and cacheBudget
+     *
+     * @param fasta the file we will read our FASTA sequence from.
+     * @param index the index of the fasta file, used for efficient random access
+     * @param cacheSize the size in bp of each cached window we will use for this reader
+     * @param cacheBudget the maximum total size in bp of all cached windows. The least-recently-used windows are
+     *                    evicted to stay within this budget. A budget of a single window gives the behavior of a
+     *                    simple single-window cache.
+     * @param preserveCase If true, we will keep the case of the underlying bases in the FASTA, otherwise everything is converted to upper case
+     * @param preserveIUPAC If true, we will keep the IUPAC bases in the FASTA, otherwise they are converted to Ns
+     */
+    public CachingIndexedFastaSequenceFile(final File fasta, final FastaSequenceIndex index, final long cacheSize, final long cacheBudget, final boolean preserveCase, final boolean preserveIUPAC) {
         super(fasta, index);
         if ( cacheSize < 0 ) throw new IllegalArgumentException("cacheSize must be > 0");
+        if ( cacheBudget < 0 ) throw new IllegalArgumentException("cacheBudget must be > 0");
         this.cacheSize = cacheSize;
+        this.cacheBudget = cacheBudget;
         this.cacheMissBackup = Math.max(cacheSize / 1000, 1);
         this.preserveCase = preserveCase;
         this.preserveIUPAC = preserveIUPAC;
@@ -92,14 +141,46 @@ public final class CachingIndexedFastaSequenceFile extends IndexedFastaSequenceF
      * @param preserveCase If true, we will keep the case of the underlying bases in the FASTA, otherwise everything is converted to upper case
      */
     public CachingIndexedFastaSequenceFile(final File fasta, final long cacheSize, final boolean preserveCase, final boolean  preserveIUPAC) throws FileNotFoundException {
+        this(fasta, cacheSize, defaultCacheBudget(cacheSize), preserveCase, preserveIUPAC);
+    }
+
+    /**
+     * Open the given indexed fasta sequence file.  Throw an exception if the file cannot be opened.
+     *
+     * Looks for a index file for fasta on disk
+     * Uses provided cacheSize and cacheBudget instead of the defaults
+     *
+     * @param fasta The file to open.
+     * @param cacheSize the size of each cached window to use in this CachingIndexedFastaReader, must be >= 0
+     * @param cacheBudget the maximum total size in bp of all cached windows, must be >= 0
+     * @param preserveCase If true, we will keep the case of the underlying bases in the FASTA, otherwise everything is converted to upper case
+     * @param preserveIUPAC If true, we will keep the IUPAC bases in the FASTA, otherwise they are converted to Ns
+     */
+    public CachingIndexedFastaSequenceFile(final File fasta, final long cacheSize, final long cacheBudget, final boolean preserveCase, final boolean  preserveIUPAC) throws FileNotFoundException {
         super(fasta);
         if ( cacheSize < 0 ) throw new IllegalArgumentException("cacheSize must be > 0");
+        if ( cacheBudget < 0 ) throw new IllegalArgumentException("cacheBudget must be > 0");
         this.cacheSize = cacheSize;
+        this.cacheBudget = cacheBudget;
         this.cacheMissBackup = Math.max(cacheSize / 1000, 1);
         this.preserveCase = preserveCase;
         this.preserveIUPAC = preserveIUPAC;
     }
 
+    /**
+     * @return the default cache budget for the given cache size: enough for {@link #DEFAULT_CACHE_WINDOWS} full-sized windows
+     */
+    private static long defaultCacheBudget( final long cacheSize ) {
+        return DEFAULT_CACHE_WINDOWS * maxWindowSize(cacheSize);
+    }
+
+    /**
+     * @return the largest number of bases we may load into a single cached window for the given cache size
+     */
+    private static long maxWindowSize( final long cacheSize ) {
+        return cacheSize + 2 * Math.max(cacheSize / 1000, 1) + 1;
+    }
+
     /**
      * Same as general constructor but allows one to override the default cacheSize
      *
@@ -145,6 +226,19 @@ public final class CachingIndexedFastaSequenceFile extends IndexedFastaSequenceF
      * @return A new instance of a CachingIndexedFastaSequenceFile.
      */
     public static CachingIndexedFastaSequenceFile checkAndCreate(final File fastaFile) {
+        return checkAndCreate(fastaFile, DEFAULT_CACHE_BUDGET);
+    }
+
+    /**
+     * Same as {@link #checkAndCreate(File)}, but with the given cache budget rather than the default
+     *
+     * @param fastaFile Fasta file to be used as reference
+     * @param cacheBudget the maximum total size in bp of all cached windows, must be >= 0
+     * @return A new instance of a CachingIndexedFastaSequenceFile.
+     */
+    public static CachingIndexedFastaSequenceFile checkAndCreate(final File fastaFile, final long cacheBudget) {
+        Utils.validateArg(cacheBudget >= 0, "cacheBudget must be >= 0");
+
         // does the fasta file exist? check that first...
         if (!fastaFile.exists())
             throw new UserException("The fasta file you specified (" + fastaFile.getAbsolutePath() + ") does not exist.");
@@ -169,9 +263,9 @@ public final class CachingIndexedFastaSequenceFile extends IndexedFastaSequenceF
             throw new UserException.MissingReferenceDictFile(dictFile, fastaFile);
         }
 
-        // Read reference data by creating an IndexedFastaSequenceFile.
+        // Read reference data by creating an IndexedFastaSequenceFile, reusing the parsed index if it is cached.
         try {
-            return new CachingIndexedFastaSequenceFile(fastaFile);
+            return new CachingIndexedFastaSequenceFile(fastaFile, IndexCache.getInstance().get(indexFile, FastaSequenceIndex.class, FastaSequenceIndex::new), DEFAULT_CACHE_SIZE, cacheBudget, false, false);
         }
         catch (IllegalArgumentException e) {
             throw new UserException.CouldNotReadInputFile(fastaFile, "Could not read reference sequence.  The FASTA must have either a .fasta or .fa extension", e);
@@ -195,41 +289,55 @@ public final class CachingIndexedFastaSequenceFile extends IndexedFastaSequenceF
     }
 
     /**
-     * Print the efficiency (hits / queries) to logger with priority
+     * Print the efficiency (hits / queries) and number of evictions to logger with priority
      */
-    public void printEfficiency(final Level priority) {
-        logger.log(priority, String.format("### CachingIndexedFastaReader: hits=%d misses=%d efficiency %.6f%%", cacheHits, cacheMisses, calcEfficiency()));
+    public synchronized void printEfficiency(final Level priority) {
+        logger.log(priority, String.format("Reference cache: hits=%d misses=%d evictions=%d efficiency %.6f%%", cacheHits, cacheMisses, cacheEvictions, calcEfficiency()));
     }
 
     /**
      * Returns the efficiency (% of hits of all queries) of this object
      * @return
      */
-    public double calcEfficiency() {
+    public synchronized double calcEfficiency() {
         return 100.0 * cacheHits / (cacheMisses + cacheHits * 1.0);
     }
 
     /**
      * @return the number of cache hits that have occurred
      */
-    public long getCacheHits() {
+    public synchronized long getCacheHits() {
         return cacheHits;
     }
 
     /**
      * @return the number of cache misses that have occurred
      */
-    public long getCacheMisses() {
+    public synchronized long getCacheMisses() {
         return cacheMisses;
     }
 
     /**
-     * @return the size of the cache we are using
+     * @return the number of cached windows that have been evicted to stay within our cache budget
+     */
+    public synchronized long getCacheEvictions() {
+        return cacheEvictions;
+    }
+
+    /**
+     * @return the size of each cached window we are using
      */
     public long getCacheSize() {
         return cacheSize;
     }
 
+    /**
+     * @return the maximum total size of all of our cached windows
+     */
+    public long getCacheBudget() {
+        return cacheBudget;
+    }
+
     /**
      * Is this CachingIndexedFastaReader keeping the original case of bases in the fasta, or is
      * everything being made upper case?
@@ -253,53 +361,159 @@ public final class CachingIndexedFastaSequenceFile extends IndexedFastaSequenceF
      *         all of the bases in the ReferenceSequence returned by this method will be upper cased.
      */
     @Override
-    public ReferenceSequence getSubsequenceAt( final String contig, long start, final long stop ) {
-        final ReferenceSequence result;
-
-        if ( (stop - start) >= cacheSize ) {
-            cacheMisses++;
-            result = super.getSubsequenceAt(contig, start, stop);
-            if ( ! preserveCase ) StringUtil.toUpperCase(result.getBases());
-            if ( ! preserveIUPAC ) BaseUtils.convertIUPACtoN(result.getBases(), true, start < 1);
-        } else {
-            // todo -- potential optimization is to check if contig.name == contig, as this in general will be true
-            SAMSequenceRecord contigInfo = super.getSequenceDictionary().getSequence(contig);
-            if (contigInfo == null){
-                throw new UserException.MissingContigInSequenceDictionary(contig, super.getSequenceDictionary());
-            }
+    public synchronized ReferenceSequence getSubsequenceAt( final String contig, long start, final long stop ) {
+        if ( ! fitsInCache(start, stop) ) {
+            return getUncachedSubsequenceAt(contig, start, stop);
+        }
 
-            if (stop > contigInfo.getSequenceLength())
-                throw new SAMException("Query asks for data past end of contig. Query contig " + contig + " start:" + start + " stop:" + stop + " contigLength:" +  contigInfo.getSequenceLength());
+        final Cache cache = loadIntoCache(contig, start, stop);
 
-            if ( start < cache.start || stop > cache.stop || cache.seq == null || cache.seq.getContigIndex() != contigInfo.getSequenceIndex() ) {
-                cacheMisses++;
-                cache.start = Math.max(start - cacheMissBackup, 0);
-                cache.stop  = Math.min(start + cacheSize + cacheMissBackup, contigInfo.getSequenceLength());
-                cache.seq   = super.getSubsequenceAt(contig, cache.start, cache.stop);
+        // at this point we determine where in the cache we want to extract the requested subsequence
+        final int cacheOffsetStart = (int)(start - cache.start);
+        final int cacheOffsetStop = (int)(stop - start + cacheOffsetStart + 1);
 
-                // convert all of the bases in the sequence to upper case if we aren't preserving cases
-                if ( ! preserveCase ) StringUtil.toUpperCase(cache.seq.getBases());
-                if ( ! preserveIUPAC ) BaseUtils.convertIUPACtoN(cache.seq.getBases(), true, cache.start == 0);
-            } else {
-                cacheHits++;
-            }
+        try {
+            return new ReferenceSequence(cache.seq.getName(), cache.seq.getContigIndex(), Arrays.copyOfRange(cache.seq.getBases(), cacheOffsetStart, cacheOffsetStop));
+        } catch ( ArrayIndexOutOfBoundsException e ) {
+            throw new GATKException(String.format("BUG: bad array indexing.  Cache start %d and end %d, request start %d end %d, offset start %d and end %d, base size %d",
+                    cache.start, cache.stop, start, stop, cacheOffsetStart, cacheOffsetStop, cache.seq.getBases().length), e);
+        }
+    }
+
+    /**
+     * Gets the single base at the given position on the contig, without allocating any intermediate arrays
+     * when the position can be served from (or loaded into) the sequence cache.
+     *
+     * @param contig Contig containing the base.
+     * @param position 1-based position of the base.
+     * @return The base at this position. If preserveCase is false, the base will be upper cased.
+     */
+    public synchronized byte getBaseAt( final String contig, final long position ) {
+        if ( ! fitsInCache(position, position) ) {
+            return getUncachedSubsequenceAt(contig, position, position).getBases()[0];
+        }
 
-            // at this point we determine where in the cache we want to extract the requested subsequence
-            final int cacheOffsetStart = (int)(start - cache.start);
-            final int cacheOffsetStop = (int)(stop - start + cacheOffsetStart + 1);
+        final Cache cache = loadIntoCache(contig, position, position);
+        return cache.seq.getBases()[(int)(position - cache.start)];
+    }
 
-            try {
-                result = new ReferenceSequence(cache.seq.getName(), cache.seq.getContigIndex(), Arrays.copyOfRange(cache.seq.getBases(), cacheOffsetStart, cacheOffsetStop));
-            } catch ( ArrayIndexOutOfBoundsException e ) {
-                throw new GATKException(String.format("BUG: bad array indexing.  Cache start %d and end %d, request start %d end %d, offset start %d and end %d, base size %d",
-                        cache.start, cache.stop, start, stop, cacheOffsetStart, cacheOffsetStop, cache.seq.getBases().length), e);
-            }
+    /**
+     * Copies the subsequence of the contig in the range [start,stop] into a caller-supplied buffer. Uses the
+     * sequence cache in the same way as {@link #getSubsequenceAt}, but does not allocate a new array for
+     * the result.
+     *
+     * @param contig Contig whose subsequence to retrieve.
+     * @param start inclusive, 1-based start of region.
+     * @param stop inclusive, 1-based stop of region.
+     * @param destination buffer into which to copy the bases
+     * @param destinationOffset offset in destination at which to place the first base
+     * @return the number of bases copied (stop - start + 1)
+     */
+    public synchronized int copySubsequenceAt( final String contig, final long start, final long stop, final byte[] destination, final int destinationOffset ) {
+        final int length = (int)(stop - start + 1);
+        if ( destinationOffset < 0 || destinationOffset + length > destination.length ) {
+            throw new IllegalArgumentException(String.format("Destination buffer of length %d cannot hold %d bases at offset %d", destination.length, length, destinationOffset));
+        }
+
+        if ( ! fitsInCache(start, stop) ) {
+            System.arraycopy(getUncachedSubsequenceAt(contig, start, stop).getBases(), 0, destination, destinationOffset, length);
+            return length;
         }
 
-        // for debugging -- print out our efficiency if requested
-        if ( PRINT_EFFICIENCY && (getCacheHits() + getCacheMisses()) % PRINT_FREQUENCY == 0 )
-            printEfficiency(Level.INFO);
+        final Cache cache = loadIntoCache(contig, start, stop);
+        System.arraycopy(cache.seq.getBases(), (int)(start - cache.start), destination, destinationOffset, length);
+        return length;
+    }
 
+    /**
+     * Gets a read-only view of the subsequence of the contig in the range [start,stop], without copying the bases
+     * when they can be served from (or loaded into) the sequence cache. The returned buffer's position 0 holds the
+     * base at start, and its limit is the length of the range.
+     *
+     * Cached windows are never modified once loaded, so the view remains valid even after its window is evicted.
+     *
+     * @param contig Contig whose subsequence to retrieve.
+     * @param start inclusive, 1-based start of region.
+     * @param stop inclusive, 1-based stop of region.
+     * @return read-only view of the bases in this range
+     */
+    public synchronized ByteBuffer getSubsequenceViewAt( final String contig, final long start, final long stop ) {
+        if ( ! fitsInCache(start, stop) ) {
+            return ByteBuffer.wrap(getUncachedSubsequenceAt(contig, start, stop).getBases()).asReadOnlyBuffer();
+        }
+
+        final Cache cache = loadIntoCache(contig, start, stop);
+        return ByteBuffer.wrap(cache.seq.getBases(), (int)(start - cache.start), (int)(stop - start + 1)).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * @return true if a query over [start,stop] can be served from our cache, false if it is too large for it
+     */
+    private boolean fitsInCache( final long start, final long stop ) {
+        return (stop - start) < cacheSize;
+    }
+
+    /**
+     * Loads a subsequence that is too large for our cache directly from the underlying file, without
+     * changing the cache at all
+     */
+    private ReferenceSequence getUncachedSubsequenceAt( final String contig, final long start, final long stop ) {
+        cacheMisses++;
+        final ReferenceSequence result = super.getSubsequenceAt(contig, start, stop);
+        if ( ! preserveCase ) StringUtil.toUpperCase(result.getBases());
+        if ( ! preserveIUPAC ) BaseUtils.convertIUPACtoN(result.getBases(), true, start < 1);
         return result;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns a cached window containing the range [start,stop] on the given contig, loading a new window
+     * from disk (and evicting least-recently-used windows to stay within our budget) if necessary.
+     * The range must be no larger than a single cache window.
+     *
+     * @return the cached window containing this range, which is now our most-recently-used window
+     */
+    private Cache loadIntoCache( final String contig, final long start, final long stop ) {
+        // todo -- potential optimization is to check if contig.name == contig, as this in general will be true
+        SAMSequenceRecord contigInfo = super.getSequenceDictionary().getSequence(contig);
+        if (contigInfo == null){
+            throw new UserException.MissingContigInSequenceDictionary(contig, super.getSequenceDictionary());
+        }
+
+        if (stop > contigInfo.getSequenceLength())
+            throw new SAMException("Query asks for data past end of contig. Query contig " + contig + " start:" + start + " stop:" + stop + " contigLength:" +  contigInfo.getSequenceLength());
+
+        final Iterator<Cache> cachedWindows = caches.iterator();
+        while ( cachedWindows.hasNext() ) {
+            final Cache cache = cachedWindows.next();
+            if ( cache.contains(contigInfo.getSequenceIndex(), start, stop) ) {
+                cacheHits++;
+                if ( cache != caches.peekFirst() ) {
+                    cachedWindows.remove();
+                    caches.addFirst(cache);
+                }
+                return cache;
+            }
+        }
+
+        cacheMisses++;
+        final long cacheStart = Math.max(start - cacheMissBackup, 0);
+        final long cacheStop  = Math.min(start + cacheSize + cacheMissBackup, contigInfo.getSequenceLength());
+        final ReferenceSequence seq = super.getSubsequenceAt(contig, cacheStart, cacheStop);
+
+        // convert all of the bases in the sequence to upper case if we aren't preserving cases
+        if ( ! preserveCase ) StringUtil.toUpperCase(seq.getBases());
+        if ( ! preserveIUPAC ) BaseUtils.convertIUPACtoN(seq.getBases(), true, cacheStart == 0);
+
+        final Cache cache = new Cache(cacheStart, cacheStop, seq);
+        final int windowSize = seq.getBases().length;
+
+        // always keep the new window, even if it alone exceeds our budget
+        while ( ! caches.isEmpty() && cachedBases + windowSize > cacheBudget ) {
+            cachedBases -= caches.removeLast().seq.getBases().length;
+            cacheEvictions++;
+        }
+        caches.addFirst(cache);
+        cachedBases += windowSize;
+        return cache;
+    }
+}
@@ -0,0 +1,331 @@
+package org.broadinstitute.hellbender.utils.fasta;
+
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.util.StringUtil;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.BaseUtils;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Random access to the bases in an indexed fasta file via memory-mapping, as an alternative to
+ * {@link CachingIndexedFastaSequenceFile} for access patterns that jump around the genome.
+ *
+ * Each contig is mapped on first access, and any position is then located by simple arithmetic over the
+ * line lengths recorded in the .fai index. There is no cache to thrash, and the mapped pages live in the
+ * operating system's page cache, so they are shared between all readers of the same file on a host
+ * (including multiple instances of this class in different threads or processes).
+ *
+ * Like {@link CachingIndexedFastaSequenceFile} with its default settings, all bases are upper-cased and
+ * IUPAC bases are converted to Ns as they are read, and a UserException is thrown for non-IUPAC bases.
+ *
+ * Instances are safe for concurrent use by multiple threads.
+ */
+public final class MemoryMappedFastaSequenceFile implements Closeable {
+
+    /**
+     * Maps each byte in the fasta to the base we return for it, or to {@link #BAD_BASE} for non-IUPAC bytes
+     */
+    private static final byte[] BASE_CONVERSION = new byte[256];
+
+    private static final byte BAD_BASE = 0;
+
+    static {
+        for ( int b = 0; b < 128; ++b ) {
+            final byte[] base = { (byte)b };
+            StringUtil.toUpperCase(base);
+            try {
+                BASE_CONVERSION[b] = BaseUtils.convertIUPACtoN(base, true, false)[0];
+            }
+            catch ( UserException.BadInput e ) {
+                BASE_CONVERSION[b] = BAD_BASE;
+            }
+        }
+    }
+
+    private final File fastaFile;
+
+    private final FileChannel channel;
+
+    private final SAMSequenceDictionary sequenceDictionary;
+
+    // Per-contig layout from the .fai index, indexed by sequence index in our dictionary
+    private final long[] contigOffsets;
+    private final int[] basesPerLine;
+    private final int[] bytesPerLine;
+
+    /**
+     * Mapped region for each contig, indexed by sequence index in our dictionary. Mapped lazily on first access.
+     */
+    private final AtomicReferenceArray<MappedByteBuffer> contigMappings;
+
+    /**
+     * Open the given indexed fasta file for memory-mapped access. The fasta must have companion .fai and .dict files.
+     *
+     * @param fastaFile the fasta file to open
+     */
+    public MemoryMappedFastaSequenceFile( final File fastaFile ) {
+        this.fastaFile = Utils.nonNull(fastaFile);
+
+        // Performs the same checks on the fasta and its companion files as the non-mapped reader, and loads the dictionary
+        try ( final CachingIndexedFastaSequenceFile indexedFasta = CachingIndexedFastaSequenceFile.checkAndCreate(fastaFile) ) {
+            sequenceDictionary = indexedFasta.getSequenceDictionary();
+        }
+        catch ( IOException e ) {
+            throw new UserException.CouldNotReadInputFile(fastaFile, e);
+        }
+
+        final int numContigs = sequenceDictionary.size();
+        contigOffsets = new long[numContigs];
+        basesPerLine = new int[numContigs];
+        bytesPerLine = new int[numContigs];
+        contigMappings = new AtomicReferenceArray<>(numContigs);
+        loadIndex(new File(fastaFile.getAbsolutePath() + ".fai"));
+
+        try {
+            channel = FileChannel.open(fastaFile.toPath(), StandardOpenOption.READ);
+        }
+        catch ( IOException e ) {
+            throw new UserException.CouldNotReadInputFile(fastaFile, e);
+        }
+    }
+
+    /**
+     * Read the layout of each contig from the .fai index. Each line of the index has the contig name, length,
+     * byte offset of the first base, number of bases per line, and number of bytes per line.
+     */
+    private void loadIndex( final File indexFile ) {
+        final boolean[] indexed = new boolean[contigOffsets.length];
+
+        try ( final BufferedReader reader = new BufferedReader(new FileReader(indexFile)) ) {
+            String line;
+            while ( (line = reader.readLine()) != null ) {
+                if ( line.isEmpty() ) {
+                    continue;
+                }
+
+                final String[] fields = line.split("\t");
+                if ( fields.length < 5 ) {
+                    throw new UserException.MalformedFile(indexFile, "Expected 5 tab-delimited fields but found " + fields.length + " in line: " + line);
+                }
+
+                final SAMSequenceRecord contig = sequenceDictionary.getSequence(fields[0]);
+                if ( contig == null ) {
+                    throw new UserException.MalformedFile(indexFile, "Contig " + fields[0] + " is not in the sequence dictionary for " + fastaFile.getAbsolutePath());
+                }
+
+                final int contigIndex = contig.getSequenceIndex();
+                contigOffsets[contigIndex] = Long.parseLong(fields[2]);
+                if ( contigOffsets[contigIndex] < 1 ) {
+                    // There must always be at least a contig header line before the first base
+                    throw new UserException.MalformedFile(indexFile, "Invalid offset for contig " + fields[0] + ": " + fields[2]);
+                }
+                basesPerLine[contigIndex] = Integer.parseInt(fields[3]);
+                bytesPerLine[contigIndex] = Integer.parseInt(fields[4]);
+                indexed[contigIndex] = true;
+            }
+        }
+        catch ( NumberFormatException e ) {
+            throw new UserException.MalformedFile(indexFile, "Invalid number in index file", e);
+        }
+        catch ( IOException e ) {
+            throw new UserException.CouldNotReadInputFile(indexFile, e);
+        }
+
+        for ( int contigIndex = 0; contigIndex < indexed.length; ++contigIndex ) {
+            if ( ! indexed[contigIndex] ) {
+                throw new UserException.MalformedFile(indexFile, "Contig " + sequenceDictionary.getSequence(contigIndex).getSequenceName() + " from the sequence dictionary is missing from the index");
+            }
+        }
+    }
+
+    /**
+     * @return the sequence dictionary for this fasta
+     */
+    public SAMSequenceDictionary getSequenceDictionary() {
+        return sequenceDictionary;
+    }
+
+    /**
+     * Get the base at the given position on the contig
+     *
+     * @param contig Contig containing the base.
+     * @param position 1-based position of the base.
+     * @return The upper-cased base at this position (with IUPAC bases converted to N)
+     */
+    public byte getBaseAt( final String contig, final long position ) {
+        final int contigIndex = getContigIndex(contig, position, position);
+        final byte rawBase = getMapping(contigIndex).get(getOffsetInContig(contigIndex, position));
+        // Position 0 isn't a real base (see getOffsetInContig), so it's returned as-is, as in CachingIndexedFastaSequenceFile
+        return position < 1 ? rawBase : convertBase(rawBase);
+    }
+
+    /**
+     * Copies the subsequence of the contig in the range [start,stop] into a caller-supplied buffer, straight
+     * from the mapped file.
+     *
+     * @param contig Contig whose subsequence to retrieve.
+     * @param start inclusive, 1-based start of region.
+     * @param stop inclusive, 1-based stop of region.
+     * @param destination buffer into which to copy the bases
+     * @param destinationOffset offset in destination at which to place the first base
+     * @return the number of bases copied (stop - start + 1)
+     */
+    public int copySubsequenceAt( final String contig, final long start, final long stop, final byte[] destination, final int destinationOffset ) {
+        Utils.nonNull(destination);
+        final int contigIndex = getContigIndex(contig, start, stop);
+        final int length = (int)(stop - start + 1);
+        if ( destinationOffset < 0 || destinationOffset + length > destination.length ) {
+            throw new IllegalArgumentException(String.format("Destination buffer of length %d cannot hold %d bases at offset %d", destination.length, length, destinationOffset));
+        }
+
+        final MappedByteBuffer mapping = getMapping(contigIndex);
+        final int lineBases = basesPerLine[contigIndex];
+        final int lineBytes = bytesPerLine[contigIndex];
+
+        long position = start;
+        int destinationIndex = destinationOffset;
+        if ( position < 1 ) {
+            // Position 0 isn't a real base (see getOffsetInContig), so it's returned as-is, as in CachingIndexedFastaSequenceFile
+            destination[destinationIndex++] = mapping.get(0);
+            position = 1;
+        }
+
+        // Walk along the region one line at a time, skipping over the line terminators between lines
+        int offsetInContig = getOffsetInContig(contigIndex, position);
+        while ( position <= stop ) {
+            final int positionInLine = (int)((position - 1) % lineBases);
+            final int basesInLine = (int)Math.min(lineBases - positionInLine, stop - position + 1);
+            for ( int i = 0; i < basesInLine; ++i ) {
+                destination[destinationIndex++] = convertBase(mapping.get(offsetInContig + i));
+            }
+            position += basesInLine;
+            offsetInContig += basesInLine + (lineBytes - lineBases);
+        }
+        return length;
+    }
+
+    /**
+     * Gets a read-only view of the subsequence of the contig in the range [start,stop]. Since the bases on disk
+     * are interrupted by line terminators and must be converted as they are read, the view is over a new copy
+     * of the bases.
+     *
+     * @param contig Contig whose subsequence to retrieve.
+     * @param start inclusive, 1-based start of region.
+     * @param stop inclusive, 1-based stop of region.
+     * @return read-only view of the bases in this range
+     */
+    public ByteBuffer getSubsequenceViewAt( final String contig, final long start, final long stop ) {
+        return ByteBuffer.wrap(getSubsequenceAt(contig, start, stop)).asReadOnlyBuffer();
+    }
+
+    /**
+     * Gets the subsequence of the contig in the range [start,stop]
+     *
+     * @param contig Contig whose subsequence to retrieve.
+     * @param start inclusive, 1-based start of region.
+     * @param stop inclusive, 1-based stop of region.
+     * @return The upper-cased bases in this range (with IUPAC bases converted to N)
+     */
+    public byte[] getSubsequenceAt( final String contig, final long start, final long stop ) {
+        final byte[] bases = new byte[(int)Math.max(stop - start + 1, 0)];
+        copySubsequenceAt(contig, start, stop, bases, 0);
+        return bases;
+    }
+
+    /**
+     * Validates a query, and returns the index of its contig in our sequence dictionary
+     */
+    private int getContigIndex( final String contig, final long start, final long stop ) {
+        final SAMSequenceRecord contigInfo = sequenceDictionary.getSequence(contig);
+        if ( contigInfo == null ) {
+            throw new UserException.MissingContigInSequenceDictionary(contig, sequenceDictionary);
+        }
+        if ( stop > contigInfo.getSequenceLength() ) {
+            throw new SAMException("Query asks for data past end of contig. Query contig " + contig + " start:" + start + " stop:" + stop + " contigLength:" +  contigInfo.getSequenceLength());
+        }
+        if ( start < 0 || stop < start ) {
+            throw new IllegalArgumentException("Invalid query " + contig + ":" + start + "-" + stop);
+        }
+        return contigInfo.getSequenceIndex();
+    }
+
+    /**
+     * Byte offset of a position within the mapped region for its contig.
+     *
+     * Position 0 is allowed for compatibility with IndexedFastaSequenceFile, and maps to the byte
+     * immediately before the first base of the contig.
+     */
+    private int getOffsetInContig( final int contigIndex, final long position ) {
+        if ( position < 1 ) {
+            return 0;
+        }
+        // the mapping for each contig starts one byte early, to accommodate position 0
+        return (int)(1 + ((position - 1) / basesPerLine[contigIndex]) * bytesPerLine[contigIndex] + (position - 1) % basesPerLine[contigIndex]);
+    }
+
+    private static byte convertBase( final byte rawBase ) {
+        final byte base = BASE_CONVERSION[rawBase & 0xff];
+        if ( base == BAD_BASE ) {
+            throw new UserException.BadInput("We encountered a non-standard non-IUPAC base in the provided reference: '" + rawBase + "'");
+        }
+        return base;
+    }
+
+    /**
+     * Get the mapped region for a contig, mapping it if this is the first access to it. Concurrent first
+     * accesses may race to create the mapping, which is harmless.
+     */
+    private MappedByteBuffer getMapping( final int contigIndex ) {
+        MappedByteBuffer mapping = contigMappings.get(contigIndex);
+        if ( mapping == null ) {
+            final long contigLength = sequenceDictionary.getSequence(contigIndex).getSequenceLength();
+            final long numLines = contigLength == 0 ? 0 : (contigLength - 1) / basesPerLine[contigIndex] + 1;
+            final long mappingStart = contigOffsets[contigIndex] - 1;
+            // one byte before the first base, plus every line (the final line may lack some bytes, so don't map past the end of the file)
+            final long mappingEnd = contigOffsets[contigIndex] + numLines * bytesPerLine[contigIndex];
+
+            try {
+                final long mappingLength = Math.min(mappingEnd, channel.size()) - mappingStart;
+                if ( mappingLength > Integer.MAX_VALUE ) {
+                    throw new UserException.CouldNotReadInputFile(fastaFile, "contig " + sequenceDictionary.getSequence(contigIndex).getSequenceName() + " is too large to memory-map");
+                }
+                mapping = channel.map(FileChannel.MapMode.READ_ONLY, mappingStart, mappingLength);
+            }
+            catch ( IOException e ) {
+                throw new UserException.CouldNotReadInputFile(fastaFile, e);
+            }
+
+            if ( ! contigMappings.compareAndSet(contigIndex, null, mapping) ) {
+                mapping = contigMappings.get(contigIndex);
+            }
+        }
+        return mapping;
+    }
+
+    /**
+     * Close the underlying file. Mapped regions remain valid until they are garbage collected.
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        }
+        catch ( IOException e ) {
+            throw new GATKException("Error closing fasta file " + fastaFile.getAbsolutePath(), e);
+        }
+    }
+}
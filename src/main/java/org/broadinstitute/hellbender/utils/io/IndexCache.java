@@ -0,0 +1,169 @@
+package org.broadinstitute.hellbender.utils.io;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.engine.metrics.MetricsRegistry;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * A process-wide, least-recently-used cache of parsed index files (eg., .fai reference indices and Tribble
+ * Feature indices), so that repeated tool invocations within the same JVM (see
+ * {@link org.broadinstitute.hellbender.tools.ToolServer}) do not re-parse the same indices over and over.
+ *
+ * Entries are keyed by the absolute path, size and modification time of the index file, so an index that is
+ * rewritten on disk is re-parsed on its next use. The memory used by each entry is approximated by the size
+ * of its index file on disk, and entries are evicted once the total exceeds the cache's capacity.
+ *
+ * Disabled (capacity 0) by default, since a single tool invocation gains nothing from it. Cached indices are
+ * shared between all callers, so they must not be modified.
+ */
+public final class IndexCache {
+    private static final Logger logger = LogManager.getLogger(IndexCache.class);
+
+    private static final IndexCache INSTANCE = new IndexCache();
+
+    /**
+     * Names of the engine metrics counting index loads served from/not served from the cache while it is enabled
+     */
+    public static final String HITS_COUNTER = "indexCache.hits";
+    public static final String MISSES_COUNTER = "indexCache.misses";
+
+    private static final class Key {
+        private final String path;
+        private final long length;
+        private final long lastModified;
+
+        private Key( final File file ) {
+            this.path = file.getAbsolutePath();
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+        }
+
+        @Override
+        public boolean equals( final Object other ) {
+            if ( ! (other instanceof Key) ) {
+                return false;
+            }
+            final Key otherKey = (Key)other;
+            return path.equals(otherKey.path) && length == otherKey.length && lastModified == otherKey.lastModified;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, length, lastModified);
+        }
+    }
+
+    /**
+     * Cached indices, in access order (least recently used first)
+     */
+    private final Map<Key, Object> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long maxBytes = 0;
+
+    private long cachedBytes = 0;
+
+    IndexCache() {}
+
+    /**
+     * @return the cache shared by all tools running in this JVM
+     */
+    public static IndexCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Set the capacity of this cache, evicting entries if necessary
+     *
+     * @param maxBytes maximum total size, in bytes on disk, of the index files to keep in the cache (0 disables caching)
+     */
+    public synchronized void setMaxBytes( final long maxBytes ) {
+        Utils.validateArg(maxBytes >= 0, "maxBytes must be >= 0");
+        this.maxBytes = maxBytes;
+        evictToCapacity();
+    }
+
+    /**
+     * @return whether indices are being cached (when they aren't, callers may prefer to load them lazily, if at all)
+     */
+    public synchronized boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * @return the total size on disk of the index files currently cached
+     */
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    /**
+     * @return the number of indices currently cached
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get the parsed form of an index file from the cache, parsing it with loader if it is not cached (or if the
+     * cache is disabled).
+     *
+     * @param indexFile index file to parse
+     * @param type type of the parsed index
+     * @param loader parses indexFile
+     * @param <T> type of the parsed index
+     * @return the parsed index
+     */
+    public synchronized <T> T get( final File indexFile, final Class<T> type, final Function<File, T> loader ) {
+        Utils.nonNull(indexFile);
+        Utils.nonNull(type);
+        Utils.nonNull(loader);
+
+        if ( maxBytes == 0 ) {
+            return loader.apply(indexFile);
+        }
+
+        final Key key = new Key(indexFile);
+        final Object cached = entries.get(key);
+        if ( type.isInstance(cached) ) {
+            MetricsRegistry.getEngineMetrics().counter(HITS_COUNTER).increment();
+            return type.cast(cached);
+        }
+
+        MetricsRegistry.getEngineMetrics().counter(MISSES_COUNTER).increment();
+        final T index = loader.apply(indexFile);
+        if ( key.length <= maxBytes ) {
+            final Object replaced = entries.put(key, index);
+            if ( replaced == null ) {
+                cachedBytes += key.length;
+            }
+            evictToCapacity();
+        }
+        return index;
+    }
+
+    /**
+     * Discard all cached indices
+     */
+    public synchronized void clear() {
+        entries.clear();
+        cachedBytes = 0;
+    }
+
+    private void evictToCapacity() {
+        final Iterator<Key> keys = entries.keySet().iterator();
+        while ( cachedBytes > maxBytes && keys.hasNext() ) {
+            final Key evicted = keys.next();
+            keys.remove();
+            cachedBytes -= evicted.length;
+            logger.debug("Evicted " + evicted.path + " from the index cache");
+        }
+    }
+}
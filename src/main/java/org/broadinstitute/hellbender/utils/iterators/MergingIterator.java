@@ -0,0 +1,89 @@
+package org.broadinstitute.hellbender.utils.iterators;
+
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.*;
+
+/**
+ * A k-way merge of several iterators that are each sorted according to the same comparator into a single
+ * sorted iterator, using a heap holding the next record from each source.
+ *
+ * Records that compare as equal are returned in the order of their sources in the list given at construction,
+ * so the output order is fully deterministic. The sources are only accessed from the thread calling
+ * {@link #hasNext} / {@link #next}, and are not closed by this iterator.
+ *
+ * @param <T> type of record
+ */
+public final class MergingIterator<T> implements Iterator<T> {
+
+    /**
+     * The next record from one of our sources, along with the index of that source
+     */
+    private static final class Head<T> {
+        private final T record;
+        private final int sourceIndex;
+
+        private Head( final T record, final int sourceIndex ) {
+            this.record = record;
+            this.sourceIndex = sourceIndex;
+        }
+    }
+
+    private final List<? extends Iterator<T>> sources;
+
+    /**
+     * The next record from every source that is not yet exhausted
+     */
+    private final PriorityQueue<Head<T>> heads;
+
+    /**
+     * Have we taken the first record from each source yet? We wait until we are asked for a record, so that
+     * creating this iterator does not block on sources that are still being filled on another thread.
+     */
+    private boolean started = false;
+
+    /**
+     * @param sources iterators to merge, each sorted according to comparator
+     * @param comparator comparator defining the order of the records in every source
+     */
+    public MergingIterator( final List<? extends Iterator<T>> sources, final Comparator<? super T> comparator ) {
+        Utils.nonNull(sources);
+        Utils.containsNoNull(sources, "sources may not contain null");
+        Utils.nonNull(comparator);
+
+        this.sources = sources;
+        final Comparator<Head<T>> headComparator = (first, second) -> comparator.compare(first.record, second.record);
+        this.heads = new PriorityQueue<>(Math.max(1, sources.size()), headComparator.thenComparingInt(head -> head.sourceIndex));
+    }
+
+    @Override
+    public boolean hasNext() {
+        if ( ! started ) {
+            for ( int sourceIndex = 0; sourceIndex < sources.size(); ++sourceIndex ) {
+                advance(sourceIndex);
+            }
+            started = true;
+        }
+        return ! heads.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        if ( ! hasNext() ) {
+            throw new NoSuchElementException("No more records");
+        }
+        final Head<T> head = heads.poll();
+        advance(head.sourceIndex);
+        return head.record;
+    }
+
+    /**
+     * Put the next record from the source with the given index (if there is one) into the heap
+     */
+    private void advance( final int sourceIndex ) {
+        final Iterator<T> source = sources.get(sourceIndex);
+        if ( source.hasNext() ) {
+            heads.add(new Head<>(source.next(), sourceIndex));
+        }
+    }
+}
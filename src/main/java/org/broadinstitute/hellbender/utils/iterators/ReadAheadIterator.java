@@ -0,0 +1,226 @@
+package org.broadinstitute.hellbender.utils.iterators;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import htsjdk.samtools.util.CloseableIterator;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * An iterator that pulls records from an underlying iterator on a background thread, ahead of the consumer,
+ * into a bounded queue of batches. Each batch may optionally be post-processed (eg., fully decoded) by a
+ * pool of decoding threads before it is handed to the consumer. Records are always returned in the same
+ * order as the underlying iterator.
+ *
+ * This moves the cost of I/O, decompression and decoding off of the consuming thread, so that it overlaps
+ * with whatever processing the consumer does for each record.
+ *
+ * The underlying iterator is only ever accessed from a single background thread. It is NOT closed by
+ * {@link #close}: the caller retains ownership of it, but must call {@link #close} on this iterator
+ * before closing the underlying iterator so that the background thread is no longer using it.
+ *
+ * Exceptions (and Errors) thrown by the underlying iterator or by the decoder are rethrown to the consumer from
+ * {@link #hasNext} / {@link #next} at the point in the stream at which they occurred.
+ *
+ * @param <T> type of record
+ */
+public final class ReadAheadIterator<T> implements CloseableIterator<T> {
+
+    /**
+     * Marks the end of the stream in our queue of batches (compared by identity)
+     */
+    private final Future<List<T>> endOfStream = CompletableFuture.completedFuture(Collections.emptyList());
+
+    private final Iterator<T> source;
+
+    private final int batchSize;
+
+    private final Consumer<T> decoder;
+
+    /**
+     * Batches of records in iteration order. Each batch is complete once its decoding has finished.
+     */
+    private final BlockingQueue<Future<List<T>>> batches;
+
+    /**
+     * Pool used to decode batches. Null if batches are decoded on the reading thread (or not at all).
+     */
+    private final ExecutorService decodingThreads;
+
+    private final Thread readingThread;
+
+    private volatile boolean closed = false;
+
+    private Iterator<T> currentBatch = Collections.emptyIterator();
+
+    private boolean exhausted = false;
+
+    /**
+     * @param source iterator from which to read records ahead of the consumer. Will only be accessed from our background reading thread.
+     * @param batchSize number of records per batch (>= 1)
+     * @param maxQueuedBatches maximum number of batches to read ahead of the consumer (>= 1)
+     * @param numDecodingThreads number of threads with which to run the decoder over each batch (>= 0). If 0,
+     *                           the decoder runs on the background reading thread.
+     * @param decoder action to perform on each record on a background thread before it is handed to the consumer
+     *                (may be null if no action is required)
+     */
+    public ReadAheadIterator( final Iterator<T> source, final int batchSize, final int maxQueuedBatches, final int numDecodingThreads, final Consumer<T> decoder ) {
+        Utils.nonNull(source);
+        Utils.validateArg(batchSize >= 1, "batchSize must be >= 1");
+        Utils.validateArg(maxQueuedBatches >= 1, "maxQueuedBatches must be >= 1");
+        Utils.validateArg(numDecodingThreads >= 0, "numDecodingThreads must be >= 0");
+
+        this.source = source;
+        this.batchSize = batchSize;
+        this.decoder = decoder;
+        this.batches = new ArrayBlockingQueue<>(maxQueuedBatches);
+        this.decodingThreads = decoder != null && numDecodingThreads > 0 ?
+                Executors.newFixedThreadPool(numDecodingThreads, new ThreadFactoryBuilder().setNameFormat("read-ahead-decoder-%d").setDaemon(true).build()) :
+                null;
+
+        this.readingThread = new Thread(this::readAhead, "read-ahead-reader");
+        this.readingThread.setDaemon(true);
+        this.readingThread.start();
+    }
+
+    /**
+     * Body of our background reading thread: fills the queue with batches from the underlying iterator
+     * until it is exhausted, we hit an error, or we are closed.
+     */
+    private void readAhead() {
+        try {
+            while ( ! closed && source.hasNext() ) {
+                final List<T> batch = new ArrayList<>(batchSize);
+                while ( batch.size() < batchSize && source.hasNext() ) {
+                    batch.add(source.next());
+                }
+                batches.put(decodeBatch(batch));
+            }
+            batches.put(endOfStream);
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+        catch ( Throwable e ) {
+            // Hand the error to the consumer at the point in the stream at which it occurred. Errors are handed over
+            // too, since otherwise the consumer would wait forever for a batch that never comes.
+            final CompletableFuture<List<T>> failure = new CompletableFuture<>();
+            failure.completeExceptionally(e);
+            try {
+                batches.put(failure);
+            }
+            catch ( InterruptedException interrupted ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private Future<List<T>> decodeBatch( final List<T> batch ) {
+        if ( decoder == null ) {
+            return CompletableFuture.completedFuture(batch);
+        }
+        if ( decodingThreads == null ) {
+            batch.forEach(decoder);
+            return CompletableFuture.completedFuture(batch);
+        }
+        return decodingThreads.submit(() -> {
+            batch.forEach(decoder);
+            return batch;
+        });
+    }
+
+    @Override
+    public boolean hasNext() {
+        if ( closed ) {
+            return false;
+        }
+
+        while ( ! currentBatch.hasNext() && ! exhausted ) {
+            final Future<List<T>> nextBatch;
+            try {
+                nextBatch = batches.take();
+            }
+            catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new GATKException("Interrupted while waiting for records from read-ahead thread", e);
+            }
+
+            if ( nextBatch == endOfStream ) {
+                exhausted = true;
+            }
+            else {
+                currentBatch = getBatch(nextBatch).iterator();
+            }
+        }
+        return currentBatch.hasNext();
+    }
+
+    private List<T> getBatch( final Future<List<T>> batch ) {
+        try {
+            return batch.get();
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new GATKException("Interrupted while waiting for records from read-ahead thread", e);
+        }
+        catch ( ExecutionException e ) {
+            exhausted = true;
+            // Preserve the original exception type (eg., SAMFormatException) where possible
+            if ( e.getCause() instanceof RuntimeException ) {
+                throw (RuntimeException)e.getCause();
+            }
+            if ( e.getCause() instanceof Error ) {
+                throw (Error)e.getCause();
+            }
+            throw new GATKException("Error reading records on read-ahead thread", e.getCause());
+        }
+    }
+
+    @Override
+    public T next() {
+        if ( ! hasNext() ) {
+            throw new NoSuchElementException("No more records");
+        }
+        return currentBatch.next();
+    }
+
+    /**
+     * Stop reading ahead, and wait for our background threads to stop using the underlying iterator.
+     * Does not close the underlying iterator.
+     */
+    @Override
+    public void close() {
+        if ( closed ) {
+            return;
+        }
+        closed = true;
+
+        // We don't interrupt the reading thread, since interrupting I/O can leave the underlying reader
+        // unusable. Instead, keep draining the queue so that it is never blocked for long, and wait for
+        // it to notice that we've been closed at the next batch boundary.
+        try {
+            while ( readingThread.isAlive() ) {
+                batches.clear();
+                readingThread.join(10);
+            }
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+
+        if ( decodingThreads != null ) {
+            decodingThreads.shutdown();
+            try {
+                decodingThreads.awaitTermination(1, TimeUnit.MINUTES);
+            }
+            catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        batches.clear();
+        currentBatch = Collections.emptyIterator();
+    }
+}
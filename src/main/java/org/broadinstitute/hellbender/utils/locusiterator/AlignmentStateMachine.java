@@ -47,6 +47,11 @@ public final class AlignmentStateMachine {
      */
     private int offsetIntoCurrentCigarElement;
 
+    /**
+     * The element returned by getCurrentPileupElement(), updated in place as we step along the genome
+     */
+    private PileupElement currentPileupElement;
+
     public AlignmentStateMachine(final GATKRead read) {
         this.read = read;
         this.cigar = read.getCigar();
@@ -313,5 +318,31 @@ public final class AlignmentStateMachine {
                 getCurrentCigarElementOffset(),
                 getOffsetIntoCurrentCigarElement());
     }
-}
 
+    /**
+     * Get a pileup element for the current state of this machine.
+     *
+     * Unlike {@link #makePileupElement}, every call on this machine returns the same element object, updated
+     * in place to reflect the current state, so that traversals stepping many machines along the genome do not
+     * allocate a new element for every read at every position. The returned element is therefore only valid
+     * until this machine is next stepped: callers that need to keep it should copy it.
+     *
+     * Must not be a left or right edge
+     *
+     * @return a pileup element reflecting the current state of this machine
+     */
+    public PileupElement getCurrentPileupElement() {
+        if ( isLeftEdge() || isRightEdge() )
+            throw new IllegalStateException("Cannot make a pileup element from an edge alignment state");
+        if ( currentPileupElement == null ) {
+            currentPileupElement = makePileupElement();
+        }
+        else {
+            currentPileupElement.setAlignmentState(getReadOffset(),
+                    getCurrentCigarElement(),
+                    getCurrentCigarElementOffset(),
+                    getOffsetIntoCurrentCigarElement());
+        }
+        return currentPileupElement;
+    }
+}
@@ -0,0 +1,268 @@
+package org.broadinstitute.hellbender.utils.locusiterator;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMReadGroupRecord;
+import htsjdk.samtools.util.PeekableIterator;
+import org.broadinstitute.hellbender.engine.AlignmentContext;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.pileup.PileupElement;
+import org.broadinstitute.hellbender.utils.pileup.ReadPileup;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.ReadUtils;
+
+import java.util.*;
+
+/**
+ * Turns a stream of coordinate-sorted reads into a stream of per-locus pileups.
+ *
+ * Keeps one {@link AlignmentStateMachine} per active read (a read that overlaps the current locus), and advances
+ * all of them in lockstep one reference position at a time. Reads become active at their alignment start and
+ * are dropped as soon as they step off their alignment end, so only the reads overlapping the current locus are
+ * held in memory. Loci not covered by any read are skipped.
+ *
+ * To avoid allocating a new {@link PileupElement} for every read at every locus, each read's element is updated
+ * in place as its state machine steps along the genome (see {@link AlignmentStateMachine#getCurrentPileupElement}),
+ * and the list holding the elements is refilled rather than reallocated. The pileup of an {@link AlignmentContext}
+ * returned by {@link #next} is therefore only valid until the following call to {@link #hasNext} or {@link #next}:
+ * callers that need to keep elements around must copy them. The context itself, its pileup and its locus, being
+ * immutable, are still new objects at every locus, but there's a fixed number of them however deep the pileup.
+ *
+ * If a maximum depth per sample is given, reads are downsampled as they become active so that no more than that
+ * many reads from each sample are active at once, which keeps memory usage flat even in pathological coverage
+ * spikes. When more reads from a sample start at a locus than there is room for, a uniformly random subset of
+ * them is kept (using {@link Utils#getRandomGenerator}, so results are reproducible), and the pileups at every
+ * locus spanned by the discarded reads are flagged as downsampled.
+ *
+ * Pileup elements are grouped by sample, in the order in which samples appear in the read groups of the header,
+ * and are in order of alignment start within each sample.
+ */
+public final class LocusIteratorByState implements Iterator<AlignmentContext> {
+
+    /**
+     * Value for maxDepthPerSample that disables downsampling
+     */
+    public static final int NO_DOWNSAMPLING = 0;
+
+    private final PeekableIterator<GATKRead> reads;
+    private final SAMFileHeader header;
+    private final int maxDepthPerSample;
+
+    /**
+     * Active reads for each sample, in order of alignment start. Samples are in header order.
+     */
+    private final Map<String, SampleState> samples = new LinkedHashMap<>();
+
+    /**
+     * The elements of the pileup at the current locus, refilled at every locus
+     */
+    private final List<PileupElement> pileupElements = new ArrayList<>();
+
+    private String currentContig = null;
+    private int currentPosition = 0;
+
+    /**
+     * Number of reads currently active, across all samples
+     */
+    private int activeReads = 0;
+
+    /**
+     * Last position on the current contig covered by a read that was discarded by downsampling
+     */
+    private int downsampledThrough = 0;
+
+    /**
+     * True if our active reads have yet to be stepped past the locus of the last context we returned.
+     * We step lazily, so that the (reused) pileup elements of a returned context remain valid until we are
+     * asked for the next one.
+     */
+    private boolean stepPending = false;
+
+    private AlignmentContext nextContext = null;
+
+    /**
+     * Reads that are active at the current locus for a single sample, plus a reservoir for downsampling
+     * the reads from that sample that start at the current locus
+     */
+    private static final class SampleState {
+        private final List<AlignmentStateMachine> active = new ArrayList<>();
+        private final List<GATKRead> reservoir = new ArrayList<>();
+        private int readsOfferedToReservoir = 0;
+    }
+
+    /**
+     * @param reads coordinate-sorted reads to pile up. Unmapped reads are ignored.
+     * @param header header for the reads, used to determine the sample of each read
+     * @param maxDepthPerSample maximum number of reads per sample to keep active at any locus,
+     *                          or {@link #NO_DOWNSAMPLING} to keep all reads
+     */
+    public LocusIteratorByState( final Iterator<GATKRead> reads, final SAMFileHeader header, final int maxDepthPerSample ) {
+        Utils.nonNull(reads, "reads is null");
+        Utils.nonNull(header, "header is null");
+        Utils.validateArg(maxDepthPerSample >= 0, "maxDepthPerSample must be >= 0");
+
+        this.reads = new PeekableIterator<>(reads);
+        this.header = header;
+        this.maxDepthPerSample = maxDepthPerSample;
+
+        for ( final SAMReadGroupRecord readGroup : header.getReadGroups() ) {
+            samples.computeIfAbsent(readGroup.getSample(), sample -> new SampleState());
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if ( nextContext == null ) {
+            nextContext = advance();
+        }
+        return nextContext != null;
+    }
+
+    @Override
+    public AlignmentContext next() {
+        if ( ! hasNext() ) {
+            throw new NoSuchElementException("No more loci");
+        }
+        final AlignmentContext context = nextContext;
+        nextContext = null;
+        return context;
+    }
+
+    /**
+     * @return the number of reads currently active, across all samples
+     */
+    public int getNumActiveReads() {
+        return activeReads;
+    }
+
+    /**
+     * Move on to the next covered locus
+     *
+     * @return the context at the next covered locus, or null if there are no more
+     */
+    private AlignmentContext advance() {
+        if ( stepPending ) {
+            stepActiveReads();
+            stepPending = false;
+        }
+
+        while ( true ) {
+            if ( activeReads == 0 ) {
+                skipUnmappedReads();
+                if ( ! reads.hasNext() ) {
+                    return null;
+                }
+                final GATKRead nextRead = reads.peek();
+                if ( ! nextRead.getContig().equals(currentContig) ) {
+                    downsampledThrough = 0;
+                }
+                currentContig = nextRead.getContig();
+                currentPosition = nextRead.getStart();
+            }
+
+            activateReadsStartingAtCurrentLocus();
+
+            if ( activeReads > 0 ) {
+                stepPending = true;
+                final SimpleInterval locus = new SimpleInterval(currentContig, currentPosition, currentPosition);
+                return new AlignmentContext(locus, new ReadPileup(locus, makePileupElements()), currentPosition <= downsampledThrough);
+            }
+            // Every read starting here was empty on the genome (eg., all insertion), so try again at the next read
+        }
+    }
+
+    private List<PileupElement> makePileupElements() {
+        pileupElements.clear();
+        for ( final SampleState sample : samples.values() ) {
+            for ( final AlignmentStateMachine state : sample.active ) {
+                pileupElements.add(state.getCurrentPileupElement());
+            }
+        }
+        return pileupElements;
+    }
+
+    /**
+     * Step every active read forward one position on the genome, dropping reads that step off their end
+     */
+    private void stepActiveReads() {
+        for ( final SampleState sample : samples.values() ) {
+            // compact the list of active reads in place as we go
+            int kept = 0;
+            for ( final AlignmentStateMachine state : sample.active ) {
+                if ( state.stepForwardOnGenome() != null ) {
+                    sample.active.set(kept++, state);
+                }
+            }
+            activeReads -= sample.active.size() - kept;
+            sample.active.subList(kept, sample.active.size()).clear();
+        }
+        currentPosition++;
+    }
+
+    /**
+     * Start tracking every read that starts at the current locus, downsampling them if necessary
+     */
+    private void activateReadsStartingAtCurrentLocus() {
+        skipUnmappedReads();
+        while ( reads.hasNext() && reads.peek().getContig().equals(currentContig) && reads.peek().getStart() <= currentPosition ) {
+            final GATKRead read = reads.next();
+            if ( read.getStart() < currentPosition ) {
+                throw new UserException.BadInput("Reads are not coordinate sorted: found read " + read.getName() + " at " +
+                                                 read.getContig() + ":" + read.getStart() + " after position " + currentContig + ":" + currentPosition);
+            }
+            offerToSample(read);
+            skipUnmappedReads();
+        }
+
+        for ( final SampleState sample : samples.values() ) {
+            for ( final GATKRead read : sample.reservoir ) {
+                final AlignmentStateMachine state = new AlignmentStateMachine(read);
+                // the first step puts us on the alignment start. Reads with no bases on the genome end immediately.
+                if ( state.stepForwardOnGenome() != null ) {
+                    sample.active.add(state);
+                    activeReads++;
+                }
+            }
+            sample.reservoir.clear();
+            sample.readsOfferedToReservoir = 0;
+        }
+    }
+
+    /**
+     * Offer a read starting at the current locus to the reservoir for its sample. Without downsampling, the
+     * reservoir keeps every read. With downsampling, the reservoir has room for as many reads as the sample
+     * has free slots, and we use reservoir sampling so that each read has an equal chance of being kept.
+     */
+    private void offerToSample( final GATKRead read ) {
+        final SampleState sample = samples.computeIfAbsent(ReadUtils.getSampleName(read, header), name -> new SampleState());
+        sample.readsOfferedToReservoir++;
+        if ( maxDepthPerSample == NO_DOWNSAMPLING ) {
+            sample.reservoir.add(read);
+            return;
+        }
+
+        final int capacity = maxDepthPerSample - sample.active.size();
+        if ( sample.reservoir.size() < capacity ) {
+            sample.reservoir.add(read);
+            return;
+        }
+
+        // No room: either replace a random read in the reservoir with this one, or discard this one
+        final GATKRead discarded;
+        final int slot = capacity > 0 ? Utils.getRandomGenerator().nextInt(sample.readsOfferedToReservoir) : capacity;
+        if ( slot < capacity ) {
+            discarded = sample.reservoir.set(slot, read);
+        }
+        else {
+            discarded = read;
+        }
+        downsampledThrough = Math.max(downsampledThrough, discarded.getEnd());
+    }
+
+    private void skipUnmappedReads() {
+        while ( reads.hasNext() && reads.peek().isUnmapped() ) {
+            reads.next();
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.google.common.annotations.VisibleForTesting;
 import htsjdk.variant.variantcontext.Allele;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.engine.metrics.MetricsRegistry;
 import org.broadinstitute.hellbender.utils.MathUtils;
 import org.broadinstitute.hellbender.utils.genotyper.LikelihoodMatrix;
 import org.broadinstitute.hellbender.utils.haplotype.Haplotype;
@@ -62,10 +63,14 @@ public abstract class PairHMM implements Closeable{
 
     //profiling information
     protected static Boolean doProfiling = true;
-    protected static long pairHMMComputeTime = 0;
     protected long threadLocalPairHMMComputeTimeDiff = 0;
     protected long startTime = 0;
 
+    /**
+     * Name of the engine metric accumulating the time spent in {@link #computeLogLikelihoods}, over all PairHMM instances
+     */
+    public static final String COMPUTE_TIMER = "pairHMM.computeLogLikelihoods";
+
     /**
      * Initialize this PairHMM, making it suitable to run against a read and haplotype with given lengths
      *
@@ -180,9 +185,7 @@ public abstract class PairHMM implements Closeable{
         }
         if(doProfiling) {
             threadLocalPairHMMComputeTimeDiff = (System.nanoTime() - startTime);
-            {
-                pairHMMComputeTime += threadLocalPairHMMComputeTimeDiff;
-            }
+            MetricsRegistry.getEngineMetrics().timer(COMPUTE_TIMER).recordNanos(threadLocalPairHMMComputeTimeDiff);
         }
     }
 
@@ -306,6 +309,6 @@ public abstract class PairHMM implements Closeable{
     @Override
     public void close() {
         if(doProfiling)
-            logger.info("Total compute time in PairHMM computeLogLikelihoods() : "+(pairHMMComputeTime*1e-9));
+            logger.info("Total compute time in PairHMM computeLogLikelihoods() : "+MetricsRegistry.getEngineMetrics().timer(COMPUTE_TIMER).getTotalSeconds());
     }
 }
@@ -12,6 +12,11 @@ import java.util.*;
 
 /**
  * Represents an individual base in a reads pileup.
+ *
+ * Elements are not immutable: locus traversals update a single element per read in place as they step along the
+ * genome (see {@link #setAlignmentState}), so an element taken from the pileup of one locus will describe the next
+ * locus once the traversal moves on. Callers that need to keep elements past the current locus must copy them
+ * (see {@link #PileupElement(PileupElement)}).
  */
 public final class PileupElement {
 
@@ -26,11 +31,12 @@ public final class PileupElement {
     public static final byte G_FOLLOWED_BY_INSERTION_BASE = (byte) 90;
 
     private final GATKRead read;         // the read this base belongs to
-    private final int offset;            // the offset in the bases array for this base
+    private int offset;                  // the offset in the bases array for this base
 
-    private final CigarElement currentCigarElement;
-    private final int currentCigarOffset;
-    private final int offsetInCurrentCigar;
+    // not final, so that locus traversals can step a single element along a read (see setAlignmentState)
+    private CigarElement currentCigarElement;
+    private int currentCigarOffset;
+    private int offsetInCurrentCigar;
 
     public static final Comparator<PileupElement> COMPARATOR = (p1, p2) -> {
         if (p1.offset < p2.offset) {
@@ -62,11 +68,42 @@ public final class PileupElement {
                          final int currentCigarOffset,
                          final int offsetInCurrentCigar) {
         Utils.nonNull(read, "read is null");
+        Utils.validIndex(currentCigarOffset, read.getCigar().numCigarElements());
+        this.read = read;
+        setAlignmentState(baseOffset, currentElement, currentCigarOffset, offsetInCurrentCigar);
+    }
+
+    /**
+     * Create a copy of another pileup element, for callers that need to hold on to an element
+     * that may later be updated in place via {@link #setAlignmentState}
+     *
+     * @param toCopy element to copy
+     */
+    public PileupElement(final PileupElement toCopy) {
+        this(Utils.nonNull(toCopy, "toCopy is null").read, toCopy.offset, toCopy.currentCigarElement, toCopy.currentCigarOffset, toCopy.offsetInCurrentCigar);
+    }
+
+    /**
+     * Move this element to a different position in the alignment of the same read, updating it in place.
+     *
+     * Used by locus traversals (see {@link AlignmentStateMachine#getCurrentPileupElement}) to avoid allocating
+     * a new element for every read at every locus. Arguments are as for the constructor, except that
+     * currentCigarOffset is only checked to be non-negative: getting the read's cigar to check it against makes
+     * a copy of the cigar, which would cost more than the element we're saving.
+     *
+     * @param baseOffset the offset into the read's base / qual vector aligned to this position on the genome
+     * @param currentElement a non-null CigarElement that indicates the cigar element aligning the read to the genome
+     * @param currentCigarOffset the offset of currentElement in the read's cigar
+     * @param offsetInCurrentCigar how far into the currentElement are we in our alignment to the genome?
+     */
+    public void setAlignmentState(final int baseOffset,
+                                  final CigarElement currentElement,
+                                  final int currentCigarOffset,
+                                  final int offsetInCurrentCigar) {
         Utils.nonNull(currentElement, "currentElement is null");
         Utils.validIndex(baseOffset, read.getLength());
-        Utils.validIndex(currentCigarOffset, read.getCigar().numCigarElements());
+        Utils.validateArg(currentCigarOffset >= 0, "currentCigarOffset is negative");
         Utils.validIndex(offsetInCurrentCigar, currentElement.getLength());
-        this.read = read;
         this.offset = baseOffset;
         this.currentCigarElement = currentElement;
         this.currentCigarOffset = currentCigarOffset;
@@ -1,6 +1,5 @@
 package org.broadinstitute.hellbender.utils.pileup;
 
-import com.google.common.annotations.VisibleForTesting;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.util.Locatable;
 import org.broadinstitute.hellbender.utils.BaseUtils;
@@ -24,12 +23,10 @@ public final class ReadPileup implements Iterable<PileupElement>{
     private final List<PileupElement> pileupElements;
 
     /**
-     * Create a new pileup at loc, using the reads and their corresponding
-     * offsets.
+     * Create a new pileup at loc, using the given pileup elements.
      * Note: This constructor keeps an alias to the given list.
      */
-    @VisibleForTesting
-    ReadPileup(final Locatable loc, final List<PileupElement> pileup) {
+    public ReadPileup(final Locatable loc, final List<PileupElement> pileup) {
         Utils.nonNull(loc, "loc is null");
         Utils.nonNull(pileup, "element list is null");
         this.loc = loc;
@@ -0,0 +1,135 @@
+package org.broadinstitute.hellbender.utils.read;
+
+import htsjdk.samtools.BAMIndex;
+import htsjdk.samtools.BAMIndexMetaData;
+import htsjdk.samtools.BAMIndexSpanUtils;
+import htsjdk.samtools.Chunk;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.util.Locatable;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Estimates the number of reads overlapping an interval from the index of a BAM file alone, without reading
+ * any records, so that work can be divided up by the amount of data rather than by the number of bases.
+ *
+ * The index gives the chunks of the (compressed) BAM file that may hold reads overlapping an interval, and its
+ * metadata gives the number of reads on each contig and the span of the file they occupy. We estimate the reads
+ * in an interval as the reads on its contig, scaled by the fraction of the contig's span that its chunks cover.
+ * The estimates are only as fine-grained as the index (16kb windows), and so are intended for balancing large
+ * numbers of intervals against each other rather than for counting the reads in any single small interval.
+ */
+public final class BAMIndexReadCountEstimator implements AutoCloseable {
+
+    /**
+     * Virtual file offsets locate a position within a compressed block by its offset in the uncompressed data,
+     * which we scale by this assumed compression ratio to estimate the size of chunks within a single block
+     */
+    static final double ASSUMED_COMPRESSION_RATIO = 3.0;
+
+    private final SamReader reader;
+
+    private final BAMIndex index;
+
+    private final SAMSequenceDictionary dictionary;
+
+    /**
+     * Estimated reads per compressed byte on each contig, or NaN if the index has no metadata for that contig
+     */
+    private final double[] readsPerByte;
+
+    /**
+     * Reads on each contig according to the index metadata
+     */
+    private final long[] readsOnContig;
+
+    /**
+     * @param bam indexed, coordinate-sorted BAM file
+     */
+    public BAMIndexReadCountEstimator( final File bam ) {
+        Utils.nonNull(bam);
+        reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT).open(bam);
+        if ( ! reader.hasIndex() || reader.type() != SamReader.Type.BAM_TYPE ) {
+            closeReader();
+            throw new UserException("Estimating read counts requires an indexed BAM file, but " + bam.getAbsolutePath() + " is not one.\nPlease index it with:\nsamtools index " + bam.getAbsolutePath());
+        }
+        index = reader.indexing().getIndex();
+        dictionary = reader.getFileHeader().getSequenceDictionary();
+
+        readsPerByte = new double[dictionary.size()];
+        readsOnContig = new long[dictionary.size()];
+        for ( int contig = 0; contig < dictionary.size(); ++contig ) {
+            final BAMIndexMetaData metaData = index.getMetaData(contig);
+            readsPerByte[contig] = Double.NaN;
+            if ( metaData != null && BAMIndexSpanUtils.getFirstOffset(metaData) >= 0 ) {
+                readsOnContig[contig] = (long)metaData.getAlignedRecordCount() + metaData.getUnalignedRecordCount();
+                final double bytesOnContig = getCompressedSize(BAMIndexSpanUtils.getFirstOffset(metaData), BAMIndexSpanUtils.getLastOffset(metaData));
+                if ( bytesOnContig > 0 && readsOnContig[contig] > 0 ) {
+                    readsPerByte[contig] = readsOnContig[contig] / bytesOnContig;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param interval interval to estimate the reads overlapping
+     * @return the estimated number of reads overlapping interval (0 if its contig is not in the BAM)
+     */
+    public long estimateReads( final Locatable interval ) {
+        Utils.nonNull(interval);
+        final int contig = dictionary.getSequenceIndex(interval.getContig());
+        if ( contig < 0 ) {
+            return 0;
+        }
+
+        final List<Chunk> chunks = BAMIndexSpanUtils.getChunksOverlapping(index, contig, interval.getStart(), interval.getEnd());
+        double bytes = 0;
+        for ( final Chunk chunk : chunks ) {
+            bytes += getCompressedSize(chunk.getChunkStart(), chunk.getChunkEnd());
+        }
+
+        if ( Double.isNaN(readsPerByte[contig]) ) {
+            if ( readsOnContig[contig] > 0 ) {
+                // All of the reads on the contig are at a single spot in the file
+                return chunks.isEmpty() ? 0 : readsOnContig[contig];
+            }
+            // Without metadata, fall back on the compressed size itself, which is still proportional to the reads
+            return Math.round(bytes);
+        }
+        return Math.min(readsOnContig[contig], Math.round(bytes * readsPerByte[contig]));
+    }
+
+    /**
+     * @return the estimated number of compressed bytes between two virtual file offsets
+     */
+    static double getCompressedSize( final long startVirtualOffset, final long endVirtualOffset ) {
+        final double size = getCompressedPosition(endVirtualOffset) - getCompressedPosition(startVirtualOffset);
+        return Math.max(size, 0.0);
+    }
+
+    private static double getCompressedPosition( final long virtualOffset ) {
+        return (virtualOffset >>> 16) + (virtualOffset & 0xFFFF) / ASSUMED_COMPRESSION_RATIO;
+    }
+
+    @Override
+    public void close() {
+        closeReader();
+    }
+
+    private void closeReader() {
+        try {
+            reader.close();
+        }
+        catch ( final IOException e ) {
+            throw new GATKException("Error closing BAM file", e);
+        }
+    }
+}
@@ -24,6 +24,7 @@ import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.read.ReadUtils;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 public final class BaseRecalibrationEngine implements Serializable {
@@ -334,7 +335,8 @@ public final class BaseRecalibrationEngine implements Serializable {
      */
     protected static int calculateIsSNPOrIndel(final GATKRead read, final ReferenceDataSource ref, int[] snp, int[] isIns, int[] isDel) {
         final byte[] readBases = read.getBases();
-        final byte[] refBases = ref.queryAndPrefetch(read.getContig(), read.getStart(), read.getEnd()).getBases();
+        // A view over the reference bases rather than a copy, so we don't allocate a new array per read
+        final ByteBuffer refBases = ref.getBasesView(read.getContig(), read.getStart(), read.getEnd());
         int readPos = 0;
         int refPos = 0;
         int nEvents = 0;
@@ -346,7 +348,7 @@ public final class BaseRecalibrationEngine implements Serializable {
                 case EQ:
                 case X:
                     for (int iii = 0; iii < elementLength; iii++) {
-                        int snpInt = (BaseUtils.basesAreEqual(readBases[readPos], refBases[refPos]) ? 0 : 1);
+                        int snpInt = (BaseUtils.basesAreEqual(readBases[readPos], refBases.get(refPos)) ? 0 : 1);
                         snp[readPos] = snpInt;
                         nEvents += snpInt;
                         readPos++;
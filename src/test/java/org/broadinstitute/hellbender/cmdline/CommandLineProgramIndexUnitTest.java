@@ -0,0 +1,77 @@
+package org.broadinstitute.hellbender.cmdline;
+
+import org.broadinstitute.hellbender.tools.examples.ExampleLocusWalker;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public final class CommandLineProgramIndexUnitTest extends BaseTest {
+    private static final String EXAMPLES_PACKAGE = ExampleLocusWalker.class.getPackage().getName();
+
+    private static Map<String, Class<?>> search( final String pkg ) {
+        return CommandLineProgramIndex.findCommandLinePrograms(Collections.singletonList(pkg), Collections.emptyMap());
+    }
+
+    @Test
+    public void testIndexedProgramsMatchSearch() throws IOException {
+        final List<String> packages = Collections.singletonList("org.broadinstitute.hellbender");
+        final StringWriter indexText = new StringWriter();
+        CommandLineProgramIndex.writeIndex(packages, indexText);
+        final Map<String, List<String>> index = CommandLineProgramIndex.readIndex(new StringReader(indexText.toString()));
+
+        Assert.assertEquals(index.keySet(), Collections.singleton("org.broadinstitute.hellbender"));
+        Assert.assertTrue(index.get("org.broadinstitute.hellbender").contains(ExampleLocusWalker.class.getName()));
+        Assert.assertEquals(CommandLineProgramIndex.findCommandLinePrograms(packages, index), search("org.broadinstitute.hellbender"));
+    }
+
+    @Test
+    public void testUnindexedPackagesAreSearched() throws IOException {
+        final Map<String, List<String>> index = CommandLineProgramIndex.readIndex(new StringReader("package\tcom.example.none\n"));
+        final Map<String, Class<?>> programs = CommandLineProgramIndex.findCommandLinePrograms(Collections.singletonList(EXAMPLES_PACKAGE), index);
+
+        Assert.assertEquals(programs.get(ExampleLocusWalker.class.getSimpleName()), ExampleLocusWalker.class);
+        Assert.assertEquals(programs, search(EXAMPLES_PACKAGE));
+    }
+
+    @Test
+    public void testOutOfDateIndexFallsBackToSearch() throws IOException {
+        final Map<String, List<String>> index = CommandLineProgramIndex.readIndex(new StringReader(
+                "# comment\npackage\t" + EXAMPLES_PACKAGE + "\n" + EXAMPLES_PACKAGE + ".NoSuchTool\n"));
+        Assert.assertEquals(CommandLineProgramIndex.findCommandLinePrograms(Collections.singletonList(EXAMPLES_PACKAGE), index), search(EXAMPLES_PACKAGE));
+    }
+
+    @Test
+    public void testIndexOnlyLoadsListedPrograms() throws IOException {
+        final Map<String, List<String>> index = CommandLineProgramIndex.readIndex(new StringReader(
+                "package\t" + EXAMPLES_PACKAGE + "\n" + ExampleLocusWalker.class.getName() + "\n"));
+        Assert.assertEquals(CommandLineProgramIndex.findCommandLinePrograms(Collections.singletonList(EXAMPLES_PACKAGE), index),
+                            Collections.singletonMap(ExampleLocusWalker.class.getSimpleName(), ExampleLocusWalker.class));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testMalformedIndex() throws IOException {
+        CommandLineProgramIndex.readIndex(new StringReader(ExampleLocusWalker.class.getName() + "\n"));
+    }
+
+    @Test
+    public void testMain() throws IOException {
+        final File outputDir = Files.createTempDirectory("testCommandLineProgramIndexMain").toFile();
+        outputDir.deleteOnExit();
+        CommandLineProgramIndex.main(new String[] { outputDir.getAbsolutePath(), EXAMPLES_PACKAGE });
+
+        final File indexFile = new File(outputDir, CommandLineProgramIndex.INDEX_RESOURCE);
+        final List<String> lines = Files.readAllLines(indexFile.toPath(), StandardCharsets.UTF_8);
+        Assert.assertEquals(lines.get(1), "package\t" + EXAMPLES_PACKAGE);
+        Assert.assertEquals(lines.size(), 2 + search(EXAMPLES_PACKAGE).size());
+    }
+}
@@ -0,0 +1,51 @@
+package org.broadinstitute.hellbender.engine;
+
+import htsjdk.samtools.SAMFileHeader;
+import org.broadinstitute.hellbender.tools.walkers.haplotypecaller.AssemblyRegion;
+import org.broadinstitute.hellbender.utils.GenomeLocParser;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public final class AssemblyRegionReadCacheUnitTest extends BaseTest {
+
+    @Test
+    public void testFillRegions() {
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader(3, 1, 100000);
+        final GenomeLocParser genomeLocParser = new GenomeLocParser(header.getSequenceDictionary());
+        final GATKRead a = ArtificialReadUtils.createArtificialRead(header, "a", 0, 100, 100);
+        final GATKRead longRead = ArtificialReadUtils.createArtificialRead(header, "long", 0, 150, 1000);
+        final GATKRead b = ArtificialReadUtils.createArtificialRead(header, "b", 0, 160, 50);
+        final GATKRead c = ArtificialReadUtils.createArtificialRead(header, "c", 0, 400, 50);
+        final GATKRead d = ArtificialReadUtils.createArtificialRead(header, "d", 1, 50, 50);
+
+        final AssemblyRegionReadCache cache = new AssemblyRegionReadCache(header.getSequenceDictionary());
+        for ( final GATKRead read : Arrays.asList(a, longRead, b, c, d) ) {
+            cache.add(read);
+        }
+
+        final AssemblyRegion first = cache.fillRegion(new AssemblyRegion(genomeLocParser.createGenomeLoc("1", 100, 300), genomeLocParser, 50, header));
+        Assert.assertEquals(first.getReads(), Arrays.asList(a, longRead, b));
+        // a ends before the padded span of any later region could start. So does b, but it was added after a read that
+        // doesn't, so it has to wait for it.
+        Assert.assertEquals(cache.size(), 4);
+
+        final AssemblyRegion second = cache.fillRegion(new AssemblyRegion(genomeLocParser.createGenomeLoc("1", 301, 500), genomeLocParser, 50, header));
+        Assert.assertEquals(second.getReads(), Arrays.asList(longRead, c));
+        Assert.assertEquals(cache.size(), 4);
+
+        // Moving on to another contig evicts every read on the one before
+        final AssemblyRegion third = cache.fillRegion(new AssemblyRegion(genomeLocParser.createGenomeLoc("2", 1, 100), genomeLocParser, 50, header));
+        Assert.assertEquals(third.getReads(), Collections.singletonList(d));
+        Assert.assertEquals(cache.size(), 1);
+
+        final AssemblyRegion fourth = cache.fillRegion(new AssemblyRegion(genomeLocParser.createGenomeLoc("2", 200, 300), genomeLocParser, 50, header));
+        Assert.assertTrue(fourth.getReads().isEmpty());
+        Assert.assertEquals(cache.size(), 0);
+    }
+}
@@ -225,7 +225,8 @@ public final class FeatureDataSourceUnitTest extends BaseTest {
     @Test(expectedExceptions = ArithmeticException.class)
     public void testBlowUpOnOverflow() {
         final SimpleInterval queryInterval = new SimpleInterval("4", 777, Integer.MAX_VALUE);
-        try (final FeatureDataSource<VariantContext> featureSource = new FeatureDataSource<>(QUERY_TEST_VCF, new VCFCodec())) {
+        // query lookahead only applies to queries that go to disk, so disable the in-memory index
+        try (final FeatureDataSource<VariantContext> featureSource = new FeatureDataSource<>(QUERY_TEST_VCF, new VCFCodec(), null, FeatureDataSource.DEFAULT_QUERY_LOOKAHEAD_BASES, 0)) {
             Iterator<VariantContext> featureIterator = featureSource.query(queryInterval);
         }
     }
@@ -364,6 +365,115 @@ public final class FeatureDataSourceUnitTest extends BaseTest {
         }
     }
 
+    /**
+     * Same as {@link #testSingleDataSourceMultipleQueries}, but forces all queries to go to disk through the
+     * Feature cache rather than being answered from an in-memory index of the (small) test file
+     */
+    @Test(dataProvider = "SingleDataSourceMultipleQueriesTestData")
+    public void testSingleDataSourceMultipleQueriesFromDisk( final List<Pair<SimpleInterval, List<String>>> testQueries ) {
+        try (final FeatureDataSource<VariantContext> featureSource = new FeatureDataSource<>(QUERY_TEST_VCF, new VCFCodec(), null, FeatureDataSource.DEFAULT_QUERY_LOOKAHEAD_BASES, 0)) {
+            Assert.assertFalse(featureSource.usesInMemoryIndex());
+
+            for ( Pair<SimpleInterval, List<String>> testQuery : testQueries ) {
+                final SimpleInterval queryInterval = testQuery.getLeft();
+                final List<String> expectedVariantIDs = testQuery.getRight();
+
+                final List<VariantContext> queryResults = featureSource.queryAndPrefetch(queryInterval);
+                checkVariantQueryResults(queryResults, expectedVariantIDs, queryInterval);
+            }
+        }
+    }
+
+    @Test
+    public void testInMemoryIndexThreshold() {
+        try (final FeatureDataSource<VariantContext> featureSource = new FeatureDataSource<>(QUERY_TEST_VCF, new VCFCodec())) {
+            Assert.assertTrue(featureSource.usesInMemoryIndex(), "small file should be indexed in memory by default");
+        }
+        try (final FeatureDataSource<VariantContext> featureSource = new FeatureDataSource<>(QUERY_TEST_VCF, new VCFCodec(), null, 0, QUERY_TEST_VCF.length())) {
+            Assert.assertTrue(featureSource.usesInMemoryIndex(), "file at the size threshold should be indexed in memory");
+        }
+        try (final FeatureDataSource<VariantContext> featureSource = new FeatureDataSource<>(QUERY_TEST_VCF, new VCFCodec(), null, 0, QUERY_TEST_VCF.length() - 1)) {
+            Assert.assertFalse(featureSource.usesInMemoryIndex(), "file over the size threshold should not be indexed in memory");
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testHandleInvalidInMemoryIndexFileSize() {
+        FeatureDataSource<VariantContext> featureSource = new FeatureDataSource<>(QUERY_TEST_VCF, new VCFCodec(), "MyName", 0, -1);
+    }
+
+    @Test
+    public void testQueryDuringIterationWithInMemoryIndex() {
+        try (final FeatureDataSource<VariantContext> featureSource = new FeatureDataSource<>(QUERY_TEST_VCF, new VCFCodec())) {
+            final List<String> queryResults = new ArrayList<>();
+            // the first query loads the in-memory index, and later queries must not go back to disk
+            for ( final SimpleInterval interval : Arrays.asList(new SimpleInterval("1", 200, 300), new SimpleInterval("1", 100, 200)) ) {
+                for ( final VariantContext vc : featureSource.queryAndPrefetch(interval) ) {
+                    queryResults.add(vc.getID());
+                }
+            }
+            Assert.assertEquals(queryResults, Arrays.asList("b", "c", "d", "e", "f", "g", "h", "a", "b", "c"));
+
+            // full iteration is still available after the in-memory index has been loaded
+            int featureCount = 0;
+            for ( final VariantContext vc : featureSource ) {
+                ++featureCount;
+            }
+            Assert.assertTrue(featureCount > 0);
+        }
+    }
+
+    @Test
+    public void testQueryCacheStatistics() {
+        try (final FeatureDataSource<VariantContext> featureSource = new FeatureDataSource<>(QUERY_TEST_VCF, new VCFCodec(), null, FeatureDataSource.DEFAULT_QUERY_LOOKAHEAD_BASES, 0)) {
+            checkVariantQueryResults(featureSource.queryAndPrefetch(new SimpleInterval("1", 280, 290)), Arrays.asList("e", "f", "g", "h"), new SimpleInterval("1", 280, 290));
+            checkVariantQueryResults(featureSource.queryAndPrefetch(new SimpleInterval("1", 999, 1000)), Arrays.asList("i", "j", "k"), new SimpleInterval("1", 999, 1000));
+            // a short step backwards should be served from the cache
+            checkVariantQueryResults(featureSource.queryAndPrefetch(new SimpleInterval("1", 600, 1000)), Arrays.asList("i", "j", "k"), new SimpleInterval("1", 600, 1000));
+            checkVariantQueryResults(featureSource.queryAndPrefetch(new SimpleInterval("2", 1, 300)), Arrays.asList("o"), new SimpleInterval("2", 1, 300));
+
+            Assert.assertEquals(featureSource.getQueryCacheHits(), 2);
+            Assert.assertEquals(featureSource.getQueryCacheMisses(), 2);
+        }
+    }
+
+    @Test
+    public void testQueryCacheDisabled() {
+        try (final FeatureDataSource<VariantContext> featureSource = new FeatureDataSource<>(QUERY_TEST_VCF, new VCFCodec(), null, 0, 0)) {
+            checkVariantQueryResults(featureSource.queryAndPrefetch(new SimpleInterval("1", 280, 290)), Arrays.asList("e", "f", "g", "h"), new SimpleInterval("1", 280, 290));
+            // with caching disabled, we neither look ahead nor behind
+            checkVariantQueryResults(featureSource.queryAndPrefetch(new SimpleInterval("1", 280, 300)), Arrays.asList("e", "f", "g", "h"), new SimpleInterval("1", 280, 300));
+            checkVariantQueryResults(featureSource.queryAndPrefetch(new SimpleInterval("1", 200, 290)), Arrays.asList("b", "c", "d", "e", "f", "g", "h"), new SimpleInterval("1", 200, 290));
+
+            Assert.assertEquals(featureSource.getQueryCacheHits(), 0);
+            Assert.assertEquals(featureSource.getQueryCacheMisses(), 3);
+            Assert.assertEquals(featureSource.getCurrentQueryLookaheadBases(), 0);
+        }
+    }
+
+    @Test
+    public void testAdaptiveQueryLookahead() {
+        try (final FeatureDataSource<VariantContext> featureSource = new FeatureDataSource<>(QUERY_TEST_VCF, new VCFCodec(), null, FeatureDataSource.DEFAULT_QUERY_LOOKAHEAD_BASES, 0)) {
+            Assert.assertEquals(featureSource.getCurrentQueryLookaheadBases(), FeatureDataSource.DEFAULT_QUERY_LOOKAHEAD_BASES);
+
+            // Features in our test file are sparse, so we should look further ahead after our first cache miss
+            featureSource.queryAndPrefetch(new SimpleInterval("1", 100, 200));
+            final int sparseLookahead = featureSource.getCurrentQueryLookaheadBases();
+            Assert.assertTrue(sparseLookahead > FeatureDataSource.DEFAULT_QUERY_LOOKAHEAD_BASES, "lookahead did not grow in sparse region");
+            Assert.assertTrue(sparseLookahead <= FeatureDataSource.MAX_QUERY_LOOKAHEAD_BASES, "lookahead exceeded its maximum");
+
+            // so a query past the default lookahead is now a cache hit
+            checkVariantQueryResults(featureSource.queryAndPrefetch(new SimpleInterval("1", 1150, 1200)), Arrays.asList("m", "n"), new SimpleInterval("1", 1150, 1200));
+            Assert.assertEquals(featureSource.getQueryCacheHits(), 1);
+
+            // queries that jump further than the maximum lookahead gain nothing from looking ahead
+            for ( int start = 10000000; start <= 50000000; start += 10000000 ) {
+                featureSource.queryAndPrefetch(new SimpleInterval("1", start, start + 100));
+            }
+            Assert.assertEquals(featureSource.getCurrentQueryLookaheadBases(), FeatureDataSource.DEFAULT_QUERY_LOOKAHEAD_BASES);
+        }
+    }
+
     @DataProvider(name = "GVCFQueryTestData")
     public Object[][] getGVCFQueryTestData() {
 
@@ -631,6 +741,24 @@ public final class FeatureDataSourceUnitTest extends BaseTest {
         }
     }
 
+    @Test
+    public void testCacheFeatureRetrievalByOverlap() {
+        final List<ArtificialTestFeature> feats = Arrays.asList(
+                new ArtificialTestFeature("1", 1, 1),
+                new ArtificialTestFeature("1", 1, 100),
+                new ArtificialTestFeature("1", 5, 5),
+                new ArtificialTestFeature("1", 10, 20),
+                new ArtificialTestFeature("1", 50, 50)
+        );
+        final FeatureDataSource.FeatureCache<ArtificialTestFeature> cache = initializeFeatureCache(feats, "1", 1, 100);
+
+        // retrieval by overlap does not require the cache to be trimmed first, and so can step backwards
+        Assert.assertEquals(cache.getCachedFeaturesOverlapping(20, 60), Arrays.asList(feats.get(1), feats.get(3), feats.get(4)));
+        Assert.assertEquals(cache.getCachedFeaturesOverlapping(5, 9), Arrays.asList(feats.get(1), feats.get(2)));
+        Assert.assertEquals(cache.getCachedFeaturesOverlapping(51, 100), Arrays.asList(feats.get(1)));
+        Assert.assertEquals(cache.size(), feats.size());
+    }
+
     /**
      * Test caching a region with no Features. This should work (we should avoid going to disk
      * to look for new records when querying within such a region).
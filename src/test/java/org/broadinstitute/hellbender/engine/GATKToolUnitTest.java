@@ -5,15 +5,19 @@ import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
 import htsjdk.samtools.ValidationStringency;
 import htsjdk.tribble.Feature;
+import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.vcf.VCFFileReader;
 import htsjdk.variant.vcf.VCFHeader;
 import org.broadinstitute.hellbender.cmdline.Argument;
 import org.broadinstitute.hellbender.cmdline.CommandLineParser;
+import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.test.BaseTest;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
 
 public final class GATKToolUnitTest extends BaseTest{
 
@@ -46,6 +50,18 @@ public final class GATKToolUnitTest extends BaseTest{
         }
     }
 
+    private static final class TestLocusWalkerWithFeatures extends LocusWalker {
+
+        @Argument(fullName="mask", shortName="mask", doc="Input mask", optional=true)
+        public FeatureInput<VariantContext> mask;
+
+        @Override
+        public void apply(AlignmentContext alignmentContext, ReferenceContext referenceContext, FeatureContext featureContext) {
+            referenceContext.getBases();
+            featureContext.getValues(mask);
+        }
+    }
+
 
     @Test
     public void testReadsHeader() throws Exception {
@@ -92,4 +108,54 @@ public final class GATKToolUnitTest extends BaseTest{
         tool.onShutdown();
     }
 
+    @Test
+    public void testMetricsReport() throws Exception {
+        final LocusWalker tool = new TestLocusWalkerWithFeatures();
+        final CommandLineParser clp = new CommandLineParser(tool);
+        final File report = createTempFile("testMetricsReport", ".json");
+        final String[] args = {
+                "-L", "1:195-215",
+                "-R", hg19MiniReference,
+                "-I", publicTestDir + "org/broadinstitute/hellbender/engine/reads_data_source_test1.bam",
+                "--mask", publicTestDir + "org/broadinstitute/hellbender/engine/feature_data_source_test.vcf",
+                "-metricsReport", report.getAbsolutePath()};
+        clp.parseArguments(System.out, args);
+        tool.onStartup();
+        tool.doWork();
+        tool.onShutdown();
+
+        final String json = new String(Files.readAllBytes(report.toPath()));
+        // apply() is called once for each of the 16 covered loci in the interval
+        Assert.assertTrue(json.contains("\"traversal.apply\": { \"count\": 16,"), json);
+        for ( final String metric : Arrays.asList("reads.decode", "reference.cacheHits", "features.cacheHits", "readFilters.Wellformed.rejected") ) {
+            Assert.assertTrue(json.contains("\"" + metric + "\": "), "missing metric " + metric + " in " + json);
+        }
+    }
+
+    @Test
+    public void testReferenceCacheBudget() throws Exception {
+        final GATKTool tool = new TestGATKToolWithReads();
+        final CommandLineParser clp = new CommandLineParser(tool);
+        final String[] args = {
+                "-R", hg19MiniReference,
+                "-I", publicTestDir + "org/broadinstitute/hellbender/engine/reads_data_source_test1.bam",
+                "-referenceCacheBudget", "2500000"};
+        clp.parseArguments(System.out, args);
+        tool.onStartup();
+        Assert.assertEquals(((ReferenceFileSource)tool.reference).getCacheBudget(), 2500000L);
+        tool.onShutdown();
+    }
+
+    @Test(expectedExceptions = UserException.BadArgumentValue.class)
+    public void testNegativeReferenceCacheBudget() throws Exception {
+        final GATKTool tool = new TestGATKToolWithReads();
+        final CommandLineParser clp = new CommandLineParser(tool);
+        final String[] args = {
+                "-R", hg19MiniReference,
+                "-I", publicTestDir + "org/broadinstitute/hellbender/engine/reads_data_source_test1.bam",
+                "-referenceCacheBudget", "-1"};
+        clp.parseArguments(System.out, args);
+        tool.onStartup();
+    }
+
 }
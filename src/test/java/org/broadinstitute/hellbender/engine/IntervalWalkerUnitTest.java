@@ -0,0 +1,55 @@
+package org.broadinstitute.hellbender.engine;
+
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public final class IntervalWalkerUnitTest extends BaseTest {
+
+    private static List<SimpleInterval> makeIntervals( final int count, final int size ) {
+        final List<SimpleInterval> intervals = new ArrayList<>();
+        for ( int i = 0; i < count; ++i ) {
+            intervals.add(new SimpleInterval("1", 1 + i * 2 * size, (i * 2 + 1) * size));
+        }
+        return intervals;
+    }
+
+    @DataProvider(name = "IntervalGroupingData")
+    public Object[][] getIntervalGroupingData() {
+        final List<SimpleInterval> mixedSizes = Arrays.asList(new SimpleInterval("1", 1, 10),
+                                                              new SimpleInterval("1", 100, 10099),
+                                                              new SimpleInterval("1", 20000, 20009),
+                                                              new SimpleInterval("2", 1, 10),
+                                                              new SimpleInterval("2", 50, 59));
+        return new Object[][] {
+                // intervals, number of groups, expected group sizes (in intervals)
+                { makeIntervals(100, 10), 1, Collections.singletonList(100) },
+                { makeIntervals(100, 10), 4, Arrays.asList(25, 25, 25, 25) },
+                { makeIntervals(100, 10), 3, Arrays.asList(34, 33, 33) },
+                { makeIntervals(3, 10), 8, Arrays.asList(1, 1, 1) },
+                { mixedSizes, 2, Arrays.asList(2, 3) },
+                { mixedSizes, 4, Arrays.asList(2, 1, 1, 1) }
+        };
+    }
+
+    @Test(dataProvider = "IntervalGroupingData")
+    public void testGroupIntervalsByBases( final List<SimpleInterval> intervals, final int numGroups, final List<Integer> expectedGroupSizes ) {
+        final List<List<SimpleInterval>> groups = IntervalWalker.groupIntervalsByBases(intervals, numGroups);
+
+        Assert.assertEquals(groups.stream().map(List::size).collect(Collectors.toList()), expectedGroupSizes);
+        Assert.assertEquals(groups.stream().flatMap(List::stream).collect(Collectors.toList()), intervals, "groups do not preserve interval order");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testGroupIntervalsIntoNoGroups() {
+        IntervalWalker.groupIntervalsByBases(makeIntervals(10, 10), 0);
+    }
+}
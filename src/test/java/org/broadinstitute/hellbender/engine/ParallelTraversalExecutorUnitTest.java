@@ -0,0 +1,90 @@
+package org.broadinstitute.hellbender.engine;
+
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public final class ParallelTraversalExecutorUnitTest extends BaseTest {
+
+    private static final class CountingState implements AutoCloseable {
+        private final AtomicInteger closeCount;
+
+        private CountingState( final AtomicInteger closeCount ) {
+            this.closeCount = closeCount;
+        }
+
+        @Override
+        public void close() {
+            closeCount.incrementAndGet();
+        }
+    }
+
+    @DataProvider(name = "ThreadCounts")
+    public Object[][] getThreadCounts() {
+        return new Object[][] { {1}, {2}, {4}, {8} };
+    }
+
+    @Test(dataProvider = "ThreadCounts")
+    public void testOutputAndResultsAreInSubmissionOrder( final int numThreads ) {
+        final int numWorkUnits = 200;
+        final List<Integer> output = new ArrayList<>();
+        final List<Integer> results = new ArrayList<>();
+        final AtomicInteger statesCreated = new AtomicInteger();
+        final AtomicInteger statesClosed = new AtomicInteger();
+
+        try ( final ParallelTraversalExecutor<CountingState, Integer> executor =
+                      new ParallelTraversalExecutor<>(numThreads, 3, () -> { statesCreated.incrementAndGet(); return new CountingState(statesClosed); }, results::add) ) {
+            for ( int i = 0; i < numWorkUnits; ++i ) {
+                final int workUnit = i;
+                executor.submit(state -> {
+                    // Jitter the amount of time each unit of work takes so that they complete out of order
+                    try {
+                        Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+                    }
+                    catch ( InterruptedException e ) {
+                        Thread.currentThread().interrupt();
+                    }
+                    ParallelTraversalExecutor.runInOrder(() -> output.add(workUnit * 2));
+                    ParallelTraversalExecutor.runInOrder(() -> output.add(workUnit * 2 + 1));
+                    return workUnit;
+                });
+            }
+            executor.finish();
+        }
+
+        Assert.assertEquals(output, IntStream.range(0, numWorkUnits * 2).boxed().collect(Collectors.toList()));
+        Assert.assertEquals(results, IntStream.range(0, numWorkUnits).boxed().collect(Collectors.toList()));
+        Assert.assertTrue(statesCreated.get() >= 1 && statesCreated.get() <= numThreads, "wrong number of worker states created: " + statesCreated.get());
+        Assert.assertEquals(statesClosed.get(), statesCreated.get(), "all worker states should have been closed");
+    }
+
+    @Test
+    public void testRunInOrderOutsideOfWorkerRunsImmediately() {
+        final List<String> output = new ArrayList<>();
+        ParallelTraversalExecutor.runInOrder(() -> output.add("foo"));
+        Assert.assertEquals(output.size(), 1);
+    }
+
+    @Test(expectedExceptions = UserException.class)
+    public void testWorkerExceptionIsPropagated() {
+        try ( final ParallelTraversalExecutor<CountingState, Integer> executor =
+                      new ParallelTraversalExecutor<>(2, 2, () -> new CountingState(new AtomicInteger()), result -> {}) ) {
+            executor.submit(state -> { throw new UserException("bad input"); });
+            executor.finish();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidThreadCount() {
+        new ParallelTraversalExecutor<CountingState, Integer>(0, 1, () -> new CountingState(new AtomicInteger()), result -> {});
+    }
+}
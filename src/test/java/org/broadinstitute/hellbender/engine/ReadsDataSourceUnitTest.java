@@ -245,6 +245,46 @@ public final class ReadsDataSourceUnitTest extends BaseTest {
         }
     }
 
+    @DataProvider(name = "ReadAheadTraversalData")
+    public Object[][] getReadAheadTraversalData() {
+        // Files, with read-ahead threads, and expected read names in the expected order
+        final List<String> expectedReadNames = Arrays.<String>asList("a", "b", "l", "c", "m", "n", "d", "e", "o", "f", "p", "g", "h", "q", "r", "s", "w", "t", "x", "i", "j", "u", "v", "y", "k", "z");
+        return new Object[][] {
+                { Arrays.<File>asList(FIRST_TEST_BAM), 1, Arrays.<String>asList("a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k") },
+                { Arrays.<File>asList(FIRST_TEST_BAM, SECOND_TEST_BAM, THIRD_TEST_BAM), 1, expectedReadNames },
+                { Arrays.<File>asList(FIRST_TEST_BAM, SECOND_TEST_BAM, THIRD_TEST_BAM), 4, expectedReadNames }
+        };
+    }
+
+    @Test(dataProvider = "ReadAheadTraversalData")
+    public void testReadAheadTraversal( final List<File> samFiles, final int readAheadThreads, final List<String> expectedReadNames ) {
+        try (ReadsDataSource readsSource = new ReadsDataSource(samFiles)) {
+            readsSource.setReadAhead(readAheadThreads, 1);
+
+            // Traverse twice to make sure that a second iteration cleanly replaces the first
+            for ( int pass = 0; pass < 2; ++pass ) {
+                List<String> readNames = new ArrayList<>();
+                for (GATKRead read : readsSource) {
+                    readNames.add(read.getName());
+                }
+                Assert.assertEquals(readNames, expectedReadNames, "Wrong reads returned in traversal with read-ahead of " + samFiles);
+            }
+
+            // Queries are unaffected by read-ahead, and may follow a partially-consumed traversal
+            final Iterator<GATKRead> partialTraversal = readsSource.iterator();
+            Assert.assertTrue(partialTraversal.hasNext());
+            final Iterator<GATKRead> queryIterator = readsSource.query(new SimpleInterval("1", 200, 210));
+            Assert.assertTrue(queryIterator.hasNext());
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidReadAheadThreads() {
+        try (ReadsDataSource readsSource = new ReadsDataSource(FIRST_TEST_BAM)) {
+            readsSource.setReadAhead(-1, 1);
+        }
+    }
+
     @DataProvider(name = "MultipleFilesTraversalWithIntervalsData")
     public Object[][] getMultipleFilesTraversalWithIntervalsData() {
         // Files, with intervals, and expected read names in the expected order
@@ -296,6 +336,64 @@ public final class ReadsDataSourceUnitTest extends BaseTest {
         }
     }
 
+    @Test(dataProvider = "MultipleFilesTraversalWithIntervalsData")
+    public void testMultipleFilesTraversalWithIntervalsAndReadAhead( final List<File> samFiles, final List<SimpleInterval> intervals, final List<String> expectedReadNames ) {
+        try (ReadsDataSource readsSource = new ReadsDataSource(samFiles)) {
+            readsSource.setIntervalsForTraversal(intervals);
+            readsSource.setReadAhead(1, 1);
+
+            List<String> readNames = new ArrayList<>();
+            for (GATKRead read : readsSource) {
+                readNames.add(read.getName());
+            }
+            Assert.assertEquals(readNames, expectedReadNames, "Wrong reads returned in traversal by intervals with read-ahead of " + samFiles);
+        }
+    }
+
+    @Test(dataProvider = "MultipleFilesTraversalWithIntervalsData")
+    public void testMultipleFilesTraversalWithIntervalsAndQueryCoalescing( final List<File> samFiles, final List<SimpleInterval> intervals, final List<String> expectedReadNames ) {
+        try (ReadsDataSource readsSource = new ReadsDataSource(samFiles)) {
+            readsSource.setIntervalsForTraversal(intervals);
+
+            // Coalescing changes how the files are scanned, but not which reads are returned
+            for ( final int gap : Arrays.asList(0, 100, Integer.MAX_VALUE) ) {
+                readsSource.setQueryCoalescingGap(gap);
+                List<String> readNames = new ArrayList<>();
+                for (GATKRead read : readsSource) {
+                    readNames.add(read.getName());
+                }
+                Assert.assertEquals(readNames, expectedReadNames, "Wrong reads returned in traversal by intervals of " + samFiles + " with query coalescing gap " + gap);
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidQueryCoalescingGap() {
+        try (ReadsDataSource readsSource = new ReadsDataSource(FIRST_TEST_BAM)) {
+            readsSource.setQueryCoalescingGap(-1);
+        }
+    }
+
+    @Test
+    public void testMultipleFilesReadAheadMatchesMergedTraversal() {
+        final List<File> samFiles = Arrays.asList(FIRST_TEST_BAM, SECOND_TEST_BAM, THIRD_TEST_BAM);
+        try (ReadsDataSource mergedSource = new ReadsDataSource(samFiles);
+             ReadsDataSource readAheadSource = new ReadsDataSource(samFiles)) {
+            readAheadSource.setReadAhead(1, 1);
+
+            // Reads must be identical, including the read group and reference indices translated into the merged header
+            final List<String> expectedRecords = new ArrayList<>();
+            for (GATKRead read : mergedSource) {
+                expectedRecords.add(read.convertToSAMRecord(mergedSource.getHeader()).getSAMString());
+            }
+            final List<String> actualRecords = new ArrayList<>();
+            for (GATKRead read : readAheadSource) {
+                actualRecords.add(read.convertToSAMRecord(readAheadSource.getHeader()).getSAMString());
+            }
+            Assert.assertEquals(actualRecords, expectedRecords);
+        }
+    }
+
     @DataProvider(name = "MultipleFilesQueryByIntervalData")
     public Object[][] getMultipleFilesQueryByIntervalData() {
         // Files, with a single query interval, and expected read names in the expected order
@@ -0,0 +1,93 @@
+package org.broadinstitute.hellbender.engine;
+
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+public final class ReadsQueryPlanUnitTest extends BaseTest {
+
+    private static final QueryInterval[] INTERVALS = {
+            new QueryInterval(0, 100, 200),
+            new QueryInterval(0, 211, 300),
+            new QueryInterval(0, 1000, 1100),
+            new QueryInterval(1, 50, 60),
+            new QueryInterval(2, 10, 20)
+    };
+
+    private static List<String> describe( final QueryInterval[] intervals ) {
+        return Arrays.stream(intervals).map(interval -> interval.referenceIndex + ":" + interval.start + "-" + interval.end).collect(Collectors.toList());
+    }
+
+    @DataProvider(name = "CoalescingData")
+    public Object[][] getCoalescingData() {
+        return new Object[][] {
+                // max gap, expected scan intervals
+                { 0, describe(INTERVALS) },
+                { 9, describe(INTERVALS) },
+                { 10, Arrays.asList("0:100-300", "0:1000-1100", "1:50-60", "2:10-20") },
+                { 698, Arrays.asList("0:100-300", "0:1000-1100", "1:50-60", "2:10-20") },
+                { 699, Arrays.asList("0:100-1100", "1:50-60", "2:10-20") },
+                // never coalesce across contigs
+                { Integer.MAX_VALUE, Arrays.asList("0:100-1100", "1:50-60", "2:10-20") }
+        };
+    }
+
+    @Test(dataProvider = "CoalescingData")
+    public void testCoalescing( final int maxGap, final List<String> expectedScanIntervals ) {
+        final ReadsQueryPlan plan = new ReadsQueryPlan(INTERVALS, maxGap);
+        Assert.assertEquals(describe(plan.getScanIntervals()), expectedScanIntervals);
+        Assert.assertEquals(plan.isCoalesced(), expectedScanIntervals.size() < INTERVALS.length);
+        Assert.assertNotNull(plan.getSummary());
+    }
+
+    @Test
+    public void testFilterToRequestedIntervals() {
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader(3, 1, 10000);
+        final List<SAMRecord> records = new ArrayList<>();
+        final Set<String> expected = new LinkedHashSet<>();
+        // name, contig, start, length, overlaps a requested interval?
+        final Object[][] readSpecs = {
+                { "beforeFirst", 0, 50, 50, false },
+                { "endsAtFirstStart", 0, 51, 50, true },
+                { "spansAdjacentIntervals", 0, 190, 30, true },
+                { "inGap", 0, 201, 10, false },
+                { "inSecond", 0, 250, 10, true },
+                { "inLongGap", 0, 500, 100, false },
+                { "startsAtThirdEnd", 0, 1100, 10, true },
+                { "afterThird", 0, 1101, 10, false },
+                { "otherContig", 1, 55, 10, true },
+                { "otherContigGap", 1, 100, 10, false },
+                { "lastContig", 2, 1, 10, true }
+        };
+        for ( final Object[] spec : readSpecs ) {
+            final SAMRecord record = ArtificialReadUtils.createArtificialSAMRecord(header, (String)spec[0], (int)spec[1], (int)spec[2], (int)spec[3]);
+            records.add(record);
+            if ( (boolean)spec[4] ) {
+                expected.add(record.getReadName());
+            }
+        }
+
+        final List<String> actual = new ArrayList<>();
+        new ReadsQueryPlan(INTERVALS, Integer.MAX_VALUE).filterToRequestedIntervals(records.iterator()).forEachRemaining(record -> actual.add(record.getReadName()));
+        Assert.assertEquals(actual, new ArrayList<>(expected));
+    }
+
+    @Test
+    public void testNoFilteringWithoutCoalescing() {
+        final Iterator<SAMRecord> records = Collections.emptyIterator();
+        Assert.assertSame(new ReadsQueryPlan(INTERVALS, 0).filterToRequestedIntervals(records), records);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeGap() {
+        new ReadsQueryPlan(INTERVALS, -1);
+    }
+}
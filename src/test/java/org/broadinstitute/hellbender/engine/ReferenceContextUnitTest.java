@@ -8,6 +8,7 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -34,6 +35,8 @@ public final class ReferenceContextUnitTest extends BaseTest {
                            "Empty ReferenceContext reports having both a backing data source and an interval");
         Assert.assertEquals(refContext.getBases().length, 0, "Empty ReferenceContext should have returned an empty bases array from getBases()");
         Assert.assertFalse(refContext.iterator().hasNext(), "Empty ReferenceContext should have returned an empty bases iterator from iterator()");
+        Assert.assertEquals(refContext.copyBases(new byte[1], 0), 0, "Empty ReferenceContext should not have copied any bases in copyBases()");
+        Assert.assertFalse(refContext.getBasesView().hasRemaining(), "Empty ReferenceContext should have returned an empty view from getBasesView()");
     }
 
     @DataProvider(name = "WindowlessReferenceIntervalDataProvider")
@@ -134,7 +137,10 @@ public final class ReferenceContextUnitTest extends BaseTest {
     }
 
     private void checkReferenceContextBases( final ReferenceContext refContext, final String expectedBases ) {
+        // Check the primitive accessors both before and after the bases in the context have been cached by getBases()
+        checkPrimitiveReferenceContextAccess(refContext, expectedBases);
         byte[] contextBases = refContext.getBases();
+        checkPrimitiveReferenceContextAccess(refContext, expectedBases);
 
         List<Byte> contextBasesFromIterator = new ArrayList<>();
         Iterator<Byte> baseIterator = refContext.iterator();
@@ -152,6 +158,34 @@ public final class ReferenceContextUnitTest extends BaseTest {
         }
     }
 
+    private void checkPrimitiveReferenceContextAccess( final ReferenceContext refContext, final String expectedBases ) {
+        final SimpleInterval window = refContext.getWindow();
+        final byte[] expectedBasesByteArray = expectedBases.getBytes();
+
+        for ( int position = window.getStart(); position <= window.getEnd(); ++position ) {
+            Assert.assertEquals(refContext.getBase(position), expectedBasesByteArray[position - window.getStart()], "Wrong base from refContext.getBase() at position " + position);
+        }
+        Assert.assertEquals(refContext.getBase(), expectedBasesByteArray[refContext.numWindowLeadingBases()], "Wrong base from refContext.getBase()");
+
+        final byte[] buffer = new byte[expectedBases.length() + 1];
+        Assert.assertEquals(refContext.copyBases(buffer, 1), expectedBases.length(), "Wrong number of bases from refContext.copyBases()");
+        Assert.assertEquals(new String(buffer, 1, expectedBases.length()), expectedBases, "Wrong bases from refContext.copyBases()");
+
+        final ByteBuffer view = refContext.getBasesView();
+        Assert.assertTrue(view.isReadOnly(), "refContext.getBasesView() should be read-only");
+        final byte[] viewBases = new byte[view.remaining()];
+        view.get(viewBases);
+        Assert.assertEquals(new String(viewBases), expectedBases, "Wrong bases from refContext.getBasesView()");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testGetBaseOutsideWindow() {
+        try ( ReferenceDataSource reference = new ReferenceFileSource(TEST_REFERENCE) ) {
+            final ReferenceContext refContext = new ReferenceContext(reference, new SimpleInterval("1", 11041, 11045), 2, 2);
+            refContext.getBase(11048);
+        }
+    }
+
     @DataProvider(name = "InvalidWindowDataProvider")
     public Object[][] getInvalidWindows() {
         return new Object[][] {
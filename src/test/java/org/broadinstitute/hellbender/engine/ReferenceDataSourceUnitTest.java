@@ -10,6 +10,7 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
@@ -74,6 +75,50 @@ public final class ReferenceDataSourceUnitTest extends BaseTest {
         }
     }
 
+    @Test(dataProvider = "ReferenceIntervalDataProvider")
+    public void testPrimitiveAccess( final SimpleInterval interval, final String expectedBases ) {
+        try (ReferenceDataSource reference = new ReferenceFileSource(TEST_REFERENCE)) {
+            final byte[] expectedBytes = expectedBases.getBytes();
+
+            for ( int position = interval.getStart(); position <= interval.getEnd(); ++position ) {
+                Assert.assertEquals(reference.getBase(interval.getContig(), position), expectedBytes[position - interval.getStart()],
+                        "Wrong base returned from getBase() at position " + position);
+            }
+
+            final byte[] buffer = new byte[expectedBytes.length + 2];
+            Assert.assertEquals(reference.copyBases(interval.getContig(), interval.getStart(), interval.getEnd(), buffer, 1), expectedBytes.length);
+            Assert.assertEquals(new String(buffer, 1, expectedBytes.length), expectedBases, "Wrong bases copied by copyBases() for interval " + interval);
+
+            final ByteBuffer view = reference.getBasesView(interval.getContig(), interval.getStart(), interval.getEnd());
+            Assert.assertTrue(view.isReadOnly(), "View returned by getBasesView() should be read-only");
+            final byte[] viewBases = new byte[view.remaining()];
+            view.get(viewBases);
+            Assert.assertEquals(new String(viewBases), expectedBases, "Wrong bases in view returned by getBasesView() for interval " + interval);
+        }
+    }
+
+    @Test(dataProvider = "ReferenceIntervalDataProvider")
+    public void testMemoryMappedReference( final SimpleInterval interval, final String expectedBases ) {
+        try (ReferenceDataSource reference = ReferenceDataSource.of(TEST_REFERENCE, true)) {
+            Assert.assertTrue(reference instanceof ReferenceMappedFileSource);
+            Assert.assertEquals(new String(reference.queryAndPrefetch(interval).getBases()), expectedBases,
+                    "Wrong bases returned from queryAndPrefetch() on memory-mapped reference for interval " + interval);
+            Assert.assertEquals(reference.getBase(interval.getContig(), interval.getStart()), expectedBases.getBytes()[0],
+                    "Wrong base returned from getBase() on memory-mapped reference for interval " + interval);
+
+            final byte[] buffer = new byte[expectedBases.length()];
+            reference.copyBases(interval.getContig(), interval.getStart(), interval.getEnd(), buffer, 0);
+            Assert.assertEquals(new String(buffer), expectedBases, "Wrong bases copied by copyBases() on memory-mapped reference for interval " + interval);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testCopyBasesIntoTooSmallBuffer() {
+        try (ReferenceDataSource reference = new ReferenceFileSource(TEST_REFERENCE)) {
+            reference.copyBases("1", 11041, 11045, new byte[4], 0);
+        }
+    }
+
     @Test(dataProvider = "ReferenceIntervalDataProvider")
     public void testQueryAndIterate( final SimpleInterval interval, final String expectedBases ) {
         try (ReferenceDataSource reference = new ReferenceFileSource(TEST_REFERENCE)) {
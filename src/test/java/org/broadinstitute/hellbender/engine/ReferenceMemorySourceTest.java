@@ -10,7 +10,9 @@ import org.testng.annotations.BeforeTest;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
@@ -67,6 +69,39 @@ public class ReferenceMemorySourceTest {
         Assert.assertEquals(memorySource.queryAndPrefetch(interval).getBases(), bytes);
     }
 
+    @Test(dataProvider="data")
+    public void testGetBase(SimpleInterval interval, byte[] bytes) throws Exception {
+        for (int i=0; i<bytes.length; i++) {
+            Assert.assertEquals(memorySource.getBase(interval.getContig(), interval.getStart() + i), bytes[i]);
+        }
+    }
+
+    @Test(dataProvider="data")
+    public void testCopyBases(SimpleInterval interval, byte[] bytes) throws Exception {
+        final byte[] buffer = new byte[bytes.length + 1];
+        Assert.assertEquals(memorySource.copyBases(interval.getContig(), interval.getStart(), interval.getEnd(), buffer, 1), bytes.length);
+        Assert.assertEquals(Arrays.copyOfRange(buffer, 1, buffer.length), bytes);
+    }
+
+    @Test(dataProvider="data")
+    public void testGetBasesView(SimpleInterval interval, byte[] bytes) throws Exception {
+        final ByteBuffer view = memorySource.getBasesView(interval.getContig(), interval.getStart(), interval.getEnd());
+        Assert.assertTrue(view.isReadOnly());
+        final byte[] viewBytes = new byte[view.remaining()];
+        view.get(viewBytes);
+        Assert.assertEquals(viewBytes, bytes);
+    }
+
+    @Test(dataProvider="badIntervals", expectedExceptions = java.lang.IllegalArgumentException.class)
+    public void testCopyBasesOutOfBounds(SimpleInterval interval) {
+        memorySource.copyBases(interval.getContig(), interval.getStart(), interval.getEnd(), new byte[interval.size()], 0);
+    }
+
+    @Test(dataProvider="badIntervals", expectedExceptions = java.lang.IllegalArgumentException.class)
+    public void testGetBasesViewOutOfBounds(SimpleInterval interval) {
+        memorySource.getBasesView(interval.getContig(), interval.getStart(), interval.getEnd());
+    }
+
     @Test(dataProvider="badIntervals", expectedExceptions = java.lang.IllegalArgumentException.class)
     public void testQueryOutOfBounds(SimpleInterval interval) {
         // we want to explode right away, not after going through the iterator for a while.
@@ -0,0 +1,109 @@
+package org.broadinstitute.hellbender.engine.datasources;
+
+import htsjdk.samtools.SAMSequenceRecord;
+import org.apache.spark.SparkConf;
+import org.apache.spark.serializer.KryoSerializer;
+import org.apache.spark.serializer.SerializerInstance;
+import org.broadinstitute.hellbender.engine.spark.GATKRegistrator;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import scala.reflect.ClassTag;
+import scala.reflect.ClassTag$;
+
+import java.io.IOException;
+import java.util.Random;
+
+public class ReferencePackedSourceUnitTest extends BaseTest {
+    // 100,000 bases of chr1, mostly lowercase, with a single M, R, W, Y and N
+    private static final String fastaRefURL = publicTestDir + "iupacFASTA.fasta";
+
+    private final ReferenceSource fastaRef = new ReferenceFileSource(fastaRefURL);
+
+    @DataProvider(name = "intervals")
+    public Object[][] intervals() {
+        return new Object[][]{
+                {"chr1:1-1"},
+                {"chr1:1-32"},
+                {"chr1:32-33"},
+                {"chr1:1-100000"},
+                {"chr1:100000-100000"},
+                {"chr1:99968-100000"},
+                {"chr1:2235-2235"},       // M
+                {"chr1:2200-2300"},       // M, and a change of case
+                {"chr1:5000-10000"},      // R, W and Y
+                {"chr1:17010-17010"},     // N
+                {"chr1:16000-18000"},     // N
+        };
+    }
+
+    @Test(dataProvider = "intervals")
+    public void testBasesMatchSource(final String intervalString) throws IOException {
+        final ReferencePackedSource memoryRef = new ReferencePackedSource(fastaRef, null);
+        final SimpleInterval interval = new SimpleInterval(intervalString);
+        Assert.assertEquals(memoryRef.getReferenceBases(null, interval), fastaRef.getReferenceBases(null, interval));
+    }
+
+    @Test
+    public void testRandomIntervals() throws IOException {
+        final ReferencePackedSource memoryRef = new ReferencePackedSource(fastaRef, null);
+        final Random random = new Random(55);
+        for ( int i = 0; i < 1000; ++i ) {
+            final int start = random.nextInt(100000) + 1;
+            final int end = Math.min(start + random.nextInt(500), 100000);
+            final SimpleInterval interval = new SimpleInterval("chr1", start, end);
+            Assert.assertEquals(memoryRef.getReferenceBases(null, interval), fastaRef.getReferenceBases(null, interval));
+        }
+    }
+
+    @Test
+    public void testDictionary() throws IOException {
+        final ReferencePackedSource memoryRef = new ReferencePackedSource(fastaRef, null);
+        Assert.assertEquals(memoryRef.getReferenceSequenceDictionary(null), fastaRef.getReferenceSequenceDictionary(null));
+    }
+
+    @Test
+    public void testAllContigs() throws IOException {
+        // A fasta is read through once, contig by contig
+        final ReferenceSource multiContigRef = new ReferenceFileSource(hg19MiniReference);
+        final ReferencePackedSource memoryRef = new ReferencePackedSource(multiContigRef, null);
+        for ( final SAMSequenceRecord sequence : multiContigRef.getReferenceSequenceDictionary(null).getSequences() ) {
+            final SimpleInterval interval = new SimpleInterval(sequence.getSequenceName(), 1, sequence.getSequenceLength());
+            Assert.assertEquals(memoryRef.getReferenceBases(null, interval), multiContigRef.getReferenceBases(null, interval));
+        }
+    }
+
+    @Test
+    public void testLoadInWindows() throws IOException {
+        // Sources other than a local fasta are queried a window at a time
+        final ReferencePackedSource memoryRef = new ReferencePackedSource(new ReferenceHadoopSource(fastaRefURL), null);
+        final SimpleInterval interval = new SimpleInterval("chr1:1-100000");
+        Assert.assertEquals(memoryRef.getReferenceBases(null, interval), fastaRef.getReferenceBases(null, interval));
+    }
+
+    @Test
+    public void testKryoRoundTrip() throws IOException {
+        // This is how the source is broadcast to Spark workers
+        final SerializerInstance serializer = new KryoSerializer(new SparkConf().set("spark.kryo.registrator", GATKRegistrator.class.getName())).newInstance();
+        final ClassTag<ReferencePackedSource> tag = ClassTag$.MODULE$.apply(ReferencePackedSource.class);
+        final ReferencePackedSource memoryRef = new ReferencePackedSource(fastaRef, null);
+        final ReferencePackedSource roundTripped = serializer.deserialize(serializer.serialize(memoryRef, tag), tag);
+        final SimpleInterval interval = new SimpleInterval("chr1:1-100000");
+        Assert.assertEquals(roundTripped.getReferenceBases(null, interval), fastaRef.getReferenceBases(null, interval));
+    }
+
+    @DataProvider(name = "badIntervals")
+    public Object[][] badIntervals() {
+        return new Object[][]{
+                {"chr1:99999-100001"},
+                {"chr2:1-10"},
+        };
+    }
+
+    @Test(dataProvider = "badIntervals", expectedExceptions = IllegalArgumentException.class)
+    public void testBadIntervals(final String intervalString) throws IOException {
+        new ReferencePackedSource(fastaRef, null).getReferenceBases(null, new SimpleInterval(intervalString));
+    }
+}
@@ -0,0 +1,134 @@
+package org.broadinstitute.hellbender.engine.metrics;
+
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+public final class MetricsRegistryUnitTest extends BaseTest {
+
+    @Test
+    public void testMetricsAreCreatedOnceByName() {
+        final MetricsRegistry metrics = new MetricsRegistry();
+        metrics.counter("a").increment();
+        metrics.counter("a").add(4);
+        metrics.counter("b").increment();
+
+        Assert.assertSame(metrics.counter("a"), metrics.counter("a"));
+        Assert.assertSame(metrics.timer("a"), metrics.timer("a"));
+        Assert.assertSame(metrics.histogram("a"), metrics.histogram("a"));
+        Assert.assertEquals(metrics.counter("a").getCount(), 5);
+        Assert.assertEquals(metrics.counter("b").getCount(), 1);
+
+        metrics.clear();
+        Assert.assertEquals(metrics.counter("a").getCount(), 0);
+    }
+
+    @Test
+    public void testHistogram() {
+        final Histogram histogram = new MetricsRegistry().histogram("h");
+        for ( final long value : new long[] { 0, 1, 2, 3, 4, 1000, Long.MAX_VALUE } ) {
+            histogram.record(value);
+        }
+
+        final Map<Long, Long> expectedBuckets = new LinkedHashMap<>();
+        expectedBuckets.put(1L, 1L);    // 0
+        expectedBuckets.put(2L, 1L);    // 1
+        expectedBuckets.put(4L, 2L);    // 2, 3
+        expectedBuckets.put(8L, 1L);    // 4
+        expectedBuckets.put(1024L, 1L); // 1000
+        expectedBuckets.put(Long.MAX_VALUE, 1L);
+        Assert.assertEquals(histogram.getBucketCounts(), expectedBuckets);
+        Assert.assertEquals(histogram.getCount(), 7);
+        Assert.assertEquals(histogram.getMax(), Long.MAX_VALUE);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testHistogramRejectsNegativeValues() {
+        new MetricsRegistry().histogram("h").record(-1);
+    }
+
+    @Test
+    public void testTimer() {
+        final Timer timer = new MetricsRegistry().timer("t");
+        timer.recordNanos(1500);
+        timer.recordNanos(500);
+        timer.recordNanos(-10); // clock adjustment
+        timer.recordSince(System.nanoTime());
+
+        Assert.assertEquals(timer.getCount(), 4);
+        Assert.assertTrue(timer.getTotalNanos() >= 2000);
+        Assert.assertEquals(timer.getDurationsNanos().getMax(), Math.max(1500, timer.getTotalNanos() - 2000));
+    }
+
+    @Test
+    public void testConcurrentUpdates() {
+        final MetricsRegistry metrics = new MetricsRegistry();
+        IntStream.range(0, 10000).parallel().forEach(i -> {
+            metrics.counter("c" + (i % 3)).increment();
+            metrics.timer("t").recordNanos(i);
+        });
+
+        Assert.assertEquals(metrics.counter("c0").getCount() + metrics.counter("c1").getCount() + metrics.counter("c2").getCount(), 10000);
+        Assert.assertEquals(metrics.timer("t").getCount(), 10000);
+        Assert.assertEquals(metrics.timer("t").getTotalNanos(), 9999L * 10000 / 2);
+    }
+
+    @Test
+    public void testTimedIterator() {
+        final Timer timer = new MetricsRegistry().timer("t");
+        final TimedIterator<Integer> iterator = new TimedIterator<>(Arrays.asList(1, 2, 3).iterator(), timer);
+        int sum = 0;
+        while ( iterator.hasNext() ) {
+            sum += iterator.next();
+        }
+        iterator.close();
+
+        Assert.assertEquals(sum, 6);
+        Assert.assertEquals(timer.getCount(), 3);
+    }
+
+    @Test
+    public void testJsonReport() {
+        final MetricsRegistry metrics = new MetricsRegistry();
+        metrics.counter("b.count").add(3);
+        metrics.counter("a.\"quoted\"\\name").add(7);
+        metrics.timer("t").recordNanos(3);
+        metrics.histogram("h").record(0);
+
+        final StringWriter out = new StringWriter();
+        metrics.writeJsonReport(out);
+        final String json = out.toString();
+
+        // Metrics are sorted by name, and names are escaped
+        final String expectedCounters = String.format("  \"counters\": {%n    \"a.\\\"quoted\\\"\\\\name\": 7,%n    \"b.count\": 3%n  },");
+        Assert.assertTrue(json.contains(expectedCounters), json);
+        Assert.assertTrue(json.contains("\"t\": { \"count\": 1, \"totalSeconds\": 0.000000, \"maxNanos\": 3, \"histogram\": { \"4\": 1 } }"), json);
+        Assert.assertTrue(json.contains("\"h\": { \"count\": 1, \"sum\": 0, \"max\": 0, \"histogram\": { \"1\": 1 } }"), json);
+        Assert.assertTrue(json.trim().startsWith("{") && json.trim().endsWith("}"), json);
+    }
+
+    @Test
+    public void testEmptyJsonReportToFile() throws IOException {
+        final File report = createTempFile("testEmptyJsonReportToFile", ".json");
+        new MetricsRegistry().writeJsonReport(report);
+
+        final String json = new String(Files.readAllBytes(report.toPath()));
+        Assert.assertTrue(json.contains(String.format("  \"counters\": {%n  },")), json);
+        Assert.assertTrue(json.contains(String.format("  \"histograms\": {%n  }%n}")), json);
+    }
+
+    @Test
+    public void testQuote() {
+        Assert.assertEquals(MetricsRegistry.quote("a\tb\u0001"), "\"a\\tb\\u0001\"");
+        Assert.assertEquals(MetricsRegistry.quote("\n\n"), "\"\\n\\n\"");
+    }
+}
@@ -10,12 +10,13 @@ import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.broadinstitute.hellbender.engine.ReadContextData;
+import org.broadinstitute.hellbender.engine.datasources.ReferenceFileSource;
 import org.broadinstitute.hellbender.engine.datasources.ReferenceWindowFunctions;
 import org.broadinstitute.hellbender.engine.datasources.ReferenceMultiSource;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.test.BaseTest;
-import org.broadinstitute.hellbender.utils.test.FakeReferenceSource;
 import org.broadinstitute.hellbender.utils.variant.Variant;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
@@ -23,11 +24,11 @@ import org.testng.annotations.Test;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 import static org.mockito.Matchers.any;
-import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
 public class AddContextDataToReadSparkUnitTest extends BaseTest {
@@ -41,11 +42,10 @@ public class AddContextDataToReadSparkUnitTest extends BaseTest {
             ReadsPreprocessingPipelineSparkTestData testData = new ReadsPreprocessingPipelineSparkTestData(c);
 
             List<GATKRead> reads = testData.getReads();
-            List<SimpleInterval> intervals = testData.getAllIntervals();
             List<Variant> variantList = testData.getVariants();
             List<KV<GATKRead, ReadContextData>> expectedReadContextData = testData.getKvReadContextData();
             for (int j = 0; j < strategies.length; j++) {
-                data[i * strategies.length + j] = new Object[]{reads, variantList, expectedReadContextData, intervals, strategies[j]};
+                data[i * strategies.length + j] = new Object[]{reads, variantList, expectedReadContextData, strategies[j]};
             }
         }
         return data;
@@ -54,17 +54,16 @@ public class AddContextDataToReadSparkUnitTest extends BaseTest {
     @Test(dataProvider = "bases", groups = "spark")
     public void addContextDataTest(List<GATKRead> reads, List<Variant> variantList,
                                    List<KV<GATKRead, ReadContextData>> expectedReadContextData,
-                                   List<SimpleInterval> intervals, JoinStrategy joinStrategy) throws IOException {
+                                   JoinStrategy joinStrategy) throws IOException {
         JavaSparkContext ctx = SparkContextFactory.getTestSparkContext();
 
         JavaRDD<GATKRead> rddReads = ctx.parallelize(reads);
         JavaRDD<Variant> rddVariants = ctx.parallelize(variantList);
 
         ReferenceMultiSource mockSource = mock(ReferenceMultiSource.class, withSettings().serializable());
-        for (SimpleInterval i : intervals) {
-            when(mockSource.getReferenceBases(any(PipelineOptions.class), eq(i))).thenReturn(FakeReferenceSource.bases(i));
-        }
+        when(mockSource.getReferenceBases(any(PipelineOptions.class), any(SimpleInterval.class))).thenAnswer(new JoinReadsWithRefBasesSparkUnitTest.FakeReferenceBasesAnswer());
         when(mockSource.getReferenceWindowFunction()).thenReturn(ReferenceWindowFunctions.IDENTITY_FUNCTION);
+        when(mockSource.loadIntoMemory(any(PipelineOptions.class))).thenReturn(mockSource);
 
         JavaPairRDD<GATKRead, ReadContextData> rddActual = AddContextDataToReadSpark.add(rddReads, mockSource, rddVariants, joinStrategy);
         Map<GATKRead, ReadContextData> actual = rddActual.collectAsMap();
@@ -78,4 +77,31 @@ public class AddContextDataToReadSparkUnitTest extends BaseTest {
             Assert.assertEquals(readContextData.getOverlappingReferenceBases(), kv.getValue().getOverlappingReferenceBases());
         }
     }
-}
\ No newline at end of file
+
+    @Test(groups = "spark")
+    public void addContextDataWholeReferenceTest() throws IOException {
+        JavaSparkContext ctx = SparkContextFactory.getTestSparkContext();
+
+        // Reads on more than one contig, and at the ends of contigs, of a real fasta loaded into memory
+        List<GATKRead> reads = Arrays.asList(
+                ArtificialReadUtils.createSamBackedRead("read1", "1", 1, 50),
+                ArtificialReadUtils.createSamBackedRead("read2", "1", 15951, 50),
+                ArtificialReadUtils.createSamBackedRead("read3", "2", 5000, 100),
+                ArtificialReadUtils.createSamBackedRead("read4", "4", 12000, 75));
+        JavaRDD<GATKRead> rddReads = ctx.parallelize(reads);
+        JavaRDD<Variant> rddVariants = ctx.parallelize(Collections.<Variant>emptyList());
+
+        ReferenceMultiSource source = new ReferenceMultiSource((PipelineOptions)null, hg19MiniReference, ReferenceWindowFunctions.IDENTITY_FUNCTION);
+        ReferenceFileSource fileSource = new ReferenceFileSource(hg19MiniReference);
+
+        Map<GATKRead, ReadContextData> actual = AddContextDataToReadSpark.add(rddReads, source, rddVariants, JoinStrategy.BROADCAST_WHOLE_REFERENCE).collectAsMap();
+
+        Assert.assertEquals(actual.size(), reads.size());
+        for (GATKRead read : reads) {
+            ReadContextData readContextData = actual.get(read);
+            Assert.assertNotNull(readContextData);
+            Assert.assertEquals(readContextData.getOverlappingReferenceBases(), fileSource.getReferenceBases(null, new SimpleInterval(read)));
+            Assert.assertTrue(Lists.newArrayList(readContextData.getOverlappingVariants()).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.broadinstitute.hellbender.engine.spark;
+
+import com.google.cloud.dataflow.sdk.options.PipelineOptions;
+import org.broadinstitute.hellbender.engine.datasources.ReferenceMultiSource;
+import org.broadinstitute.hellbender.engine.datasources.ReferenceWindowFunctions;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.reference.ReferenceBases;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.broadinstitute.hellbender.utils.test.FakeReferenceSource;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import scala.Tuple2;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class BatchedReferenceBasesIteratorUnitTest extends BaseTest {
+
+    private static ReferenceMultiSource mockSource() throws IOException {
+        ReferenceMultiSource mockSource = mock(ReferenceMultiSource.class);
+        when(mockSource.getReferenceBases(any(PipelineOptions.class), any(SimpleInterval.class))).thenAnswer(new JoinReadsWithRefBasesSparkUnitTest.FakeReferenceBasesAnswer());
+        when(mockSource.getReferenceWindowFunction()).thenReturn(ReferenceWindowFunctions.IDENTITY_FUNCTION);
+        return mockSource;
+    }
+
+    private static List<Tuple2<GATKRead, ReferenceBases>> addBases(ReferenceMultiSource source, List<GATKRead> reads) {
+        final Iterator<Tuple2<GATKRead, ReferenceBases>> iterator =
+                new BatchedReferenceBasesIterator<GATKRead, Tuple2<GATKRead, ReferenceBases>>(source, reads.iterator(), read -> read, Tuple2::new);
+        final List<Tuple2<GATKRead, ReferenceBases>> result = new ArrayList<>();
+        iterator.forEachRemaining(result::add);
+        return result;
+    }
+
+    private static void checkBases(List<GATKRead> reads, List<Tuple2<GATKRead, ReferenceBases>> result) {
+        Assert.assertEquals(result.size(), reads.size());
+        for (int i = 0; i < reads.size(); ++i) {
+            Assert.assertSame(result.get(i)._1(), reads.get(i));
+            Assert.assertEquals(result.get(i)._2(), FakeReferenceSource.bases(new SimpleInterval(reads.get(i))));
+        }
+    }
+
+    @Test
+    public void testSortedReadsAreBatched() throws IOException {
+        final int maxSpan = BatchedReferenceBasesIterator.MAX_BATCH_SPAN;
+        final List<GATKRead> reads = Arrays.asList(
+                ArtificialReadUtils.createSamBackedRead("a", "1", 100, 50),
+                ArtificialReadUtils.createSamBackedRead("b", "1", 120, 50),
+                ArtificialReadUtils.createSamBackedRead("c", "1", 130, 10),           // inside b
+                ArtificialReadUtils.createSamBackedRead("d", "1", 100 + maxSpan - 50, 50), // ends at the last base of the batch
+                ArtificialReadUtils.createSamBackedRead("e", "1", 100 + maxSpan - 49, 50), // one base too far
+                ArtificialReadUtils.createSamBackedRead("f", "2", 100, 50));
+        final ReferenceMultiSource source = mockSource();
+
+        checkBases(reads, addBases(source, reads));
+        verify(source, times(3)).getReferenceBases(any(PipelineOptions.class), any(SimpleInterval.class));
+        verify(source).getReferenceBases(any(PipelineOptions.class), eq(new SimpleInterval("1", 100, 100 + maxSpan - 1)));
+        verify(source).getReferenceBases(any(PipelineOptions.class), eq(new SimpleInterval("1", 100 + maxSpan - 49, 100 + maxSpan)));
+        verify(source).getReferenceBases(any(PipelineOptions.class), eq(new SimpleInterval("2", 100, 149)));
+    }
+
+    @Test
+    public void testUnsortedReads() throws IOException {
+        final List<GATKRead> reads = Arrays.asList(
+                ArtificialReadUtils.createSamBackedRead("a", "1", 100000, 50),
+                ArtificialReadUtils.createSamBackedRead("b", "2", 100, 50),
+                ArtificialReadUtils.createSamBackedRead("c", "1", 100, 50),
+                ArtificialReadUtils.createSamBackedRead("d", "1", 50000, 50));
+        final ReferenceMultiSource source = mockSource();
+
+        checkBases(reads, addBases(source, reads));
+        verify(source, times(4)).getReferenceBases(any(PipelineOptions.class), any(SimpleInterval.class));
+    }
+
+    @Test
+    public void testNoReads() throws IOException {
+        final ReferenceMultiSource source = mockSource();
+        Assert.assertTrue(addBases(source, Collections.emptyList()).isEmpty());
+        verify(source, never()).getReferenceBases(any(PipelineOptions.class), any(SimpleInterval.class));
+    }
+}
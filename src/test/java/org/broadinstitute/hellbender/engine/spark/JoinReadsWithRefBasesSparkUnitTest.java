@@ -14,11 +14,14 @@ import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.reference.ReferenceBases;
 import org.broadinstitute.hellbender.utils.test.BaseTest;
 import org.broadinstitute.hellbender.utils.test.FakeReferenceSource;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -28,6 +31,19 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
 public class JoinReadsWithRefBasesSparkUnitTest extends BaseTest {
+    /**
+     * Answers a query for reference bases with the fake bases of whatever interval was asked for. The broadcast join
+     * queries the bases spanning nearby reads, which depend on how the reads are partitioned.
+     */
+    static final class FakeReferenceBasesAnswer implements Answer<ReferenceBases>, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public ReferenceBases answer( final InvocationOnMock invocation ) {
+            return FakeReferenceSource.bases(invocation.getArgumentAt(1, SimpleInterval.class));
+        }
+    }
+
     @DataProvider(name = "bases")
     public Object[][] bases(){
         Object[][] data = new Object[2][];
@@ -75,9 +91,7 @@ public class JoinReadsWithRefBasesSparkUnitTest extends BaseTest {
         JavaRDD<GATKRead> rddReads = ctx.parallelize(reads);
 
         ReferenceMultiSource mockSource = mock(ReferenceMultiSource.class, withSettings().serializable());
-        for (SimpleInterval i : intervals) {
-            when(mockSource.getReferenceBases(any(PipelineOptions.class), eq(i))).thenReturn(FakeReferenceSource.bases(i));
-        }
+        when(mockSource.getReferenceBases(any(PipelineOptions.class), any(SimpleInterval.class))).thenAnswer(new FakeReferenceBasesAnswer());
         when(mockSource.getReferenceWindowFunction()).thenReturn(ReferenceWindowFunctions.IDENTITY_FUNCTION);
 
         JavaPairRDD<GATKRead, ReferenceBases> rddResult = BroadcastJoinReadsWithRefBases.addBases(mockSource, rddReads);
@@ -1,18 +1,27 @@
 package org.broadinstitute.hellbender.engine.spark;
 
 import com.esotericsoftware.kryo.Kryo;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
 import org.apache.spark.SparkConf;
 import org.apache.spark.serializer.KryoRegistrator;
 import org.apache.spark.serializer.KryoSerializer;
 import org.apache.spark.serializer.SerializerInstance;
 import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.ReadUtils;
 import org.broadinstitute.hellbender.utils.read.SAMRecordToGATKReadAdapter;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 import scala.reflect.ClassTag;
 import scala.reflect.ClassTag$;
 
+import java.io.File;
+import java.io.IOException;
+
 public class SAMRecordToGATKReadAdapterSerializerUnitTest {
 
     public static class TestGATKRegistrator implements KryoRegistrator {
@@ -23,12 +32,14 @@ public class SAMRecordToGATKReadAdapterSerializerUnitTest {
         }
     }
 
+    private static SerializerInstance getSerializer( final String registrator ) {
+        return new KryoSerializer(new SparkConf().set("spark.kryo.registrator", registrator)).newInstance();
+    }
+
     @Test
     public void test() {
-        SparkConf conf = new SparkConf().set("spark.kryo.registrator",
+        SerializerInstance sparkSerializer = getSerializer(
                 "org.broadinstitute.hellbender.engine.spark.SAMRecordToGATKReadAdapterSerializerUnitTest$TestGATKRegistrator");
-        KryoSerializer kryoSerializer = new KryoSerializer(conf);
-        SerializerInstance sparkSerializer = kryoSerializer.newInstance();
 
         // check round trip with header set
         GATKRead read = ArtificialReadUtils.createSamBackedRead("read1", "1", 100, 50);
@@ -39,8 +50,67 @@ public class SAMRecordToGATKReadAdapterSerializerUnitTest {
         check(sparkSerializer, read);
     }
 
-    private void check(SerializerInstance ser, GATKRead read) {
+    @Test
+    public void testUnusualReads() {
+        final SerializerInstance sparkSerializer = getSerializer(GATKRegistrator.class.getName());
+
+        final GATKRead unmapped = ArtificialReadUtils.createSamBackedRead("unmapped", "1", 100, 50);
+        unmapped.setIsUnmapped();
+        check(sparkSerializer, unmapped);
+
+        final GATKRead noBases = ArtificialReadUtils.createSamBackedRead("noBases", "1", 100, 50);
+        noBases.setBases(SAMRecord.NULL_SEQUENCE);
+        noBases.setBaseQualities(SAMRecord.NULL_QUALS);
+        check(sparkSerializer, noBases);
+
+        // A read moved without a header knows only the name of its contig, and must keep it
+        final GATKRead moved = ArtificialReadUtils.createSamBackedRead("moved", "1", 100, 50);
+        ((SAMRecordToGATKReadAdapter) moved).getSamRecord().setHeader(null);
+        moved.setPosition("2", 200);
+        moved.setMatePosition("3", 300);
+        final GATKRead roundTripped = roundTrip(sparkSerializer, moved);
+        Assert.assertEquals(roundTripped.getContig(), "2");
+        Assert.assertEquals(roundTripped.getStart(), 200);
+        Assert.assertEquals(roundTripped.getMateContig(), "3");
+        Assert.assertEquals(roundTripped.getMateStart(), 300);
+    }
+
+    @Test
+    public void testReadsFromBam() throws IOException {
+        final SerializerInstance sparkSerializer = getSerializer(GATKRegistrator.class.getName());
+        final File bam = new File(BaseTest.publicTestDir, "org/broadinstitute/hellbender/tools/BQSR/HiSeq.1mb.1RG.2k_lines.bam");
+        try ( final SamReader reader = SamReaderFactory.makeDefault().open(bam) ) {
+            final SAMFileHeader header = reader.getFileHeader();
+            for ( final SAMRecord record : reader ) {
+                // Reads from a BAM have attributes and an indexing bin
+                final GATKRead read = new SAMRecordToGATKReadAdapter(record);
+                final GATKRead roundTripped = roundTrip(sparkSerializer, read);
+                Assert.assertEquals(roundTripped, read);
+                Assert.assertFalse(((SAMRecordToGATKReadAdapter) roundTripped).hasHeader());
+
+                ReadUtils.restoreHeaderIfNecessary(roundTripped, header);
+                Assert.assertEquals(roundTripped.convertToSAMRecord(header).getSAMString(), record.getSAMString());
+            }
+        }
+    }
+
+    @Test
+    public void testHeaderNotSerialized() {
+        final SerializerInstance sparkSerializer = getSerializer(GATKRegistrator.class.getName());
         final ClassTag<GATKRead> tag = ClassTag$.MODULE$.apply(SAMRecordToGATKReadAdapter.class);
-        Assert.assertEquals(ser.deserialize(ser.serialize(read, tag), tag), read);
+        final GATKRead smallHeaderRead = ArtificialReadUtils.createSamBackedRead("read1", "1", 100, 50);
+        final SAMFileHeader largeHeader = ArtificialReadUtils.createArtificialSamHeader(1000, 1, 1000000);
+        final GATKRead largeHeaderRead = ArtificialReadUtils.createSamBackedRead("read1", "1", 100, 50);
+        ((SAMRecordToGATKReadAdapter) largeHeaderRead).setHeader(largeHeader);
+        Assert.assertEquals(sparkSerializer.serialize(largeHeaderRead, tag).remaining(), sparkSerializer.serialize(smallHeaderRead, tag).remaining());
+    }
+
+    private static GATKRead roundTrip(SerializerInstance ser, GATKRead read) {
+        final ClassTag<GATKRead> tag = ClassTag$.MODULE$.apply(SAMRecordToGATKReadAdapter.class);
+        return ser.deserialize(ser.serialize(read, tag), tag);
+    }
+
+    private void check(SerializerInstance ser, GATKRead read) {
+        Assert.assertEquals(roundTrip(ser, read), read);
     }
 }
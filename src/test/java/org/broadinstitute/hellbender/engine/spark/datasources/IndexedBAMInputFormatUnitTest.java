@@ -0,0 +1,144 @@
+package org.broadinstitute.hellbender.engine.spark.datasources;
+
+import htsjdk.samtools.Chunk;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordIterator;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.seqdoop.hadoop_bam.FileVirtualSplit;
+import org.seqdoop.hadoop_bam.SAMRecordWritable;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+public final class IndexedBAMInputFormatUnitTest extends BaseTest {
+    private static final File BAM = new File(publicTestDir, "org/broadinstitute/hellbender/tools/BQSR/HiSeq.1mb.1RG.2k_lines.bam");
+
+    private static List<String> getReadsOverlapping( final List<SimpleInterval> intervals ) throws IOException {
+        final List<String> reads = new ArrayList<>();
+        try ( final SamReader reader = SamReaderFactory.makeDefault().open(BAM) ) {
+            for ( final SimpleInterval interval : intervals ) {
+                try ( final SAMRecordIterator it = reader.queryOverlapping(interval.getContig(), interval.getStart(), interval.getEnd()) ) {
+                    it.forEachRemaining(read -> reads.add(read.getSAMString()));
+                }
+            }
+        }
+        return reads;
+    }
+
+    // Unmapped reads placed with their mates are returned by queries overlapping that position
+    private static boolean overlaps( final SimpleInterval interval, final SAMRecord read ) {
+        if ( read.getReadUnmappedFlag() ) {
+            return read.getReferenceName().equals(interval.getContig()) && interval.getStart() <= read.getAlignmentStart() && read.getAlignmentStart() <= interval.getEnd();
+        }
+        return interval.overlaps(read);
+    }
+
+    private static List<InputSplit> getSplits( final Configuration conf ) throws IOException {
+        final Job job = Job.getInstance(conf);
+        FileInputFormat.setInputPaths(job, new Path(BAM.toURI()));
+        return new IndexedBAMInputFormat().getSplits(job);
+    }
+
+    private static List<SAMRecord> readSplits( final List<InputSplit> splits, final Configuration conf ) throws IOException, InterruptedException {
+        final List<SAMRecord> reads = new ArrayList<>();
+        for ( final InputSplit split : splits ) {
+            final TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+            try ( final RecordReader<LongWritable, SAMRecordWritable> reader = new IndexedBAMInputFormat().createRecordReader(split, context) ) {
+                reader.initialize(split, context);
+                while ( reader.nextKeyValue() ) {
+                    reads.add(reader.getCurrentValue().get());
+                }
+            }
+        }
+        return reads;
+    }
+
+    @DataProvider(name = "intervals")
+    public Object[][] intervals() {
+        return new Object[][] {
+                { Collections.singletonList(new SimpleInterval("chr1", 10070000, 10075000)), 1000000L },
+                { Arrays.asList(new SimpleInterval("chr1", 10070000, 10075000), new SimpleInterval("chr1", 10097000, 10099000)), 1000000L },
+                // Overlapping intervals must not produce duplicate reads
+                { Arrays.asList(new SimpleInterval("chr1", 10070000, 10090000), new SimpleInterval("chr1", 10080000, 10099000)), 1000000L },
+                // Small splits cut the chunks at linear index offsets
+                { Collections.singletonList(new SimpleInterval("chr1", 1, 247249719)), 10000L },
+                { Collections.singletonList(new SimpleInterval("chr2", 1, 1000000)), 1000000L },
+        };
+    }
+
+    @Test(dataProvider = "intervals")
+    public void testReadsOverlappingIntervals( final List<SimpleInterval> intervals, final long maxSplitSize ) throws Exception {
+        final Configuration conf = new Configuration();
+        conf.set("mapreduce.input.fileinputformat.split.maxsize", Long.toString(maxSplitSize));
+        IndexedBAMInputFormat.setIntervals(conf, intervals);
+        Assert.assertEquals(IndexedBAMInputFormat.getIntervals(conf), intervals);
+
+        final List<InputSplit> splits = getSplits(conf);
+        for ( final InputSplit split : splits ) {
+            Assert.assertTrue(split instanceof FileVirtualSplit);
+        }
+
+        // Every read overlapping the intervals is read exactly once, along with as few others as the index allows
+        final List<String> overlapping = new ArrayList<>();
+        final List<String> all = new ArrayList<>();
+        for ( final SAMRecord read : readSplits(splits, conf) ) {
+            all.add(read.getSAMString());
+            if ( intervals.stream().anyMatch(interval -> overlaps(interval, read)) ) {
+                overlapping.add(read.getSAMString());
+            }
+        }
+        Assert.assertEquals(new TreeSet<>(all).size(), all.size(), "reads loaded more than once");
+        final List<String> expected = new ArrayList<>(new TreeSet<>(getReadsOverlapping(intervals)));
+        Collections.sort(overlapping);
+        Assert.assertEquals(overlapping, expected);
+    }
+
+    @Test
+    public void testSplitsCoverOnlyIntervals() throws Exception {
+        final Configuration conf = new Configuration();
+        final int allReads = readSplits(getSplits(conf), conf).size();
+
+        IndexedBAMInputFormat.setIntervals(conf, Collections.singletonList(new SimpleInterval("chr1", 10070000, 10071000)));
+        final int readsForInterval = readSplits(getSplits(conf), conf).size();
+        Assert.assertTrue(readsForInterval > 0 && readsForInterval < allReads / 2, readsForInterval + " of " + allReads + " reads loaded");
+    }
+
+    @Test
+    public void testGetSpans() {
+        final long block = 1L << 16;
+        final List<Chunk> chunks = Arrays.asList(
+                new Chunk(100 * block, 105 * block), new Chunk(10 * block, 20 * block),
+                new Chunk(15 * block, 30 * block), new Chunk(10000000 * block, 10000001 * block));
+        final TreeSet<Long> readStarts = new TreeSet<>(Arrays.asList(12 * block, 18 * block + 5, 25 * block, 10000000 * block + 7));
+
+        // Overlapping and nearby chunks are merged, and distant ones kept apart
+        Assert.assertEquals(IndexedBAMInputFormat.getSpans(chunks, readStarts, Long.MAX_VALUE),
+                Arrays.asList(new Chunk(10 * block, 105 * block), new Chunk(10000000 * block, 10000001 * block)));
+
+        // Spans are cut at read starts once they are big enough
+        Assert.assertEquals(IndexedBAMInputFormat.getSpans(chunks, readStarts, 8),
+                Arrays.asList(new Chunk(10 * block, 18 * block + 5), new Chunk(18 * block + 5, 105 * block),
+                              new Chunk(10000000 * block, 10000001 * block)));
+    }
+}
@@ -1,25 +1,44 @@
 package org.broadinstitute.hellbender.engine.spark.datasources;
 
 
+import htsjdk.samtools.BAMIndex;
+import htsjdk.samtools.BAMIndexSpanUtils;
+import htsjdk.samtools.BAMIndexer;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.broadinstitute.hellbender.engine.spark.SparkContextFactory;
 import org.broadinstitute.hellbender.utils.io.IOUtils;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.read.ReadCoordinateComparator;
 import org.broadinstitute.hellbender.utils.read.ReadsWriteFormat;
+import org.broadinstitute.hellbender.utils.read.SAMRecordToGATKReadAdapter;
 import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.seqdoop.hadoop_bam.SAMRecordWritable;
+import org.seqdoop.hadoop_bam.SplittingBAMIndex;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 
 public class ReadsSparkSinkUnitTest extends BaseTest {
@@ -67,6 +86,142 @@ public class ReadsSparkSinkUnitTest extends BaseTest {
         Assert.assertEquals(rddParallelReads.count(), rddParallelReads2.count());
     }
 
+    @Test(dataProvider = "loadReadsBAM", groups = "spark")
+    public void readsSinkManyPartitionsTest(String inputBam, String outputFileName, String outputFileExtension) throws IOException {
+        final File outputFile = createTempFile(outputFileName + "_many_partitions", outputFileExtension);
+        JavaSparkContext ctx = SparkContextFactory.getTestSparkContext();
+
+        ReadsSparkSource readSource = new ReadsSparkSource(ctx);
+        JavaRDD<GATKRead> rddParallelReads = readSource.getParallelReads(inputBam).repartition(5);
+        SAMFileHeader header = ReadsSparkSource.getHeader(ctx, inputBam, null);
+
+        ReadsSparkSink.writeReads(ctx, outputFile.getAbsolutePath(), rddParallelReads, header, ReadsWriteFormat.SINGLE);
+
+        // The parts written by each partition make up a single, complete, sorted BAM file
+        Assert.assertEquals(BlockCompressedInputStream.checkTermination(outputFile), BlockCompressedInputStream.FileTermination.HAS_TERMINATOR_BLOCK);
+        Assert.assertFalse(new File(outputFile.getAbsolutePath() + ".parts").exists());
+        final ReadCoordinateComparator comparator = new ReadCoordinateComparator(header);
+        try (final SamReader reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.STRICT).open(outputFile)) {
+            Assert.assertEquals(reader.getFileHeader(), header);
+            GATKRead previous = null;
+            long count = 0;
+            for (final SAMRecord record : reader) {
+                final GATKRead read = new SAMRecordToGATKReadAdapter(record);
+                if (previous != null) {
+                    Assert.assertTrue(comparator.compare(previous, read) <= 0);
+                }
+                previous = read;
+                ++count;
+            }
+            Assert.assertEquals(count, rddParallelReads.count());
+        }
+    }
+
+    @Test(dataProvider = "loadReadsBAM", groups = "spark")
+    public void readsSinkIndexTest(String inputBam, String outputFileName, String outputFileExtension) throws IOException {
+        final File outputFile = createTempFile(outputFileName + "_indexed", outputFileExtension);
+        final File indexFile = new File(outputFile.getAbsolutePath() + BAMIndex.BAMIndexSuffix);
+        final File splittingIndexFile = new File(outputFile.getAbsolutePath() + IndexingBAMRecordWriter.SPLITTING_INDEX_EXTENSION);
+        indexFile.deleteOnExit();
+        splittingIndexFile.deleteOnExit();
+        JavaSparkContext ctx = SparkContextFactory.getTestSparkContext();
+
+        ReadsSparkSource readSource = new ReadsSparkSource(ctx);
+        JavaRDD<GATKRead> rddParallelReads = readSource.getParallelReads(inputBam).repartition(5);
+        SAMFileHeader header = ReadsSparkSource.getHeader(ctx, inputBam, null);
+
+        final int granularity = 100;
+        ReadsSparkSink.writeReads(ctx, outputFile.getAbsolutePath(), rddParallelReads, header, ReadsWriteFormat.SINGLE, granularity);
+
+        // The index merged from the parts is the one htsjdk builds from the whole file
+        final File expectedIndexFile = createTempFile(outputFileName + "_expected", BAMIndex.BAMIndexSuffix);
+        try (final SamReader reader = SamReaderFactory.makeDefault().enable(SamReaderFactory.Option.INCLUDE_SOURCE_IN_RECORDS).open(outputFile)) {
+            BAMIndexer.createIndex(reader, expectedIndexFile);
+        }
+        Assert.assertEquals(Files.readAllBytes(indexFile.toPath()), Files.readAllBytes(expectedIndexFile.toPath()));
+
+        // Every entry of the splitting index but the last (the end of the file) is the start of a read
+        final Set<Long> readStarts = new HashSet<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().enable(SamReaderFactory.Option.INCLUDE_SOURCE_IN_RECORDS).open(outputFile)) {
+            for (final SAMRecord record : reader) {
+                readStarts.add(BAMIndexSpanUtils.getFileSpanStart(record));
+            }
+        }
+        final List<Long> entries = new ArrayList<>();
+        try (final DataInputStream in = new DataInputStream(new FileInputStream(splittingIndexFile))) {
+            while (in.available() > 0) {
+                entries.add(in.readLong());
+            }
+        }
+        Assert.assertTrue(entries.size() > readStarts.size() / granularity, "too few entries: " + entries.size());
+        Assert.assertEquals((long)entries.get(entries.size() - 1), outputFile.length() << 16);
+        for (int i = 0; i < entries.size() - 1; ++i) {
+            Assert.assertTrue(readStarts.contains(entries.get(i)), "not a read start: " + entries.get(i));
+            Assert.assertTrue(entries.get(i) < entries.get(i + 1));
+        }
+        Assert.assertEquals(new SplittingBAMIndex(splittingIndexFile).size(), entries.size());
+    }
+
+    @Test(dataProvider = "loadReadsBAM", groups = "spark")
+    public void readsSinkShardedTest(String inputBam, String outputFileName, String outputFileExtension) throws IOException {
+        final File outputParentDirectory = Files.createTempDirectory(outputFileName + "_sharded_parent").toFile();
+        IOUtils.deleteRecursivelyOnExit(outputParentDirectory);
+        final File outputDirectory = new File(outputParentDirectory, outputFileName + "_sharded");
+        JavaSparkContext ctx = SparkContextFactory.getTestSparkContext();
+
+        ReadsSparkSource readSource = new ReadsSparkSource(ctx);
+        JavaRDD<GATKRead> rddParallelReads = readSource.getParallelReads(inputBam).repartition(3);
+        SAMFileHeader header = ReadsSparkSource.getHeader(ctx, inputBam, null);
+
+        ReadsSparkSink.writeReads(ctx, outputDirectory.getAbsolutePath(), rddParallelReads, header, ReadsWriteFormat.SHARDED, 100);
+
+        // Nothing but the shards (and hidden files) is written, so the directory can be read back as input
+        for (final File file : outputDirectory.listFiles()) {
+            Assert.assertTrue(file.getName().matches("part-r-\\d+") || file.getName().startsWith("_") || file.getName().startsWith("."),
+                    "unexpected file: " + file);
+        }
+        JavaRDD<GATKRead> rddParallelReads2 = readSource.getParallelReads(outputDirectory.getAbsolutePath(), null);
+        Assert.assertEquals(rddParallelReads2.count(), rddParallelReads.count());
+    }
+
+    @DataProvider(name = "readOrders")
+    public Object[][] readOrders() {
+        return new Object[][]{
+                {new int[]{100, 200, 300, 400}, true},
+                {new int[]{100, 300, 200, 400}, false},
+                {new int[]{400, 300, 200, 100}, false},
+        };
+    }
+
+    @Test(dataProvider = "readOrders")
+    public void indexingWriterReadOrderTest(int[] starts, boolean expectIndex) throws IOException {
+        // A BAM is only indexed if its reads are in coordinate order
+        final File outputFile = createTempFile("ReadsSparkSinkUnitTest_read_order", ".bam");
+        final File indexFile = new File(outputFile.getAbsolutePath() + BAMIndex.BAMIndexSuffix);
+        indexFile.deleteOnExit();
+
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader();
+        header.setSortOrder(SAMFileHeader.SortOrder.unsorted);
+        final IndexingBAMRecordWriter<NullWritable> writer = new IndexingBAMRecordWriter<>(
+                new Path(outputFile.getAbsolutePath()), header, true, true, 0, new Configuration());
+        for (final int start : starts) {
+            final SAMRecordWritable writable = new SAMRecordWritable();
+            writable.set(ArtificialReadUtils.createArtificialSAMRecord(header, "read" + start, 0, start, 50));
+            writer.write(NullWritable.get(), writable);
+        }
+        writer.close(null);
+
+        Assert.assertEquals(indexFile.exists(), expectIndex);
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(outputFile)) {
+            Assert.assertEquals(reader.hasIndex(), expectIndex);
+            long count = 0;
+            for (final SAMRecord record : reader) {
+                Assert.assertEquals(record.getAlignmentStart(), starts[(int)count++]);
+            }
+            Assert.assertEquals(count, starts.length);
+        }
+    }
+
     @Test(dataProvider = "loadReadsADAM", groups = "spark")
     public void readsSinkADAMTest(String inputBam, String outputDirectoryName) throws IOException {
         // Since the test requires that we not create the actual output directory in advance,
@@ -87,9 +242,11 @@ public class ReadsSparkSinkUnitTest extends BaseTest {
         JavaRDD<GATKRead> rddParallelReads2 = readSource.getADAMReads(outputDirectory.getAbsolutePath(), header);
         Assert.assertEquals(rddParallelReads.count(), rddParallelReads2.count());
 
-        // Test the round trip
-        List<GATKRead> samList = rddParallelReads.collect();
-        List<GATKRead> adamList = rddParallelReads2.collect();
+        // Test the round trip. Unmapped reads placed with their mates lose their position in ADAM, so they can't be
+        // matched up by sorting, and are left out.
+        List<GATKRead> samList = rddParallelReads.filter(read -> !read.isUnmapped()).collect();
+        List<GATKRead> adamList = rddParallelReads2.filter(read -> !read.isUnmapped()).collect();
+        Assert.assertEquals(samList.size(), adamList.size());
         Comparator<GATKRead> comparator = new ReadCoordinateComparator(header);
         samList.sort(comparator);
         adamList.sort(comparator);
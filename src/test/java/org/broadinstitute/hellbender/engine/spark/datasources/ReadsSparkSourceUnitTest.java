@@ -2,6 +2,8 @@ package org.broadinstitute.hellbender.engine.spark.datasources;
 
 import com.google.common.collect.Lists;
 import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
 import htsjdk.samtools.ValidationStringency;
 import org.apache.spark.api.java.JavaRDD;
@@ -10,6 +12,8 @@ import org.broadinstitute.hellbender.engine.ReadsDataSource;
 import org.broadinstitute.hellbender.engine.spark.SparkContextFactory;
 import org.broadinstitute.hellbender.utils.IntervalUtils;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.collections.IntervalsSkipList;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.test.BaseTest;
 import org.testng.Assert;
@@ -17,6 +21,8 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 
 public class ReadsSparkSourceUnitTest extends BaseTest {
@@ -44,6 +50,47 @@ public class ReadsSparkSourceUnitTest extends BaseTest {
         Assert.assertEquals(serialReads.size(), parallelReads.size());
     }
 
+    @Test(groups = "spark")
+    public void readsSparkSourceIntervalsTest() {
+        String bam = dir + "HiSeq.1mb.1RG.2k_lines.bam";
+        List<SimpleInterval> intervals = Arrays.asList(
+                new SimpleInterval("chr1", 10070000, 10075000), new SimpleInterval("chr1", 10097000, 10099000),
+                new SimpleInterval("chr1", 10072000, 10080000));
+        JavaSparkContext ctx = SparkContextFactory.getTestSparkContext();
+
+        ReadsSparkSource readSource = new ReadsSparkSource(ctx);
+        List<GATKRead> serialReads = getSerialReads(ctx, bam, intervals).collect();
+        List<GATKRead> parallelReads = readSource.getParallelReads(bam, intervals).collect();
+        Assert.assertEquals(parallelReads.size(), serialReads.size());
+        Assert.assertTrue(parallelReads.size() < readSource.getParallelReads(bam).count());
+    }
+
+    @Test(groups = "spark")
+    public void readsSparkSourceUnmappedReadsTest() throws IOException {
+        // Loading the whole genome includes the unmapped reads placed with their mates, wherever they are, but not
+        // unmapped reads with no position
+        String bam = dir + "HiSeq.1mb.1RG.2k_lines.bam";
+        long placedReads = 0;
+        long placedUnmappedReads = 0;
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(new File(bam))) {
+            for (final SAMRecord record : reader) {
+                if (record.getAlignmentStart() != SAMRecord.NO_ALIGNMENT_START) {
+                    ++placedReads;
+                    if (record.getReadUnmappedFlag()) {
+                        ++placedUnmappedReads;
+                    }
+                }
+            }
+        }
+        Assert.assertTrue(placedUnmappedReads > 0);
+
+        JavaSparkContext ctx = SparkContextFactory.getTestSparkContext();
+        ReadsSparkSource readSource = new ReadsSparkSource(ctx);
+        JavaRDD<GATKRead> parallelReads = readSource.getParallelReads(bam);
+        Assert.assertEquals(parallelReads.count(), placedReads);
+        Assert.assertEquals(parallelReads.filter(GATKRead::isUnmapped).count(), placedUnmappedReads);
+    }
+
     @Test
     public void testPartitionSizing(){
 
@@ -57,6 +104,29 @@ public class ReadsSparkSourceUnitTest extends BaseTest {
         Assert.assertEquals(smallPartitions.partitions().size(), 2);
     }
 
+    @Test
+    public void testSamRecordOverlaps() {
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader(2, 1, 1000);
+        final IntervalsSkipList<SimpleInterval> intervals = new IntervalsSkipList<>(Arrays.asList(
+                new SimpleInterval("1", 100, 200), new SimpleInterval("2", 500, 600), new SimpleInterval("1", 400, 410)));
+
+        Assert.assertTrue(ReadsSparkSource.samRecordOverlaps(ArtificialReadUtils.createArtificialSAMRecord(header, "read", 0, 190, 20), intervals));
+        Assert.assertTrue(ReadsSparkSource.samRecordOverlaps(ArtificialReadUtils.createArtificialSAMRecord(header, "read", 0, 395, 10), intervals));
+        Assert.assertTrue(ReadsSparkSource.samRecordOverlaps(ArtificialReadUtils.createArtificialSAMRecord(header, "read", 1, 450, 60), intervals));
+        Assert.assertFalse(ReadsSparkSource.samRecordOverlaps(ArtificialReadUtils.createArtificialSAMRecord(header, "read", 0, 201, 20), intervals));
+        Assert.assertFalse(ReadsSparkSource.samRecordOverlaps(ArtificialReadUtils.createArtificialSAMRecord(header, "read", 1, 100, 20), intervals));
+
+        // Unmapped reads are included if the position they're placed at is in an interval
+        final SAMRecord unmapped = ArtificialReadUtils.createArtificialSAMRecord(header, "read", 1, 595, 20);
+        unmapped.setReadUnmappedFlag(true);
+        Assert.assertTrue(ReadsSparkSource.samRecordOverlaps(unmapped, intervals));
+        unmapped.setAlignmentStart(490);
+        Assert.assertFalse(ReadsSparkSource.samRecordOverlaps(unmapped, intervals));
+        unmapped.setReferenceIndex(SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX);
+        unmapped.setAlignmentStart(SAMRecord.NO_ALIGNMENT_START);
+        Assert.assertFalse(ReadsSparkSource.samRecordOverlaps(unmapped, intervals));
+    }
+
     /**
      * Loads Reads using samReaderFactory, then calling ctx.parallelize.
      * @param bam file to load
@@ -64,7 +134,10 @@ public class ReadsSparkSourceUnitTest extends BaseTest {
      */
     public JavaRDD<GATKRead> getSerialReads(final JavaSparkContext ctx, final String bam) {
         final SAMFileHeader readsHeader = ReadsSparkSource.getHeader(ctx, bam, null);
-        List<SimpleInterval> intervals = IntervalUtils.getAllIntervalsForReference(readsHeader.getSequenceDictionary());
+        return getSerialReads(ctx, bam, IntervalUtils.getAllIntervalsForReference(readsHeader.getSequenceDictionary()));
+    }
+
+    private JavaRDD<GATKRead> getSerialReads(final JavaSparkContext ctx, final String bam, final List<SimpleInterval> intervals) {
         final SamReaderFactory samReaderFactory = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT);
 
         ReadsDataSource bam2 = new ReadsDataSource(new File(bam), samReaderFactory);
@@ -1,6 +1,7 @@
 package org.broadinstitute.hellbender.tools;
 
 import org.broadinstitute.hellbender.CommandLineProgramTest;
+import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.test.ArgumentsBuilder;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
@@ -19,6 +20,28 @@ public final class CountReadsIntegrationTest extends CommandLineProgramTest {
         Assert.assertEquals(res, 8l);
     }
 
+    @Test(dataProvider = "filenames")
+    public void testCountReadsWithReadAhead(String fileIn) throws Exception {
+        final File ORIG_BAM = new File(getTestDataDir(), fileIn);
+        final String[] args = new String[]{
+                "--input",  ORIG_BAM.getAbsolutePath(),
+                "--readAheadThreads", "2",
+                "--readAheadBatches", "1"
+        };
+        final Object res = this.runCommandLine(args);
+        Assert.assertEquals(res, 8l);
+    }
+
+    @Test(expectedExceptions = UserException.BadArgumentValue.class)
+    public void testMultiThreadedTraversalRequiresThreadSafeTool() throws Exception {
+        final File ORIG_BAM = new File(getTestDataDir(), "count_reads.bam");
+        final String[] args = new String[]{
+                "--input",  ORIG_BAM.getAbsolutePath(),
+                "--readWalkerThreads", "2"
+        };
+        this.runCommandLine(args);
+    }
+
     @DataProvider(name="filenames")
     public Object[][] filenames() {
         return new String[][]{
@@ -47,6 +47,19 @@ public final class PrintReadsIntegrationTest extends CommandLineProgramTest{
         SamAssertionUtils.assertSamsEqual(ORIG_BAM, outFile, refFile);
     }
 
+    @Test(dataProvider="testingData")
+    public void testFileToFileMultiThreaded(String fileIn, String extOut) throws Exception {
+        final File outFile = BaseTest.createTempFile(fileIn + ".multithreaded.", extOut);
+        final File ORIG_BAM = new File(TEST_DATA_DIR, fileIn);
+        final String[] args = new String[]{
+                "--input" , ORIG_BAM.getAbsolutePath(),
+                "--output", outFile.getAbsolutePath(),
+                "--readWalkerThreads", "4"
+        };
+        Assert.assertEquals(runCommandLine(args), null);
+        SamAssertionUtils.assertSamsEqual(ORIG_BAM, outFile);
+    }
+
     @DataProvider(name="testingData")
     public Object[][] testingData() {
         return new String[][]{
@@ -0,0 +1,70 @@
+package org.broadinstitute.hellbender.tools;
+
+import org.broadinstitute.hellbender.CommandLineProgramTest;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.io.IOUtils;
+import org.broadinstitute.hellbender.utils.test.SamAssertionUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public final class ScatterGatherIntegrationTest extends CommandLineProgramTest {
+    private static final File INPUT_BAM = new File(publicTestDir + "org/broadinstitute/hellbender/tools/BQSR/HiSeq.1mb.1RG.2k_lines.bam");
+
+    // Separated by more than a read length, so that no read overlaps two intervals
+    private static final List<String> INTERVALS = Arrays.asList(
+            "-L", "chr1:10070000-10075000", "-L", "chr1:10080000-10085000", "-L", "chr1:10090000-10095000", "-L", "chr1:10097000-10099000");
+
+    private static List<String> scatterGatherArgs( final File output, final File scatterDirectory, final String... toolCommandLine ) {
+        final List<String> args = new ArrayList<>(Arrays.asList("-SD", INPUT_BAM.getAbsolutePath(), "-O", output.getAbsolutePath(), "-scatterCount", "3", "-maxParallelShards", "3"));
+        if ( scatterDirectory != null ) {
+            args.addAll(Arrays.asList("-scatterDirectory", scatterDirectory.getAbsolutePath()));
+        }
+        args.addAll(INTERVALS);
+        args.add("--");
+        args.addAll(Arrays.asList(toolCommandLine));
+        return args;
+    }
+
+    @Test
+    public void testScatterGatherPrintReads() throws Exception {
+        final File scatterDirectory = Files.createTempDirectory("testScatterGatherPrintReads").toFile();
+        IOUtils.deleteRecursivelyOnExit(scatterDirectory);
+        final File output = createTempFile("testScatterGatherPrintReads", ".bam");
+        runCommandLine(scatterGatherArgs(output, scatterDirectory, "PrintReads", "-I", INPUT_BAM.getAbsolutePath()));
+
+        final File expected = createTempFile("testScatterGatherPrintReads.expected", ".bam");
+        final List<String> printReadsArgs = new ArrayList<>(Arrays.asList("-I", INPUT_BAM.getAbsolutePath(), "-O", expected.getAbsolutePath()));
+        printReadsArgs.addAll(INTERVALS);
+        new PrintReads().instanceMain(printReadsArgs.toArray(new String[printReadsArgs.size()]));
+
+        SamAssertionUtils.assertSamsEqual(output, expected);
+        for ( int shard = 1; shard <= 3; ++shard ) {
+            Assert.assertTrue(new File(scatterDirectory, String.format("shard_%04d.interval_list", shard)).exists());
+            Assert.assertTrue(new File(scatterDirectory, String.format("shard_%04d.log", shard)).exists());
+        }
+    }
+
+    @Test(expectedExceptions = UserException.class)
+    public void testFailedShard() throws Exception {
+        final File output = createTempFile("testFailedShard", ".bam");
+        runCommandLine(scatterGatherArgs(output, null, "PrintReads", "-I", new File(INPUT_BAM.getParentFile(), "nonexistent.bam").getAbsolutePath()));
+    }
+
+    @Test(expectedExceptions = UserException.CommandLineException.class)
+    public void testReservedToolArgument() throws Exception {
+        final File output = createTempFile("testReservedToolArgument", ".bam");
+        runCommandLine(scatterGatherArgs(output, null, "PrintReads", "-I", INPUT_BAM.getAbsolutePath(), "-L", "chr1"));
+    }
+
+    @Test(expectedExceptions = UserException.BadArgumentValue.class)
+    public void testUnsupportedOutput() throws Exception {
+        final File output = createTempFile("testUnsupportedOutput", ".txt");
+        runCommandLine(scatterGatherArgs(output, null, "CountReads", "-I", INPUT_BAM.getAbsolutePath()));
+    }
+}
@@ -0,0 +1,119 @@
+package org.broadinstitute.hellbender.tools;
+
+import org.broadinstitute.hellbender.CommandLineProgramTest;
+import org.broadinstitute.hellbender.Main;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public final class ToolServerIntegrationTest extends CommandLineProgramTest {
+    private static final String ENGINE_TEST_DIRECTORY = publicTestDir + "org/broadinstitute/hellbender/engine/";
+
+    /**
+     * Send a single request, starting with token, to the server listening on port, and return the complete response
+     */
+    private static String sendRequest( final int port, final String token, final List<String> args ) throws IOException {
+        try ( final Socket socket = new Socket(InetAddress.getLoopbackAddress(), port) ) {
+            final OutputStream request = socket.getOutputStream();
+            request.write((token + "\n" + String.join("\n", args) + "\n\n").getBytes(StandardCharsets.UTF_8));
+            request.flush();
+
+            final InputStream response = socket.getInputStream();
+            final ByteArrayOutputStream responseBytes = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int bytesRead;
+            while ( (bytesRead = response.read(buffer)) != -1 ) {
+                responseBytes.write(buffer, 0, bytesRead);
+            }
+            return new String(responseBytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String lastLine( final String response ) {
+        final String[] lines = response.trim().split("\n");
+        return lines[lines.length - 1];
+    }
+
+    @Test(timeOut = 120000)
+    public void testServeRequests() throws Exception {
+        final File portFile = createTempFile("testServeRequests", ".port");
+        Assert.assertTrue(portFile.delete());
+        // An existing token file is replaced
+        final File tokenFile = createTempFile("testServeRequests", ".token");
+
+        final ExecutorService serverThread = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Object> server = serverThread.submit(() -> runCommandLine(Arrays.asList(
+                    "-portFile", portFile.getAbsolutePath(), "-tokenFile", tokenFile.getAbsolutePath())));
+            while ( ! portFile.exists() || portFile.length() == 0 ) {
+                Assert.assertFalse(server.isDone(), "server exited before it was ready");
+                Thread.sleep(50);
+            }
+            final int port = Integer.parseInt(Files.readAllLines(portFile.toPath()).get(0).trim());
+
+            // Only we may read the token
+            Assert.assertEquals(Files.getPosixFilePermissions(tokenFile.toPath()), EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE));
+            final String token = Files.readAllLines(tokenFile.toPath()).get(0).trim();
+            Assert.assertFalse(token.isEmpty());
+
+            // Requests without the token are refused, without running anything
+            final String refused = sendRequest(port, "not" + token, Arrays.asList("CountVariants", "--help"));
+            Assert.assertEquals(refused.trim(), ToolServer.EXIT_VALUE_PREFIX + Main.USER_EXCEPTION_EXIT_VALUE, refused);
+            Assert.assertEquals(sendRequest(port, "", Arrays.asList()).trim(), ToolServer.EXIT_VALUE_PREFIX + Main.USER_EXCEPTION_EXIT_VALUE);
+
+            // Run the same command line twice: the second run should reuse the indices parsed by the first
+            for ( int run = 0; run < 2; ++run ) {
+                final File metricsReport = createTempFile("testServeRequests", ".json");
+                final String response = sendRequest(port, token, Arrays.asList(
+                        "CountVariants",
+                        "-V", new File(ENGINE_TEST_DIRECTORY + "feature_data_source_test.vcf").getAbsolutePath(),
+                        "-R", new File(hg19MiniReference).getAbsolutePath(),
+                        "-metricsReport", metricsReport.getAbsolutePath()));
+
+                Assert.assertEquals(lastLine(response), ToolServer.EXIT_VALUE_PREFIX + 0, response);
+                Assert.assertTrue(response.contains("Tool returned:"), response);
+                // Log output is part of the response
+                Assert.assertTrue(response.contains("Shutting down engine"), response);
+
+                final String metrics = new String(Files.readAllBytes(metricsReport.toPath()), StandardCharsets.UTF_8);
+                // The first run has to parse the indices, but the second finds them all in the cache
+                Assert.assertEquals(metrics.contains("\"indexCache.misses\""), run == 0, metrics);
+                Assert.assertTrue(metrics.contains("\"indexCache.hits\""), metrics);
+            }
+
+            Assert.assertEquals(lastLine(sendRequest(port, token, Arrays.asList("NoSuchTool"))), ToolServer.EXIT_VALUE_PREFIX + Main.USER_EXCEPTION_EXIT_VALUE);
+            Assert.assertEquals(lastLine(sendRequest(port, token, Arrays.asList("ToolServer"))), ToolServer.EXIT_VALUE_PREFIX + Main.USER_EXCEPTION_EXIT_VALUE);
+
+            Assert.assertEquals(lastLine(sendRequest(port, token, Arrays.asList(ToolServer.SHUTDOWN_REQUEST))), ToolServer.EXIT_VALUE_PREFIX + 0);
+            // The refused requests don't count
+            Assert.assertEquals(server.get(30, TimeUnit.SECONDS), 4);
+            Assert.assertFalse(tokenFile.exists());
+        }
+        finally {
+            serverThread.shutdownNow();
+        }
+    }
+
+    @Test(expectedExceptions = UserException.BadArgumentValue.class)
+    public void testBadPort() {
+        runCommandLine(Arrays.asList("-port", "-1", "-tokenFile", createTempFile("testBadPort", ".token").getAbsolutePath()));
+    }
+}
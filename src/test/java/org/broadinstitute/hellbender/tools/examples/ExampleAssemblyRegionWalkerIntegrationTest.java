@@ -0,0 +1,48 @@
+package org.broadinstitute.hellbender.tools.examples;
+
+import org.broadinstitute.hellbender.CommandLineProgramTest;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.test.IntegrationTestSpec;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+public final class ExampleAssemblyRegionWalkerIntegrationTest extends CommandLineProgramTest {
+    private static final String TEST_DATA_DIRECTORY = publicTestDir + "org/broadinstitute/hellbender/tools/BQSR/";
+    private static final String TEST_OUTPUT_DIRECTORY = publicTestDir + "org/broadinstitute/hellbender/tools/examples/";
+
+    @DataProvider(name = "ThreadCounts")
+    public Object[][] getThreadCounts() {
+        return new Object[][] { { 1 }, { 4 } };
+    }
+
+    @Test(dataProvider = "ThreadCounts")
+    public void testExampleAssemblyRegionWalker( final int threads ) throws IOException {
+        IntegrationTestSpec testSpec = new IntegrationTestSpec(
+                " -L 17:69500-70500" +
+                " -R " + publicTestDir + "human_g1k_v37.chr17_1Mb.fasta" +
+                " -I " + TEST_DATA_DIRECTORY + "NA12878.chr17_69k_70k.dictFix.bam" +
+                " -activeProbabilityThreshold 0.1" +
+                " -assemblyRegionWalkerThreads " + threads +
+                " -O %s",
+                Arrays.asList(TEST_OUTPUT_DIRECTORY + "expected_ExampleAssemblyRegionWalkerIntegrationTest_output.txt")
+        );
+        testSpec.executeTest("testExampleAssemblyRegionWalker with " + threads + " threads", this);
+    }
+
+    @Test
+    public void testExampleAssemblyRegionWalkerBadRegionSizes() throws IOException {
+        IntegrationTestSpec testSpec = new IntegrationTestSpec(
+                " -L 17:69500-70500" +
+                " -R " + publicTestDir + "human_g1k_v37.chr17_1Mb.fasta" +
+                " -I " + TEST_DATA_DIRECTORY + "NA12878.chr17_69k_70k.dictFix.bam" +
+                " -minAssemblyRegionSize 100 -maxAssemblyRegionSize 50" +
+                " -O %s",
+                1,
+                UserException.BadArgumentValue.class
+        );
+        testSpec.executeTest("testExampleAssemblyRegionWalkerBadRegionSizes", this);
+    }
+}
@@ -1,6 +1,7 @@
 package org.broadinstitute.hellbender.tools.examples;
 
 import org.broadinstitute.hellbender.CommandLineProgramTest;
+import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.test.IntegrationTestSpec;
 import org.testng.annotations.Test;
 
@@ -23,4 +24,31 @@ public final class ExampleIntervalWalkerIntegrationTest extends CommandLineProgr
         );
         testSpec.executeTest("testExampleIntervalWalker", this);
     }
+
+    @Test
+    public void testExampleIntervalWalkerMultithreaded() throws IOException {
+        IntegrationTestSpec testSpec = new IntegrationTestSpec(
+                " -L 1:100-200 -L 2:500-600" +
+                " -R " + hg19MiniReference +
+                " -I " + TEST_DATA_DIRECTORY + "reads_data_source_test1.bam" +
+                " -V " + TEST_DATA_DIRECTORY + "feature_data_source_test.vcf" +
+                " -intervalWalkerThreads 4" +
+                " -O %s",
+                Arrays.asList(TEST_OUTPUT_DIRECTORY + "expected_ExampleIntervalWalkerIntegrationTest_output.txt")
+        );
+        testSpec.executeTest("testExampleIntervalWalkerMultithreaded", this);
+    }
+
+    @Test
+    public void testExampleIntervalWalkerBadThreadCount() throws IOException {
+        IntegrationTestSpec testSpec = new IntegrationTestSpec(
+                " -L 1:100-200" +
+                " -R " + hg19MiniReference +
+                " -intervalWalkerThreads 0" +
+                " -O %s",
+                1,
+                UserException.BadArgumentValue.class
+        );
+        testSpec.executeTest("testExampleIntervalWalkerBadThreadCount", this);
+    }
 }
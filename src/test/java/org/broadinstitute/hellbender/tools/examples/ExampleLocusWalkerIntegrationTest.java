@@ -0,0 +1,41 @@
+package org.broadinstitute.hellbender.tools.examples;
+
+import org.broadinstitute.hellbender.CommandLineProgramTest;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.test.IntegrationTestSpec;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+public final class ExampleLocusWalkerIntegrationTest extends CommandLineProgramTest {
+    private static final String TEST_DATA_DIRECTORY = publicTestDir + "org/broadinstitute/hellbender/engine/";
+    private static final String TEST_OUTPUT_DIRECTORY = publicTestDir + "org/broadinstitute/hellbender/tools/examples/";
+
+    @Test
+    public void testExampleLocusWalker() throws IOException {
+        IntegrationTestSpec testSpec = new IntegrationTestSpec(
+                " -L 1:195-215 -L 2:500-505" +
+                " -R " + hg19MiniReference +
+                " -I " + TEST_DATA_DIRECTORY + "reads_data_source_test1.bam" +
+                " -V " + TEST_DATA_DIRECTORY + "feature_data_source_test.vcf" +
+                " -O %s",
+                Arrays.asList(TEST_OUTPUT_DIRECTORY + "expected_ExampleLocusWalkerIntegrationTest_output.txt")
+        );
+        testSpec.executeTest("testExampleLocusWalker", this);
+    }
+
+    @Test
+    public void testExampleLocusWalkerDownsampled() throws IOException {
+        Utils.resetRandomGenerator();
+        IntegrationTestSpec testSpec = new IntegrationTestSpec(
+                " -L 1:195-215" +
+                " -R " + hg19MiniReference +
+                " -I " + TEST_DATA_DIRECTORY + "reads_data_source_test1.bam" +
+                " -maxDepthPerSample 1" +
+                " -O %s",
+                Arrays.asList(TEST_OUTPUT_DIRECTORY + "expected_ExampleLocusWalkerIntegrationTest_downsampled_output.txt")
+        );
+        testSpec.executeTest("testExampleLocusWalkerDownsampled", this);
+    }
+}
@@ -1,9 +1,12 @@
 package org.broadinstitute.hellbender.tools.examples;
 
 import org.broadinstitute.hellbender.CommandLineProgramTest;
+import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.test.IntegrationTestSpec;
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
 
@@ -25,4 +28,36 @@ public final class ExampleVariantWalkerIntegrationTest extends CommandLineProgra
         );
         testSpec.executeTest("testExampleIntervalWalker", this);
     }
+
+    @Test
+    public void testMultithreadedTraversalRequiresThreadSafeTool() throws IOException {
+        IntegrationTestSpec testSpec = new IntegrationTestSpec(
+                " -L 1:100-200" +
+                " -R " + hg19MiniReference +
+                " -V " + TEST_DATA_DIRECTORY + "example_variants.vcf" +
+                " -variantWalkerThreads 2" +
+                " -O %s",
+                1,
+                UserException.BadArgumentValue.class
+        );
+        testSpec.executeTest("testMultithreadedTraversalRequiresThreadSafeTool", this);
+    }
+
+    @Test
+    public void testBadThreadCountIsRejectedBeforeOutputIsOpened() throws IOException {
+        final File output = createTempFile("testBadThreadCountIsRejectedBeforeOutputIsOpened", ".txt");
+        Assert.assertTrue(output.delete());
+        try {
+            runCommandLine(Arrays.asList(
+                    "-L", "1:100-200",
+                    "-R", hg19MiniReference,
+                    "-V", TEST_DATA_DIRECTORY + "example_variants.vcf",
+                    "-variantWalkerThreads", "0",
+                    "-O", output.getAbsolutePath()));
+            Assert.fail("a thread count of 0 should be rejected");
+        }
+        catch ( final UserException.BadArgumentValue e ) {
+            Assert.assertFalse(output.exists(), "output was opened before the thread count was checked");
+        }
+    }
 }
@@ -165,6 +165,41 @@ public final class IntervalListScattererTest extends CommandLineProgramTest {
         assertEquals(scatter, tc.expectedScatter);
     }
 
+    @DataProvider
+    public Object[][] testScatterByEstimatedReadsTestcases() {
+        return new Object[][] {
+                // estimated reads for target_1, target_2 and target_3, scatter count, expected scatter
+                {new long[]{10, 10, 1000}, 2, asList(asList("target_1", "target_2"), asList("target_3"))},
+                {new long[]{1000, 10, 10}, 2, asList(asList("target_1"), asList("target_2", "target_3"))},
+                {new long[]{10, 1000, 10}, 3, asList(asList("target_1"), asList("target_2"), asList("target_3"))},
+                {new long[]{10, 10, 1000}, 1, asList(asList("target_1", "target_2", "target_3"))},
+                // with no reads at all, balance by base count instead
+                {new long[]{0, 0, 0}, 2, asList(asList("target_1"), asList("target_2", "target_3"))}
+        };
+    }
+
+    @Test(dataProvider = "testScatterByEstimatedReadsTestcases")
+    public void testScatterByEstimatedReads(final long[] estimatedReads, final int scatterCount, final List<List<String>> expectedNames) {
+        final Map<String, Long> readsByName = new HashMap<>();
+        for (int i = 0; i < estimatedReads.length; i++) {
+            readsByName.put("target_" + (i + 1), estimatedReads[i]);
+        }
+        final IntervalListScatterer scatterer = new IntervalListScatterer(Mode.BALANCING_BY_ESTIMATED_READS, interval -> readsByName.get(interval.getName()));
+
+        final List<List<String>> names = new ArrayList<>();
+        for (final IntervalList intervals : scatterer.scatter(LIST_TO_SCATTER, scatterCount)) {
+            final List<String> listNames = new ArrayList<>();
+            intervals.forEach(interval -> listNames.add(interval.getName()));
+            names.add(listNames);
+        }
+        assertEquals(names, expectedNames);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testScatterByEstimatedReadsRequiresEstimator() {
+        new IntervalListScatterer(Mode.BALANCING_BY_ESTIMATED_READS);
+    }
+
     private static IntervalList composeIntervalList(final IntervalList source, final String chromosome, final int... segmentsByPair) {
         final IntervalList intervals = new IntervalList(source.getHeader());
         for (int i = 0; i < segmentsByPair.length; i += 2) {
@@ -0,0 +1,40 @@
+package org.broadinstitute.hellbender.tools.spark.pipelines;
+
+import htsjdk.samtools.SAMFileHeader;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.broadinstitute.hellbender.CommandLineProgramTest;
+import org.broadinstitute.hellbender.engine.spark.SparkContextFactory;
+import org.broadinstitute.hellbender.engine.spark.datasources.ReadsSparkSource;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.ReadCoordinateComparator;
+import org.broadinstitute.hellbender.utils.read.SAMRecordToGATKReadAdapter;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class SortBamSparkUnitTest extends BaseTest {
+
+    @Test
+    public void testSortedReadsHaveHeader() throws Exception {
+        final JavaSparkContext ctx = SparkContextFactory.getTestSparkContext();
+        final String unsortedBam = new File(CommandLineProgramTest.getTestDataDir(), "count_reads.bam").getCanonicalPath();
+        final SAMFileHeader header = ReadsSparkSource.getHeader(ctx, unsortedBam, null);
+        final JavaRDD<GATKRead> reads = new ReadsSparkSource(ctx).getParallelReads(unsortedBam, null);
+
+        final JavaRDD<GATKRead> sortedReads = SortBamSpark.sortReads(reads, header, 2);
+
+        // Reads are shuffled without their header, which must be put back (reads collected to the driver would be
+        // serialized again, so check on the executors)
+        Assert.assertEquals(sortedReads.filter(read -> !header.equals(((SAMRecordToGATKReadAdapter) read).getSamRecord().getHeader())).count(), 0);
+
+        final List<GATKRead> collected = sortedReads.collect();
+        final List<GATKRead> expected = new ArrayList<>(reads.collect());
+        expected.sort(new ReadCoordinateComparator(header));
+        Assert.assertEquals(collected, expected);
+    }
+}
@@ -7,6 +7,7 @@ import org.broadinstitute.hellbender.cmdline.argumentcollections.OpticalDuplicat
 import org.broadinstitute.hellbender.engine.spark.SparkContextFactory;
 import org.broadinstitute.hellbender.engine.spark.datasources.ReadsSparkSource;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.SAMRecordToGATKReadAdapter;
 import org.broadinstitute.hellbender.utils.read.markduplicates.OpticalDuplicateFinder;
 import org.broadinstitute.hellbender.utils.test.BaseTest;
 import org.testng.Assert;
@@ -45,6 +46,10 @@ public class MarkDuplicatesSparkUnitTest extends BaseTest {
         JavaRDD<GATKRead> dupes = markedReads.filter(GATKRead::isDuplicate);
 
         Assert.assertEquals(dupes.count(), dupsExpected);
+
+        // Reads are shuffled without their header, which must be put back (reads collected to the driver would be
+        // serialized again, so check on the executors)
+        Assert.assertEquals(markedReads.filter(read -> ((SAMRecordToGATKReadAdapter) read).getSamRecord().getHeader() == null).count(), 0);
     }
 
 }
\ No newline at end of file
@@ -60,6 +60,27 @@ public final class ValidateVariantsIntegrationTest extends CommandLineProgramTes
         spec.executeTest("test good file", this);
     }
 
+    @Test
+    public void testGoodFileMultithreaded() throws IOException {
+        IntegrationTestSpec spec = new IntegrationTestSpec(
+                baseTestString(false, "validationExampleGood.vcf", false, ALL) + " -variantWalkerThreads 4",
+                Collections.emptyList()
+        );
+
+        spec.executeTest("test good file with multiple threads", this);
+    }
+
+    @Test
+    public void testBadRefBase1Multithreaded() throws IOException {
+        IntegrationTestSpec spec = new IntegrationTestSpec(
+                baseTestString(false, "validationExampleBad.vcf", false, REF) + " -variantWalkerThreads 4",
+                0,
+                UserException.FailsStrictValidation.class
+        );
+
+        spec.executeTest("test bad ref base #1 with multiple threads", this);
+    }
+
     @Test
     public void testBadRefBase1() throws IOException {
         IntegrationTestSpec spec = new IntegrationTestSpec(
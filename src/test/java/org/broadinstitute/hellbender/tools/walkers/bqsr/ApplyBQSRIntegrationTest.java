@@ -47,6 +47,10 @@ public final class ApplyBQSRIntegrationTest extends CommandLineProgramTest {
         tests.add(new Object[]{new ABQSRTest(hiSeqBamAligned, " -qq 6", resourceDir + "expected.HiSeq.1mb.1RG.2k_lines.bqsr.qq6.alternate_allaligned.bam")});
         tests.add(new Object[]{new ABQSRTest(hiSeqBamAligned, " -DIQ", resourceDir + "expected.HiSeq.1mb.1RG.2k_lines.bqsr.DIQ.alternate_allaligned.bam")});
 
+        // multi-threaded traversal must produce output identical to single-threaded traversal
+        tests.add(new Object[]{new ABQSRTest(hiSeqBam, " --readWalkerThreads 4", resourceDir + "expected.HiSeq.1mb.1RG.2k_lines.bqsr.alternate.bam")});
+        tests.add(new Object[]{new ABQSRTest(hiSeqBamAligned, " --readWalkerThreads 4", resourceDir + "expected.HiSeq.1mb.1RG.2k_lines.bqsr.alternate_allaligned.bam")});
+
         return tests.toArray(new Object[][]{});
     }
 
@@ -73,6 +73,9 @@ public final class BaseRecalibratorIntegrationTest extends CommandLineProgramTes
                 {new BQSRTest(hg18Reference, HiSeqBam, dbSNPb37, "--quantizing_levels 6", getResourceDir() + "expected.NA12878.chr17_69k_70k.quantizing_levels6.txt")},
                 {new BQSRTest(hg18Reference, HiSeqBam, dbSNPb37, "--mismatches_context_size 4", getResourceDir() + "expected.NA12878.chr17_69k_70k.mismatches_context_size4.txt")},
                 {new BQSRTest(b36Reference, origQualsBam, dbSNPb36, "-OQ", getResourceDir() + "expected.originalQuals.1kg.chr1.1-1K.1RG.dictFix.OQ.txt")},
+                // memory-mapping the reference must not change the results
+                {new BQSRTest(hg18Reference, HiSeqBam, dbSNPb37, "--memoryMapReference", getResourceDir() + "expected.NA12878.chr17_69k_70k.txt")},
+                {new BQSRTest(b36Reference, origQualsBam, dbSNPb36, "-OQ --memoryMapReference", getResourceDir() + "expected.originalQuals.1kg.chr1.1-1K.1RG.dictFix.OQ.txt")},
         };
     }
     @Test(dataProvider = "BQSRTest")
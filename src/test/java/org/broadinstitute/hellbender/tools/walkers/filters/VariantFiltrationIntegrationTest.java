@@ -6,8 +6,11 @@ import org.broadinstitute.hellbender.utils.test.IntegrationTestSpec;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 public final class VariantFiltrationIntegrationTest extends CommandLineProgramTest {
 
@@ -219,4 +222,56 @@ public final class VariantFiltrationIntegrationTest extends CommandLineProgramTe
 
         spec.executeTest("test file", this);
     }
+
+    @Test
+    public void testClusteredSnpsMultithreaded() throws IOException {
+        final IntegrationTestSpec spec = new IntegrationTestSpec(
+                baseTestString("vcfexample2.vcf", " -window 10 -variantWalkerThreads 4 "),
+                Arrays.asList(getToolTestDataDir() + "expected/" + "testVariantFiltration_testClusteredSnps.vcf")
+        );
+
+        spec.executeTest("test testClusteredSnps file with multiple threads", this);
+    }
+
+    @Test(dataProvider = "masks")
+    public void testMaskMultithreaded(final String maskName, final String mask, final String expected) throws IOException {
+        final IntegrationTestSpec spec = new IntegrationTestSpec(
+                baseTestString("vcfexample2.vcf", " -maskName " + maskName + " " + mask + " -variantWalkerThreads 4 "),
+                Arrays.asList(getToolTestDataDir() + "expected/" + expected)
+        );
+
+        spec.executeTest("test file with multiple threads", this);
+    }
+
+    @DataProvider(name = "multithreadedTraversals")
+    public Object[][] multithreadedTraversals() {
+        return new Object[][]{
+                // spans many shards
+                { Arrays.asList("-window", "10") },
+                // intervals both within and spanning shard boundaries
+                { Arrays.asList("-window", "10", "-L", "1:17000-120000", "-L", "1:199990-200010", "-L", "1:650000-950000") },
+                // queries a second source of Features from each shard
+                { Arrays.asList("-maskExtend", "10", "-maskName", "foo", "--mask", hg19_chr1_1M_dbSNP_modified) },
+        };
+    }
+
+    @Test(dataProvider = "multithreadedTraversals")
+    public void testMultithreadedMatchesSingleThreaded(final List<String> options) throws IOException {
+        final File singleThreadedOutput = createTempFile("singleThreaded", ".vcf");
+        final File multithreadedOutput = createTempFile("multithreaded", ".vcf");
+
+        runCommandLine(makeArgs(options, singleThreadedOutput, 1));
+        runCommandLine(makeArgs(options, multithreadedOutput, 3));
+
+        IntegrationTestSpec.assertEqualTextFiles(multithreadedOutput, singleThreadedOutput);
+    }
+
+    private static List<String> makeArgs(final List<String> options, final File output, final int threads) {
+        final List<String> args = new ArrayList<>(options);
+        args.addAll(Arrays.asList("--variant", hg19_chr1_1M_dbSNP_modified,
+                                  "-R", hg19_chr1_1M_Reference,
+                                  "-O", output.getAbsolutePath(),
+                                  "-variantWalkerThreads", Integer.toString(threads)));
+        return args;
+    }
 }
@@ -0,0 +1,120 @@
+package org.broadinstitute.hellbender.tools.walkers.haplotypecaller;
+
+import htsjdk.samtools.SAMFileHeader;
+import org.broadinstitute.hellbender.utils.GenomeLocParser;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public final class ActivityProfileUnitTest extends BaseTest {
+    private static final double THRESHOLD = 0.5;
+    private static final int MIN_REGION_SIZE = 3;
+    private static final int MAX_REGION_SIZE = 5;
+
+    private SAMFileHeader header;
+    private GenomeLocParser genomeLocParser;
+    private String contig;
+
+    @BeforeClass
+    public void init() {
+        header = ArtificialReadUtils.createArtificialSamHeader(2, 1, 1000);
+        genomeLocParser = new GenomeLocParser(header.getSequenceDictionary());
+        contig = header.getSequenceDictionary().getSequence(0).getSequenceName();
+    }
+
+    private ActivityProfile makeProfile( final int start, final double... probs ) {
+        final ActivityProfile profile = new ActivityProfile(genomeLocParser, THRESHOLD, header);
+        for ( int i = 0; i < probs.length; ++i ) {
+            profile.add(new ActivityProfileState(genomeLocParser.createGenomeLoc(contig, start + i), probs[i]));
+        }
+        return profile;
+    }
+
+    private static List<String> describe( final List<AssemblyRegion> regions ) {
+        return regions.stream().map(region -> (region.isActive() ? "active " : "inactive ") + region.getSpan().getStart() + "-" + region.getSpan().getStop())
+                      .collect(Collectors.toList());
+    }
+
+    @DataProvider(name = "RegionData")
+    public Object[][] getRegionData() {
+        return new Object[][] {
+                // probabilities starting at position 10, forceConversion, expected regions
+                { new double[] { 0.0, 0.0, 1.0, 1.0, 0.0 }, false, Arrays.asList("inactive 10-11", "active 12-13") },
+                { new double[] { 0.0, 0.0, 1.0, 1.0, 0.0 }, true, Arrays.asList("inactive 10-11", "active 12-13", "inactive 14-14") },
+                { new double[] { 0.0, 0.0, 0.0 }, false, Collections.emptyList() },
+                // long inactive runs are cut at the maximum size
+                { new double[] { 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0 }, false, Collections.singletonList("inactive 10-14") },
+                // long active runs are cut after the least active locus between the minimum and maximum sizes
+                { new double[] { 0.9, 0.6, 0.9, 0.7, 0.9, 0.9, 0.9 }, false, Collections.singletonList("active 10-13") },
+                { new double[] { 0.9, 0.9, 0.9, 0.9, 0.9, 0.9 }, false, Collections.singletonList("active 10-14") },
+                // probabilities equal to the threshold are inactive
+                { new double[] { THRESHOLD, 1.0 }, true, Arrays.asList("inactive 10-10", "active 11-11") }
+        };
+    }
+
+    @Test(dataProvider = "RegionData")
+    public void testPopReadyAssemblyRegions( final double[] probs, final boolean forceConversion, final List<String> expectedRegions ) {
+        final ActivityProfile profile = makeProfile(10, probs);
+        final List<AssemblyRegion> regions = profile.popReadyAssemblyRegions(2, MIN_REGION_SIZE, MAX_REGION_SIZE, forceConversion);
+
+        Assert.assertEquals(describe(regions), expectedRegions);
+        final int bpInRegions = regions.stream().mapToInt(region -> region.getSpan().size()).sum();
+        Assert.assertEquals(profile.size(), probs.length - bpInRegions, "regions did not consume the expected number of states");
+        for ( final AssemblyRegion region : regions ) {
+            Assert.assertEquals(region.getSupportingStates().size(), region.getSpan().size());
+            Assert.assertEquals(region.getExtension(), 2);
+        }
+    }
+
+    @Test
+    public void testIncrementalRegionsMatchBatchRegions() {
+        final double[] probs = new double[200];
+        for ( int i = 0; i < probs.length; ++i ) {
+            probs[i] = (i / 7) % 3 == 0 ? 0.1 : 0.5 + (i % 5) / 10.0;
+        }
+
+        final List<AssemblyRegion> batchRegions = makeProfile(1, probs).popReadyAssemblyRegions(0, MIN_REGION_SIZE, MAX_REGION_SIZE, true);
+
+        final ActivityProfile profile = new ActivityProfile(genomeLocParser, THRESHOLD, header);
+        final List<AssemblyRegion> incrementalRegions = new ArrayList<>();
+        for ( int i = 0; i < probs.length; ++i ) {
+            profile.add(new ActivityProfileState(genomeLocParser.createGenomeLoc(contig, 1 + i), probs[i]));
+            incrementalRegions.addAll(profile.popReadyAssemblyRegions(0, MIN_REGION_SIZE, MAX_REGION_SIZE, false));
+            Assert.assertTrue(profile.size() <= MAX_REGION_SIZE);
+        }
+        incrementalRegions.addAll(profile.popReadyAssemblyRegions(0, MIN_REGION_SIZE, MAX_REGION_SIZE, true));
+
+        Assert.assertEquals(describe(incrementalRegions), describe(batchRegions));
+        Assert.assertTrue(profile.isEmpty());
+    }
+
+    @Test
+    public void testIsContiguousWith() {
+        final ActivityProfile profile = makeProfile(10, 0.0, 0.0);
+
+        Assert.assertTrue(profile.isContiguousWith(genomeLocParser.createGenomeLoc(contig, 12)));
+        Assert.assertFalse(profile.isContiguousWith(genomeLocParser.createGenomeLoc(contig, 13)));
+        Assert.assertFalse(profile.isContiguousWith(genomeLocParser.createGenomeLoc(contig, 11)));
+        Assert.assertFalse(profile.isContiguousWith(genomeLocParser.createGenomeLoc(header.getSequenceDictionary().getSequence(1).getSequenceName(), 12)));
+        Assert.assertEquals(profile.getSpan(), genomeLocParser.createGenomeLoc(contig, 10, 11));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testAddNonContiguousState() {
+        makeProfile(10, 0.0).add(new ActivityProfileState(genomeLocParser.createGenomeLoc(contig, 12), 0.0));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMaxRegionSizeSmallerThanMin() {
+        makeProfile(10, 0.0).popReadyAssemblyRegions(0, 10, 5, true);
+    }
+}
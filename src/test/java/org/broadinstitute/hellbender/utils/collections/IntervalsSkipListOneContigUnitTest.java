@@ -81,6 +81,7 @@ public class IntervalsSkipListOneContigUnitTest extends BaseTest {
                 actual,
                 expected
         );
+        Assert.assertEquals(ints.overlapsAny(query), !expected.isEmpty());
     }
 
     @Test
@@ -113,6 +114,7 @@ public class IntervalsSkipListOneContigUnitTest extends BaseTest {
             SimpleInterval interval = new SimpleInterval("1", start + 10, start + 11);
             ArrayList<Locatable> actual = ints.getOverlapping(interval);
             Assert.assertEquals(actual.size(), 3);
+            Assert.assertTrue(ints.overlapsAny(interval));
             // the two that start from "start", plus the long one that starts from start-100.
             // the one that starts from start-200 ends before our test point.
             for (Locatable l : actual) {
@@ -121,8 +123,27 @@ public class IntervalsSkipListOneContigUnitTest extends BaseTest {
         }
         v2.stop();
 
+        // past the end of every interval
+        Assert.assertTrue(ints.getOverlapping(new SimpleInterval("1", MAX + 300, MAX + 400)).isEmpty());
+        Assert.assertFalse(ints.overlapsAny(new SimpleInterval("1", MAX + 300, MAX + 400)));
+
         System.out.println("non-indexed took "+v1.elapsed(TimeUnit.MILLISECONDS)+" ms, "
                 +" indexed took "+v2.elapsed(TimeUnit.MILLISECONDS)+" ms, plus "+indexing.elapsed(TimeUnit.MILLISECONDS)+" for sorting&indexing.");
     }
 
+    @Test
+    public void testFullBuckets() throws Exception {
+        // 64 intervals fill exactly two buckets of 32, leaving the last entry of the index unused
+        ArrayList<Locatable> si = new ArrayList<>();
+        for (int start = 1; start <= 64 * 100; start += 100) {
+            si.add(new SimpleInterval("1", start, start + 10));
+        }
+        IntervalsSkipListOneContig<Locatable> ints = new IntervalsSkipListOneContig<>(si);
+        for (int pos = 1; pos <= 65 * 100; pos += 7) {
+            SimpleInterval query = new SimpleInterval("1", pos, pos + 3);
+            Assert.assertEquals(ints.getOverlapping(query), ints.getOverlappingIgnoringIndex(query), query.toString());
+            Assert.assertEquals(ints.overlapsAny(query), !ints.getOverlappingIgnoringIndex(query).isEmpty(), query.toString());
+        }
+    }
+
 }
@@ -48,5 +48,6 @@ public class IntervalsSkipListUnitTest extends BaseTest {
                 actual,
                 expected
         );
+        Assert.assertEquals(ints.overlapsAny(query), !expected.isEmpty());
     }
 }
\ No newline at end of file
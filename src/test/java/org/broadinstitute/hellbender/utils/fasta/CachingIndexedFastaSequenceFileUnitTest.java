@@ -17,9 +17,13 @@ import org.testng.annotations.Test;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Basic unit test for CachingIndexedFastaSequenceFile
@@ -91,6 +95,37 @@ public final class CachingIndexedFastaSequenceFileUnitTest extends BaseTest {
 
     }
 
+    @Test(dataProvider = "fastas", enabled = ! DEBUG)
+    public void testPrimitiveAccessMatchesUncached(File fasta, int cacheSize, int querySize) throws FileNotFoundException {
+        final IndexedFastaSequenceFile uncached = new IndexedFastaSequenceFile(fasta);
+        final CachingIndexedFastaSequenceFile caching = new CachingIndexedFastaSequenceFile(fasta, getCacheSize(cacheSize), true, false);
+        final byte[] buffer = new byte[querySize + 5];
+
+        SAMSequenceRecord contig = uncached.getSequenceDictionary().getSequence(0);
+        for ( int start = 1; start + querySize <= contig.getSequenceLength(); start += 7 ) {
+            final int stop = start + querySize;
+            final byte[] expected = uncached.getSubsequenceAt(contig.getSequenceName(), start, stop).getBases();
+
+            Assert.assertEquals(caching.getBaseAt(contig.getSequenceName(), start), expected[0]);
+
+            Assert.assertEquals(caching.copySubsequenceAt(contig.getSequenceName(), start, stop, buffer, 2), expected.length);
+            Assert.assertEquals(Arrays.copyOfRange(buffer, 2, 2 + expected.length), expected);
+
+            final ByteBuffer view = caching.getSubsequenceViewAt(contig.getSequenceName(), start, stop);
+            Assert.assertTrue(view.isReadOnly());
+            Assert.assertEquals(view.remaining(), expected.length);
+            for ( int i = 0; i < expected.length; ++i ) {
+                Assert.assertEquals(view.get(i), expected[i]);
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testCopySubsequenceIntoTooSmallBuffer() throws FileNotFoundException {
+        final CachingIndexedFastaSequenceFile caching = new CachingIndexedFastaSequenceFile(simpleFasta);
+        caching.copySubsequenceAt(caching.getSequenceDictionary().getSequence(0).getSequenceName(), 1, 10, new byte[10], 1);
+    }
+
     // Tests grabbing sequences around a middle cached value.
     @Test(dataProvider = "fastas", enabled = ! DEBUG)
     public void testCachingIndexedFastaReaderTwoStage(File fasta, int cacheSize, int querySize) throws FileNotFoundException {
@@ -137,6 +172,89 @@ public final class CachingIndexedFastaSequenceFileUnitTest extends BaseTest {
         return params.toArray(new Object[][]{});
     }
 
+    @Test(dataProvider = "ParallelFastaTest", enabled = ! DEBUG)
+    public void testCachingIndexedFastaReaderParallel(final File fasta, final int cacheSize, final int querySize, final int nt) throws Exception {
+        final IndexedFastaSequenceFile uncached = new IndexedFastaSequenceFile(fasta);
+        final CachingIndexedFastaSequenceFile caching = new CachingIndexedFastaSequenceFile(fasta, getCacheSize(cacheSize), true, false);
+        final SAMSequenceRecord contig = uncached.getSequenceDictionary().getSequence(0);
+        final byte[] expected = uncached.getSubsequenceAt(contig.getSequenceName(), 1, contig.getSequenceLength()).getBases();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(nt);
+        try {
+            final List<Future<Boolean>> results = new ArrayList<>();
+            for ( int thread = 0; thread < nt; ++thread ) {
+                // each thread walks along a different part of the contig, so that the threads compete for cache windows
+                final int offset = thread * contig.getSequenceLength() / nt;
+                results.add(executor.submit(() -> {
+                    for ( int i = 1; i + querySize <= contig.getSequenceLength(); i += 10 ) {
+                        final int start = 1 + (offset + i - 1) % (contig.getSequenceLength() - querySize);
+                        final byte[] bases = caching.getSubsequenceAt(contig.getSequenceName(), start, start + querySize).getBases();
+                        if ( ! Arrays.equals(bases, Arrays.copyOfRange(expected, start - 1, start + querySize)) ) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for ( final Future<Boolean> result : results ) {
+                Assert.assertTrue(result.get(), "wrong bases returned during concurrent access");
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @DataProvider(name = "AlternatingLociTest")
+    public Object[][] createAlternatingLociTest() {
+        final long windowSize = 100 + 2 + 1;
+        return new Object[][] {
+                // default budget of several windows: only the first query at each locus misses
+                { CachingIndexedFastaSequenceFile.DEFAULT_CACHE_WINDOWS * windowSize, 2, 0 },
+                // budget of two windows: still only the first query at each locus misses
+                { 2 * windowSize, 2, 0 },
+                // budget of a single window: every query evicts the window for the other locus
+                { windowSize, 200, 199 }
+        };
+    }
+
+    @Test(dataProvider = "AlternatingLociTest")
+    public void testAlternatingDistantLoci(final long cacheBudget, final long expectedMisses, final long expectedEvictions) throws FileNotFoundException {
+        final IndexedFastaSequenceFile uncached = new IndexedFastaSequenceFile(simpleFasta);
+        final CachingIndexedFastaSequenceFile caching = new CachingIndexedFastaSequenceFile(simpleFasta, 100, cacheBudget, true, false);
+        final String contig = caching.getSequenceDictionary().getSequence(0).getSequenceName();
+
+        for ( int i = 0; i < 100; ++i ) {
+            for ( final int start : Arrays.asList(1000, 50000) ) {
+                Assert.assertEquals(caching.getSubsequenceAt(contig, start, start + 10).getBases(), uncached.getSubsequenceAt(contig, start, start + 10).getBases());
+            }
+        }
+
+        Assert.assertEquals(caching.getCacheMisses(), expectedMisses);
+        Assert.assertEquals(caching.getCacheHits(), 200 - expectedMisses);
+        Assert.assertEquals(caching.getCacheEvictions(), expectedEvictions);
+    }
+
+    @Test
+    public void testViewSurvivesEviction() throws FileNotFoundException {
+        final IndexedFastaSequenceFile uncached = new IndexedFastaSequenceFile(simpleFasta);
+        final CachingIndexedFastaSequenceFile caching = new CachingIndexedFastaSequenceFile(simpleFasta, 100, 1, true, false);
+        final String contig = caching.getSequenceDictionary().getSequence(0).getSequenceName();
+
+        final ByteBuffer view = caching.getSubsequenceViewAt(contig, 1000, 1010);
+        caching.getSubsequenceAt(contig, 50000, 50010);
+        Assert.assertEquals(caching.getCacheEvictions(), 1);
+
+        final byte[] viewBases = new byte[view.remaining()];
+        view.get(viewBases);
+        Assert.assertEquals(viewBases, uncached.getSubsequenceAt(contig, 1000, 1010).getBases());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeCacheBudget() throws FileNotFoundException {
+        new CachingIndexedFastaSequenceFile(simpleFasta, 100, -1, true, false);
+    }
+
     // make sure some bases are lower case and some are upper case
     @Test
     public void testMixedCasesInExample() throws FileNotFoundException, InterruptedException {
@@ -0,0 +1,156 @@
+package org.broadinstitute.hellbender.utils.fasta;
+
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.SAMSequenceRecord;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public final class MemoryMappedFastaSequenceFileUnitTest extends BaseTest {
+
+    @DataProvider(name = "fastas")
+    public Object[][] getFastas() {
+        return new Object[][] {
+                { new File(publicTestDir + "exampleFASTA.fasta") },
+                { new File(hg19MiniReference) },
+                // contains IUPAC bases, which should be converted to Ns
+                { new File(publicTestDir + "iupacFASTA.fasta") },
+                { new File(publicTestDir + "human_g1k_v37.chr17_1Mb.fasta") }
+        };
+    }
+
+    @Test(dataProvider = "fastas")
+    public void testMatchesCachingReader( final File fasta ) throws IOException {
+        final Random random = new Random(42);
+
+        try ( final MemoryMappedFastaSequenceFile mapped = new MemoryMappedFastaSequenceFile(fasta);
+              final CachingIndexedFastaSequenceFile caching = new CachingIndexedFastaSequenceFile(fasta) ) {
+            Assert.assertEquals(mapped.getSequenceDictionary().getSequences(), caching.getSequenceDictionary().getSequences());
+
+            for ( final SAMSequenceRecord contig : caching.getSequenceDictionary().getSequences() ) {
+                final String contigName = contig.getSequenceName();
+                final int contigLength = contig.getSequenceLength();
+
+                final List<int[]> queries = new ArrayList<>();
+                queries.add(new int[]{1, 1});
+                queries.add(new int[]{1, Math.min(200, contigLength)});
+                queries.add(new int[]{contigLength, contigLength});
+                queries.add(new int[]{Math.max(contigLength - 200, 1), contigLength});
+                // position 0 is allowed by IndexedFastaSequenceFile, and is used by BAQ
+                queries.add(new int[]{0, Math.min(10, contigLength)});
+                for ( int i = 0; i < 200; ++i ) {
+                    final int start = 1 + random.nextInt(contigLength);
+                    queries.add(new int[]{start, Math.min(start + random.nextInt(300), contigLength)});
+                }
+
+                final byte[] buffer = new byte[400];
+                for ( final int[] query : queries ) {
+                    final byte[] expected = caching.getSubsequenceAt(contigName, query[0], query[1]).getBases();
+                    final String description = contigName + ":" + query[0] + "-" + query[1] + " in " + fasta;
+
+                    Assert.assertEquals(mapped.getSubsequenceAt(contigName, query[0], query[1]), expected, "wrong bases for " + description);
+                    Assert.assertEquals(mapped.getBaseAt(contigName, query[0]), expected[0], "wrong base for " + description);
+
+                    Assert.assertEquals(mapped.copySubsequenceAt(contigName, query[0], query[1], buffer, 3), expected.length);
+                    Assert.assertEquals(Arrays.copyOfRange(buffer, 3, 3 + expected.length), expected, "wrong bases copied for " + description);
+
+                    final ByteBuffer view = mapped.getSubsequenceViewAt(contigName, query[0], query[1]);
+                    Assert.assertTrue(view.isReadOnly());
+                    final byte[] viewBases = new byte[view.remaining()];
+                    view.get(viewBases);
+                    Assert.assertEquals(viewBases, expected, "wrong bases in view for " + description);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final File fasta = new File(publicTestDir + "human_g1k_v37.chr17_1Mb.fasta");
+        try ( final MemoryMappedFastaSequenceFile mapped = new MemoryMappedFastaSequenceFile(fasta);
+              final CachingIndexedFastaSequenceFile caching = new CachingIndexedFastaSequenceFile(fasta) ) {
+            final SAMSequenceRecord contig = mapped.getSequenceDictionary().getSequence(0);
+            final byte[] expected = caching.getSubsequenceAt(contig.getSequenceName(), 1, contig.getSequenceLength()).getBases();
+
+            final ExecutorService threads = Executors.newFixedThreadPool(4);
+            try {
+                final List<Future<Boolean>> results = new ArrayList<>();
+                for ( int thread = 0; thread < 4; ++thread ) {
+                    final int seed = thread;
+                    results.add(threads.submit(() -> {
+                        final Random random = new Random(seed);
+                        final byte[] buffer = new byte[100];
+                        for ( int i = 0; i < 1000; ++i ) {
+                            final int start = 1 + random.nextInt(expected.length - buffer.length);
+                            mapped.copySubsequenceAt(contig.getSequenceName(), start, start + buffer.length - 1, buffer, 0);
+                            if ( ! Arrays.equals(buffer, Arrays.copyOfRange(expected, start - 1, start - 1 + buffer.length)) ) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }));
+                }
+                for ( final Future<Boolean> result : results ) {
+                    Assert.assertTrue(result.get(), "wrong bases returned during concurrent access");
+                }
+            }
+            finally {
+                threads.shutdownNow();
+            }
+        }
+    }
+
+    @Test(expectedExceptions = UserException.class)
+    public void testFailOnBadBase() {
+        try ( final MemoryMappedFastaSequenceFile mapped = new MemoryMappedFastaSequenceFile(new File(publicTestDir + "problematicFASTA.fasta")) ) {
+            for ( final SAMSequenceRecord contig : mapped.getSequenceDictionary().getSequences() ) {
+                mapped.getSubsequenceAt(contig.getSequenceName(), 1, contig.getSequenceLength());
+            }
+        }
+    }
+
+    @Test(expectedExceptions = SAMException.class)
+    public void testQueryPastEndOfContig() {
+        try ( final MemoryMappedFastaSequenceFile mapped = new MemoryMappedFastaSequenceFile(new File(hg19MiniReference)) ) {
+            final SAMSequenceRecord contig = mapped.getSequenceDictionary().getSequence(0);
+            mapped.getSubsequenceAt(contig.getSequenceName(), contig.getSequenceLength() - 5, contig.getSequenceLength() + 1);
+        }
+    }
+
+    @Test(expectedExceptions = UserException.class)
+    public void testUnknownContig() {
+        try ( final MemoryMappedFastaSequenceFile mapped = new MemoryMappedFastaSequenceFile(new File(hg19MiniReference)) ) {
+            mapped.getBaseAt("nonexistent", 1);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testCopyIntoTooSmallBuffer() {
+        try ( final MemoryMappedFastaSequenceFile mapped = new MemoryMappedFastaSequenceFile(new File(hg19MiniReference)) ) {
+            mapped.copySubsequenceAt("1", 1, 10, new byte[10], 1);
+        }
+    }
+
+    @Test(expectedExceptions = UserException.MissingReferenceFaiFile.class)
+    public void testMissingFaiFile() {
+        new MemoryMappedFastaSequenceFile(new File(publicTestDir + "fastaWithoutFai.fasta"));
+    }
+
+    @Test(expectedExceptions = UserException.MissingReferenceDictFile.class)
+    public void testMissingDictFile() {
+        new MemoryMappedFastaSequenceFile(new File(publicTestDir + "fastaWithoutDict.fasta"));
+    }
+}
@@ -0,0 +1,116 @@
+package org.broadinstitute.hellbender.utils.io;
+
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+public final class IndexCacheUnitTest extends BaseTest {
+
+    private static File createIndexFile( final String contents ) throws IOException {
+        final File indexFile = createTempFile("IndexCacheUnitTest", ".idx");
+        Files.write(indexFile.toPath(), contents.getBytes());
+        return indexFile;
+    }
+
+    /**
+     * "Parses" index files by reading their contents, counting the number of times it is called
+     */
+    private static final class CountingLoader implements Function<File, String> {
+        private final AtomicInteger loads = new AtomicInteger();
+
+        @Override
+        public String apply( final File file ) {
+            loads.incrementAndGet();
+            try {
+                return new String(Files.readAllBytes(file.toPath()));
+            }
+            catch ( final IOException e ) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    @Test
+    public void testDisabledByDefault() throws IOException {
+        final IndexCache cache = new IndexCache();
+        final File indexFile = createIndexFile("index");
+        final CountingLoader loader = new CountingLoader();
+
+        Assert.assertEquals(cache.get(indexFile, String.class, loader), "index");
+        Assert.assertEquals(cache.get(indexFile, String.class, loader), "index");
+        Assert.assertEquals(loader.loads.get(), 2);
+        Assert.assertEquals(cache.size(), 0);
+        Assert.assertFalse(cache.isEnabled());
+    }
+
+    @Test
+    public void testCachedIndexIsReused() throws IOException {
+        final IndexCache cache = new IndexCache();
+        cache.setMaxBytes(100);
+        Assert.assertTrue(cache.isEnabled());
+        final File indexFile = createIndexFile("index");
+        final CountingLoader loader = new CountingLoader();
+
+        final String first = cache.get(indexFile, String.class, loader);
+        Assert.assertSame(cache.get(indexFile, String.class, loader), first);
+        Assert.assertEquals(loader.loads.get(), 1);
+        Assert.assertEquals(cache.getCachedBytes(), indexFile.length());
+    }
+
+    @Test
+    public void testModifiedIndexIsReloaded() throws IOException {
+        final IndexCache cache = new IndexCache();
+        cache.setMaxBytes(100);
+        final File indexFile = createIndexFile("index");
+        final CountingLoader loader = new CountingLoader();
+
+        cache.get(indexFile, String.class, loader);
+        Files.write(indexFile.toPath(), "new index".getBytes());
+        Assert.assertEquals(cache.get(indexFile, String.class, loader), "new index");
+        Assert.assertEquals(loader.loads.get(), 2);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIndicesAreEvicted() throws IOException {
+        final IndexCache cache = new IndexCache();
+        cache.setMaxBytes(10);
+        final File first = createIndexFile("11111");
+        final File second = createIndexFile("22222");
+        final File third = createIndexFile("33333");
+        final CountingLoader loader = new CountingLoader();
+
+        cache.get(first, String.class, loader);
+        cache.get(second, String.class, loader);
+        cache.get(first, String.class, loader); // second is now the least recently used
+        cache.get(third, String.class, loader);
+        Assert.assertEquals(loader.loads.get(), 3);
+        Assert.assertEquals(cache.size(), 2);
+        Assert.assertEquals(cache.getCachedBytes(), 10);
+
+        cache.get(first, String.class, loader);
+        Assert.assertEquals(loader.loads.get(), 3);
+        cache.get(second, String.class, loader);
+        Assert.assertEquals(loader.loads.get(), 4);
+
+        // Indices larger than the whole cache are never cached
+        cache.get(createIndexFile("12345678901"), String.class, loader);
+        Assert.assertEquals(cache.getCachedBytes(), 10);
+
+        cache.setMaxBytes(5);
+        Assert.assertEquals(cache.size(), 1);
+        cache.clear();
+        Assert.assertEquals(cache.size(), 0);
+        Assert.assertEquals(cache.getCachedBytes(), 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeCapacity() {
+        new IndexCache().setMaxBytes(-1);
+    }
+}
@@ -0,0 +1,61 @@
+package org.broadinstitute.hellbender.utils.iterators;
+
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+public final class MergingIteratorUnitTest extends BaseTest {
+
+    private static List<Iterator<Integer>> iterators( final List<List<Integer>> sources ) {
+        return sources.stream().map(List::iterator).collect(Collectors.toList());
+    }
+
+    @DataProvider(name = "MergingData")
+    public Object[][] getMergingData() {
+        return new Object[][] {
+                { Collections.emptyList() },
+                { Collections.singletonList(Arrays.asList(1, 2, 3)) },
+                { Arrays.asList(Arrays.asList(1, 4, 7), Arrays.asList(2, 5, 8), Arrays.asList(3, 6, 9)) },
+                { Arrays.asList(Arrays.asList(1, 2, 3), Collections.<Integer>emptyList(), Arrays.asList(10, 20)) },
+                { Arrays.asList(Arrays.asList(5, 5, 6), Arrays.asList(1, 5, 100)) },
+                { Arrays.asList(Collections.<Integer>emptyList(), Collections.<Integer>emptyList()) }
+        };
+    }
+
+    @Test(dataProvider = "MergingData")
+    public void testMerging( final List<List<Integer>> sources ) {
+        final List<Integer> expected = sources.stream().flatMap(List::stream).sorted().collect(Collectors.toList());
+
+        final List<Integer> actual = new ArrayList<>();
+        final MergingIterator<Integer> iter = new MergingIterator<>(iterators(sources), Comparator.naturalOrder());
+        iter.forEachRemaining(actual::add);
+
+        Assert.assertEquals(actual, expected);
+        Assert.assertFalse(iter.hasNext());
+    }
+
+    @Test
+    public void testTiesAreReturnedInSourceOrder() {
+        // Compare only the first character, so that records from different sources can be equal
+        final List<List<String>> sources = Arrays.asList(Arrays.asList("a2", "b2"), Arrays.asList("a0", "b0", "c0"), Arrays.asList("a1"));
+        final List<String> actual = new ArrayList<>();
+        new MergingIterator<>(sources.stream().map(List::iterator).collect(Collectors.toList()), Comparator.comparing((String record) -> record.charAt(0)))
+                .forEachRemaining(actual::add);
+
+        Assert.assertEquals(actual, Arrays.asList("a2", "a0", "a1", "b2", "b0", "c0"));
+    }
+
+    @Test(expectedExceptions = NoSuchElementException.class)
+    public void testNextWhenExhausted() {
+        new MergingIterator<>(iterators(Collections.singletonList(Collections.emptyList())), Comparator.<Integer>naturalOrder()).next();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNullSource() {
+        new MergingIterator<>(Arrays.asList(Collections.<Integer>emptyIterator(), null), Comparator.<Integer>naturalOrder());
+    }
+}
@@ -0,0 +1,156 @@
+package org.broadinstitute.hellbender.utils.iterators;
+
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public final class ReadAheadIteratorUnitTest extends BaseTest {
+
+    private static List<Integer> range( final int numRecords ) {
+        return IntStream.range(0, numRecords).boxed().collect(Collectors.toList());
+    }
+
+    @DataProvider(name = "ReadAheadData")
+    public Object[][] getReadAheadData() {
+        // num records, batch size, max queued batches, num decoding threads
+        return new Object[][] {
+                { 0, 10, 1, 0 },
+                { 1, 10, 1, 0 },
+                { 10, 10, 1, 0 },
+                { 11, 10, 1, 0 },
+                { 1000, 7, 1, 0 },
+                { 1000, 7, 3, 1 },
+                { 1000, 7, 3, 4 },
+                { 1000, 1, 2, 4 },
+                { 1000, 2000, 2, 4 }
+        };
+    }
+
+    @Test(dataProvider = "ReadAheadData")
+    public void testReadAheadPreservesOrder( final int numRecords, final int batchSize, final int maxQueuedBatches, final int numDecodingThreads ) {
+        final AtomicInteger numDecoded = new AtomicInteger();
+        final List<Integer> actual = new ArrayList<>();
+
+        try ( final ReadAheadIterator<Integer> iter = new ReadAheadIterator<>(range(numRecords).iterator(), batchSize, maxQueuedBatches, numDecodingThreads, record -> numDecoded.incrementAndGet()) ) {
+            while ( iter.hasNext() ) {
+                actual.add(iter.next());
+            }
+            Assert.assertFalse(iter.hasNext());
+        }
+
+        Assert.assertEquals(actual, range(numRecords));
+        Assert.assertEquals(numDecoded.get(), numRecords, "every record should have been decoded exactly once");
+    }
+
+    @Test
+    public void testNoDecoder() {
+        final List<Integer> actual = new ArrayList<>();
+        try ( final ReadAheadIterator<Integer> iter = new ReadAheadIterator<>(range(100).iterator(), 3, 2, 2, null) ) {
+            iter.forEachRemaining(actual::add);
+        }
+        Assert.assertEquals(actual, range(100));
+    }
+
+    @Test
+    public void testCloseBeforeExhausted() {
+        // Underlying iterator is effectively infinite, so the reading thread will be blocked on a full queue when we close
+        final Iterator<Integer> infinite = IntStream.iterate(0, i -> i + 1).iterator();
+        final ReadAheadIterator<Integer> iter = new ReadAheadIterator<>(infinite, 5, 2, 2, record -> {});
+        Assert.assertEquals(iter.next().intValue(), 0);
+        Assert.assertEquals(iter.next().intValue(), 1);
+        iter.close();
+        Assert.assertFalse(iter.hasNext());
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testSourceExceptionIsRethrownToConsumer() {
+        final Iterator<Integer> failing = new Iterator<Integer>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Integer next() {
+                if ( next == 25 ) {
+                    throw new IllegalStateException("bad record");
+                }
+                return next++;
+            }
+        };
+
+        try ( final ReadAheadIterator<Integer> iter = new ReadAheadIterator<>(failing, 10, 2, 0, null) ) {
+            int numRecords = 0;
+            while ( iter.hasNext() ) {
+                Assert.assertEquals(iter.next().intValue(), numRecords++);
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testDecoderExceptionIsRethrownToConsumer() {
+        try ( final ReadAheadIterator<Integer> iter = new ReadAheadIterator<>(range(100).iterator(), 10, 2, 2, record -> { if ( record == 57 ) throw new IllegalArgumentException("bad record"); }) ) {
+            iter.forEachRemaining(record -> {});
+        }
+    }
+
+    @Test(expectedExceptions = StackOverflowError.class, timeOut = 10000)
+    public void testSourceErrorIsRethrownToConsumer() {
+        final Iterator<Integer> failing = new Iterator<Integer>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Integer next() {
+                if ( next == 25 ) {
+                    throw new StackOverflowError();
+                }
+                return next++;
+            }
+        };
+
+        try ( final ReadAheadIterator<Integer> iter = new ReadAheadIterator<>(failing, 10, 2, 0, null) ) {
+            iter.forEachRemaining(record -> {});
+        }
+    }
+
+    @DataProvider(name = "numDecodingThreads")
+    public Object[][] numDecodingThreads() {
+        return new Object[][]{ {0}, {2} };
+    }
+
+    @Test(dataProvider = "numDecodingThreads", expectedExceptions = AssertionError.class, timeOut = 10000)
+    public void testDecoderErrorIsRethrownToConsumer( final int numDecodingThreads ) {
+        try ( final ReadAheadIterator<Integer> iter = new ReadAheadIterator<>(range(100).iterator(), 10, 2, numDecodingThreads, record -> { if ( record == 57 ) throw new AssertionError("bad record"); }) ) {
+            iter.forEachRemaining(record -> {});
+        }
+    }
+
+    @Test(expectedExceptions = NoSuchElementException.class)
+    public void testNextPastEnd() {
+        try ( final ReadAheadIterator<Integer> iter = new ReadAheadIterator<>(range(1).iterator(), 10, 2, 0, null) ) {
+            iter.next();
+            iter.next();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidBatchSize() {
+        new ReadAheadIterator<>(range(1).iterator(), 0, 2, 0, null);
+    }
+}
@@ -0,0 +1,183 @@
+package org.broadinstitute.hellbender.utils.locusiterator;
+
+import htsjdk.samtools.CigarOperator;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMReadGroupRecord;
+import org.broadinstitute.hellbender.engine.AlignmentContext;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.pileup.PileupElement;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+public final class LocusIteratorByStateUnitTest extends LocusIteratorByStateBaseTest {
+
+    @DataProvider(name = "SingleReadPileupTest")
+    public Object[][] makeSingleReadPileupTest() {
+        return createLIBSTests(
+                Arrays.asList(1, 2),
+                Arrays.asList(1, 2, 3, 4));
+    }
+
+    @Test(dataProvider = "SingleReadPileupTest")
+    public void testSingleReadPileups( final LIBSTest params ) {
+        final GATKRead read = params.makeRead();
+        final LocusIteratorByState libs = new LocusIteratorByState(Collections.singletonList(read).iterator(), header, LocusIteratorByState.NO_DOWNSAMPLING);
+        final LIBS_position tester = new LIBS_position(read);
+
+        int bpVisited = 0;
+        while ( libs.hasNext() ) {
+            final AlignmentContext context = libs.next();
+            tester.stepForwardOnGenome();
+
+            Assert.assertEquals(context.getPosition(), read.getStart() + bpVisited);
+            Assert.assertEquals(context.size(), 1);
+            Assert.assertFalse(context.hasPileupBeenDownsampled());
+
+            final PileupElement element = context.getBasePileup().iterator().next();
+            Assert.assertSame(element.getRead(), read);
+            Assert.assertEquals(element.getOffset(), tester.getCurrentReadOffset(), "wrong offset at " + bpVisited);
+            Assert.assertEquals(element.getCurrentCigarElement(), read.getCigar().getCigarElement(tester.currentOperatorIndex));
+            Assert.assertEquals(element.isDeletion(), read.getCigar().getCigarElement(tester.currentOperatorIndex).getOperator() == CigarOperator.D);
+            Assert.assertEquals(libs.getNumActiveReads(), 1);
+            bpVisited++;
+        }
+
+        Assert.assertEquals(bpVisited, read.getEnd() - read.getStart() + 1, "Didn't visit the expected number of bp");
+    }
+
+    @Test
+    public void testOverlappingReads() {
+        final List<GATKRead> reads = Arrays.asList(
+                ArtificialReadUtils.createArtificialRead(header, "a", 0, 10, 10),
+                ArtificialReadUtils.createArtificialRead(header, "b", 0, 10, 5),
+                ArtificialReadUtils.createArtificialRead(header, "c", 0, 15, 10),
+                // not contiguous with the others
+                ArtificialReadUtils.createArtificialRead(header, "d", 0, 100, 3));
+
+        final List<Integer> positions = new ArrayList<>();
+        final List<Integer> depths = new ArrayList<>();
+        final LocusIteratorByState libs = new LocusIteratorByState(reads.iterator(), header, LocusIteratorByState.NO_DOWNSAMPLING);
+        libs.forEachRemaining(context -> {
+            positions.add((int)context.getPosition());
+            depths.add(context.size());
+        });
+
+        final List<Integer> expectedPositions = new ArrayList<>();
+        final List<Integer> expectedDepths = new ArrayList<>();
+        for ( int position = 10; position <= 24; ++position ) {
+            expectedPositions.add(position);
+            expectedDepths.add((position <= 14 ? 2 : 0) + (position >= 15 && position <= 19 ? 2 : 0) + (position >= 20 ? 1 : 0));
+        }
+        for ( int position = 100; position <= 102; ++position ) {
+            expectedPositions.add(position);
+            expectedDepths.add(1);
+        }
+        Assert.assertEquals(positions, expectedPositions);
+        Assert.assertEquals(depths, expectedDepths);
+        Assert.assertEquals(libs.getNumActiveReads(), 0);
+    }
+
+    @Test
+    public void testPileupElementsAreReused() {
+        final GATKRead read = ArtificialReadUtils.createArtificialRead(header, "a", 0, 10, 10);
+        final LocusIteratorByState libs = new LocusIteratorByState(Collections.singletonList(read).iterator(), header, LocusIteratorByState.NO_DOWNSAMPLING);
+
+        final PileupElement first = libs.next().getBasePileup().iterator().next();
+        final PileupElement firstCopy = new PileupElement(first);
+        final PileupElement second = libs.next().getBasePileup().iterator().next();
+
+        Assert.assertSame(second, first);
+        Assert.assertEquals(second.getOffset(), 1);
+        Assert.assertEquals(firstCopy.getOffset(), 0, "copy should not change when the original is updated");
+    }
+
+    @Test
+    public void testUnmappedReadsAreIgnored() {
+        final GATKRead unmapped = ArtificialReadUtils.createArtificialRead(header, "unmapped", 0, 5, 10);
+        unmapped.setIsUnmapped();
+        final List<GATKRead> reads = Arrays.asList(unmapped, ArtificialReadUtils.createArtificialRead(header, "a", 0, 10, 3));
+
+        final LocusIteratorByState libs = new LocusIteratorByState(reads.iterator(), header, LocusIteratorByState.NO_DOWNSAMPLING);
+        int loci = 0;
+        while ( libs.hasNext() ) {
+            Assert.assertEquals(libs.next().getBasePileup().iterator().next().getRead().getName(), "a");
+            ++loci;
+        }
+        Assert.assertEquals(loci, 3);
+    }
+
+    @Test(expectedExceptions = UserException.class)
+    public void testUnsortedReads() {
+        final List<GATKRead> reads = Arrays.asList(
+                ArtificialReadUtils.createArtificialRead(header, "a", 0, 10, 10),
+                ArtificialReadUtils.createArtificialRead(header, "b", 0, 5, 10));
+        new LocusIteratorByState(reads.iterator(), header, LocusIteratorByState.NO_DOWNSAMPLING).forEachRemaining(context -> {});
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeMaxDepth() {
+        new LocusIteratorByState(Collections.emptyIterator(), header, -1);
+    }
+
+    @DataProvider(name = "DownsamplingData")
+    public Object[][] getDownsamplingData() {
+        return new Object[][] {
+                // reads per sample at each start, number of starts, max depth per sample
+                { 100, 1, 10 },
+                { 5, 1, 10 },
+                { 30, 5, 10 },
+                { 3, 20, 4 }
+        };
+    }
+
+    @Test(dataProvider = "DownsamplingData")
+    public void testDownsamplingPerSample( final int readsPerSamplePerStart, final int numStarts, final int maxDepthPerSample ) {
+        Utils.resetRandomGenerator();
+        final SAMFileHeader samplesHeader = ArtificialReadUtils.createArtificialSamHeader(1, 1, 1000);
+        final List<String> samples = Arrays.asList("sample1", "sample2");
+        for ( final String sample : samples ) {
+            final SAMReadGroupRecord readGroup = new SAMReadGroupRecord(sample + "_rg");
+            readGroup.setSample(sample);
+            samplesHeader.addReadGroup(readGroup);
+        }
+
+        final int readLength = 10;
+        final List<GATKRead> reads = new ArrayList<>();
+        for ( int start = 1; start <= numStarts; ++start ) {
+            for ( final String sample : samples ) {
+                for ( int i = 0; i < readsPerSamplePerStart; ++i ) {
+                    final GATKRead read = ArtificialReadUtils.createArtificialRead(samplesHeader, sample + "_" + start + "_" + i, 0, start, readLength);
+                    read.setReadGroup(sample + "_rg");
+                    reads.add(read);
+                }
+            }
+        }
+
+        final LocusIteratorByState libs = new LocusIteratorByState(reads.iterator(), samplesHeader, maxDepthPerSample);
+        while ( libs.hasNext() ) {
+            final AlignmentContext context = libs.next();
+            final int position = (int)context.getPosition();
+            // reads from each sample overlapping this locus, before downsampling
+            final int fullDepthPerSample = readsPerSamplePerStart * (Math.min(position, numStarts) - Math.max(1, position - readLength + 1) + 1);
+
+            boolean anyReadsDiscarded = false;
+            for ( final String sample : samples ) {
+                final long sampleDepth = context.getBasePileup().getReads().stream().filter(read -> read.getReadGroup().startsWith(sample)).count();
+                Assert.assertTrue(sampleDepth <= maxDepthPerSample, "too many reads for " + sample + " at " + position);
+                // while new reads are still arriving, we keep as many as we have room for
+                if ( position <= numStarts ) {
+                    Assert.assertEquals(sampleDepth, Math.min(fullDepthPerSample, maxDepthPerSample), "wrong depth for " + sample + " at " + position);
+                }
+                anyReadsDiscarded |= sampleDepth < fullDepthPerSample;
+            }
+            Assert.assertEquals(context.hasPileupBeenDownsampled(), anyReadsDiscarded, "wrong downsampling flag at " + position);
+            Assert.assertTrue(libs.getNumActiveReads() <= samples.size() * maxDepthPerSample);
+        }
+    }
+}
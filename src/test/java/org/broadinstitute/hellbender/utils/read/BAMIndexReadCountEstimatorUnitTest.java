@@ -0,0 +1,59 @@
+package org.broadinstitute.hellbender.utils.read;
+
+import htsjdk.samtools.SAMRecordIterator;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public final class BAMIndexReadCountEstimatorUnitTest extends BaseTest {
+    private static final File TOOLS_TEST_DIRECTORY = new File(publicTestDir, "org/broadinstitute/hellbender/tools");
+    private static final File INDEXED_BAM = new File(TOOLS_TEST_DIRECTORY, "BQSR/HiSeq.1mb.1RG.2k_lines.bam");
+
+    private static int countReads( final File bam, final SimpleInterval interval ) throws IOException {
+        try ( final SamReader reader = SamReaderFactory.makeDefault().open(bam);
+              final SAMRecordIterator reads = reader.queryOverlapping(interval.getContig(), interval.getStart(), interval.getEnd()) ) {
+            int count = 0;
+            while ( reads.hasNext() ) {
+                reads.next();
+                ++count;
+            }
+            return count;
+        }
+    }
+
+    @Test
+    public void testEstimateReads() throws IOException {
+        try ( final BAMIndexReadCountEstimator estimator = new BAMIndexReadCountEstimator(INDEXED_BAM) ) {
+            // Every read is on chr1, so the estimate for the whole contig comes straight from the index metadata
+            final SimpleInterval wholeContig = new SimpleInterval("chr1", 1, 247249719);
+            Assert.assertEquals(estimator.estimateReads(wholeContig), countReads(INDEXED_BAM, wholeContig));
+
+            Assert.assertEquals(estimator.estimateReads(new SimpleInterval("chr2", 1, 1000000)), 0);
+            Assert.assertEquals(estimator.estimateReads(new SimpleInterval("chr1", 1, 1000000)), 0);
+            Assert.assertEquals(estimator.estimateReads(new SimpleInterval("noSuchContig", 1, 100)), 0);
+
+            // The estimate for part of the contig is bounded by the reads on the contig
+            final long partial = estimator.estimateReads(new SimpleInterval("chr1", 10070000, 10080000));
+            Assert.assertTrue(partial > 0 && partial <= countReads(INDEXED_BAM, wholeContig), "bad estimate " + partial);
+        }
+    }
+
+    @Test
+    public void testGetCompressedSize() {
+        Assert.assertEquals(BAMIndexReadCountEstimator.getCompressedSize(10L << 16, 25L << 16), 15.0);
+        Assert.assertEquals(BAMIndexReadCountEstimator.getCompressedSize(10L << 16, (10L << 16) + 30), 30 / BAMIndexReadCountEstimator.ASSUMED_COMPRESSION_RATIO);
+        Assert.assertEquals(BAMIndexReadCountEstimator.getCompressedSize(25L << 16, 10L << 16), 0.0);
+    }
+
+    @Test(expectedExceptions = UserException.class)
+    public void testUnindexedBam() {
+        new BAMIndexReadCountEstimator(new File(TOOLS_TEST_DIRECTORY, "count_reads.bam"));
+    }
+}